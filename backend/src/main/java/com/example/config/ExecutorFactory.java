@@ -0,0 +1,94 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池工厂
+ * spring.threads.virtual.enabled=true（需 JDK 21, 见 Maven profile virtual-threads）时,
+ * 与 Tomcat、@Async、@Scheduled 一致改用虚拟线程; 否则使用守护平台线程。
+ * 固定并发度的执行器在两种模式下都保留并发上限（用于限制对 Milvus 等下游的压力）。
+ */
+@Component
+public class ExecutorFactory {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public ExecutorFactory() {
+    }
+
+    public ExecutorFactory(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 是否启用虚拟线程
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 线程工厂, 线程名为 name-序号
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 固定并发度执行器, 超出并发度的任务排队
+     */
+    public ExecutorService bounded(String name, int concurrency) {
+        return Executors.newFixedThreadPool(concurrency, threadFactory(name));
+    }
+
+    /**
+     * 固定并发度、有界队列执行器, 队列满时提交方收到 RejectedExecutionException（用于有降级路径的调用）
+     */
+    public ExecutorService bounded(String name, int concurrency, int queueCapacity) {
+        return new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(name), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 不限并发度执行器: 虚拟线程模式下每个任务一个新线程, 否则为可复用的缓存线程池
+     */
+    public ExecutorService unbounded(String name) {
+        if (virtualThreads) {
+            return newThreadPerTaskExecutor(threadFactory(name));
+        }
+        return Executors.newCachedThreadPool(threadFactory(name));
+    }
+
+    // Executors.newThreadPerTaskExecutor 为 JDK 21 API, 默认按 JDK 17 编译, 故运行时查找
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().findStatic(Executors.class, "newThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+            return (ExecutorService) handle.invoke(factory);
+        } catch (Throwable e) {
+            throw new IllegalStateException("virtual threads require JDK 21 or later", e);
+        }
+    }
+}
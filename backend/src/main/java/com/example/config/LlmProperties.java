@@ -0,0 +1,197 @@
+package com.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大模型网关配置, 对应配置项 llm.*
+ * 上游需兼容 OpenAI Chat Completions 流式接口。
+ */
+@Component
+@ConfigurationProperties(prefix = "llm")
+public class LlmProperties {
+
+    /** 是否启用大模型生成, 未启用时自动应答只使用规则与知识库 */
+    private boolean enabled;
+
+    /** 上游地址, 如 https://api.example.com */
+    private String baseUrl = "http://localhost:18080";
+
+    private String apiKey;
+
+    /** 默认模型 */
+    private String model = "stub";
+
+    private int maxTokens = 512;
+
+    private double temperature = 0.2;
+
+    private long connectTimeoutMs = 2000;
+
+    /** 单次生成超时（含流式读取） */
+    private long timeoutMs = 20000;
+
+    /** 排队等待并发许可的超时 */
+    private long queueTimeoutMs = 3000;
+
+    /** 未单独配置的模型的并发上限 */
+    private int defaultConcurrency = 16;
+
+    /** 按模型的并发上限, 如 llm.model-concurrency.gpt-4o=8 */
+    private Map<String, Integer> modelConcurrency = new HashMap<>();
+
+    /** 本地桩服务（开发与压测用, 返回确定性的流式应答） */
+    private Stub stub = new Stub();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(double temperature) {
+        this.temperature = temperature;
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(long connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getQueueTimeoutMs() {
+        return queueTimeoutMs;
+    }
+
+    public void setQueueTimeoutMs(long queueTimeoutMs) {
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public int getDefaultConcurrency() {
+        return defaultConcurrency;
+    }
+
+    public void setDefaultConcurrency(int defaultConcurrency) {
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    public Map<String, Integer> getModelConcurrency() {
+        return modelConcurrency;
+    }
+
+    public void setModelConcurrency(Map<String, Integer> modelConcurrency) {
+        this.modelConcurrency = modelConcurrency;
+    }
+
+    public Stub getStub() {
+        return stub;
+    }
+
+    public void setStub(Stub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * 获取模型的并发上限
+     */
+    public int concurrencyFor(String model) {
+        Integer limit = modelConcurrency.get(model);
+        return limit != null && limit > 0 ? limit : defaultConcurrency;
+    }
+
+    public static class Stub {
+
+        private boolean enabled;
+
+        private int port = 18080;
+
+        /** 首个片段前的延迟 */
+        private long firstTokenDelayMs = 150;
+
+        /** 片段间隔 */
+        private long tokenDelayMs = 20;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public long getFirstTokenDelayMs() {
+            return firstTokenDelayMs;
+        }
+
+        public void setFirstTokenDelayMs(long firstTokenDelayMs) {
+            this.firstTokenDelayMs = firstTokenDelayMs;
+        }
+
+        public long getTokenDelayMs() {
+            return tokenDelayMs;
+        }
+
+        public void setTokenDelayMs(long tokenDelayMs) {
+            this.tokenDelayMs = tokenDelayMs;
+        }
+    }
+}
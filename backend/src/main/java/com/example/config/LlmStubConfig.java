@@ -0,0 +1,20 @@
+package com.example.config;
+
+import com.example.util.LlmStubServer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 开发环境启动本地大模型桩服务（llm.stub.enabled=true, 配合 llm.base-url 指向桩服务端口）
+ */
+@Configuration
+@ConditionalOnProperty(name = "llm.stub.enabled", havingValue = "true")
+public class LlmStubConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public LlmStubServer llmStubServer(LlmProperties properties) {
+        LlmProperties.Stub stub = properties.getStub();
+        return new LlmStubServer(stub.getPort(), stub.getFirstTokenDelayMs(), stub.getTokenDelayMs());
+    }
+}
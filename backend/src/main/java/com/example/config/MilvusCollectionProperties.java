@@ -0,0 +1,109 @@
+package com.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Milvus 集合级配置（索引类型、度量方式、索引/检索参数、启动预热）
+ * 对应配置项 milvus.collections.&lt;集合名&gt;.*, 如知识库集合 milvus.collections[knowledge_vectors].*
+ */
+@Component
+@ConfigurationProperties(prefix = "milvus")
+public class MilvusCollectionProperties {
+
+    private static final Pattern VERSION_SUFFIX = Pattern.compile("_v\\d+$");
+
+    private Map<String, CollectionSettings> collections = new HashMap<>();
+
+    public Map<String, CollectionSettings> getCollections() {
+        return collections;
+    }
+
+    public void setCollections(Map<String, CollectionSettings> collections) {
+        this.collections = collections;
+    }
+
+    /**
+     * 获取集合配置, 未配置时使用默认值; 版本化的物理集合（如 knowledge_vectors_v3）沿用其别名的配置
+     */
+    public CollectionSettings forCollection(String collectionName) {
+        CollectionSettings settings = collections.get(collectionName);
+        if (settings == null && collectionName != null) {
+            settings = collections.get(VERSION_SUFFIX.matcher(collectionName).replaceFirst(""));
+        }
+        return settings != null ? settings : new CollectionSettings();
+    }
+
+    public static class CollectionSettings {
+
+        /** 向量维度 */
+        private int dimension;
+
+        /** 索引类型: IVF_FLAT / IVF_SQ8 / HNSW */
+        private String indexType = "IVF_FLAT";
+
+        /** 度量方式: L2 / IP / COSINE */
+        private String metricType = "L2";
+
+        /** 建索引参数, 如 {"nlist":1024} 或 {"M":16,"efConstruction":200} */
+        private String indexParams = "{\"nlist\":1024}";
+
+        /** 检索参数, 如 {"nprobe":16} 或 {"ef":64} */
+        private String searchParams = "{\"nprobe\":16}";
+
+        /** 启动时加载并预热 */
+        private boolean warmUp;
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        public void setDimension(int dimension) {
+            this.dimension = dimension;
+        }
+
+        public String getIndexType() {
+            return indexType;
+        }
+
+        public void setIndexType(String indexType) {
+            this.indexType = indexType;
+        }
+
+        public String getMetricType() {
+            return metricType;
+        }
+
+        public void setMetricType(String metricType) {
+            this.metricType = metricType;
+        }
+
+        public String getIndexParams() {
+            return indexParams;
+        }
+
+        public void setIndexParams(String indexParams) {
+            this.indexParams = indexParams;
+        }
+
+        public String getSearchParams() {
+            return searchParams;
+        }
+
+        public void setSearchParams(String searchParams) {
+            this.searchParams = searchParams;
+        }
+
+        public boolean isWarmUp() {
+            return warmUp;
+        }
+
+        public void setWarmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+        }
+    }
+}
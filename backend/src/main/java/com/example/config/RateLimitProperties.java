@@ -0,0 +1,180 @@
+package com.example.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 消息限流配置, 对应配置项 ratelimit.*
+ * 每条消息同时消耗用户、渠道（及可选的角色总量）令牌桶中的一个令牌, 任一桶不足即拒绝。
+ */
+@Component
+@ConfigurationProperties(prefix = "ratelimit")
+public class RateLimitProperties {
+
+    public enum Algorithm {
+        /** 原子 Lua 令牌桶（默认） */
+        TOKEN_BUCKET,
+        /** 按秒固定窗口计数（INCR + EXPIRE） */
+        FIXED_WINDOW
+    }
+
+    private boolean enabled = true;
+
+    private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+    /** 普通用户默认配额 */
+    private Limit user = new Limit(1, 5);
+
+    /** VIP 用户配额 */
+    private Limit vip = new Limit(3, 15);
+
+    /** 按角色覆盖的用户配额, 如 ratelimit.roles.staff.rate=10 */
+    private Map<String, Limit> roles = new HashMap<>();
+
+    /** 渠道默认总配额 */
+    private Limit channel = new Limit(200, 400);
+
+    /** 按渠道ID覆盖的总配额, 如 ratelimit.channels.3.rate=50 */
+    private Map<Long, Limit> channels = new HashMap<>();
+
+    /** 按角色的全局总配额（可选）, 如 ratelimit.role-totals.guest.rate=100 */
+    private Map<String, Limit> roleTotals = new HashMap<>();
+
+    /** 本地预取: 每次从 Redis 预取的令牌数上限, 1 表示不预取 */
+    private int leaseSize = 5;
+
+    /** 本地预取令牌的有效期, 过期未用的令牌作废（限制多节点下的超发） */
+    private long leaseTtlMs = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public Limit getUser() {
+        return user;
+    }
+
+    public void setUser(Limit user) {
+        this.user = user;
+    }
+
+    public Limit getVip() {
+        return vip;
+    }
+
+    public void setVip(Limit vip) {
+        this.vip = vip;
+    }
+
+    public Map<String, Limit> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Map<String, Limit> roles) {
+        this.roles = roles;
+    }
+
+    public Limit getChannel() {
+        return channel;
+    }
+
+    public void setChannel(Limit channel) {
+        this.channel = channel;
+    }
+
+    public Map<Long, Limit> getChannels() {
+        return channels;
+    }
+
+    public void setChannels(Map<Long, Limit> channels) {
+        this.channels = channels;
+    }
+
+    public Map<String, Limit> getRoleTotals() {
+        return roleTotals;
+    }
+
+    public void setRoleTotals(Map<String, Limit> roleTotals) {
+        this.roleTotals = roleTotals;
+    }
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public void setLeaseSize(int leaseSize) {
+        this.leaseSize = leaseSize;
+    }
+
+    public long getLeaseTtlMs() {
+        return leaseTtlMs;
+    }
+
+    public void setLeaseTtlMs(long leaseTtlMs) {
+        this.leaseTtlMs = leaseTtlMs;
+    }
+
+    /**
+     * 用户配额: VIP 优先, 其次按角色, 否则为默认配额
+     */
+    public Limit userLimit(String role, boolean isVip) {
+        if (isVip) {
+            return vip;
+        }
+        Limit limit = role == null ? null : roles.get(role);
+        return limit != null ? limit : user;
+    }
+
+    public Limit channelLimit(Long channelId) {
+        Limit limit = channels.get(channelId);
+        return limit != null ? limit : channel;
+    }
+
+    public static class Limit {
+
+        /** 每秒补充的令牌数 */
+        private double rate;
+
+        /** 桶容量（允许的突发量） */
+        private int burst;
+
+        public Limit() {
+        }
+
+        public Limit(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
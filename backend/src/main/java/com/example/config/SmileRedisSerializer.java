@@ -0,0 +1,106 @@
+package com.example.config;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Smile（二进制 JSON）值序列化器
+ * 相比 JDK 序列化不写类描述符, 体积更小且不依赖 serialVersionUID; 字节数组按原始二进制写入。
+ * 读取时识别 JDK 序列化的流头（0xACED）并交给 JDK 反序列化, 切换序列化方式时旧缓存无需清空。
+ * 顶层值包在 Envelope 中记录类型（包括 Long 等 final 类型）; 嵌套的非 final 值按 NON_FINAL 记录类型。
+ * 类型只允许本项目的类和白名单中的 JDK 类型, 新增存入 Redis 的 JDK 类型时需要加入 ALLOWED_JDK_TYPES。
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // 实际存入 Redis 的 JDK 类型（字符串、整数、浮点、布尔为自然类型, 不记录类型）
+    private static final Set<Class<?>> ALLOWED_JDK_TYPES = Set.of(
+            Long.class, byte[].class,
+            ArrayList.class, HashSet.class, LinkedHashSet.class, HashMap.class, LinkedHashMap.class);
+
+    private final ObjectMapper mapper;
+    private final JdkSerializationRedisSerializer legacy = new JdkSerializationRedisSerializer();
+
+    public SmileRedisSerializer() {
+        SmileFactory factory = new SmileFactory();
+        factory.disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+        mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        PolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.example.")
+                .allowIfSubType(new BasicPolymorphicTypeValidator.TypeMatcher() {
+                    @Override
+                    public boolean match(MapperConfig<?> config, Class<?> clazz) {
+                        return ALLOWED_JDK_TYPES.contains(clazz);
+                    }
+                })
+                .build();
+        mapper.setPolymorphicTypeValidator(validator);
+        mapper.activateDefaultTyping(validator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        try {
+            return mapper.writeValueAsBytes(new Envelope(value));
+        } catch (IOException e) {
+            throw new SerializationException("Could not write Smile: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+            return legacy.deserialize(bytes);
+        }
+        try {
+            return mapper.readValue(bytes, Envelope.class).value;
+        } catch (IOException e) {
+            throw new SerializationException("Could not read Smile: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 顶层值包装, 值的声明类型为 Object, 按实际类名记录类型
+     */
+    static final class Envelope {
+
+        @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
+        public Object value;
+
+        Envelope() {
+        }
+
+        Envelope(Object value) {
+            this.value = value;
+        }
+    }
+}
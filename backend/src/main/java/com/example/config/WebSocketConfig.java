@@ -0,0 +1,51 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * 客服工作台 WebSocket/STOMP 配置
+ * 客户端连接 /ws/workbench, 订阅 /topic/workbench/sessions 接收会话事件;
+ * 各节点只向本节点的连接广播, 跨节点分发由 Redis 发布/订阅完成（见 WorkbenchPushService）。
+ * 允许的来源默认与 REST 接口的 CORS 配置（spring.web.cors.allowed-origins）一致。
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Value("${workbench.ws.allowed-origins:${spring.web.cors.allowed-origins}}")
+    private String[] allowedOrigins;
+
+    @Value("${workbench.ws.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(
+            @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler messageBrokerTaskScheduler) {
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws/workbench").setAllowedOriginPatterns(allowedOrigins);
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        // 心跳用于及时发现断开的连接, 客户端重连后按序号补齐错过的事件
+        registry.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+}
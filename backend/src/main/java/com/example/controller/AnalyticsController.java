@@ -0,0 +1,98 @@
+package com.example.controller;
+
+import com.example.model.User;
+import com.example.service.AnalyticsRollupService;
+import com.example.service.ReplyOrchestrator;
+import com.example.service.UserIdentityCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 咨询数据分析看板接口（只读取预聚合结果）
+ */
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+
+    private final AnalyticsRollupService analyticsRollupService;
+    private final UserIdentityCache userIdentityCache;
+
+    @Autowired
+    public AnalyticsController(AnalyticsRollupService analyticsRollupService, UserIdentityCache userIdentityCache) {
+        this.analyticsRollupService = analyticsRollupService;
+        this.userIdentityCache = userIdentityCache;
+    }
+
+    /**
+     * 按时间范围查询趋势
+     * @param from 开始时间, 如 2024-05-01T00:00:00
+     * @param to 结束时间（不含）
+     * @param granularity minute、hour 或 day, 不传时按范围自动选择
+     * @param groupBy channel、role、category、source 或 none
+     */
+    @GetMapping("/query")
+    public ResponseEntity<Map<String, Object>> query(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(defaultValue = "none") String groupBy) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            AnalyticsRollupService.Granularity resolved = granularity == null ? null
+                    : AnalyticsRollupService.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+            response.put("success", true);
+            response.put("data", analyticsRollupService.query(from, to, resolved, groupBy));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    /**
+     * 看板概览
+     * @param hours 最近小时数, 默认 24
+     */
+    @GetMapping("/overview")
+    public ResponseEntity<Map<String, Object>> overview(@RequestParam(defaultValue = "24") int hours) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("data", analyticsRollupService.overview(hours));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    /**
+     * 上报一次转化（由报名、下单等业务系统调用）
+     * @param body channel、userId（可选）、category（可选）
+     */
+    @PostMapping("/conversion")
+    public ResponseEntity<Map<String, Object>> conversion(@RequestBody Map<String, String> body) {
+        Map<String, Object> response = new HashMap<>();
+        String channel = body.get("channel");
+        if (channel == null || channel.isBlank()) {
+            response.put("success", false);
+            response.put("message", "channel is required");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        String userId = body.get("userId");
+        User user = userId == null ? null : userIdentityCache.findByUserId(userId).orElse(null);
+        analyticsRollupService.recordConversion(channel, ReplyOrchestrator.role(user), body.get("category"));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+}
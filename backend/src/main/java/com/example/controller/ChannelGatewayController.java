@@ -0,0 +1,107 @@
+package com.example.controller;
+
+import com.example.service.ChannelAdapter;
+import com.example.service.ChannelGateway;
+import com.example.service.RateLimitExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/channel")
+public class ChannelGatewayController {
+
+    private final ChannelGateway channelGateway;
+
+    @Autowired
+    public ChannelGatewayController(ChannelGateway channelGateway) {
+        this.channelGateway = channelGateway;
+    }
+
+    /**
+     * 渠道消息回调: 受理后立即返回, 应答异步生成并经渠道发送
+     * @param channelName 渠道名称
+     * @param payload 平台原始报文
+     * @return 202; 微信等要求固定响应体的平台返回对应文本
+     */
+    @PostMapping("/{channelName}/webhook")
+    public ResponseEntity<?> receive(@PathVariable String channelName,
+                                     @RequestBody(required = false) String payload,
+                                     @RequestParam Map<String, String> params,
+                                     HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            ChannelGateway.IngestResult result = channelGateway.ingest(channelName, inbound(payload, params, request));
+            if (result.getAcknowledgement() != null) {
+                return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(result.getAcknowledgement());
+            }
+            response.put("success", true);
+            response.put("result", result.getResult());
+            response.put("queueDepth", channelGateway.queueDepth(channelName));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (SecurityException e) {
+            return error(HttpStatus.FORBIDDEN, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RateLimitExceededException e) {
+            response.put("success", false);
+            response.put("message", "请求过于频繁, 请稍后再试");
+            response.put("retryAfter", e.getRetryAfterSeconds());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(response);
+        } catch (IllegalStateException | RejectedExecutionException e) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 回调地址验证（微信公众号、企业微信配置服务器地址时的 GET 请求）
+     * @return 原样返回 echostr
+     */
+    @GetMapping("/{channelName}/webhook")
+    public ResponseEntity<?> handshake(@PathVariable String channelName,
+                                       @RequestParam Map<String, String> params,
+                                       HttpServletRequest request) {
+        try {
+            String echo = channelGateway.handshake(channelName, inbound(null, params, request));
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(echo);
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (SecurityException e) {
+            return error(HttpStatus.FORBIDDEN, e.getMessage());
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private ChannelAdapter.Inbound inbound(String payload, Map<String, String> params, HttpServletRequest request) {
+        Map<String, String> headers = new HashMap<>();
+        for (String name : Collections.list(request.getHeaderNames())) {
+            headers.put(name.toLowerCase(Locale.ROOT), request.getHeader(name));
+        }
+        return new ChannelAdapter.Inbound(payload, params, headers, request.getRemoteAddr());
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.controller;
+
+import com.example.model.KnowledgeDocument;
+import com.example.repository.KnowledgeDocumentRepository;
+import com.example.service.KnowledgeIngestionService;
+import com.example.service.KnowledgeSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/knowledge")
+public class KnowledgeController {
+
+    private final KnowledgeDocumentRepository documentRepository;
+    private final KnowledgeIngestionService ingestionService;
+    private final KnowledgeSearchService searchService;
+
+    @Value("${knowledge.storage-dir:data/knowledge}")
+    private String storageDir;
+
+    @Autowired
+    public KnowledgeController(KnowledgeDocumentRepository documentRepository,
+                               KnowledgeIngestionService ingestionService,
+                               KnowledgeSearchService searchService) {
+        this.documentRepository = documentRepository;
+        this.ingestionService = ingestionService;
+        this.searchService = searchService;
+    }
+
+    /**
+     * 上传知识文档并异步入库
+     * @param file 文档文件
+     * @return 文档记录
+     */
+    @PostMapping("/upload")
+    public ResponseEntity<Map<String, Object>> upload(@RequestParam("file") MultipartFile file) {
+        Map<String, Object> response = new HashMap<>();
+        if (file.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "文件为空");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        String fileName = StringUtils.cleanPath(file.getOriginalFilename() == null ? "unnamed" : file.getOriginalFilename());
+        String extension = StringUtils.getFilenameExtension(fileName);
+        try {
+            Path dir = Paths.get(storageDir);
+            Files.createDirectories(dir);
+            Path target = dir.resolve(UUID.randomUUID() + (extension == null ? "" : "." + extension));
+            // 直接落盘, 不经过堆内存
+            file.transferTo(target);
+
+            KnowledgeDocument document = new KnowledgeDocument();
+            document.setFileName(fileName);
+            document.setFileType(extension == null ? null : extension.toLowerCase());
+            document.setFilePath(target.toAbsolutePath().toString());
+            document.setUploadTime(LocalDateTime.now());
+            document.setStatus(KnowledgeIngestionService.STATUS_UPLOADED);
+            document = documentRepository.save(document);
+            ingestionService.ingest(document.getId());
+
+            response.put("success", true);
+            response.put("document", document);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IOException e) {
+            response.put("success", false);
+            response.put("message", "文件保存失败: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 重新入库指定文档（增量, 只处理内容变化的分块）
+     * @param id 文档ID
+     * @param force 内容摘要未变时也重新比对分块
+     * @return 受理结果
+     */
+    @PostMapping("/{id}/ingest")
+    public ResponseEntity<Map<String, Object>> ingest(@PathVariable Long id,
+                                                      @RequestParam(defaultValue = "false") boolean force) {
+        Map<String, Object> response = new HashMap<>();
+        if (!documentRepository.existsById(id)) {
+            response.put("success", false);
+            response.put("message", "文档不存在");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        ingestionService.ingest(id, force);
+        response.put("success", true);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * 全量重建知识库（写入影子集合后切换别名, 重建期间检索不受影响）
+     * @return 受理结果, 已有重建在执行时返回 409
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild() {
+        Map<String, Object> response = new HashMap<>();
+        if (ingestionService.isRebuilding()) {
+            response.put("success", false);
+            response.put("message", "知识库正在重建");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        ingestionService.rebuild();
+        response.put("success", true);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * 获取知识文档列表
+     * @param status 按状态过滤, 可选
+     * @return 文档列表
+     */
+    @GetMapping("/list")
+    public ResponseEntity<List<KnowledgeDocument>> list(@RequestParam(required = false) String status) {
+        List<KnowledgeDocument> documents = status == null
+                ? documentRepository.findAll()
+                : documentRepository.findByStatus(status);
+        return ResponseEntity.ok(documents);
+    }
+
+    /**
+     * 知识库检索
+     * @param request 包含 question 和可选 topK
+     * @return 命中的知识片段
+     */
+    @PostMapping("/query")
+    public ResponseEntity<Map<String, Object>> query(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+        Object question = request.get("question");
+        if (question == null || question.toString().isBlank()) {
+            response.put("success", false);
+            response.put("message", "问题不能为空");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        Object topK = request.get("topK");
+        int limit = topK instanceof Number ? ((Number) topK).intValue() : 5;
+        response.put("success", true);
+        response.put("results", searchService.search(question.toString(), Math.max(1, Math.min(limit, 50))));
+        return ResponseEntity.ok(response);
+    }
+}
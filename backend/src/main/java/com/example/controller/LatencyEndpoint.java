@@ -0,0 +1,47 @@
+package com.example.controller;
+
+import com.example.service.LatencyTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 延迟分位数 Actuator 端点（/actuator/latency）
+ * 示例: /actuator/latency?windowMinutes=60&stage=total&groupBy=channel
+ */
+@Component
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+    private final LatencyTracker latencyTracker;
+
+    @Autowired
+    public LatencyEndpoint(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * 查询所有节点合并后的延迟分位数
+     * @param windowMinutes 最近分钟数, 默认 15
+     * @param stage 阶段（identity、rules、knowledge、history、generate、compose、persist、total）
+     * @param channel 渠道名称
+     * @param role 用户角色
+     * @param groupBy stage、channel、role 的逗号组合, 默认 stage
+     */
+    @ReadOperation
+    public Map<String, Object> latency(@Nullable Integer windowMinutes, @Nullable String stage,
+                                       @Nullable String channel, @Nullable String role,
+                                       @Nullable String groupBy) {
+        try {
+            return latencyTracker.report(windowMinutes == null ? 15 : windowMinutes, stage, channel, role, groupBy);
+        } catch (IllegalArgumentException e) {
+            // 参数不合法时返回 400
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
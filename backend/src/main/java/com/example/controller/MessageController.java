@@ -0,0 +1,274 @@
+package com.example.controller;
+
+import com.example.model.Channel;
+import com.example.model.Message;
+import com.example.service.MessageService;
+import com.example.service.RateLimitExceededException;
+import com.example.service.SessionStateStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+@RequestMapping("/message")
+public class MessageController {
+
+    private final MessageService messageService;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor taskExecutor;
+
+    @Value("${message.stream.timeout-ms:30000}")
+    private long streamTimeoutMs;
+
+    @Autowired
+    public MessageController(MessageService messageService, ObjectMapper objectMapper,
+                             @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.messageService = messageService;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * 发送消息并获取 AI 自动应答
+     * @param body channel、userId、content
+     * @return 用户消息ID、应答内容及各阶段耗时
+     */
+    @PostMapping("/send")
+    public ResponseEntity<Map<String, Object>> sendMessage(@RequestBody Map<String, String> body,
+                                                           HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            MessageService.SendResult result = messageService.send(body.get("channel"), body.get("userId"),
+                    body.get("content"), request.getRemoteAddr());
+            response.put("success", true);
+            response.putAll(sendResponse(result, true));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (RateLimitExceededException e) {
+            response.put("success", false);
+            response.put("message", "请求过于频繁, 请稍后再试");
+            response.put("retryAfter", e.getRetryAfterSeconds());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(response);
+        }
+    }
+
+    /**
+     * 发送消息并以 SSE 流式返回 AI 应答
+     * 事件依次为: start（已受理）、delta（应答片段, 可多次）、done（消息ID与耗时, 与 /send 响应字段一致）;
+     * 失败时发送 error 事件。客户端中途断开不影响应答生成与消息保存。
+     * 准入（参数校验与限流）在开始推送前完成, 拒绝时响应状态为 400 或 429（带 Retry-After）并只发送 error 事件。
+     * @param body channel、userId、content
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/send/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter sendMessageStream(@RequestBody Map<String, String> body, HttpServletRequest request,
+                                        HttpServletResponse servletResponse) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        String ipAddress = request.getRemoteAddr();
+        String userId = body.get("userId");
+        String content = body.get("content");
+        Channel channel;
+        try {
+            channel = messageService.admit(body.get("channel"), userId, content, ipAddress);
+        } catch (IllegalArgumentException | RateLimitExceededException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            if (e instanceof RateLimitExceededException) {
+                long retryAfter = ((RateLimitExceededException) e).getRetryAfterSeconds();
+                servletResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                servletResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+                error.put("message", "请求过于频繁, 请稍后再试");
+                error.put("retryAfter", retryAfter);
+            } else {
+                servletResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+                error.put("message", e.getMessage());
+            }
+            sendEvent(emitter, new AtomicBoolean(true), "error", error);
+            emitter.complete();
+            return emitter;
+        }
+        AtomicBoolean connected = new AtomicBoolean(true);
+        emitter.onCompletion(() -> connected.set(false));
+        emitter.onTimeout(() -> connected.set(false));
+        emitter.onError(e -> connected.set(false));
+        try {
+            taskExecutor.execute(() -> {
+                sendEvent(emitter, connected, "start", Map.of("success", true));
+                try {
+                    MessageService.SendResult result = messageService.send(channel, userId, content, ipAddress,
+                            delta -> sendEvent(emitter, connected, "delta", Map.of("content", delta)));
+                    Map<String, Object> done = sendResponse(result, false);
+                    done.put("success", true);
+                    sendEvent(emitter, connected, "done", done);
+                    emitter.complete();
+                } catch (RuntimeException e) {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("success", false);
+                    error.put("message", "消息处理失败");
+                    sendEvent(emitter, connected, "error", error);
+                    emitter.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 人工接管会话（原子比较并设置, 同一会话只能被一名客服接管）
+     * @param body messageId、staffId
+     * @return 接管结果, 已被其他客服接管时返回 409 及当前接待人
+     */
+    @PostMapping("/take-over")
+    public ResponseEntity<Map<String, Object>> takeOver(@RequestBody Map<String, Long> body) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Long staffId = body.get("staffId");
+            SessionStateStore.SessionState state = messageService.takeOver(body.get("messageId"), staffId);
+            boolean success = staffId.equals(state.getStaffId());
+            response.put("success", success);
+            response.put("sessionId", state.getId());
+            response.put("status", state.getStatus());
+            response.put("staffId", state.getStaffId());
+            if (!success) {
+                response.put("message", "会话已被其他客服接管");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+
+    /**
+     * 游标分页获取会话消息
+     * @param sessionId 会话ID
+     * @param cursor 上一页返回的 nextCursor, 第一页不传
+     * @param size 每页条数
+     * @return 消息列表及下一页游标
+     */
+    @GetMapping("/list")
+    public ResponseEntity<Map<String, Object>> listMessages(@RequestParam Long sessionId,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "20") int size) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            MessageService.MessagePage page = messageService.listMessages(sessionId, cursor, size);
+            response.put("success", true);
+            response.put("messages", page.getMessages());
+            response.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    /**
+     * 流式导出消息（NDJSON, 每行一条）
+     * @param sessionId 会话ID, 不传则按主键顺序导出全部消息
+     * @param afterId 全量导出时的起始ID（断点续导）
+     * @return 流式响应
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportMessages(@RequestParam(required = false) Long sessionId,
+                                                                @RequestParam(defaultValue = "0") long afterId) {
+        StreamingResponseBody body = outputStream -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                if (sessionId != null) {
+                    messageService.exportSession(sessionId, message -> writeLine(writer, message));
+                } else {
+                    messageService.exportAll(afterId, message -> writeLine(writer, message));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private static Map<String, Object> sendResponse(MessageService.SendResult result, boolean includeContent) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("messageId", result.getQuestion().getId());
+        response.put("sessionId", result.getSessionId());
+        if (result.getAnswer() == null) {
+            // 人工接待中, 由客服回复
+            response.put("reply", null);
+            response.put("handler", MessageService.SENDER_STAFF);
+            return response;
+        }
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("messageId", result.getAnswer().getId());
+        if (includeContent) {
+            reply.put("content", result.getAnswer().getContent());
+        }
+        reply.put("type", MessageService.SENDER_AI);
+        reply.put("source", result.getReply().getSource());
+        reply.put("transferToHuman", result.getReply().isTransferToHuman());
+        response.put("reply", reply);
+        response.put("handler", MessageService.SENDER_AI);
+        response.put("totalMs", result.getReply().getTotalMs());
+        response.put("timings", result.getReply().getStages().values());
+        return response;
+    }
+
+    // 客户端断开后不再推送, 但应答仍继续生成并保存
+    private static void sendEvent(SseEmitter emitter, AtomicBoolean connected, String name, Object data) {
+        if (!connected.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            connected.set(false);
+        }
+    }
+
+    private void writeLine(BufferedWriter writer, Message message) {
+        try {
+            writer.write(objectMapper.writeValueAsString(message));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -1,13 +1,16 @@
 package com.example.controller;
 
 import com.example.model.User;
+import com.example.service.UserIdentityCache;
 import com.example.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -15,10 +18,12 @@ import java.util.Optional;
 public class UserController {
 
     private final UserService userService;
+    private final UserIdentityCache userIdentityCache;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserIdentityCache userIdentityCache) {
         this.userService = userService;
+        this.userIdentityCache = userIdentityCache;
     }
 
     /**
@@ -46,23 +51,35 @@ public class UserController {
     /**
      * 添加用户
      * @param user 用户对象
-     * @return 添加的用户对象
+     * @return 添加的用户对象; 手机号、用户ID或CRM ID已被占用时返回 409
      */
     @PostMapping
     public ResponseEntity<User> addUser(@RequestBody User user) {
-        User createdUser = userService.addUser(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        try {
+            User createdUser = userService.addUser(user);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     /**
      * 更新用户
      * @param id 用户ID
      * @param user 用户对象
-     * @return 更新后的用户对象
+     * @return 更新后的用户对象; 新的手机号、用户ID或CRM ID已被占用时返回 409
      */
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User user) {
-        Optional<User> updatedUser = userService.updateUser(id, user);
+        Optional<User> previousUser = userService.getUserById(id);
+        Optional<User> updatedUser;
+        try {
+            updatedUser = userService.updateUser(id, user);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        // 新旧手机号/用户ID对应的缓存都要失效
+        updatedUser.ifPresent(updated -> userIdentityCache.evict(previousUser.orElse(null), updated));
         return updatedUser.map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
@@ -74,12 +91,41 @@ public class UserController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+        Optional<User> existingUser = userService.getUserById(id);
         boolean deleted = userService.deleteUser(id);
         if (deleted) {
+            userIdentityCache.evict(existingUser.orElse(null));
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
     }
 
+    /**
+     * 识别用户身份（手机号或用户ID）
+     * @param request 包含 phone 或 userId
+     * @return 用户身份信息
+     */
+    @PostMapping("/identify")
+    public ResponseEntity<Map<String, Object>> identify(@RequestBody Map<String, String> request) {
+        String phone = request.get("phone");
+        Optional<User> user = phone != null
+                ? userIdentityCache.findByPhone(phone)
+                : userIdentityCache.findByUserId(request.get("userId"));
+
+        Map<String, Object> response = new HashMap<>();
+        if (user.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "未找到用户");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("id", user.get().getId());
+        userInfo.put("role", user.get().getRole());
+        userInfo.put("isVip", user.get().isVip());
+        response.put("success", true);
+        response.put("userInfo", userInfo);
+        return ResponseEntity.ok(response);
+    }
+
 }
@@ -0,0 +1,76 @@
+package com.example.controller;
+
+import com.example.service.WorkbenchPushService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 客服工作台
+ * 客户端流程: 连接 STOMP 端点 /ws/workbench 并订阅 /topic/workbench/sessions, 然后拉取快照;
+ * 之后以推送事件的 seq 判断是否有遗漏（不连续或重连后）, 有遗漏时调用 /workbench/events 补齐, 返回 reset 时重新拉取快照。
+ */
+@RestController
+@RequestMapping("/workbench")
+public class WorkbenchController {
+
+    private final WorkbenchPushService workbenchPushService;
+
+    @Autowired
+    public WorkbenchController(WorkbenchPushService workbenchPushService) {
+        this.workbenchPushService = workbenchPushService;
+    }
+
+    /**
+     * 未结束会话快照（从 Redis 读取, 不查询数据库）
+     * @return seq 及会话列表
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> sessions() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            WorkbenchPushService.Snapshot snapshot = workbenchPushService.snapshot();
+            response.put("success", true);
+            response.put("seq", snapshot.getSeq());
+            response.put("sessions", snapshot.getSessions());
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+
+    /**
+     * 补齐错过的会话事件
+     * @param after 最后收到的事件序号
+     * @param limit 最多返回条数, hasMore 为 true 时以最后一条的 seq 继续获取
+     */
+    @GetMapping("/events")
+    public ResponseEntity<Map<String, Object>> events(@RequestParam long after,
+                                                      @RequestParam(defaultValue = "500") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        if (after < 0 || limit < 1 || limit > 1000) {
+            response.put("success", false);
+            response.put("message", "after must be >= 0 and limit must be between 1 and 1000");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        try {
+            WorkbenchPushService.Replay replay = workbenchPushService.replay(after, limit);
+            response.put("success", true);
+            response.put("seq", replay.getSeq());
+            response.put("reset", replay.isReset());
+            response.put("hasMore", replay.isHasMore());
+            response.put("events", replay.getEvents());
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 知识文档分块清单: 记录每个分块的内容摘要及其在 Milvus 中的主键,
+ * 增量入库时据此判断哪些分块需要重新向量化、哪些向量已过期
+ */
+@Entity
+@Table(name = "knowledge_chunks", indexes = {
+        @Index(name = "idx_knowledge_chunks_doc_collection", columnList = "document_id, collection_name")
+})
+public class KnowledgeChunk {
+
+    // 主键同时作为 Milvus 向量主键, 按块预分配以支持批量插入
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "knowledge_chunk_id_generator")
+    @TableGenerator(name = "knowledge_chunk_id_generator", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "knowledge_chunks", allocationSize = 500)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    // 向量所在的物理集合（别名背后的版本集合）
+    @Column(name = "collection_name", nullable = false, length = 128)
+    private String collectionName;
+
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Column(name = "chunk_hash", nullable = false, length = 64)
+    private String chunkHash;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public void setCollectionName(String collectionName) {
+        this.collectionName = collectionName;
+    }
+
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public String getChunkHash() {
+        return chunkHash;
+    }
+
+    public void setChunkHash(String chunkHash) {
+        this.chunkHash = chunkHash;
+    }
+}
@@ -28,6 +28,10 @@ public class KnowledgeDocument {
     @Column(name = "vector_id")
     private String vectorId;
     
+    // 最近一次成功入库时的文件内容摘要（SHA-256）, 用于判断文档是否变更
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -84,4 +88,12 @@ public class KnowledgeDocument {
     public void setVectorId(String vectorId) {
         this.vectorId = vectorId;
     }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 }
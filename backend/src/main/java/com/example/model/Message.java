@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        // 会话内按 (timestamp, id) 游标分页
+        @Index(name = "idx_messages_session_ts_id", columnList = "session_id, timestamp, id")
+})
 public class Message {
     
     @Id
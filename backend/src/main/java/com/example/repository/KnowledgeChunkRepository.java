@@ -0,0 +1,28 @@
+package com.example.repository;
+
+import com.example.model.KnowledgeChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface KnowledgeChunkRepository extends JpaRepository<KnowledgeChunk, Long> {
+    List<KnowledgeChunk> findByDocumentIdAndCollectionName(Long documentId, String collectionName);
+
+    // 别名切换成功后清理旧集合的分块清单
+    @Modifying
+    @Transactional
+    @Query("delete from KnowledgeChunk c where c.collectionName <> :collectionName")
+    int deleteByCollectionNameNot(@Param("collectionName") String collectionName);
+
+    // 重建失败时清理影子集合的分块清单
+    @Modifying
+    @Transactional
+    @Query("delete from KnowledgeChunk c where c.collectionName = :collectionName")
+    int deleteByCollectionName(@Param("collectionName") String collectionName);
+}
@@ -2,7 +2,11 @@ package com.example.repository;
 
 import com.example.model.KnowledgeDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -10,4 +14,16 @@ import java.util.List;
 public interface KnowledgeDocumentRepository extends JpaRepository<KnowledgeDocument, Long> {
     List<KnowledgeDocument> findByFileType(String fileType);
     List<KnowledgeDocument> findByStatus(String status);
+
+    // 入库流水线各阶段只更新状态列, 不回写整行
+    @Modifying
+    @Transactional
+    @Query("update KnowledgeDocument d set d.status = :status where d.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") String status);
+
+    @Modifying
+    @Transactional
+    @Query("update KnowledgeDocument d set d.status = :status, d.vectorId = :vectorId, d.contentHash = :contentHash where d.id = :id")
+    int updateIndexResult(@Param("id") Long id, @Param("status") String status,
+                          @Param("vectorId") String vectorId, @Param("contentHash") String contentHash);
 }
@@ -1,13 +1,45 @@
 package com.example.repository;
 
 import com.example.model.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findBySessionId(Long sessionId);
     List<Message> findBySender(String sender);
+
+    // 游标分页（keyset）: 按 (timestamp, id) 升序, 只读取游标之后的一页, 走 idx_messages_session_ts_id
+    @Query("select m from Message m where m.sessionId = :sessionId order by m.timestamp asc, m.id asc")
+    List<Message> findFirstPage(@Param("sessionId") Long sessionId, Pageable pageable);
+
+    @Query("select m from Message m where m.sessionId = :sessionId "
+            + "and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id)) "
+            + "order by m.timestamp asc, m.id asc")
+    List<Message> findPageAfter(@Param("sessionId") Long sessionId,
+                                @Param("timestamp") LocalDateTime timestamp,
+                                @Param("id") Long id,
+                                Pageable pageable);
+
+    // 时间为空的历史消息在升序中排在最前（MySQL/H2 的 NULL 排序）, 游标落在其中时以 id 续读, 之后接上有时间的消息
+    @Query("select m from Message m where m.sessionId = :sessionId "
+            + "and ((m.timestamp is null and m.id > :id) or m.timestamp is not null) "
+            + "order by m.timestamp asc, m.id asc")
+    List<Message> findPageAfterUntimed(@Param("sessionId") Long sessionId,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+
+    // 最近消息（倒序）, 自动应答读取上下文时使用
+    @Query("select m from Message m where m.sessionId = :sessionId order by m.timestamp desc, m.id desc")
+    List<Message> findRecent(@Param("sessionId") Long sessionId, Pageable pageable);
+
+    // 全表导出: 按主键游标顺序扫描
+    @Query("select m from Message m where m.id > :afterId order by m.id asc")
+    List<Message> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
 }
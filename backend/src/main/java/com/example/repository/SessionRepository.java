@@ -2,13 +2,28 @@ package com.example.repository;
 
 import com.example.model.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SessionRepository extends JpaRepository<Session, Long> {
     List<Session> findByUserId(Long userId);
     List<Session> findByStatus(String status);
     List<Session> findByChannelId(Long channelId);
+    // 用户在某渠道最近一个未结束的会话
+    Optional<Session> findFirstByUserIdAndChannelIdAndStatusNotOrderByStartTimeDesc(Long userId, Long channelId, String status);
+
+    // 热状态回写: 只更新会话的可变列
+    @Modifying
+    @Transactional
+    @Query("update Session s set s.status = :status, s.staffId = :staffId, s.lastMessage = :lastMessage "
+            + "where s.id = :id")
+    int updateState(@Param("id") Long id, @Param("status") String status, @Param("staffId") Long staffId,
+                    @Param("lastMessage") String lastMessage);
 }
@@ -0,0 +1,621 @@
+package com.example.service;
+
+import com.example.util.RedisUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 咨询数据分析预聚合
+ * 应答、会话、接管、转化等事件在本地按分钟累加, 定时以一次管道 HINCRBY 合并到 Redis 的分钟、小时、天三级桶
+ * （哈希 analytics:{m|h|d}:{时间}, 字段为 渠道|角色|问题分类|应答来源|指标）。
+ * 看板查询只读取时间范围内的桶（数量有上限）, 与原始日志、消息表的数据量无关; 已结束的桶在本地缓存。
+ */
+@Service
+public class AnalyticsRollupService {
+
+    public static final String REPLIES = "replies";
+    public static final String ESCALATIONS = "escalations";
+    public static final String DEGRADED = "degraded";
+    public static final String SESSIONS = "sessions";
+    public static final String TAKE_OVERS = "take_overs";
+    public static final String CONVERSIONS = "conversions";
+    public static final String LATENCY_SUM = "latency_sum";
+    public static final String LATENCY_BUCKET = "lat";
+
+    /** 应答耗时直方图的桶上界（毫秒）, 最后一个桶为超出最大上界 */
+    static final long[] LATENCY_BOUNDS = {50, 100, 200, 300, 500, 800, 1000, 1500, 2000, 3000, 5000, 10000, 30000};
+
+    public static final List<String> GROUP_BY = List.of("channel", "role", "category", "source", "none");
+
+    private static final String KEY_PREFIX = "analytics:";
+    private static final String UNKNOWN = "-";
+    private static final int MAX_BUCKETS = 1500;
+
+    public enum Granularity {
+        MINUTE("m", "yyyyMMddHHmm", ChronoUnit.MINUTES),
+        HOUR("h", "yyyyMMddHH", ChronoUnit.HOURS),
+        DAY("d", "yyyyMMdd", ChronoUnit.DAYS);
+
+        private final String code;
+        private final DateTimeFormatter formatter;
+        private final ChronoUnit unit;
+
+        Granularity(String code, String pattern, ChronoUnit unit) {
+            this.code = code;
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+            this.unit = unit;
+        }
+
+        LocalDateTime truncate(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+
+        LocalDateTime next(LocalDateTime bucket) {
+            return bucket.plus(1, unit);
+        }
+
+        String key(LocalDateTime bucket) {
+            return KEY_PREFIX + code + ":" + formatter.format(bucket);
+        }
+    }
+
+    private final RedisUtil redisUtil;
+    private final MeterRegistry meterRegistry;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Value("${analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${analytics.retention.minute-days:3}")
+    private long minuteRetentionDays;
+
+    @Value("${analytics.retention.hour-days:120}")
+    private long hourRetentionDays;
+
+    @Value("${analytics.retention.day-days:1095}")
+    private long dayRetentionDays;
+
+    // 分钟序号 -> 字段 -> 累加值
+    private final Map<Long, Map<String, LongAdder>> minutes = new ConcurrentHashMap<>();
+    // 写入 Redis 失败、待下次合并重试的增量: 桶键 -> 字段 -> 值（字段为空时只需补设过期时间）; 仅在 flush 内访问
+    private final Map<String, Map<String, Long>> retries = new HashMap<>();
+    private final Map<String, Long> retryTtls = new HashMap<>();
+    private Cache<String, Map<String, String>> closedBuckets;
+    private Timer flushTimer;
+    private Timer queryTimer;
+    private Counter flushErrors;
+    private Counter requeuedFailed;
+    private Counter requeuedUnknown;
+
+    public AnalyticsRollupService(RedisUtil redisUtil, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        closedBuckets = Caffeine.newBuilder()
+                .maximumSize(20_000)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+        flushTimer = Timer.builder("analytics.flush").register(meterRegistry);
+        queryTimer = Timer.builder("analytics.query").publishPercentileHistogram().register(meterRegistry);
+        flushErrors = Counter.builder("analytics.flush.errors").register(meterRegistry);
+        requeuedFailed = Counter.builder("analytics.flush.requeued").tag("outcome", "failed").register(meterRegistry);
+        // 无法确认是否已写入的增量, 重试可能重复计数; 该计数即重复计数的上限
+        requeuedUnknown = Counter.builder("analytics.flush.requeued").tag("outcome", "unknown").register(meterRegistry);
+    }
+
+    /**
+     * 记录一次自动应答
+     * @param latencyMs 应答耗时
+     * @param degraded 是否有阶段超时或失败
+     * @param escalated 是否转人工
+     */
+    public void recordReply(String channel, String role, String category, String source,
+                            long latencyMs, boolean degraded, boolean escalated) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, LongAdder> fields = currentMinute();
+        String prefix = dimensions(channel, role, category, source);
+        add(fields, prefix + REPLIES, 1);
+        add(fields, prefix + LATENCY_SUM, latencyMs);
+        add(fields, prefix + LATENCY_BUCKET + latencyBucket(latencyMs), 1);
+        if (degraded) {
+            add(fields, prefix + DEGRADED, 1);
+        }
+        if (escalated) {
+            add(fields, prefix + ESCALATIONS, 1);
+        }
+    }
+
+    /**
+     * 记录一个新会话（转化率的分母）
+     */
+    public void recordSession(String channel, String role, String category) {
+        record(channel, role, category, SESSIONS);
+    }
+
+    /**
+     * 记录一次人工接管
+     */
+    public void recordTakeOver(String channel) {
+        record(channel, null, null, TAKE_OVERS);
+    }
+
+    /**
+     * 记录一次转化（如咨询后报名, 由业务系统上报）
+     */
+    public void recordConversion(String channel, String role, String category) {
+        record(channel, role, category, CONVERSIONS);
+    }
+
+    private void record(String channel, String role, String category, String metric) {
+        if (enabled) {
+            add(currentMinute(), dimensions(channel, role, category, null) + metric, 1);
+        }
+    }
+
+    /**
+     * 把本地累加值合并到 Redis 的分钟、小时、天桶; 写入失败的增量保留到下次合并
+     * 管道返回逐条结果时只重试失败的 HINCRBY; 整体失败（如连接中断）时无法区分已执行的命令,
+     * 全部重试并计入 analytics.flush.requeued{outcome=unknown}, 这部分可能重复计数。
+     */
+    @Scheduled(fixedDelayString = "${analytics.flush-interval-ms:5000}",
+            initialDelayString = "${analytics.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        long currentMinute = System.currentTimeMillis() / 60_000;
+        Map<Long, Map<String, Long>> drained = new HashMap<>();
+        for (Map.Entry<Long, Map<String, LongAdder>> minute : minutes.entrySet()) {
+            Map<String, Long> values = new HashMap<>();
+            for (Map.Entry<String, LongAdder> field : minute.getValue().entrySet()) {
+                long value = field.getValue().sumThenReset();
+                if (value != 0) {
+                    values.put(field.getKey(), value);
+                }
+            }
+            if (!values.isEmpty()) {
+                drained.put(minute.getKey(), values);
+            }
+            // 两分钟前的分钟不会再有新事件
+            if (minute.getKey() < currentMinute - 1) {
+                minutes.remove(minute.getKey());
+            }
+        }
+        if (drained.isEmpty() && retries.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, Long>> increments = new HashMap<>();
+        Map<String, Long> ttls = new HashMap<>(retryTtls);
+        retries.forEach((key, fields) -> {
+            Map<String, Long> target = increments.computeIfAbsent(key, k -> new HashMap<>());
+            fields.forEach((field, value) -> target.merge(field, value, Long::sum));
+        });
+        retries.clear();
+        retryTtls.clear();
+        drained.forEach((minute, values) -> {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(minute * 60_000), zone);
+            for (Granularity granularity : Granularity.values()) {
+                String key = granularity.key(granularity.truncate(time));
+                Map<String, Long> target = increments.computeIfAbsent(key, k -> new HashMap<>());
+                values.forEach((field, value) -> target.merge(field, value, Long::sum));
+                ttls.put(key, retentionSeconds(granularity));
+            }
+        });
+        // 按发送顺序记录命令, 与管道结果一一对应; 字段为 null 表示 EXPIRE
+        List<Object[]> sent = new ArrayList<>();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            redisUtil.pipelineStrings(operations -> increments.forEach((key, fields) -> {
+                fields.forEach((field, value) -> {
+                    operations.opsForHash().increment(key, field, value);
+                    sent.add(new Object[]{key, field, value});
+                });
+                operations.expire(key, ttls.get(key), TimeUnit.SECONDS);
+                sent.add(new Object[]{key, null, 0L});
+            }));
+        } catch (RedisPipelineException e) {
+            flushErrors.increment();
+            System.err.println("Failed to flush some analytics rollups: " + e.getMessage());
+            List<Object> results = e.getPipelineResult();
+            if (results == null || results.size() != sent.size()) {
+                requeueAll(increments, ttls);
+            } else {
+                for (int i = 0; i < sent.size(); i++) {
+                    if (results.get(i) instanceof Throwable) {
+                        Object[] command = sent.get(i);
+                        requeue((String) command[0], (String) command[1], (Long) command[2], ttls);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            flushErrors.increment();
+            System.err.println("Failed to flush analytics rollups: " + e.getMessage());
+            requeueAll(increments, ttls);
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 已确认失败的单条命令: 增量（或过期时间）留待下次重试, 不会重复计数
+     */
+    private void requeue(String key, String field, long value, Map<String, Long> ttls) {
+        Map<String, Long> fields = retries.computeIfAbsent(key, k -> new HashMap<>());
+        retryTtls.put(key, ttls.get(key));
+        if (field != null) {
+            fields.merge(field, value, Long::sum);
+            requeuedFailed.increment(value);
+        }
+    }
+
+    /**
+     * 无法确认执行结果时全部重试
+     */
+    private void requeueAll(Map<String, Map<String, Long>> increments, Map<String, Long> ttls) {
+        increments.forEach((key, fields) -> {
+            Map<String, Long> target = retries.computeIfAbsent(key, k -> new HashMap<>());
+            retryTtls.put(key, ttls.get(key));
+            fields.forEach((field, value) -> {
+                target.merge(field, value, Long::sum);
+                requeuedUnknown.increment(value);
+            });
+        });
+    }
+
+    /**
+     * 按时间范围查询聚合结果
+     * @param from 开始时间（含）
+     * @param to 结束时间（不含）, 晚于当前时间时按当前时间
+     * @param granularity 桶粒度, 为 null 时按范围自动选择（6 小时内按分钟, 14 天内按小时, 否则按天）
+     * @param groupBy 分组维度: channel、role、category、source 或 none
+     * @throws IllegalArgumentException 参数不合法或桶数量超过上限时
+     */
+    public QueryResult query(LocalDateTime from, LocalDateTime to, Granularity granularity, String groupBy) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        int groupIndex = groupIndex(groupBy);
+        LocalDateTime now = LocalDateTime.now(zone);
+        LocalDateTime end = to.isAfter(now) ? now : to;
+        Granularity resolved = granularity != null ? granularity : autoGranularity(from, end);
+        long started = System.nanoTime();
+
+        List<LocalDateTime> buckets = buckets(from, end, resolved);
+        List<Map<String, String>> data = fetch(buckets, resolved, now);
+        List<Point> series = new ArrayList<>(buckets.size());
+        Map<String, Stats> totals = new TreeMap<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            Map<String, Stats> groups = new TreeMap<>();
+            aggregate(data.get(i), groupIndex, groups);
+            aggregate(data.get(i), groupIndex, totals);
+            series.add(new Point(buckets.get(i), groups));
+        }
+        long tookNanos = System.nanoTime() - started;
+        queryTimer.record(tookNanos, TimeUnit.NANOSECONDS);
+        return new QueryResult(resolved, groupBy, series, totals, TimeUnit.NANOSECONDS.toMillis(tookNanos));
+    }
+
+    /**
+     * 看板概览: 最近若干小时的总量及按渠道、问题分类、角色、应答来源的分布
+     */
+    public Map<String, Object> overview(int hours) {
+        if (hours < 1 || hours > 24 * 90) {
+            throw new IllegalArgumentException("hours must be between 1 and 2160");
+        }
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now(zone);
+        List<LocalDateTime> buckets = buckets(now.minusHours(hours - 1L), now, Granularity.HOUR);
+        List<Map<String, String>> data = fetch(buckets, Granularity.HOUR, now);
+        Map<String, Object> overview = new LinkedHashMap<>();
+        overview.put("from", buckets.get(0));
+        overview.put("hours", hours);
+        for (String groupBy : GROUP_BY) {
+            Map<String, Stats> groups = new TreeMap<>();
+            for (Map<String, String> bucket : data) {
+                aggregate(bucket, groupIndex(groupBy), groups);
+            }
+            overview.put("none".equals(groupBy) ? "total" : groupBy, "none".equals(groupBy)
+                    ? groups.getOrDefault("all", new Stats()) : groups);
+        }
+        long tookNanos = System.nanoTime() - started;
+        queryTimer.record(tookNanos, TimeUnit.NANOSECONDS);
+        overview.put("tookMs", TimeUnit.NANOSECONDS.toMillis(tookNanos));
+        return overview;
+    }
+
+    private List<LocalDateTime> buckets(LocalDateTime from, LocalDateTime end, Granularity granularity) {
+        List<LocalDateTime> buckets = new ArrayList<>();
+        for (LocalDateTime bucket = granularity.truncate(from); bucket.isBefore(end); bucket = granularity.next(bucket)) {
+            if (buckets.size() >= MAX_BUCKETS) {
+                throw new IllegalArgumentException("too many " + granularity.name().toLowerCase()
+                        + " buckets in range, use a coarser granularity");
+            }
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    // 已结束且已合并的桶不会再变化, 缓存在本地; 其余桶与缓存未命中的桶以一次管道读取
+    private List<Map<String, String>> fetch(List<LocalDateTime> buckets, Granularity granularity, LocalDateTime now) {
+        LocalDateTime settled = now.minus(Duration.ofMillis(flushIntervalMs * 2 + 60_000));
+        List<Map<String, String>> data = new ArrayList<>(buckets.size());
+        List<String> missingKeys = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            String key = granularity.key(buckets.get(i));
+            Map<String, String> cached = closedBuckets.getIfPresent(key);
+            data.add(cached);
+            if (cached == null) {
+                missingKeys.add(key);
+                missingIndexes.add(i);
+            }
+        }
+        List<Map<String, String>> loaded = redisUtil.multiHashGetAllAsString(missingKeys);
+        for (int i = 0; i < missingKeys.size(); i++) {
+            int index = missingIndexes.get(i);
+            data.set(index, loaded.get(i));
+            if (granularity.next(buckets.get(index)).isBefore(settled)) {
+                closedBuckets.put(missingKeys.get(i), loaded.get(i));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 把一个桶的字段按分组维度累加到 groups
+     * @param groupIndex 分组维度在字段中的位置, -1 表示不分组（键为 all）
+     */
+    static void aggregate(Map<String, String> fields, int groupIndex, Map<String, Stats> groups) {
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            String[] parts = field.getKey().split("\\|", -1);
+            if (parts.length != 5) {
+                continue;
+            }
+            String group = groupIndex < 0 ? "all" : parts[groupIndex];
+            groups.computeIfAbsent(group, k -> new Stats()).add(parts[4], Long.parseLong(field.getValue()));
+        }
+    }
+
+    static int groupIndex(String groupBy) {
+        int index = GROUP_BY.indexOf(groupBy == null ? "none" : groupBy);
+        if (index < 0) {
+            throw new IllegalArgumentException("groupBy must be one of " + GROUP_BY);
+        }
+        return "none".equals(GROUP_BY.get(index)) ? -1 : index;
+    }
+
+    static int latencyBucket(long latencyMs) {
+        for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+            if (latencyMs <= LATENCY_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BOUNDS.length;
+    }
+
+    private static Granularity autoGranularity(LocalDateTime from, LocalDateTime to) {
+        Duration range = Duration.between(from, to);
+        if (range.compareTo(Duration.ofHours(6)) <= 0) {
+            return Granularity.MINUTE;
+        }
+        return range.compareTo(Duration.ofDays(14)) <= 0 ? Granularity.HOUR : Granularity.DAY;
+    }
+
+    private long retentionSeconds(Granularity granularity) {
+        long days = switch (granularity) {
+            case MINUTE -> minuteRetentionDays;
+            case HOUR -> hourRetentionDays;
+            case DAY -> dayRetentionDays;
+        };
+        return TimeUnit.DAYS.toSeconds(days);
+    }
+
+    private Map<String, LongAdder> currentMinute() {
+        return minutes.computeIfAbsent(System.currentTimeMillis() / 60_000, k -> new ConcurrentHashMap<>());
+    }
+
+    private static void add(Map<String, LongAdder> fields, String field, long value) {
+        fields.computeIfAbsent(field, k -> new LongAdder()).add(value);
+    }
+
+    private static String dimensions(String channel, String role, String category, String source) {
+        return clean(channel) + "|" + clean(role) + "|" + clean(category) + "|" + clean(source) + "|";
+    }
+
+    private static String clean(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value.replace('|', '_');
+    }
+
+    /**
+     * 一组聚合指标
+     */
+    public static class Stats {
+        private long replies;
+        private long escalations;
+        private long degraded;
+        private long sessions;
+        private long takeOvers;
+        private long conversions;
+        private long latencySum;
+        private final long[] latency = new long[LATENCY_BOUNDS.length + 1];
+
+        void add(String metric, long value) {
+            switch (metric) {
+                case REPLIES -> replies += value;
+                case ESCALATIONS -> escalations += value;
+                case DEGRADED -> degraded += value;
+                case SESSIONS -> sessions += value;
+                case TAKE_OVERS -> takeOvers += value;
+                case CONVERSIONS -> conversions += value;
+                case LATENCY_SUM -> latencySum += value;
+                default -> {
+                    if (metric.startsWith(LATENCY_BUCKET)) {
+                        int index = Integer.parseInt(metric.substring(LATENCY_BUCKET.length()));
+                        if (index >= 0 && index < latency.length) {
+                            latency[index] += value;
+                        }
+                    }
+                }
+            }
+        }
+
+        public long getReplies() {
+            return replies;
+        }
+
+        public long getEscalations() {
+            return escalations;
+        }
+
+        public long getDegraded() {
+            return degraded;
+        }
+
+        public long getSessions() {
+            return sessions;
+        }
+
+        public long getTakeOvers() {
+            return takeOvers;
+        }
+
+        public long getConversions() {
+            return conversions;
+        }
+
+        public double getAvgLatencyMs() {
+            return replies == 0 ? 0 : (double) latencySum / replies;
+        }
+
+        public long getP50LatencyMs() {
+            return percentile(0.5);
+        }
+
+        public long getP90LatencyMs() {
+            return percentile(0.9);
+        }
+
+        public long getP99LatencyMs() {
+            return percentile(0.99);
+        }
+
+        public double getEscalationRate() {
+            return replies == 0 ? 0 : (double) escalations / replies;
+        }
+
+        public double getConversionRate() {
+            return sessions == 0 ? 0 : (double) conversions / sessions;
+        }
+
+        // 取累计数首次达到分位的桶的上界; 落在最后一个桶时返回最大上界
+        long percentile(double quantile) {
+            long total = 0;
+            for (long count : latency) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < latency.length; i++) {
+                cumulative += latency[i];
+                if (cumulative >= threshold) {
+                    return LATENCY_BOUNDS[Math.min(i, LATENCY_BOUNDS.length - 1)];
+                }
+            }
+            return LATENCY_BOUNDS[LATENCY_BOUNDS.length - 1];
+        }
+    }
+
+    public static class Point {
+        private final LocalDateTime time;
+        private final Map<String, Stats> groups;
+
+        public Point(LocalDateTime time, Map<String, Stats> groups) {
+            this.time = time;
+            this.groups = groups;
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public Map<String, Stats> getGroups() {
+            return groups;
+        }
+    }
+
+    public static class QueryResult {
+        private final Granularity granularity;
+        private final String groupBy;
+        private final List<Point> series;
+        private final Map<String, Stats> totals;
+        private final long tookMs;
+
+        public QueryResult(Granularity granularity, String groupBy, List<Point> series, Map<String, Stats> totals,
+                           long tookMs) {
+            this.granularity = granularity;
+            this.groupBy = groupBy;
+            this.series = series;
+            this.totals = totals;
+            this.tookMs = tookMs;
+        }
+
+        public Granularity getGranularity() {
+            return granularity;
+        }
+
+        public String getGroupBy() {
+            return groupBy;
+        }
+
+        public List<Point> getSeries() {
+            return series;
+        }
+
+        public Map<String, Stats> getTotals() {
+            return totals;
+        }
+
+        public long getTookMs() {
+            return tookMs;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.service;
+
+import com.example.model.Log;
+import com.example.repository.LogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步日志写入器（write-behind）
+ * 请求线程只把日志放入有界队列, 后台线程按批次 saveAll 写入数据库。
+ * 队列满时按 log.sink.overflow-policy 处理: BLOCK 阻塞等待, DROP 丢弃, SPILL 追加到本地文件并在下次启动时回放。
+ * 应用关闭时会把队列中剩余日志全部写出。
+ */
+@Service
+public class AsyncLogSink {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private final LogRepository logRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${log.sink.capacity:10000}")
+    private int capacity;
+
+    @Value("${log.sink.batch-size:200}")
+    private int batchSize;
+
+    @Value("${log.sink.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${log.sink.overflow-policy:SPILL}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${log.sink.spill-file:logs/log-spill.jsonl}")
+    private String spillFile;
+
+    @Value("${log.sink.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<Log> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private Counter written;
+    private Counter dropped;
+    private Counter spilled;
+    private Counter failed;
+    private Counter malformedRecords;
+
+    public AsyncLogSink(LogRepository logRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.logRepository = logRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        written = Counter.builder("log.sink.records").tag("result", "written").register(meterRegistry);
+        dropped = Counter.builder("log.sink.records").tag("result", "dropped").register(meterRegistry);
+        spilled = Counter.builder("log.sink.records").tag("result", "spilled").register(meterRegistry);
+        failed = Counter.builder("log.sink.records").tag("result", "failed").register(meterRegistry);
+        malformedRecords = Counter.builder("log.sink.records").tag("result", "malformed").register(meterRegistry);
+        meterRegistry.gauge("log.sink.queue.depth", queue, BlockingQueue::size);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "log-sink-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 关闭时停止接收并写出剩余日志
+     * 只置关闭标志, 写入线程在一个轮询周期内察觉后写空队列退出, 正在执行的 saveAll 不会被中断;
+     * 超过 shutdownTimeoutMs 仍未退出才中断写入线程。
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(shutdownTimeoutMs);
+                if (writer.isAlive()) {
+                    writer.interrupt();
+                    writer.join(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 超时未写完的部分落到溢出文件, 下次启动回放
+        List<Log> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+    }
+
+    /**
+     * 记录一条日志
+     */
+    public void log(Long userId, Long sessionId, String action, String details, String ipAddress) {
+        Log log = new Log();
+        log.setUserId(userId);
+        log.setSessionId(sessionId);
+        log.setAction(action);
+        log.setDetails(details);
+        log.setIpAddress(ipAddress);
+        log(log);
+    }
+
+    /**
+     * 记录一条日志（不阻塞请求线程, BLOCK 策略下队列满时除外）
+     */
+    public void log(Log log) {
+        if (log.getTimestamp() == null) {
+            log.setTimestamp(LocalDateTime.now());
+        }
+        if (!running) {
+            // 已关闭, 直接落盘避免丢失
+            spill(List.of(log));
+            return;
+        }
+        if (queue.offer(log)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(log);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+            }
+            case SPILL -> spill(List.of(log));
+            default -> dropped.increment();
+        }
+    }
+
+    /**
+     * 当前排队的日志数
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        replaySpillFile();
+        List<Log> batch = new ArrayList<>(batchSize);
+        // 关闭标志置位后继续写空队列; 只有关闭超时被中断时才提前退出, 剩余日志由 stop() 落盘
+        while (running || (!queue.isEmpty() && !Thread.currentThread().isInterrupted())) {
+            try {
+                Log first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void write(List<Log> batch) {
+        if (!save(batch) && overflowPolicy == OverflowPolicy.SPILL) {
+            // 数据库不可用时落盘, 下次启动回放
+            spill(batch);
+        }
+    }
+
+    private boolean save(List<Log> batch) {
+        try {
+            logRepository.saveAll(batch);
+            written.increment(batch.size());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to write " + batch.size() + " logs: " + e.getMessage());
+            failed.increment(batch.size());
+            batch.forEach(log -> log.setId(null));
+            return false;
+        }
+    }
+
+    private boolean spill(List<Log> logs) {
+        spillLock.lock();
+        try {
+            Path path = Paths.get(spillFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Log log : logs) {
+                    out.write(objectMapper.writeValueAsString(log));
+                    out.newLine();
+                }
+            }
+            spilled.increment(logs.size());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to spill " + logs.size() + " logs to " + spillFile + ": " + e.getMessage());
+            dropped.increment(logs.size());
+            return false;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * 回放溢出文件
+     * 上次回放未完成留下的 .replaying 文件先按检查点续放, 放完后才把新的溢出文件改名为 .replaying 回放, 不会覆盖未放完的文件。
+     * 写库失败的批次无论溢出策略如何都重新落盘; 无法解析的行跳过计数并追加到 .malformed 文件留待人工处理。
+     */
+    private void replaySpillFile() {
+        Path replaying = Paths.get(spillFile + ".replaying");
+        if (Files.exists(replaying) && !replay(replaying)) {
+            return;
+        }
+        spillLock.lock();
+        try {
+            Path path = Paths.get(spillFile);
+            if (!Files.exists(path)) {
+                return;
+            }
+            Files.move(path, replaying);
+        } catch (IOException e) {
+            System.err.println("Failed to prepare spill file for replay: " + e.getMessage());
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+        replay(replaying);
+    }
+
+    /**
+     * 回放一个文件, 每处理完一批把已处理行数写入检查点, 崩溃后从检查点续放（最多重复写入一批）
+     * @return 全部行都已写库、重新落盘或记为无法解析, 文件已删除时返回 true
+     */
+    private boolean replay(Path replaying) {
+        Path checkpoint = Paths.get(replaying + ".offset");
+        long done = readCheckpoint(checkpoint);
+        long line = 0;
+        int replayed = 0;
+        int respilled = 0;
+        int malformed = 0;
+        List<Log> batch = new ArrayList<>(batchSize);
+        try (BufferedReader in = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = in.readLine()) != null) {
+                line++;
+                if (line <= done || text.isBlank()) {
+                    continue;
+                }
+                try {
+                    Log log = objectMapper.readValue(text, Log.class);
+                    log.setId(null);
+                    batch.add(log);
+                } catch (IOException e) {
+                    malformed++;
+                    quarantine(text);
+                }
+                if (batch.size() >= batchSize) {
+                    if (save(batch)) {
+                        replayed += batch.size();
+                    } else if (spill(batch)) {
+                        respilled += batch.size();
+                    } else {
+                        return false;
+                    }
+                    batch.clear();
+                    writeCheckpoint(checkpoint, line);
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (save(batch)) {
+                    replayed += batch.size();
+                } else if (spill(batch)) {
+                    respilled += batch.size();
+                } else {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to replay spilled logs from " + replaying + ": " + e.getMessage());
+            return false;
+        }
+        try {
+            Files.deleteIfExists(replaying);
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            System.err.println("Failed to delete replayed spill file " + replaying + ": " + e.getMessage());
+            return false;
+        }
+        System.out.println("Replayed " + replayed + " spilled logs from " + replaying + ", re-spilled " + respilled
+                + ", malformed " + malformed);
+        return true;
+    }
+
+    private long readCheckpoint(Path checkpoint) {
+        try {
+            return Files.exists(checkpoint) ? Long.parseLong(Files.readString(checkpoint).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable replay checkpoint " + checkpoint + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(Path checkpoint, long line) throws IOException {
+        Path temp = Paths.get(checkpoint + ".tmp");
+        Files.writeString(temp, Long.toString(line));
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void quarantine(String text) {
+        malformedRecords.increment();
+        try {
+            Files.writeString(Paths.get(spillFile + ".malformed"), text + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Failed to keep malformed spilled log line: " + e.getMessage());
+        }
+    }
+}
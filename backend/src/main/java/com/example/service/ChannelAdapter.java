@@ -0,0 +1,102 @@
+package com.example.service;
+
+import com.example.model.Channel;
+
+import java.util.Map;
+
+/**
+ * 渠道适配器
+ * 负责某一类渠道（channelType）的回调校验、报文解析与应答发送。
+ * 渠道自身的配置（如签名 token、密钥）保存在 Channel.config（JSON）中, 由网关解析后传入; 每个渠道都必须配置密钥。
+ */
+public interface ChannelAdapter {
+
+    /**
+     * 对应的渠道类型, 与 Channel.channelType 一致（不区分大小写）
+     */
+    String getChannelType();
+
+    /**
+     * 渠道配置中签名密钥的字段名; 未配置密钥的渠道拒绝接入, 不存在免校验的渠道
+     */
+    String getSecretField();
+
+    /**
+     * 校验回调签名（或共享密钥）, 渠道未配置密钥时返回 false
+     */
+    boolean verify(Channel channel, Map<String, String> config, Inbound inbound);
+
+    /**
+     * 把平台原始报文转换为统一消息信封
+     * @throws IllegalArgumentException 报文格式错误或缺少必填字段时
+     */
+    MessageEnvelope parse(Channel channel, Map<String, String> config, Inbound inbound);
+
+    /**
+     * 回调接收成功时返回给平台的响应体, 为 null 时返回网关默认的 JSON
+     */
+    default String acknowledgement() {
+        return null;
+    }
+
+    /**
+     * 服务器地址验证（如公众号配置回调地址时的 echostr 校验）
+     * @return 需原样返回给平台的内容, 不支持时返回 null
+     */
+    default String handshake(Channel channel, Map<String, String> config, Inbound inbound) {
+        return null;
+    }
+
+    /**
+     * 把自动应答发送回平台, 默认只记录日志（各平台主动发送接口需另行接入）
+     */
+    default void deliver(Channel channel, Map<String, String> config, MessageEnvelope envelope, String answer) {
+        System.out.println("Reply to " + envelope.getChannelName() + "/" + envelope.getUserId() + " not delivered: "
+                + getChannelType() + " outbound API is not configured");
+    }
+
+    /**
+     * 一次回调请求
+     */
+    class Inbound {
+        private final String payload;
+        private final Map<String, String> params;
+        private final Map<String, String> headers;
+        private final String ipAddress;
+
+        /**
+         * @param params 查询参数
+         * @param headers 请求头, 键为小写
+         */
+        public Inbound(String payload, Map<String, String> params, Map<String, String> headers, String ipAddress) {
+            this.payload = payload;
+            this.params = params;
+            this.headers = headers;
+            this.ipAddress = ipAddress;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public Map<String, String> getParams() {
+            return params;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public String getIpAddress() {
+            return ipAddress;
+        }
+
+        public String param(String name) {
+            return params == null ? null : params.get(name);
+        }
+
+        public String header(String name) {
+            return headers == null ? null : headers.get(name.toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.model.Channel;
+import com.example.repository.ChannelRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多渠道接入网关
+ * 回调报文经渠道适配器校验、解析为统一消息信封, 完成去重与限流准入后进入该渠道的有界队列并立即返回;
+ * 工作线程由公平调度器在各渠道队列间轮询分配, 生成应答后经适配器发送回平台。
+ * 单个渠道突发积压时只会填满自己的队列（超出后拒绝）, 不会挤占其他渠道的应答线程。
+ */
+@Service
+public class ChannelGateway {
+
+    /** 该状态的渠道拒绝接入 */
+    public static final String CHANNEL_DISABLED = "disabled";
+
+    public static final String RESULT_ACCEPTED = "accepted";
+    public static final String RESULT_DUPLICATE = "duplicate";
+    public static final String RESULT_IGNORED = "ignored";
+
+    private final ChannelRepository channelRepository;
+    private final MessageService messageService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, ChannelAdapter> adapters = new HashMap<>();
+
+    @Value("${channel.gateway.workers:8}")
+    private int workers;
+
+    @Value("${channel.gateway.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${channel.gateway.channel-cache-seconds:30}")
+    private long channelCacheSeconds;
+
+    @Value("${channel.gateway.dedup-seconds:300}")
+    private long dedupSeconds;
+
+    @Value("${channel.gateway.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private FairQueueScheduler<MessageEnvelope> scheduler;
+    private Cache<String, ResolvedChannel> channels;
+    private Cache<String, Boolean> seen;
+    private final Set<String> gauges = ConcurrentHashMap.newKeySet();
+
+    public ChannelGateway(ChannelRepository channelRepository, MessageService messageService,
+                          ObjectMapper objectMapper, MeterRegistry meterRegistry, ExecutorFactory executorFactory,
+                          List<ChannelAdapter> adapters) {
+        this.channelRepository = channelRepository;
+        this.messageService = messageService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.executorFactory = executorFactory;
+        for (ChannelAdapter adapter : adapters) {
+            this.adapters.put(adapter.getChannelType().toLowerCase(Locale.ROOT), adapter);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        channels = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(channelCacheSeconds))
+                .build();
+        seen = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofSeconds(dedupSeconds))
+                .build();
+        scheduler = new FairQueueScheduler<>("channel-gateway", workers, queueCapacity, this::process, executorFactory);
+        scheduler.start();
+        System.out.println("Channel gateway started with adapters " + adapters.keySet() + ", " + workers
+                + " workers, queue capacity " + queueCapacity + " per channel");
+    }
+
+    /**
+     * 关闭时在超时内处理完已受理（已向平台应答成功、平台不会重推）的消息; 仍未处理的逐条记录并计数
+     */
+    @PreDestroy
+    public void shutdown() {
+        Map<String, List<MessageEnvelope>> undelivered = scheduler.stop(shutdownTimeoutMs);
+        undelivered.forEach((channelName, envelopes) -> {
+            meterRegistry.counter("channel.messages", "channel", channelName, "result", "undelivered")
+                    .increment(envelopes.size());
+            for (MessageEnvelope envelope : envelopes) {
+                System.err.println("Undelivered message from channel " + channelName + " on shutdown: user "
+                        + envelope.getUserId() + ", message " + envelope.getExternalMessageId());
+            }
+        });
+        if (scheduler.inFlight() > 0) {
+            System.err.println("Channel gateway stopped with " + scheduler.inFlight() + " messages still being processed");
+        }
+    }
+
+    /**
+     * 接收一条渠道回调
+     * @param channelName 渠道名称
+     * @return 受理结果及需返回给平台的响应体
+     * @throws NoSuchElementException 渠道不存在或没有对应的适配器时
+     * @throws IllegalStateException 渠道已停用或未配置签名密钥时
+     * @throws SecurityException 签名校验失败时
+     * @throws IllegalArgumentException 报文格式错误时
+     * @throws RateLimitExceededException 超出限流配额时
+     * @throws RejectedExecutionException 渠道队列已满时
+     */
+    public IngestResult ingest(String channelName, ChannelAdapter.Inbound inbound) {
+        ResolvedChannel resolved = resolve(channelName);
+        ChannelAdapter adapter = resolved.adapter;
+        if (!adapter.verify(resolved.channel, resolved.config, inbound)) {
+            count(channelName, "unauthorized");
+            throw new SecurityException("invalid signature");
+        }
+        MessageEnvelope envelope = adapter.parse(resolved.channel, resolved.config, inbound);
+        envelope.setChannelId(resolved.channel.getId());
+        envelope.setChannelName(resolved.channel.getChannelName());
+        envelope.setChannelType(adapter.getChannelType());
+        if (envelope.getIpAddress() == null) {
+            envelope.setIpAddress(inbound.getIpAddress());
+        }
+        if (!envelope.isText()) {
+            count(channelName, RESULT_IGNORED);
+            return new IngestResult(RESULT_IGNORED, envelope, adapter.acknowledgement());
+        }
+        if (envelope.getUserId() == null || envelope.getUserId().isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (envelope.getContent() == null || envelope.getContent().isBlank()) {
+            throw new IllegalArgumentException("content is required");
+        }
+
+        // 平台在未及时收到响应时会重试推送, 按平台消息ID去重
+        String dedupKey = envelope.getExternalMessageId() == null ? null
+                : envelope.getChannelId() + ":" + envelope.getExternalMessageId();
+        if (dedupKey != null && seen.asMap().putIfAbsent(dedupKey, Boolean.TRUE) != null) {
+            count(channelName, RESULT_DUPLICATE);
+            return new IngestResult(RESULT_DUPLICATE, envelope, adapter.acknowledgement());
+        }
+        try {
+            messageService.admit(resolved.channel, envelope.getUserId(), envelope.getIpAddress());
+        } catch (RateLimitExceededException e) {
+            forget(dedupKey);
+            count(channelName, "rate_limited");
+            throw e;
+        }
+        registerGauge(channelName);
+        envelope.setEnqueuedNanos(System.nanoTime());
+        if (!scheduler.offer(channelName, envelope)) {
+            forget(dedupKey);
+            count(channelName, "queue_full");
+            throw new RejectedExecutionException("channel queue is full: " + channelName);
+        }
+        count(channelName, RESULT_ACCEPTED);
+        return new IngestResult(RESULT_ACCEPTED, envelope, adapter.acknowledgement());
+    }
+
+    /**
+     * 回调地址验证
+     * @return 需原样返回给平台的内容
+     * @throws UnsupportedOperationException 渠道类型不需要地址验证时
+     */
+    public String handshake(String channelName, ChannelAdapter.Inbound inbound) {
+        ResolvedChannel resolved = resolve(channelName);
+        if (!resolved.adapter.verify(resolved.channel, resolved.config, inbound)) {
+            throw new SecurityException("invalid signature");
+        }
+        String echo = resolved.adapter.handshake(resolved.channel, resolved.config, inbound);
+        if (echo == null) {
+            throw new UnsupportedOperationException("handshake not supported by " + resolved.adapter.getChannelType());
+        }
+        return echo;
+    }
+
+    /**
+     * 渠道队列当前长度
+     */
+    public int queueDepth(String channelName) {
+        return scheduler.depth(channelName);
+    }
+
+    private void process(String channelName, MessageEnvelope envelope) {
+        meterRegistry.timer("channel.queue.lag", "channel", channelName)
+                .record(System.nanoTime() - envelope.getEnqueuedNanos(), TimeUnit.NANOSECONDS);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "processed";
+        try {
+            ResolvedChannel resolved = resolve(channelName);
+            MessageService.SendResult sent = messageService.send(resolved.channel, envelope.getUserId(),
+                    envelope.getContent(), envelope.getIpAddress(), null);
+            // 人工接管中的会话没有自动应答
+            if (sent.getAnswer() != null) {
+                resolved.adapter.deliver(resolved.channel, resolved.config, envelope, sent.getAnswer().getContent());
+            }
+        } catch (RuntimeException e) {
+            result = "failed";
+            System.err.println("Failed to process message from channel " + channelName + ": " + e.getMessage());
+        } finally {
+            sample.stop(meterRegistry.timer("channel.processing", "channel", channelName, "result", result));
+            count(channelName, result);
+        }
+    }
+
+    private ResolvedChannel resolve(String channelName) {
+        if (channelName == null || channelName.isBlank()) {
+            throw new NoSuchElementException("channel is required");
+        }
+        ResolvedChannel resolved = channels.getIfPresent(channelName);
+        if (resolved == null) {
+            Channel channel = channelRepository.findByChannelName(channelName);
+            if (channel == null) {
+                throw new NoSuchElementException("unknown channel: " + channelName);
+            }
+            String type = channel.getChannelType() == null ? "" : channel.getChannelType().toLowerCase(Locale.ROOT);
+            ChannelAdapter adapter = adapters.get(type);
+            if (adapter == null) {
+                throw new NoSuchElementException("no adapter for channel type: " + channel.getChannelType());
+            }
+            resolved = new ResolvedChannel(channel, parseConfig(channel), adapter);
+            channels.put(channelName, resolved);
+        }
+        if (CHANNEL_DISABLED.equalsIgnoreCase(resolved.channel.getStatus())) {
+            throw new IllegalStateException("channel is disabled: " + channelName);
+        }
+        // 未配置密钥的渠道任何人都能冒充用户投递, 拒绝接入
+        String secret = resolved.config.get(resolved.adapter.getSecretField());
+        if (secret == null || secret.isBlank()) {
+            count(channelName, "unconfigured");
+            throw new IllegalStateException("channel " + channelName + " has no " + resolved.adapter.getSecretField()
+                    + " configured");
+        }
+        return resolved;
+    }
+
+    // Channel.config 为 JSON 对象, 只取标量字段
+    private Map<String, String> parseConfig(Channel channel) {
+        if (channel.getConfig() == null || channel.getConfig().isBlank()) {
+            return Collections.emptyMap();
+        }
+        try {
+            JsonNode root = objectMapper.readTree(channel.getConfig());
+            Map<String, String> config = new HashMap<>();
+            root.fields().forEachRemaining(entry -> {
+                if (entry.getValue().isValueNode()) {
+                    config.put(entry.getKey(), entry.getValue().asText());
+                }
+            });
+            return config;
+        } catch (Exception e) {
+            System.err.println("Invalid config for channel " + channel.getChannelName() + ": " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private void forget(String dedupKey) {
+        if (dedupKey != null) {
+            seen.invalidate(dedupKey);
+        }
+    }
+
+    private void count(String channelName, String result) {
+        meterRegistry.counter("channel.messages", "channel", channelName, "result", result).increment();
+    }
+
+    private void registerGauge(String channelName) {
+        if (gauges.add(channelName)) {
+            Gauge.builder("channel.queue.depth", scheduler, s -> s.depth(channelName))
+                    .tag("channel", channelName)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class ResolvedChannel {
+        private final Channel channel;
+        private final Map<String, String> config;
+        private final ChannelAdapter adapter;
+
+        private ResolvedChannel(Channel channel, Map<String, String> config, ChannelAdapter adapter) {
+            this.channel = channel;
+            this.config = config;
+            this.adapter = adapter;
+        }
+    }
+
+    public static class IngestResult {
+        private final String result;
+        private final MessageEnvelope envelope;
+        private final String acknowledgement;
+
+        public IngestResult(String result, MessageEnvelope envelope, String acknowledgement) {
+            this.result = result;
+            this.envelope = envelope;
+            this.acknowledgement = acknowledgement;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        public MessageEnvelope getEnvelope() {
+            return envelope;
+        }
+
+        /**
+         * 需返回给平台的响应体, 为 null 时返回 JSON
+         */
+        public String getAcknowledgement() {
+            return acknowledgement;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * 文档文本流式读取
+ * 按页（PDF）、段落（Word）、行（Excel/文本）逐段输出文本, 不把整个文件读入堆内存:
+ * Excel 使用 SAX 事件模型逐行解析, Word 直接 SAX 解析 document.xml, PDF 逐页抽取。
+ */
+@Component
+public class DocumentTextReader {
+
+    /**
+     * 读取文档并逐段回调
+     * @param path 文件路径
+     * @param fileType 文件类型（pdf/docx/xlsx/txt/md/csv 或 PDF/Word/Excel）, 为空时按扩展名判断
+     * @param segmentConsumer 文本段处理器
+     * @throws IOException 读取或解析失败
+     * @throws IllegalArgumentException 不支持的文件类型
+     */
+    public void read(Path path, String fileType, Consumer<String> segmentConsumer) throws IOException {
+        String type = resolveType(path, fileType);
+        switch (type) {
+            case "pdf":
+                readPdf(path, segmentConsumer);
+                break;
+            case "docx":
+                readDocx(path, segmentConsumer);
+                break;
+            case "xlsx":
+                readXlsx(path, segmentConsumer);
+                break;
+            case "txt":
+            case "md":
+            case "csv":
+                readText(path, segmentConsumer);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported file type: " + type);
+        }
+    }
+
+    private static String resolveType(Path path, String fileType) {
+        String type = fileType == null ? "" : fileType.trim().toLowerCase(Locale.ROOT);
+        if (type.startsWith(".")) {
+            type = type.substring(1);
+        }
+        switch (type) {
+            case "word":
+                return "docx";
+            case "excel":
+                return "xlsx";
+            case "":
+                String name = path.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+            default:
+                return type;
+        }
+    }
+
+    private void readPdf(Path path, Consumer<String> segmentConsumer) throws IOException {
+        // 基于文件随机访问加载, 按页抽取文本
+        try (PDDocument document = Loader.loadPDF(path.toFile())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pages = document.getNumberOfPages();
+            for (int page = 1; page <= pages; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document);
+                if (!text.isBlank()) {
+                    segmentConsumer.accept(text);
+                }
+            }
+        }
+    }
+
+    private void readXlsx(Path path, Consumer<String> segmentConsumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings,
+                            new SheetRowHandler(sheets.getSheetName(), segmentConsumer), new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse xlsx " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readDocx(Path path, Consumer<String> segmentConsumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            List<PackagePart> parts = pkg.getPartsByRelationshipType(PackageRelationshipTypes.CORE_DOCUMENT);
+            if (parts.isEmpty()) {
+                throw new IOException("No main document part in " + path);
+            }
+            try (InputStream document = parts.get(0).getInputStream()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new ParagraphHandler(segmentConsumer));
+                parser.parse(new InputSource(document));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse docx " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readText(Path path, Consumer<String> segmentConsumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                segmentConsumer.accept(line + "\n");
+            }
+        }
+    }
+
+    /**
+     * Excel 行处理: 首行作为表头, 之后每行输出为 "表头: 值" 形式, 便于检索
+     */
+    private static final class SheetRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final String sheetName;
+        private final Consumer<String> segmentConsumer;
+        private final List<String> header = new ArrayList<>();
+        private final StringBuilder row = new StringBuilder();
+        private boolean headerRow = true;
+
+        private SheetRowHandler(String sheetName, Consumer<String> segmentConsumer) {
+            this.sheetName = sheetName;
+            this.segmentConsumer = segmentConsumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row.setLength(0);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (headerRow) {
+                headerRow = false;
+                return;
+            }
+            if (row.length() > 0) {
+                segmentConsumer.accept("[" + sheetName + "] " + row + "\n");
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue == null || formattedValue.isBlank()) {
+                return;
+            }
+            int column = columnIndex(cellReference);
+            if (headerRow) {
+                while (header.size() <= column) {
+                    header.add(null);
+                }
+                header.set(column, formattedValue.trim());
+                return;
+            }
+            if (row.length() > 0) {
+                row.append("; ");
+            }
+            String name = column < header.size() ? header.get(column) : null;
+            if (name != null) {
+                row.append(name).append(": ");
+            }
+            row.append(formattedValue.trim());
+        }
+
+        private static int columnIndex(String cellReference) {
+            int column = 0;
+            for (int i = 0; cellReference != null && i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return Math.max(column - 1, 0);
+        }
+    }
+
+    /**
+     * Word document.xml 段落处理: 收集 w:t 文本, 每个 w:p 结束时输出一段
+     */
+    private static final class ParagraphHandler extends DefaultHandler {
+
+        private final Consumer<String> segmentConsumer;
+        private final StringBuilder paragraph = new StringBuilder();
+        private boolean inText;
+
+        private ParagraphHandler(Consumer<String> segmentConsumer) {
+            this.segmentConsumer = segmentConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = localName(localName, qName);
+            if ("t".equals(name)) {
+                inText = true;
+            } else if ("tab".equals(name)) {
+                paragraph.append('\t');
+            } else if ("br".equals(name)) {
+                paragraph.append('\n');
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            String name = localName(localName, qName);
+            if ("t".equals(name)) {
+                inText = false;
+            } else if ("p".equals(name)) {
+                if (paragraph.length() > 0) {
+                    segmentConsumer.accept(paragraph.append('\n').toString());
+                }
+                paragraph.setLength(0);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                paragraph.append(ch, start, length);
+            }
+        }
+
+        private static String localName(String localName, String qName) {
+            if (localName != null && !localName.isEmpty()) {
+                return localName;
+            }
+            int colon = qName.indexOf(':');
+            return colon < 0 ? qName : qName.substring(colon + 1);
+        }
+    }
+}
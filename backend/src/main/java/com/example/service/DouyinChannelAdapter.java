@@ -0,0 +1,79 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * 抖音渠道（私信 webhook）
+ * 报文为 JSON, 事件 im_receive_msg 携带 from_user_id、content（对象或 JSON 字符串, 文本在 text 字段）;
+ * 签名为请求头 X-Douyin-Signature = SHA-1(client secret + 请求体), 渠道配置必须设置 secret, 未设置时拒绝回调。
+ */
+@Component
+public class DouyinChannelAdapter implements ChannelAdapter {
+
+    private final ObjectMapper objectMapper;
+
+    public DouyinChannelAdapter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getChannelType() {
+        return "douyin";
+    }
+
+    @Override
+    public String getSecretField() {
+        return "secret";
+    }
+
+    @Override
+    public boolean verify(Channel channel, Map<String, String> config, Inbound inbound) {
+        String secret = config.get("secret");
+        if (secret == null || secret.isEmpty()) {
+            return false;
+        }
+        String signature = inbound.header("X-Douyin-Signature");
+        if (signature == null || inbound.getPayload() == null) {
+            return false;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1")
+                    .digest((secret + inbound.getPayload()).getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(signature.getBytes(StandardCharsets.UTF_8),
+                    HexFormat.of().formatHex(hash).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public MessageEnvelope parse(Channel channel, Map<String, String> config, Inbound inbound) {
+        JsonNode root = WebsiteChannelAdapter.readJson(objectMapper, inbound.getPayload());
+        MessageEnvelope envelope = new MessageEnvelope();
+        String event = root.path("event").asText("");
+        envelope.setUserId(root.path("from_user_id").asText(null));
+        envelope.setExternalMessageId(root.path("log_id").asText(null));
+        envelope.getAttributes().put("toUserId", root.path("to_user_id").asText(null));
+        if (!"im_receive_msg".equals(event)) {
+            envelope.setMessageType("event:" + event);
+            return envelope;
+        }
+        JsonNode content = root.path("content");
+        if (content.isTextual()) {
+            content = WebsiteChannelAdapter.readJson(objectMapper, content.asText());
+        }
+        String messageType = content.path("message_type").asText(MessageEnvelope.TYPE_TEXT);
+        envelope.setMessageType(messageType);
+        envelope.setContent(content.path("text").asText(null));
+        return envelope;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.service;
+
+import java.util.List;
+
+/**
+ * 文本向量化提供方
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 模型标识（更换模型后向量不可混用）
+     */
+    String getModelId();
+
+    /**
+     * 向量维度
+     */
+    int getDimension();
+
+    /**
+     * 批量向量化, 返回结果与入参顺序一致
+     */
+    List<List<Float>> embed(List<String> texts);
+}
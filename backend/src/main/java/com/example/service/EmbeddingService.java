@@ -0,0 +1,388 @@
+package com.example.service;
+
+import com.example.util.RedisUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 带缓存的向量化服务
+ * 以"规范化文本 + 模型ID"的 SHA-256 为键: L1 为进程内 Caffeine（按字节数限容）, L2 为 Redis（float16 紧凑编码）,
+ * 都未命中的文本批内去重后才调用 EmbeddingProvider; 并发请求中的相同文本只计算一次（跨文档去重）。
+ */
+@Service
+public class EmbeddingService {
+
+    private static final String KEY_PREFIX = "embedding:";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    static final byte FORMAT_FLOAT16 = 1;
+    static final byte FORMAT_FLOAT32 = 2;
+
+    private final EmbeddingProvider embeddingProvider;
+    private final RedisUtil redisUtil;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.cache.l1.max-bytes:67108864}")
+    private long l1MaxBytes;
+
+    @Value("${embedding.cache.l2.ttl-days:30}")
+    private long l2TtlDays;
+
+    @Value("${embedding.cache.l2.precision:FLOAT16}")
+    private String l2Precision;
+
+    private Cache<String, float[]> nearCache;
+    // 正在计算中的文本, 并发请求直接等待同一结果
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter requested;
+    private Counter l1Hits;
+    private Counter l2Hits;
+    private Counter sharedHits;
+    private Counter computed;
+    private Timer providerLatency;
+
+    public EmbeddingService(EmbeddingProvider embeddingProvider, RedisUtil redisUtil, MeterRegistry meterRegistry) {
+        this.embeddingProvider = embeddingProvider;
+        this.redisUtil = redisUtil;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumWeight(l1MaxBytes)
+                .weigher((String key, float[] vector) -> key.length() * 2 + vector.length * 4)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "embedding");
+        requested = Counter.builder("embedding.requests").register(meterRegistry);
+        l1Hits = Counter.builder("embedding.cache.hits").tag("level", "l1").register(meterRegistry);
+        l2Hits = Counter.builder("embedding.cache.hits").tag("level", "l2").register(meterRegistry);
+        sharedHits = Counter.builder("embedding.cache.hits").tag("level", "in-flight").register(meterRegistry);
+        computed = Counter.builder("embedding.computed").register(meterRegistry);
+        providerLatency = Timer.builder("embedding.provider.latency").register(meterRegistry);
+        // 命中率 = 未调用模型即得到结果的文本数 / 请求文本总数
+        Gauge.builder("embedding.cache.hit.ratio", this, EmbeddingService::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * 当前模型ID
+     */
+    public String getModelId() {
+        return embeddingProvider.getModelId();
+    }
+
+    /**
+     * 向量维度
+     */
+    public int getDimension() {
+        return embeddingProvider.getDimension();
+    }
+
+    /**
+     * 批量向量化, 结果顺序与入参一致
+     */
+    public List<List<Float>> embed(List<String> texts) {
+        requested.increment(texts.size());
+        if (!enabled) {
+            computed.increment(texts.size());
+            return providerLatency.record(() -> embeddingProvider.embed(normalizeAll(texts)));
+        }
+
+        String modelId = embeddingProvider.getModelId();
+        List<String> keys = new ArrayList<>(texts.size());
+        Map<String, float[]> resolved = new LinkedHashMap<>();
+        Map<String, String> remote = new LinkedHashMap<>();
+        for (String text : texts) {
+            String normalized = normalize(text);
+            String key = cacheKey(modelId, normalized);
+            keys.add(key);
+            if (resolved.containsKey(key) || remote.containsKey(key)) {
+                continue;
+            }
+            float[] cached = nearCache.getIfPresent(key);
+            if (cached != null) {
+                l1Hits.increment();
+                resolved.put(key, cached);
+                continue;
+            }
+            remote.put(key, normalized);
+        }
+
+        // L1 未命中的键一次 MGET 查询 L2
+        Map<String, String> missing = new LinkedHashMap<>();
+        if (!remote.isEmpty()) {
+            List<String> remoteKeys = new ArrayList<>(remote.keySet());
+            List<float[]> cached = readRemote(remoteKeys);
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                String key = remoteKeys.get(i);
+                if (cached.get(i) != null) {
+                    l2Hits.increment();
+                    nearCache.put(key, cached.get(i));
+                    resolved.put(key, cached.get(i));
+                } else {
+                    missing.put(key, remote.get(key));
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            resolved.putAll(compute(missing));
+        }
+
+        List<List<Float>> vectors = new ArrayList<>(texts.size());
+        for (String key : keys) {
+            vectors.add(toList(resolved.get(key)));
+        }
+        return vectors;
+    }
+
+    /**
+     * 缓存命中率
+     */
+    public double hitRatio() {
+        double total = requested.count();
+        return total == 0 ? 0 : 1 - computed.count() / total;
+    }
+
+    private Map<String, float[]> compute(Map<String, String> missing) {
+        Map<String, float[]> results = new LinkedHashMap<>();
+        Map<String, CompletableFuture<float[]>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<float[]>> shared = new LinkedHashMap<>();
+        for (String key : missing.keySet()) {
+            CompletableFuture<float[]> future = new CompletableFuture<>();
+            CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                owned.put(key, future);
+            } else {
+                shared.put(key, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            List<String> keys = new ArrayList<>(owned.keySet());
+            List<String> texts = new ArrayList<>(keys.size());
+            keys.forEach(key -> texts.add(missing.get(key)));
+            try {
+                List<List<Float>> vectors = providerLatency.record(() -> embeddingProvider.embed(texts));
+                computed.increment(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    String key = keys.get(i);
+                    float[] vector = toArray(vectors.get(i));
+                    nearCache.put(key, vector);
+                    results.put(key, vector);
+                    owned.get(key).complete(vector);
+                }
+                writeRemote(results);
+            } catch (RuntimeException e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+
+        for (Map.Entry<String, CompletableFuture<float[]>> entry : shared.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+                sharedHits.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for embedding", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("embedding failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private List<float[]> readRemote(List<String> keys) {
+        List<float[]> vectors = new ArrayList<>(keys.size());
+        try {
+            List<String> redisKeys = new ArrayList<>(keys.size());
+            keys.forEach(key -> redisKeys.add(KEY_PREFIX + key));
+            for (Object value : redisUtil.multiGet(redisKeys)) {
+                vectors.add(value instanceof byte[] ? decode((byte[]) value) : null);
+            }
+            return vectors;
+        } catch (Exception e) {
+            // Redis 不可用时降级为直接计算
+            System.err.println("Failed to read embedding cache from redis: " + e.getMessage());
+            vectors.clear();
+            keys.forEach(key -> vectors.add(null));
+            return vectors;
+        }
+    }
+
+    // 新计算的向量以一次管道批量写入 L2
+    private void writeRemote(Map<String, float[]> vectors) {
+        byte format = "FLOAT32".equalsIgnoreCase(l2Precision) ? FORMAT_FLOAT32 : FORMAT_FLOAT16;
+        Map<String, Object> entries = new LinkedHashMap<>();
+        vectors.forEach((key, vector) -> entries.put(KEY_PREFIX + key, encode(vector, format)));
+        try {
+            redisUtil.multiSet(entries, l2TtlDays, TimeUnit.DAYS);
+        } catch (Exception e) {
+            System.err.println("Failed to write embedding cache to redis: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 文本规范化: NFKC、折叠空白、去除首尾空白
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC)).replaceAll(" ").strip();
+    }
+
+    static String cacheKey(String modelId, String normalized) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> normalizeAll(List<String> texts) {
+        List<String> normalized = new ArrayList<>(texts.size());
+        texts.forEach(text -> normalized.add(normalize(text)));
+        return normalized;
+    }
+
+    /**
+     * 编码为 [格式(1字节)][分量...], 分量为小端 float16 或 float32
+     */
+    static byte[] encode(float[] vector, byte format) {
+        int width = format == FORMAT_FLOAT16 ? 2 : 4;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + vector.length * width).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(format);
+        for (float value : vector) {
+            if (format == FORMAT_FLOAT16) {
+                buffer.putShort(toHalf(value));
+            } else {
+                buffer.putFloat(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    static float[] decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte format = buffer.get();
+        int width = format == FORMAT_FLOAT16 ? 2 : format == FORMAT_FLOAT32 ? 4 : 0;
+        if (width == 0 || (bytes.length - 1) % width != 0) {
+            return null;
+        }
+        float[] vector = new float[(bytes.length - 1) / width];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = width == 2 ? fromHalf(buffer.getShort()) : buffer.getFloat();
+        }
+        return vector;
+    }
+
+    /**
+     * float32 → IEEE 754 半精度（尾数就近舍入）
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int rawExponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+        if (rawExponent == 0xff) {
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int exponent = rawExponent - 127 + 15;
+        if (exponent >= 31) {
+            return (short) (sign | 0x7c00);
+        }
+        if (exponent <= 0) {
+            // 半精度非规格化数
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >>> shift;
+            if (((mantissa >>> (shift - 1)) & 1) != 0) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = sign | exponent << 10 | mantissa >>> 13;
+        if ((mantissa & 0x1000) != 0) {
+            // 进位可能溢出到指数位, 结果仍然正确
+            half++;
+        }
+        return (short) half;
+    }
+
+    /**
+     * IEEE 754 半精度 → float32
+     */
+    static float fromHalf(short half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        if (exponent == 0) {
+            float value = Math.scalb((float) mantissa, -24);
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 31) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | mantissa << 13);
+        }
+        return Float.intBitsToFloat(sign | (exponent + 112) << 23 | mantissa << 13);
+    }
+
+    private static float[] toArray(List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    private static List<Float> toList(float[] vector) {
+        List<Float> list = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            list.add(value);
+        }
+        return list;
+    }
+}
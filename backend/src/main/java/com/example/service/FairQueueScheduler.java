@@ -0,0 +1,218 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 多队列公平调度器
+ * 每个键一个有界队列, 队列满时拒绝入队; 调度线程每拿到一个空闲工作线程, 就按轮询顺序从下一个非空队列取一条交给它,
+ * 因此积压严重的队列最多占用 1/活跃队列数 的处理能力, 不会饿死其他队列。
+ * 停止时先拒绝新元素, 在超时内把已入队的元素处理完, 超时仍未分派的元素返回给调用方处理。
+ */
+public class FairQueueScheduler<T> {
+
+    private final String name;
+    private final int queueCapacity;
+    private final BiConsumer<String, T> handler;
+    private final ExecutorFactory executorFactory;
+
+    private final Map<String, BlockingQueue<T>> queues = new ConcurrentHashMap<>();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+    private final Semaphore pending = new Semaphore(0);
+    private final Semaphore workerSlots;
+    private final int workers;
+
+    private ExecutorService workerPool;
+    private Thread dispatcher;
+    private volatile boolean running;
+    private volatile boolean accepting = true;
+    private int cursor;
+
+    /**
+     * @param name 线程名前缀
+     * @param workers 工作线程数（同时处理的消息数）
+     * @param queueCapacity 每个队列的容量
+     * @param handler 处理函数, 参数为队列键与元素
+     */
+    public FairQueueScheduler(String name, int workers, int queueCapacity, BiConsumer<String, T> handler,
+                              ExecutorFactory executorFactory) {
+        this.name = name;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.handler = handler;
+        this.executorFactory = executorFactory;
+        this.workerSlots = new Semaphore(workers);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerPool = executorFactory.bounded(name + "-worker", workers);
+        dispatcher = executorFactory.threadFactory(name + "-dispatcher").newThread(this::dispatchLoop);
+        dispatcher.start();
+    }
+
+    /**
+     * 立即停止, 等同 stop(0)
+     */
+    public Map<String, List<T>> stop() {
+        return stop(0);
+    }
+
+    /**
+     * 停止接收新元素, 在 timeoutMs 内等待已入队的元素分派并处理完毕后停止
+     * @return 超时仍未分派的元素（按队列键, 保持入队顺序）; 已分派但仍在处理的个数见 {@link #inFlight()}
+     */
+    public synchronized Map<String, List<T>> stop(long timeoutMs) {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (running && (queued() > 0 || inFlight() > 0) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            running = false;
+            if (dispatcher != null) {
+                dispatcher.interrupt();
+                dispatcher.join();
+            }
+            if (workerPool != null) {
+                workerPool.shutdown();
+                workerPool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        Map<String, List<T>> undelivered = new LinkedHashMap<>();
+        for (String key : order) {
+            List<T> items = new ArrayList<>();
+            queues.get(key).drainTo(items);
+            if (!items.isEmpty()) {
+                undelivered.put(key, items);
+            }
+        }
+        return undelivered;
+    }
+
+    private int queued() {
+        int total = 0;
+        for (BlockingQueue<T> queue : queues.values()) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    /**
+     * 已分派、仍在处理中的元素个数
+     */
+    public int inFlight() {
+        return workers - workerSlots.availablePermits();
+    }
+
+    /**
+     * 入队
+     * @return 队列已满或调度器正在停止时返回 false
+     */
+    public boolean offer(String key, T item) {
+        if (!accepting) {
+            return false;
+        }
+        BlockingQueue<T> queue = queues.get(key);
+        if (queue == null) {
+            // 先放入映射再登记轮询顺序, 调度线程看到的键总能取到队列; 不在 computeIfAbsent 的映射函数里改动其他集合
+            BlockingQueue<T> created = new ArrayBlockingQueue<>(queueCapacity);
+            queue = queues.putIfAbsent(key, created);
+            if (queue == null) {
+                queue = created;
+                order.add(key);
+            }
+        }
+        if (!queue.offer(item)) {
+            return false;
+        }
+        pending.release();
+        return true;
+    }
+
+    /**
+     * 队列当前长度
+     */
+    public int depth(String key) {
+        BlockingQueue<T> queue = queues.get(key);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * 全部队列的总长度
+     */
+    public int totalDepth() {
+        return pending.availablePermits();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                pending.acquire();
+                workerSlots.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            String key = null;
+            T item = null;
+            // pending 保证至少有一个非空队列; 入队与计数之间的短暂窗口内重试
+            while (item == null && running) {
+                int size = order.size();
+                for (int i = 0; i < size && item == null; i++) {
+                    int index = (cursor + i) % size;
+                    String candidate = order.get(index);
+                    BlockingQueue<T> queue = queues.get(candidate);
+                    item = queue == null ? null : queue.poll();
+                    if (item != null) {
+                        key = candidate;
+                        cursor = index + 1;
+                    }
+                }
+                if (item == null) {
+                    Thread.onSpinWait();
+                }
+            }
+            if (item == null) {
+                workerSlots.release();
+                return;
+            }
+            String dispatchedKey = key;
+            T dispatched = item;
+            try {
+                workerPool.execute(() -> {
+                    try {
+                        handler.accept(dispatchedKey, dispatched);
+                    } catch (RuntimeException e) {
+                        System.err.println("Queue " + name + " handler failed for " + dispatchedKey + ": " + e.getMessage());
+                    } finally {
+                        workerSlots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 工作线程池已关闭: 放回队列（停止期间不再入队, 一定有空位）, 由 stop() 作为未分派元素返回
+                queues.get(dispatchedKey).offer(dispatched);
+                workerSlots.release();
+                return;
+            }
+        }
+    }
+}
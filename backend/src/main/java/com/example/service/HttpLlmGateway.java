@@ -0,0 +1,445 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.config.LlmProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 基于 HTTP/2 的大模型网关（OpenAI Chat Completions 兼容的流式接口）
+ * 共享一个 HttpClient, 到同一上游的请求复用连接（HTTP/2 下多路复用）; 每个模型一个公平信号量限制并发,
+ * 排队超时快速失败; 完全相同的请求在进行中时合并为一次上游调用, 后加入者先回放已产生的片段再接收后续片段。
+ * 上游在独立线程上读取, 生成截止时间与读取相互独立（上游中途停滞也会按时中止）; 各调用方在自己的线程上推送片段,
+ * 慢的接收方不会阻塞上游读取和其他调用方。
+ */
+@Service
+@ConditionalOnProperty(name = "llm.enabled", havingValue = "true")
+public class HttpLlmGateway implements LlmGateway {
+
+    private static final String COMPLETIONS_PATH = "/v1/chat/completions";
+
+    private final LlmProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorFactory executorFactory;
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private ExecutorService httpExecutor;
+    private HttpClient httpClient;
+
+    public HttpLlmGateway(LlmProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                          ExecutorFactory executorFactory) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.executorFactory = executorFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        httpExecutor = executorFactory.unbounded("llm-http");
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .executor(httpExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpExecutor.shutdownNow();
+    }
+
+    @Override
+    public LlmResponse generate(LlmRequest request, Consumer<String> onToken) {
+        String model = request.getModel() != null ? request.getModel() : properties.getModel();
+        byte[] body = requestBody(model, request);
+        String key = model + ":" + sha256(body);
+
+        long waitMs = properties.getTimeoutMs() + properties.getQueueTimeoutMs();
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            Counter.builder("llm.coalesced").tag("model", model).register(meterRegistry).increment();
+            return existing.join(onToken, waitMs, true);
+        }
+        try {
+            httpExecutor.execute(() -> {
+                try {
+                    flight.complete(execute(model, body, flight));
+                } catch (RuntimeException e) {
+                    flight.fail(e);
+                } finally {
+                    inFlight.remove(key, flight);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, flight);
+            flight.fail(new IllegalStateException("llm gateway is shutting down", e));
+        }
+        return flight.join(onToken, waitMs, false);
+    }
+
+    private LlmResponse execute(String model, byte[] body, Flight flight) {
+        Semaphore permit = permits.computeIfAbsent(model, this::newPermit);
+        long queuedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permit.tryAcquire(properties.getQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for llm permit", e);
+        }
+        Timer.builder("llm.queue.delay")
+                .tag("model", model)
+                .tag("outcome", acquired ? "acquired" : "timeout")
+                .register(meterRegistry)
+                .record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            throw new IllegalStateException("llm queue timeout for model " + model);
+        }
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            LlmResponse response = stream(model, body, flight, start);
+            outcome = "ok";
+            recordTokens(model, response, System.nanoTime() - start);
+            return response;
+        } finally {
+            permit.release();
+            Timer.builder("llm.request.latency")
+                    .tag("model", model)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private LlmResponse stream(String model, byte[] body, Flight flight, long start) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(properties.getBaseUrl() + COMPLETIONS_PATH))
+                .timeout(Duration.ofMillis(properties.getTimeoutMs()))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (properties.getApiKey() != null && !properties.getApiKey().isEmpty()) {
+            builder.header("Authorization", "Bearer " + properties.getApiKey());
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+        LineQueue lines = new LineQueue();
+        // HttpRequest.timeout 只约束到收到响应头为止, 响应体的读取由截止时间单独约束
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient.sendAsync(builder.build(), info -> {
+            if (info.statusCode() != 200) {
+                lines.onError(new IllegalStateException("llm upstream returned status " + info.statusCode()));
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return HttpResponse.BodySubscribers.fromLineSubscriber(lines);
+        });
+        exchange.whenComplete((response, error) -> {
+            if (error != null) {
+                lines.onError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        boolean finished = false;
+        try {
+            StringBuilder content = new StringBuilder();
+            int promptTokens = 0;
+            int completionTokens = 0;
+            int chunks = 0;
+            String line;
+            while ((line = lines.next(deadline)) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    break;
+                }
+                JsonNode node = objectMapper.readTree(data);
+                JsonNode usage = node.get("usage");
+                if (usage != null && usage.isObject()) {
+                    promptTokens = usage.path("prompt_tokens").asInt(promptTokens);
+                    completionTokens = usage.path("completion_tokens").asInt(completionTokens);
+                }
+                JsonNode delta = node.path("choices").path(0).path("delta").path("content");
+                if (delta.isTextual() && !delta.textValue().isEmpty()) {
+                    if (chunks++ == 0) {
+                        Timer.builder("llm.first.token.latency")
+                                .tag("model", model)
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    content.append(delta.textValue());
+                    flight.emit(delta.textValue());
+                }
+            }
+            finished = true;
+            // 上游未返回用量时按片段数估算
+            return new LlmResponse(model, content.toString(), promptTokens,
+                    completionTokens > 0 ? completionTokens : chunks, false);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("llm generation timeout for model " + model, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("llm request failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("llm request interrupted", e);
+        } finally {
+            lines.cancel();
+            if (!finished) {
+                // 超时或失败时中止请求, 释放上游连接上的流
+                exchange.cancel(true);
+            }
+        }
+    }
+
+    private byte[] requestBody(String model, LlmRequest request) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("model", model);
+        body.set("messages", objectMapper.valueToTree(request.getMessages()));
+        body.put("max_tokens", request.getMaxTokens() != null ? request.getMaxTokens() : properties.getMaxTokens());
+        body.put("temperature", request.getTemperature() != null ? request.getTemperature() : properties.getTemperature());
+        body.put("stream", true);
+        body.putObject("stream_options").put("include_usage", true);
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to serialize llm request", e);
+        }
+    }
+
+    private Semaphore newPermit(String model) {
+        Semaphore semaphore = new Semaphore(properties.concurrencyFor(model), true);
+        Gauge.builder("llm.queue.waiting", semaphore, Semaphore::getQueueLength)
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("llm.permits.available", semaphore, Semaphore::availablePermits)
+                .tag("model", model)
+                .register(meterRegistry);
+        return semaphore;
+    }
+
+    // 吞吐按计数器速率计算（tokens/s）, 单次生成速度另记分布用于容量规划
+    private void recordTokens(String model, LlmResponse response, long elapsedNanos) {
+        Counter.builder("llm.tokens").tag("model", model).tag("type", "prompt")
+                .register(meterRegistry).increment(response.getPromptTokens());
+        Counter.builder("llm.tokens").tag("model", model).tag("type", "completion")
+                .register(meterRegistry).increment(response.getCompletionTokens());
+        if (elapsedNanos > 0 && response.getCompletionTokens() > 0) {
+            DistributionSummary.builder("llm.generation.tokens.per.second")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(response.getCompletionTokens() * 1e9 / elapsedNanos);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 上游响应行的缓冲: 读取线程按截止时间等待下一行, 与网络读取解耦
+     */
+    private static final class LineQueue implements Flow.Subscriber<String> {
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> items = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            items.add(line);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            items.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            items.add(END);
+        }
+
+        /**
+         * 取下一行, 响应结束时返回 null
+         * @throws TimeoutException 截止时间前没有新的行
+         */
+        String next(long deadlineNanos) throws IOException, InterruptedException, TimeoutException {
+            long remaining = deadlineNanos - System.nanoTime();
+            Object item = remaining > 0 ? items.poll(remaining, TimeUnit.NANOSECONDS) : items.poll();
+            if (item == null) {
+                throw new TimeoutException();
+            }
+            if (item == END) {
+                return null;
+            }
+            if (item instanceof IOException e) {
+                throw e;
+            }
+            if (item instanceof RuntimeException e) {
+                throw e;
+            }
+            if (item instanceof Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            return (String) item;
+        }
+
+        void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * 进行中的上游调用, 记录已产生的片段供后加入的相同请求回放
+     * 上游读取线程只追加片段并唤醒等待者, 片段由各调用方在自己的线程上依次推送（含先前片段的回放）,
+     * 锁内不调用任何接收方回调。
+     */
+    private static final class Flight {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final List<String> tokens = new ArrayList<>();
+        private final CompletableFuture<LlmResponse> result = new CompletableFuture<>();
+        private boolean done;
+
+        void emit(String token) {
+            lock.lock();
+            try {
+                tokens.add(token);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void complete(LlmResponse response) {
+            result.complete(response);
+            finish();
+        }
+
+        void fail(RuntimeException error) {
+            result.completeExceptionally(error);
+            finish();
+        }
+
+        private void finish() {
+            lock.lock();
+            try {
+                done = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 按顺序推送全部片段直到上游结束, 返回最终结果
+         * @param coalesced 是否为合并到已有调用的请求
+         */
+        LlmResponse join(Consumer<String> onToken, long timeoutMs, boolean coalesced) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            int delivered = 0;
+            try {
+                boolean finished;
+                do {
+                    List<String> pending;
+                    lock.lock();
+                    try {
+                        while (delivered == tokens.size() && !done) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) {
+                                throw new IllegalStateException("llm generation timeout");
+                            }
+                            changed.awaitNanos(remaining);
+                        }
+                        pending = new ArrayList<>(tokens.subList(delivered, tokens.size()));
+                        finished = done;
+                    } finally {
+                        lock.unlock();
+                    }
+                    delivered += pending.size();
+                    if (onToken != null) {
+                        for (String token : pending) {
+                            deliver(onToken, token);
+                        }
+                    }
+                } while (!finished);
+                LlmResponse response = result.get();
+                return coalesced ? new LlmResponse(response.getModel(), response.getContent(), response.getPromptTokens(),
+                        response.getCompletionTokens(), true) : response;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("llm request interrupted", e);
+            }
+        }
+
+        // 单个接收方异常（如客户端断开）不影响其他接收方
+        private static void deliver(Consumer<String> listener, String token) {
+            try {
+                listener.accept(token);
+            } catch (RuntimeException e) {
+                System.err.println("LLM token listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,830 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.model.KnowledgeChunk;
+import com.example.model.KnowledgeDocument;
+import com.example.repository.KnowledgeChunkRepository;
+import com.example.repository.KnowledgeDocumentRepository;
+import com.example.util.MilvusUtil;
+import io.milvus.grpc.DataType;
+import io.milvus.param.collection.FieldType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 知识文档入库流水线
+ * 解析(1个线程) → 分块 → 向量化(N个线程) → 写入 Milvus(1个线程), 各阶段之间用有界队列衔接,
+ * 下游变慢时上游自动阻塞, 单个文档的内存占用只与队列容量有关。处理过程中逐阶段更新文档状态。
+ *
+ * 检索统一走集合别名（knowledge.collection）, 别名指向版本化的物理集合 &lt;别名&gt;_vN:
+ * 单个文档变更时按分块摘要增量更新当前集合, 只为内容变化的分块重新向量化并按主键删除过期向量;
+ * 全量重建写入新版本的影子集合, 加载完成后切换别名, 检索全程不中断。
+ */
+@Service
+public class KnowledgeIngestionService {
+
+    public static final String STATUS_UPLOADED = "UPLOADED";
+    public static final String STATUS_PARSING = "PARSING";
+    public static final String STATUS_EMBEDDING = "EMBEDDING";
+    public static final String STATUS_INDEXING = "INDEXING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final String FIELD_DOCUMENT_ID = "document_id";
+    public static final String FIELD_CHUNK_ID = "chunk_id";
+    public static final String FIELD_CONTENT = "content";
+
+    private static final int MAX_CONTENT_LENGTH = 8192;
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final long POLL_MS = 100;
+    private static final Pattern VERSION_SUFFIX = Pattern.compile("_v(\\d+)$");
+
+    private final KnowledgeDocumentRepository documentRepository;
+    private final KnowledgeChunkRepository chunkRepository;
+    private final DocumentTextReader documentTextReader;
+    private final EmbeddingService embeddingService;
+    private final MilvusUtil milvusUtil;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ExecutorFactory executorFactory;
+
+    @Value("${knowledge.collection:knowledge_vectors}")
+    private String collectionAlias;
+
+    @Value("${knowledge.chunk.size:500}")
+    private int chunkSize;
+
+    @Value("${knowledge.chunk.overlap:80}")
+    private int chunkOverlap;
+
+    @Value("${knowledge.ingest.embed-workers:4}")
+    private int embedWorkers;
+
+    @Value("${knowledge.ingest.embed-batch-size:32}")
+    private int embedBatchSize;
+
+    @Value("${knowledge.ingest.write-batch-size:512}")
+    private int writeBatchSize;
+
+    @Value("${knowledge.ingest.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${knowledge.ingest.max-concurrent-documents:2}")
+    private int maxConcurrentDocuments;
+
+    @Value("${knowledge.rebuild.embed-workers:2}")
+    private int rebuildEmbedWorkers;
+
+    @Value("${knowledge.rebuild.max-rows-per-second:2000}")
+    private int rebuildMaxRowsPerSecond;
+
+    private ExecutorService jobExecutor;
+    private ExecutorService stageExecutor;
+    private ExecutorService rebuildExecutor;
+    private final ReentrantLock collectionLock = new ReentrantLock();
+    // 增量入库持读锁可并发执行, 全量重建持写锁, 重建期间提交的增量任务排队等待切换完成
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final Map<Long, CompletableFuture<IngestionResult>> documentJobs = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public KnowledgeIngestionService(KnowledgeDocumentRepository documentRepository,
+                                     KnowledgeChunkRepository chunkRepository,
+                                     DocumentTextReader documentTextReader,
+                                     EmbeddingService embeddingService,
+                                     MilvusUtil milvusUtil,
+                                     SemanticAnswerCache semanticAnswerCache,
+                                     ExecutorFactory executorFactory) {
+        this.documentRepository = documentRepository;
+        this.chunkRepository = chunkRepository;
+        this.documentTextReader = documentTextReader;
+        this.embeddingService = embeddingService;
+        this.milvusUtil = milvusUtil;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.executorFactory = executorFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        jobExecutor = executorFactory.bounded("knowledge-ingest", maxConcurrentDocuments);
+        stageExecutor = executorFactory.unbounded("knowledge-stage");
+        rebuildExecutor = executorFactory.bounded("knowledge-rebuild", 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 异步增量入库, 文件内容未变化时直接跳过
+     * @param documentId 知识文档ID
+     * @return 处理结果
+     */
+    public CompletableFuture<IngestionResult> ingest(Long documentId) {
+        return ingest(documentId, false);
+    }
+
+    /**
+     * 异步入库; 同一文档的任务串行执行, 后提交的任务总能读到最新文件
+     * @param documentId 知识文档ID
+     * @param force 为 true 时即使内容摘要未变也重新比对分块
+     * @return 处理结果
+     */
+    public CompletableFuture<IngestionResult> ingest(Long documentId, boolean force) {
+        CompletableFuture<IngestionResult> job = documentJobs.compute(documentId, (id, previous) -> {
+            if (previous == null) {
+                return CompletableFuture.supplyAsync(() -> runIngestion(id, force), jobExecutor);
+            }
+            return previous.handle((result, error) -> null)
+                    .thenApplyAsync(ignored -> runIngestion(id, force), jobExecutor);
+        });
+        job.whenComplete((result, error) -> documentJobs.remove(documentId, job));
+        return job;
+    }
+
+    /**
+     * 异步全量重建: 所有文档重新分块、向量化后写入影子集合, 加载完成后原子切换别名
+     * @return 重建结果; 已有重建在执行时以 IllegalStateException 失败
+     */
+    public CompletableFuture<RebuildResult> rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("knowledge rebuild already running"));
+        }
+        return CompletableFuture.supplyAsync(this::runRebuild, rebuildExecutor)
+                .whenComplete((result, error) -> rebuilding.set(false));
+    }
+
+    /**
+     * 是否正在全量重建
+     */
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * 检索使用的集合名（别名）
+     */
+    public String getCollectionName() {
+        return collectionAlias;
+    }
+
+    private IngestionResult runIngestion(Long documentId, boolean force) {
+        long start = System.currentTimeMillis();
+        indexLock.readLock().lock();
+        try {
+            KnowledgeDocument document = documentRepository.findById(documentId)
+                    .orElseThrow(() -> new IllegalArgumentException("knowledge document not found: " + documentId));
+            IngestionResult result = new IngestionResult(documentId);
+            try {
+                String collection = ensureCollection();
+                String fileHash = fileHash(Paths.get(document.getFilePath()));
+                List<KnowledgeChunk> existing = chunkRepository.findByDocumentIdAndCollectionName(documentId, collection);
+                if (!force && fileHash.equals(document.getContentHash()) && STATUS_COMPLETED.equals(document.getStatus())) {
+                    result.status = STATUS_COMPLETED;
+                    result.unchanged = true;
+                    result.kept = existing.size();
+                    return result;
+                }
+                documentRepository.updateStatus(documentId, STATUS_PARSING);
+                if (existing.isEmpty()) {
+                    // 没有分块清单（首次入库或清单丢失）时按文档ID清理可能残留的向量
+                    milvusUtil.delete(collection, FIELD_DOCUMENT_ID + " == " + documentId);
+                }
+
+                Pipeline pipeline = new Pipeline(document, collection, existing, embedWorkers, 0, true);
+                pipeline.run(result);
+                if (result.failedBatches > 0) {
+                    // 保留旧向量且不更新内容摘要, 下次入库会重新比对
+                    documentRepository.updateStatus(documentId, STATUS_FAILED);
+                    result.status = STATUS_FAILED;
+                    return result;
+                }
+                // 新向量写入后再删除过期向量, 更新过程中该文档始终可检索
+                List<KnowledgeChunk> stale = pipeline.staleChunks();
+                if (!deleteVectors(collection, stale)) {
+                    throw new IllegalStateException("failed to delete stale vectors of document " + documentId);
+                }
+                chunkRepository.deleteAllInBatch(stale);
+                chunkRepository.saveAll(pipeline.movedChunks());
+                result.removed = stale.size();
+                if (result.inserted > 0 || result.removed > 0) {
+                    semanticAnswerCache.invalidateDocument(documentId);
+                }
+                documentRepository.updateIndexResult(documentId, STATUS_COMPLETED, collectionAlias + ":" + documentId, fileHash);
+                result.status = STATUS_COMPLETED;
+                return result;
+            } catch (Exception e) {
+                System.err.println("Failed to ingest knowledge document " + documentId + ": " + e.getMessage());
+                documentRepository.updateStatus(documentId, STATUS_FAILED);
+                result.status = STATUS_FAILED;
+                result.error = e.getMessage();
+                return result;
+            } finally {
+                result.elapsedMs = System.currentTimeMillis() - start;
+                System.out.println("Knowledge document " + documentId + " " + result.status + ": " + result.chunks + " chunks, "
+                        + result.inserted + " embedded, " + result.kept + " kept, " + result.removed + " removed, "
+                        + result.elapsedMs + " ms");
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private RebuildResult runRebuild() {
+        long start = System.currentTimeMillis();
+        indexLock.writeLock().lock();
+        RebuildResult result = null;
+        try {
+            String active = ensureCollection();
+            String shadow = collectionAlias + "_v" + (version(active) + 1);
+            // 清理上次失败残留的同名影子集合
+            if (milvusUtil.hasCollection(shadow)) {
+                milvusUtil.dropCollection(shadow);
+            }
+            chunkRepository.deleteByCollectionName(shadow);
+            result = new RebuildResult(active, shadow);
+            createCollection(shadow);
+
+            Map<Long, String> hashes = new HashMap<>();
+            List<Long> missing = new ArrayList<>();
+            for (KnowledgeDocument document : documentRepository.findAll()) {
+                if (document.getFilePath() == null || !Files.exists(Paths.get(document.getFilePath()))) {
+                    System.err.println("Skipping knowledge document " + document.getId() + " without source file");
+                    missing.add(document.getId());
+                    continue;
+                }
+                IngestionResult documentResult = new IngestionResult(document.getId());
+                hashes.put(document.getId(), fileHash(Paths.get(document.getFilePath())));
+                new Pipeline(document, shadow, Collections.emptyList(), rebuildEmbedWorkers, rebuildMaxRowsPerSecond, false)
+                        .run(documentResult);
+                if (documentResult.failedBatches > 0) {
+                    throw new IllegalStateException("failed to write vectors of document " + document.getId());
+                }
+                result.documents++;
+                result.vectors += documentResult.inserted;
+            }
+            milvusUtil.flush(shadow);
+            if (!milvusUtil.loadCollection(shadow)) {
+                throw new IllegalStateException("failed to load shadow collection " + shadow);
+            }
+
+            swapAlias(active, shadow, result);
+            // 别名已指向新集合, 收尾步骤失败只记录日志, 不再回滚
+            afterSwap("delete chunk manifests of previous collections", () -> chunkRepository.deleteByCollectionNameNot(shadow));
+            for (Map.Entry<Long, String> entry : hashes.entrySet()) {
+                afterSwap("update index result of document " + entry.getKey(), () -> documentRepository.updateIndexResult(
+                        entry.getKey(), STATUS_COMPLETED, collectionAlias + ":" + entry.getKey(), entry.getValue()));
+            }
+            // 源文件缺失的文档在新集合中没有向量
+            for (Long documentId : missing) {
+                afterSwap("mark document " + documentId + " failed",
+                        () -> documentRepository.updateStatus(documentId, STATUS_FAILED));
+            }
+            result.missing = missing.size();
+            afterSwap("invalidate semantic answer cache", semanticAnswerCache::invalidateAll);
+            if (!active.equals(collectionAlias)) {
+                afterSwap("drop previous collection " + active, () -> milvusUtil.dropCollection(active));
+            }
+            result.elapsedMs = System.currentTimeMillis() - start;
+            System.out.println("Knowledge base rebuilt into " + shadow + ": " + result.documents + " documents, "
+                    + result.vectors + " vectors, " + result.missing + " without source file, " + result.elapsedMs + " ms");
+            return result;
+        } catch (Exception e) {
+            System.err.println("Knowledge base rebuild failed: " + e.getMessage());
+            // 只在别名切换前回滚; 切换后影子集合已是线上集合, 删除它会清空知识库
+            if (result != null && !result.switched) {
+                milvusUtil.dropCollection(result.getCollection());
+                chunkRepository.deleteByCollectionName(result.getCollection());
+            }
+            throw e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 切换别名到新集合; 新集合成为线上集合时置 switched, 之后的失败不得删除新集合
+     */
+    private void swapAlias(String active, String shadow, RebuildResult result) {
+        if (active.equals(collectionAlias)) {
+            // 旧版本直接以别名为集合名, 需先删除该集合才能建立同名别名, 仅迁移这一次会短暂不可检索
+            System.out.println("Migrating legacy collection " + active + " to alias " + collectionAlias);
+            if (!milvusUtil.dropCollection(active)) {
+                throw new IllegalStateException("failed to migrate " + collectionAlias + " to alias");
+            }
+            // 旧集合已删除, 新集合是唯一副本
+            result.switched = true;
+            if (!milvusUtil.createAlias(shadow, collectionAlias)) {
+                throw new IllegalStateException("failed to create alias " + collectionAlias + " for " + shadow);
+            }
+        } else if (!milvusUtil.alterAlias(shadow, collectionAlias)) {
+            throw new IllegalStateException("failed to switch alias " + collectionAlias + " to " + shadow);
+        }
+        result.switched = true;
+    }
+
+    private static void afterSwap(String step, Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            System.err.println("Knowledge base rebuild: failed to " + step + " after alias switch: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 确保别名及其指向的集合存在, 返回当前物理集合名
+     */
+    private String ensureCollection() {
+        String physical = milvusUtil.resolveCollection(collectionAlias);
+        if (physical != null) {
+            return physical;
+        }
+        collectionLock.lock();
+        try {
+            physical = milvusUtil.resolveCollection(collectionAlias);
+            if (physical != null) {
+                return physical;
+            }
+            String initial = collectionAlias + "_v1";
+            createCollection(initial);
+            if (!milvusUtil.createAlias(initial, collectionAlias)) {
+                throw new IllegalStateException("failed to create alias " + collectionAlias);
+            }
+            return initial;
+        } finally {
+            collectionLock.unlock();
+        }
+    }
+
+    private void createCollection(String name) {
+        if (!milvusUtil.createCollection(name, embeddingService.getDimension(), knowledgeFields())
+                || !milvusUtil.createIndex(name, "embedding")
+                || !milvusUtil.loadCollection(name)) {
+            throw new IllegalStateException("failed to create knowledge collection " + name);
+        }
+    }
+
+    private static int version(String collection) {
+        Matcher matcher = VERSION_SUFFIX.matcher(collection);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    private boolean deleteVectors(String collection, List<KnowledgeChunk> chunks) {
+        for (int from = 0; from < chunks.size(); from += DELETE_BATCH_SIZE) {
+            String expr = chunks.subList(from, Math.min(from + DELETE_BATCH_SIZE, chunks.size())).stream()
+                    .map(chunk -> String.valueOf(chunk.getId()))
+                    .collect(Collectors.joining(",", "id in [", "]"));
+            if (milvusUtil.delete(collection, expr) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 知识向量集合的标量字段
+     */
+    public static List<FieldType> knowledgeFields() {
+        List<FieldType> fields = new ArrayList<>();
+        fields.add(FieldType.newBuilder().withName(FIELD_DOCUMENT_ID).withDataType(DataType.Int64).build());
+        fields.add(FieldType.newBuilder().withName(FIELD_CHUNK_ID).withDataType(DataType.Int64).build());
+        fields.add(FieldType.newBuilder().withName(FIELD_CONTENT).withDataType(DataType.VarChar)
+                .withMaxLength(MAX_CONTENT_LENGTH).build());
+        return fields;
+    }
+
+    private static String fileHash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String chunkHash(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 单个文档写入指定集合的一次流水线执行
+     */
+    private final class Pipeline {
+
+        private final KnowledgeDocument document;
+        private final String collection;
+        private final int workers;
+        private final int maxRowsPerSecond;
+        private final boolean trackStatus;
+        // 按分块摘要索引的已有分块, 仅解析线程访问; 流水线结束后剩余的即为过期分块
+        private final Map<String, Deque<KnowledgeChunk>> reusable = new HashMap<>();
+        private final List<KnowledgeChunk> moved = new ArrayList<>();
+        private final BlockingQueue<Chunk> chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<List<Chunk>> vectorQueue = new ArrayBlockingQueue<>(Math.max(2, queueCapacity / embedBatchSize));
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicInteger activeEmbedders;
+        private long lastWriteNanos;
+
+        private final Chunk endOfChunks = new Chunk(-1, null, null);
+        private final List<Chunk> endOfVectors = new ArrayList<>();
+
+        private Pipeline(KnowledgeDocument document, String collection, List<KnowledgeChunk> existing,
+                         int workers, int maxRowsPerSecond, boolean trackStatus) {
+            this.document = document;
+            this.collection = collection;
+            this.workers = Math.max(1, workers);
+            this.maxRowsPerSecond = maxRowsPerSecond;
+            this.trackStatus = trackStatus;
+            this.activeEmbedders = new AtomicInteger(this.workers);
+            for (KnowledgeChunk chunk : existing) {
+                reusable.computeIfAbsent(chunk.getChunkHash(), hash -> new ArrayDeque<>()).add(chunk);
+            }
+        }
+
+        void run(IngestionResult result) throws Exception {
+            List<Future<?>> stages = new ArrayList<>();
+            AtomicInteger chunkCount = new AtomicInteger();
+            AtomicInteger keptCount = new AtomicInteger();
+            stages.add(stageExecutor.submit(() -> guard(() -> parse(chunkCount, keptCount))));
+            for (int i = 0; i < workers; i++) {
+                stages.add(stageExecutor.submit(() -> guard(this::embed)));
+            }
+
+            try {
+                write(result);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+            for (Future<?> stage : stages) {
+                stage.get();
+            }
+            if (failure.get() != null) {
+                Throwable cause = failure.get();
+                throw cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+            }
+            result.chunks = chunkCount.get();
+            result.kept = keptCount.get();
+        }
+
+        List<KnowledgeChunk> staleChunks() {
+            List<KnowledgeChunk> stale = new ArrayList<>();
+            reusable.values().forEach(stale::addAll);
+            return stale;
+        }
+
+        List<KnowledgeChunk> movedChunks() {
+            return moved;
+        }
+
+        private void parse(AtomicInteger chunkCount, AtomicInteger keptCount) throws Exception {
+            Path path = Paths.get(document.getFilePath());
+            TextChunker chunker = new TextChunker(chunkSize, chunkOverlap, text -> {
+                int index = chunkCount.getAndIncrement();
+                String hash = chunkHash(text);
+                Deque<KnowledgeChunk> same = reusable.get(hash);
+                KnowledgeChunk previous = same == null ? null : same.poll();
+                if (previous != null) {
+                    // 内容未变的分块沿用原向量, 只在位置变化时更新序号
+                    if (previous.getChunkIndex() == null || previous.getChunkIndex() != index) {
+                        previous.setChunkIndex(index);
+                        moved.add(previous);
+                    }
+                    keptCount.incrementAndGet();
+                    return;
+                }
+                putUninterruptibly(chunkQueue, new Chunk(index, text, hash));
+            });
+            documentTextReader.read(path, document.getFileType(), chunker::append);
+            chunker.finish();
+            updateStatus(STATUS_EMBEDDING);
+            put(chunkQueue, endOfChunks);
+        }
+
+        private void embed() throws Exception {
+            try {
+                List<Chunk> batch = new ArrayList<>(embedBatchSize);
+                while (true) {
+                    Chunk first = take(chunkQueue);
+                    boolean finished = first == endOfChunks;
+                    if (!finished) {
+                        batch.add(first);
+                        chunkQueue.drainTo(batch, embedBatchSize - 1);
+                        // 结束标记只有一个, 取到后放回, 让其他线程也能看到
+                        if (batch.remove(endOfChunks)) {
+                            finished = true;
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        List<String> texts = new ArrayList<>(batch.size());
+                        batch.forEach(chunk -> texts.add(chunk.text));
+                        List<List<Float>> vectors = embeddingService.embed(texts);
+                        for (int i = 0; i < batch.size(); i++) {
+                            batch.get(i).vector = vectors.get(i);
+                        }
+                        put(vectorQueue, new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                    if (finished) {
+                        put(chunkQueue, endOfChunks);
+                        return;
+                    }
+                }
+            } finally {
+                if (activeEmbedders.decrementAndGet() == 0) {
+                    putUninterruptibly(vectorQueue, endOfVectors);
+                }
+            }
+        }
+
+        private void write(IngestionResult result) throws Exception {
+            List<Chunk> pending = new ArrayList<>(writeBatchSize);
+            while (true) {
+                List<Chunk> embedded = take(vectorQueue);
+                if (embedded == endOfVectors) {
+                    break;
+                }
+                pending.addAll(embedded);
+                if (pending.size() >= writeBatchSize) {
+                    insert(pending, result);
+                    pending.clear();
+                }
+            }
+            updateStatus(STATUS_INDEXING);
+            if (!pending.isEmpty()) {
+                insert(pending, result);
+            }
+            milvusUtil.flush(collection);
+        }
+
+        private void insert(List<Chunk> chunks, IngestionResult result) throws InterruptedException {
+            throttle(chunks.size());
+            long documentId = document.getId();
+            // 先写分块清单取得主键, 再以该主键写入 Milvus
+            List<KnowledgeChunk> rows = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks) {
+                KnowledgeChunk row = new KnowledgeChunk();
+                row.setDocumentId(documentId);
+                row.setCollectionName(collection);
+                row.setChunkIndex(chunk.index);
+                row.setChunkHash(chunk.hash);
+                rows.add(row);
+            }
+            rows = chunkRepository.saveAll(rows);
+
+            List<Long> ids = new ArrayList<>(chunks.size());
+            List<List<Float>> vectors = new ArrayList<>(chunks.size());
+            List<Long> documentIds = new ArrayList<>(chunks.size());
+            List<Long> chunkIds = new ArrayList<>(chunks.size());
+            List<String> contents = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = chunks.get(i);
+                ids.add(rows.get(i).getId());
+                vectors.add(chunk.vector);
+                documentIds.add(documentId);
+                chunkIds.add((long) chunk.index);
+                contents.add(chunk.text.length() > MAX_CONTENT_LENGTH / 4 ? chunk.text.substring(0, MAX_CONTENT_LENGTH / 4) : chunk.text);
+            }
+            Map<String, List<?>> fields = new HashMap<>();
+            fields.put(FIELD_DOCUMENT_ID, documentIds);
+            fields.put(FIELD_CHUNK_ID, chunkIds);
+            fields.put(FIELD_CONTENT, contents);
+            MilvusUtil.InsertReport report = milvusUtil.insertBatched(collection, vectors, ids, fields, false);
+            if (report.getFailedBatches() > 0) {
+                // 部分批次失败时整批回退, 使分块清单与向量保持一致
+                deleteVectors(collection, rows);
+                chunkRepository.deleteAllInBatch(rows);
+                result.failedBatches += report.getFailedBatches();
+                return;
+            }
+            result.inserted += report.getTotalInserted();
+        }
+
+        private void throttle(int rows) throws InterruptedException {
+            if (maxRowsPerSecond <= 0) {
+                return;
+            }
+            // 限制重建写入速率, 为在线检索保留 Milvus 资源
+            long minIntervalNanos = TimeUnit.SECONDS.toNanos(rows) / maxRowsPerSecond;
+            long waitNanos = lastWriteNanos + minIntervalNanos - System.nanoTime();
+            if (lastWriteNanos > 0 && waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            lastWriteNanos = System.nanoTime();
+        }
+
+        private void updateStatus(String status) {
+            if (trackStatus) {
+                documentRepository.updateStatus(document.getId(), status);
+            }
+        }
+
+        private void guard(StageTask task) {
+            try {
+                task.run();
+            } catch (CancellationException e) {
+                // 其他阶段已失败, 本阶段随之退出
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw new CancellationException();
+                }
+            }
+        }
+
+        private <T> void putUninterruptibly(BlockingQueue<T> queue, T item) {
+            try {
+                put(queue, item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            while (true) {
+                T item = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                if (failure.get() != null) {
+                    throw new CancellationException();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    private static final class Chunk {
+        private final int index;
+        private final String text;
+        private final String hash;
+        private List<Float> vector;
+
+        private Chunk(int index, String text, String hash) {
+            this.index = index;
+            this.text = text;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 入库结果
+     */
+    public static class IngestionResult {
+        private final Long documentId;
+        private String status;
+        private boolean unchanged;
+        private int chunks;
+        private int kept;
+        private int removed;
+        private long inserted;
+        private int failedBatches;
+        private long elapsedMs;
+        private String error;
+
+        public IngestionResult(Long documentId) {
+            this.documentId = documentId;
+        }
+
+        public Long getDocumentId() {
+            return documentId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getKept() {
+            return kept;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public int getFailedBatches() {
+            return failedBatches;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 全量重建结果
+     */
+    public static class RebuildResult {
+        private final String previousCollection;
+        private final String collection;
+        private int documents;
+        private long vectors;
+        private int missing;
+        private long elapsedMs;
+        private boolean switched;
+
+        public RebuildResult(String previousCollection, String collection) {
+            this.previousCollection = previousCollection;
+            this.collection = collection;
+        }
+
+        public String getPreviousCollection() {
+            return previousCollection;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        public long getVectors() {
+            return vectors;
+        }
+
+        /**
+         * 源文件缺失、已标记为失败的文档数
+         */
+        public int getMissing() {
+            return missing;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.service;
+
+import com.example.util.MilvusUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 知识库检索
+ * 问题文本向量化后经微批检索器查询 Milvus, 返回命中的文本块。
+ */
+@Service
+public class KnowledgeSearchService {
+
+    private static final List<String> OUT_FIELDS = List.of(
+            KnowledgeIngestionService.FIELD_DOCUMENT_ID, KnowledgeIngestionService.FIELD_CONTENT);
+
+    private final EmbeddingService embeddingService;
+    private final VectorSearchBatcher vectorSearchBatcher;
+    private final KnowledgeIngestionService ingestionService;
+
+    @Value("${knowledge.search.timeout-ms:1000}")
+    private long searchTimeoutMs;
+
+    public KnowledgeSearchService(EmbeddingService embeddingService,
+                                  VectorSearchBatcher vectorSearchBatcher,
+                                  KnowledgeIngestionService ingestionService) {
+        this.embeddingService = embeddingService;
+        this.vectorSearchBatcher = vectorSearchBatcher;
+        this.ingestionService = ingestionService;
+    }
+
+    /**
+     * 检索与问题最相近的知识片段
+     * @param question 问题文本
+     * @param topK 返回条数
+     * @return 命中片段, 检索失败时为空列表
+     */
+    public List<KnowledgeHit> search(String question, int topK) {
+        if (question == null || question.isBlank()) {
+            return Collections.emptyList();
+        }
+        return search(embed(question), topK);
+    }
+
+    /**
+     * 问题文本向量化（带缓存）, 供调用方复用同一向量做语义缓存查找与检索
+     */
+    public List<Float> embed(String question) {
+        return embeddingService.embed(List.of(question)).get(0);
+    }
+
+    /**
+     * 按已计算的问题向量检索知识片段
+     * @param vector 问题向量
+     * @param topK 返回条数
+     * @return 命中片段, 检索失败时为空列表
+     */
+    public List<KnowledgeHit> search(List<Float> vector, int topK) {
+        List<MilvusUtil.SearchHit> hits = vectorSearchBatcher.search(
+                ingestionService.getCollectionName(), vector, topK, OUT_FIELDS, searchTimeoutMs);
+        if (hits == null) {
+            return Collections.emptyList();
+        }
+        List<KnowledgeHit> results = new ArrayList<>(hits.size());
+        for (MilvusUtil.SearchHit hit : hits) {
+            Object documentId = hit.getFields().get(KnowledgeIngestionService.FIELD_DOCUMENT_ID);
+            Object content = hit.getFields().get(KnowledgeIngestionService.FIELD_CONTENT);
+            results.add(new KnowledgeHit(hit.getId(),
+                    documentId instanceof Number ? ((Number) documentId).longValue() : null,
+                    content == null ? null : content.toString(), hit.getScore()));
+        }
+        return results;
+    }
+
+    /**
+     * 检索命中的知识片段
+     */
+    public static class KnowledgeHit {
+        private final long chunkId;
+        private final Long documentId;
+        private final String content;
+        private final float score;
+
+        public KnowledgeHit(long chunkId, Long documentId, String content, float score) {
+            this.chunkId = chunkId;
+            this.documentId = documentId;
+            this.content = content;
+            this.score = score;
+        }
+
+        public long getChunkId() {
+            return chunkId;
+        }
+
+        public Long getDocumentId() {
+            return documentId;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+}
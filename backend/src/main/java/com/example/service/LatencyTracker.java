@@ -0,0 +1,285 @@
+package com.example.service;
+
+import com.example.util.RedisUtil;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+/**
+ * 分阶段延迟直方图
+ * 按 阶段|渠道|角色 以 HdrHistogram 记录耗时（微秒, 3 位有效数字）, 记录路径无锁。
+ * 定时将本节点的区间直方图累加到当前分钟与当前小时, 压缩编码后写入 Redis（latency:m:yyyyMMddHHmm、latency:h:yyyyMMddHH,
+ * 字段 节点|阶段|渠道|角色）; 查询时读取时间窗口内所有节点的直方图合并后计算分位数, 结果与单节点记录全部样本一致。
+ */
+@Service
+public class LatencyTracker {
+
+    public static final String STAGE_TOTAL = "total";
+    public static final String STAGE_PERSIST = "persist";
+
+    private static final String KEY_PREFIX = "latency:";
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int MAX_MINUTE_WINDOW = 180;
+    private static final int MAX_WINDOW_MINUTES = 7 * 24 * 60;
+    private static final double[] PERCENTILES = {50.0, 95.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99", "p999"};
+
+    private final RedisUtil redisUtil;
+    private final ZoneId zone = ZoneId.systemDefault();
+    /** 节点标识, 区分各节点写入的直方图 */
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> minuteHistograms = new HashMap<>();
+    private final Map<String, Histogram> hourHistograms = new HashMap<>();
+    private long currentMinute = -1;
+    private long currentHour = -1;
+
+    @Value("${latency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${latency.retention-hours:192}")
+    private long retentionHours;
+
+    @Value("${latency.sla.total-ms:2000}")
+    private long totalSlaMs;
+
+    @Value("${latency.sla.rules-ms:1000}")
+    private long rulesSlaMs;
+
+    public LatencyTracker(RedisUtil redisUtil) {
+        this.redisUtil = redisUtil;
+    }
+
+    /**
+     * 记录一次阶段耗时
+     * @param stage 阶段名称
+     * @param channel 渠道名称, 为 null 时记为 unknown
+     * @param role 用户角色
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(String stage, String channel, String role, long nanos) {
+        if (!enabled || nanos < 0) {
+            return;
+        }
+        String key = stage + "|" + (channel == null ? "unknown" : channel) + "|" + (role == null ? "guest" : role);
+        recorders.computeIfAbsent(key, k -> new Recorder(SIGNIFICANT_DIGITS))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 将本节点的区间直方图累加并写入 Redis
+     * 跨分钟/小时时当前累计直方图清零; 写入失败时数据仍保留在累计直方图中, 该键下次快照时一并写入。
+     */
+    @Scheduled(fixedDelayString = "${latency.snapshot-interval-ms:10000}")
+    public synchronized void snapshot() {
+        if (!enabled || recorders.isEmpty()) {
+            return;
+        }
+        long minute = System.currentTimeMillis() / 60_000;
+        if (minute != currentMinute) {
+            minuteHistograms.clear();
+            currentMinute = minute;
+        }
+        if (minute / 60 != currentHour) {
+            hourHistograms.clear();
+            currentHour = minute / 60;
+        }
+        Map<String, String> minuteEncoded = new HashMap<>();
+        Map<String, String> hourEncoded = new HashMap<>();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            Histogram interval = entry.getValue().getIntervalHistogram();
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            String field = nodeId + "|" + entry.getKey();
+            Histogram minuteHistogram = minuteHistograms.computeIfAbsent(entry.getKey(), k -> new Histogram(SIGNIFICANT_DIGITS));
+            minuteHistogram.add(interval);
+            minuteEncoded.put(field, encode(minuteHistogram));
+            Histogram hourHistogram = hourHistograms.computeIfAbsent(entry.getKey(), k -> new Histogram(SIGNIFICANT_DIGITS));
+            hourHistogram.add(interval);
+            hourEncoded.put(field, encode(hourHistogram));
+        }
+        if (minuteEncoded.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.ofEpochMilli(minute * 60_000);
+        String minuteKey = KEY_PREFIX + "m:" + MINUTE_FORMAT.format(now.atZone(zone));
+        String hourKey = KEY_PREFIX + "h:" + HOUR_FORMAT.format(now.atZone(zone));
+        try {
+            redisUtil.pipelineStrings(operations -> {
+                operations.opsForHash().putAll(minuteKey, minuteEncoded);
+                operations.expire(minuteKey, Duration.ofHours(retentionHours));
+                operations.opsForHash().putAll(hourKey, hourEncoded);
+                operations.expire(hourKey, Duration.ofHours(retentionHours));
+            });
+        } catch (RuntimeException e) {
+            System.err.println("Failed to write latency histograms: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询最近时间窗口的延迟分位数（合并所有节点）
+     * 窗口不超过 180 分钟时按分钟直方图合并, 否则按小时直方图合并（窗口向上取整到小时）。
+     * @param windowMinutes 窗口长度（分钟）, 最长 7 天
+     * @param stage 阶段过滤, 为 null 时不过滤, 其余参数同
+     * @param groupBy 分组维度, stage、channel、role 以逗号组合, 为空时按 stage 分组
+     * @return 各分组的样本数、均值、最大值、p50/p95/p99/p999（毫秒）及 SLA 达成率
+     * @throws IllegalArgumentException 窗口或分组维度不合法时
+     */
+    public Map<String, Object> report(int windowMinutes, String stage, String channel, String role, String groupBy) {
+        if (windowMinutes < 1 || windowMinutes > MAX_WINDOW_MINUTES) {
+            throw new IllegalArgumentException("windowMinutes must be between 1 and " + MAX_WINDOW_MINUTES);
+        }
+        int[] dimensions = dimensions(groupBy);
+        List<String> keys = new ArrayList<>();
+        Instant now = Instant.now();
+        boolean byMinute = windowMinutes <= MAX_MINUTE_WINDOW;
+        if (byMinute) {
+            for (int i = 0; i < windowMinutes; i++) {
+                keys.add(KEY_PREFIX + "m:" + MINUTE_FORMAT.format(now.minusSeconds(60L * i).atZone(zone)));
+            }
+        } else {
+            for (int i = 0; i < (windowMinutes + 59) / 60; i++) {
+                keys.add(KEY_PREFIX + "h:" + HOUR_FORMAT.format(now.minusSeconds(3600L * i).atZone(zone)));
+            }
+        }
+
+        Map<String, Histogram> merged = new TreeMap<>();
+        for (Map<String, String> hash : redisUtil.multiHashGetAllAsString(keys)) {
+            for (Map.Entry<String, String> entry : hash.entrySet()) {
+                // 字段: 节点|阶段|渠道|角色
+                String[] parts = entry.getKey().split("\\|", 4);
+                if (parts.length != 4 || !matches(stage, parts[1]) || !matches(channel, parts[2]) || !matches(role, parts[3])) {
+                    continue;
+                }
+                Histogram histogram = decode(entry.getValue());
+                if (histogram == null) {
+                    continue;
+                }
+                StringBuilder group = new StringBuilder();
+                for (int dimension : dimensions) {
+                    group.append(group.length() == 0 ? "" : "|").append(parts[dimension]);
+                }
+                merged.computeIfAbsent(group.toString(), k -> new Histogram(SIGNIFICANT_DIGITS)).add(histogram);
+            }
+        }
+
+        Map<String, Object> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Histogram> entry : merged.entrySet()) {
+            Long slaMs = null;
+            if (dimensions[0] == 1) {
+                slaMs = sla(entry.getKey().split("\\|", 2)[0]);
+            } else if (stage != null) {
+                slaMs = sla(stage);
+            }
+            groups.put(entry.getKey(), summarize(entry.getValue(), slaMs));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("windowMinutes", byMinute ? windowMinutes : keys.size() * 60);
+        report.put("granularity", byMinute ? "minute" : "hour");
+        report.put("groupBy", groupBy == null || groupBy.isBlank() ? "stage" : groupBy);
+        report.put("groups", groups);
+        return report;
+    }
+
+    /**
+     * 直方图摘要（毫秒）
+     * @param slaMs SLA 阈值, 为 null 时不计算达成率
+     */
+    static Map<String, Object> summarize(Histogram histogram, Long slaMs) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("mean", round(histogram.getMean() / 1000.0));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            summary.put(PERCENTILE_NAMES[i], round(histogram.getValueAtPercentile(PERCENTILES[i]) / 1000.0));
+        }
+        summary.put("max", round(histogram.getMaxValue() / 1000.0));
+        if (slaMs != null) {
+            summary.put("slaMs", slaMs);
+            summary.put("slaAttainment", histogram.getTotalCount() == 0 ? 1.0
+                    : round(histogram.getPercentileAtOrBelowValue(slaMs * 1000) / 100.0));
+        }
+        return summary;
+    }
+
+    /**
+     * 压缩编码直方图（Base64）
+     */
+    static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    /**
+     * 解码直方图, 数据损坏时返回 null
+     */
+    static Histogram decode(String encoded) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+        } catch (DataFormatException | RuntimeException e) {
+            System.err.println("Failed to decode latency histogram: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Long sla(String stage) {
+        if (STAGE_TOTAL.equals(stage)) {
+            return totalSlaMs;
+        }
+        if (ReplyOrchestrator.STAGE_RULES.equals(stage)) {
+            return rulesSlaMs;
+        }
+        return null;
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.isBlank() || filter.equals(value);
+    }
+
+    /**
+     * 分组维度转为字段下标（1 阶段, 2 渠道, 3 角色）
+     */
+    private static int[] dimensions(String groupBy) {
+        if (groupBy == null || groupBy.isBlank()) {
+            return new int[]{1};
+        }
+        String[] names = groupBy.split(",");
+        int[] dimensions = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            switch (names[i].trim()) {
+                case "stage" -> dimensions[i] = 1;
+                case "channel" -> dimensions[i] = 2;
+                case "role" -> dimensions[i] = 3;
+                default -> throw new IllegalArgumentException("unsupported groupBy: " + names[i].trim());
+            }
+        }
+        return dimensions;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 大模型生成网关
+ */
+public interface LlmGateway {
+
+    /**
+     * 生成应答, 阻塞直到生成结束; 生成过程中每产生一段文本即回调 onToken
+     * @param request 生成请求
+     * @param onToken 文本片段回调, 可为 null
+     * @return 生成结果
+     * @throws IllegalStateException 排队超时、上游失败或超时
+     */
+    LlmResponse generate(LlmRequest request, Consumer<String> onToken);
+
+    /**
+     * 对话消息
+     */
+    class ChatMessage {
+        private String role;
+        private String content;
+
+        public ChatMessage() {
+        }
+
+        public ChatMessage(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public void setRole(String role) {
+            this.role = role;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+
+    /**
+     * 生成请求
+     */
+    class LlmRequest {
+        private String model;
+        private List<ChatMessage> messages = new ArrayList<>();
+        private Integer maxTokens;
+        private Double temperature;
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public List<ChatMessage> getMessages() {
+            return messages;
+        }
+
+        public void setMessages(List<ChatMessage> messages) {
+            this.messages = messages;
+        }
+
+        public LlmRequest addMessage(String role, String content) {
+            messages.add(new ChatMessage(role, content));
+            return this;
+        }
+
+        public Integer getMaxTokens() {
+            return maxTokens;
+        }
+
+        public void setMaxTokens(Integer maxTokens) {
+            this.maxTokens = maxTokens;
+        }
+
+        public Double getTemperature() {
+            return temperature;
+        }
+
+        public void setTemperature(Double temperature) {
+            this.temperature = temperature;
+        }
+    }
+
+    /**
+     * 生成结果
+     */
+    class LlmResponse {
+        private final String model;
+        private final String content;
+        private final int promptTokens;
+        private final int completionTokens;
+        private final boolean coalesced;
+
+        public LlmResponse(String model, String content, int promptTokens, int completionTokens, boolean coalesced) {
+            this.model = model;
+            this.content = content;
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.coalesced = coalesced;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+
+        public int getCompletionTokens() {
+            return completionTokens;
+        }
+
+        /** 是否复用了进行中的相同请求 */
+        public boolean isCoalesced() {
+            return coalesced;
+        }
+    }
+}
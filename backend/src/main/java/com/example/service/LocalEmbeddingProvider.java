@@ -0,0 +1,78 @@
+package com.example.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地确定性向量化（特征哈希）
+ * 将字符一元组/二元组哈希到固定维度并归一化, 相同文本总是得到相同向量, 用于开发与测试环境。
+ */
+@Component
+@ConditionalOnProperty(name = "embedding.provider", havingValue = "local", matchIfMissing = true)
+public class LocalEmbeddingProvider implements EmbeddingProvider {
+
+    @Value("${embedding.dimension:768}")
+    private int dimension;
+
+    @Override
+    public String getModelId() {
+        return "local-hash-" + dimension;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public List<List<Float>> embed(List<String> texts) {
+        List<List<Float>> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    private List<Float> embed(String text) {
+        float[] vector = new float[dimension];
+        String normalized = text == null ? "" : text.toLowerCase();
+        int[] codePoints = normalized.codePoints().filter(c -> !Character.isWhitespace(c)).toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            accumulate(vector, new String(codePoints, i, 1), 1.0f);
+            if (i + 1 < codePoints.length) {
+                accumulate(vector, new String(codePoints, i, 2), 1.5f);
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = norm == 0 ? 1 : Math.sqrt(norm);
+        List<Float> result = new ArrayList<>(dimension);
+        for (float value : vector) {
+            result.add((float) (value / norm));
+        }
+        return result;
+    }
+
+    private void accumulate(float[] vector, String feature, float weight) {
+        int hash = fnv1a(feature);
+        int index = (hash >>> 1) % dimension;
+        // 用哈希最低位决定符号, 减少碰撞带来的偏差
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static int fnv1a(String value) {
+        int hash = 0x811c9dc5;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+}
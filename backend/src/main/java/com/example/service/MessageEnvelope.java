@@ -0,0 +1,124 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 统一消息信封
+ * 各渠道适配器把平台原始回调（JSON、XML 等）转换为该格式后进入渠道队列。
+ */
+public class MessageEnvelope {
+
+    public static final String TYPE_TEXT = "text";
+
+    private Long channelId;
+    private String channelName;
+    private String channelType;
+    /** 平台侧消息ID, 用于去重（平台重试推送时相同） */
+    private String externalMessageId;
+    /** 平台侧用户标识 */
+    private String userId;
+    private String content;
+    /** 消息类型, 目前仅 text 会进入自动应答 */
+    private String messageType = TYPE_TEXT;
+    private LocalDateTime receivedAt = LocalDateTime.now();
+    private String ipAddress;
+    /** 平台特有字段（如公众号原始ID、应用ID）, 发送应答时使用 */
+    private Map<String, String> attributes = new HashMap<>();
+
+    // 入队时刻, 用于统计队列等待时间
+    private transient long enqueuedNanos;
+
+    public boolean isText() {
+        return TYPE_TEXT.equals(messageType);
+    }
+
+    public Long getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(Long channelId) {
+        this.channelId = channelId;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    public String getChannelType() {
+        return channelType;
+    }
+
+    public void setChannelType(String channelType) {
+        this.channelType = channelType;
+    }
+
+    public String getExternalMessageId() {
+        return externalMessageId;
+    }
+
+    public void setExternalMessageId(String externalMessageId) {
+        this.externalMessageId = externalMessageId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(String messageType) {
+        this.messageType = messageType;
+    }
+
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+
+    long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    void setEnqueuedNanos(long enqueuedNanos) {
+        this.enqueuedNanos = enqueuedNanos;
+    }
+}
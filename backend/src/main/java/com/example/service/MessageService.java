@@ -0,0 +1,389 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import com.example.model.Message;
+import com.example.model.Session;
+import com.example.repository.ChannelRepository;
+import com.example.repository.MessageRepository;
+import com.example.repository.SessionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Service
+public class MessageService {
+
+    // 会话状态: 待处理（AI 接待中）/ 处理中（人工接管）/ 已完成
+    public static final String SESSION_PENDING = "PENDING";
+    public static final String SESSION_PROCESSING = "PROCESSING";
+    public static final String SESSION_COMPLETED = "COMPLETED";
+
+    // 消息发送方
+    public static final String SENDER_USER = "user";
+    public static final String SENDER_AI = "ai";
+    public static final String SENDER_STAFF = "staff";
+
+    private static final int LAST_MESSAGE_MAX_LENGTH = 255;
+
+    private final MessageRepository messageRepository;
+    private final SessionRepository sessionRepository;
+    private final ChannelRepository channelRepository;
+    private final SessionStateStore sessionStateStore;
+    private final UserIdentityCache userIdentityCache;
+    private final RateLimiter rateLimiter;
+    private final ReplyOrchestrator replyOrchestrator;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkbenchPushService workbenchPushService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LatencyTracker latencyTracker;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${message.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${message.export.page-size:1000}")
+    private int exportPageSize;
+
+    public MessageService(MessageRepository messageRepository,
+                          SessionRepository sessionRepository,
+                          ChannelRepository channelRepository,
+                          SessionStateStore sessionStateStore,
+                          UserIdentityCache userIdentityCache,
+                          RateLimiter rateLimiter,
+                          ReplyOrchestrator replyOrchestrator,
+                          TransactionTemplate transactionTemplate,
+                          WorkbenchPushService workbenchPushService,
+                          AnalyticsRollupService analyticsRollupService,
+                          LatencyTracker latencyTracker) {
+        this.messageRepository = messageRepository;
+        this.sessionRepository = sessionRepository;
+        this.channelRepository = channelRepository;
+        this.sessionStateStore = sessionStateStore;
+        this.userIdentityCache = userIdentityCache;
+        this.rateLimiter = rateLimiter;
+        this.replyOrchestrator = replyOrchestrator;
+        this.transactionTemplate = transactionTemplate;
+        this.workbenchPushService = workbenchPushService;
+        this.analyticsRollupService = analyticsRollupService;
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * 接收用户消息并生成 AI 自动应答
+     * 应答编排在事务外完成（不占用数据库连接）, 之后在一个短事务内保存用户消息与应答消息。
+     * @param channel 渠道名称
+     * @param userId 用户标识
+     * @param content 消息内容
+     * @param ipAddress 客户端IP
+     * @return 保存的消息与应答结果
+     * @throws IllegalArgumentException 内容为空或渠道不存在时
+     * @throws RateLimitExceededException 超出限流配额时
+     */
+    public SendResult send(String channel, String userId, String content, String ipAddress) {
+        return send(admit(channel, userId, content, ipAddress), userId, content, ipAddress, null);
+    }
+
+    /**
+     * 消息准入: 校验内容与渠道并消耗限流配额
+     * @return 消息所属渠道
+     * @throws IllegalArgumentException 内容为空或渠道不存在时
+     * @throws RateLimitExceededException 超出限流配额时
+     */
+    public Channel admit(String channel, String userId, String content, String ipAddress) {
+        if (content == null || content.isBlank()) {
+            throw new IllegalArgumentException("content is required");
+        }
+        Channel resolved = channel == null ? null : channelRepository.findByChannelName(channel);
+        if (resolved == null) {
+            throw new IllegalArgumentException("unknown channel: " + channel);
+        }
+        admit(resolved, userId, ipAddress);
+        return resolved;
+    }
+
+    /**
+     * 已解析渠道的消息准入: 消耗限流配额
+     * @throws RateLimitExceededException 超出限流配额时
+     */
+    public void admit(Channel resolved, String userId, String ipAddress) {
+        // 限流键: 外部用户标识, 未提供时按客户端IP
+        String limitKey = userId != null ? userId : "ip:" + ipAddress;
+        rateLimiter.acquire(limitKey, userId == null ? null : userIdentityCache.findByUserId(userId).orElse(null),
+                resolved.getId());
+    }
+
+    /**
+     * 处理已准入的用户消息并流式生成 AI 自动应答
+     * 应答片段产生后立即回调 onDelta, 全部生成完毕后才保存消息（每条消息只写库一次）。
+     * @param resolved 由 {@link #admit} 返回的渠道
+     * @param onDelta 应答片段回调, 为 null 时等同于非流式发送
+     * @return 保存的消息与应答结果
+     */
+    public SendResult send(Channel resolved, String userId, String content, String ipAddress, Consumer<String> onDelta) {
+        // 会话状态从 Redis 读取, 人工接管中的会话不再自动应答
+        SessionStateStore.SessionState state = sessionStateStore.findActive(resolved.getId(), userId);
+        if (state != null && state.isHandledByStaff()) {
+            Message question = newMessage(SENDER_USER, content);
+            question.setSessionId(state.getId());
+            question = messageRepository.save(question);
+            workbenchPushService.publish(sessionStateStore.touch(state.getId(), truncate(content)),
+                    WorkbenchPushService.TYPE_MESSAGE, truncate(content));
+            return new SendResult(state.getId(), question, null, null);
+        }
+
+        ReplyOrchestrator.ReplyRequest request = new ReplyOrchestrator.ReplyRequest();
+        request.setSessionId(state == null ? null : state.getId());
+        request.setUserId(userId);
+        request.setChannel(resolved.getChannelName());
+        request.setChannelId(resolved.getId());
+        request.setQuestion(content);
+        request.setIpAddress(ipAddress);
+        ReplyOrchestrator.ReplyResult reply = replyOrchestrator.reply(request, onDelta);
+
+        Session created = state != null ? null : newSession(reply, resolved);
+        long persistStart = System.nanoTime();
+        SendResult result = transactionTemplate.execute(status -> {
+            Long sessionId = state != null ? state.getId() : sessionRepository.save(created).getId();
+            Message question = newMessage(SENDER_USER, content);
+            question.setSessionId(sessionId);
+            question = messageRepository.save(question);
+            Message answer = newMessage(SENDER_AI, reply.getAnswer());
+            answer.setSessionId(sessionId);
+            answer.setReplyTo(question.getId());
+            answer = messageRepository.save(answer);
+            return new SendResult(sessionId, question, answer, reply);
+        });
+        latencyTracker.record(LatencyTracker.STAGE_PERSIST, resolved.getChannelName(),
+                ReplyOrchestrator.role(reply.getUser()), System.nanoTime() - persistStart);
+        SessionStateStore.SessionState updated;
+        if (created != null) {
+            updated = sessionStateStore.register(created, userId);
+            analyticsRollupService.recordSession(resolved.getChannelName(), ReplyOrchestrator.role(reply.getUser()),
+                    reply.getCategory());
+        } else {
+            updated = sessionStateStore.touch(state.getId(), truncate(reply.getAnswer()));
+        }
+        workbenchPushService.publish(updated, reply.isTransferToHuman()
+                ? WorkbenchPushService.TYPE_ESCALATION : WorkbenchPushService.TYPE_MESSAGE, truncate(content));
+        return result;
+    }
+
+    /**
+     * 人工接管消息所在的会话
+     * @param messageId 消息ID
+     * @param staffId 客服ID
+     * @return 接管后的会话状态, 接待人不是 staffId 表示已被他人接管
+     * @throws IllegalArgumentException 消息或会话不存在时
+     */
+    public SessionStateStore.SessionState takeOver(Long messageId, Long staffId) {
+        if (messageId == null || staffId == null) {
+            throw new IllegalArgumentException("messageId and staffId are required");
+        }
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new IllegalArgumentException("message not found: " + messageId));
+        SessionStateStore.TakeOverResult result = sessionStateStore.takeOver(message.getSessionId(), staffId);
+        SessionStateStore.SessionState state = result.getState();
+        // 同一客服重复接管时状态未变化, 不重复计数也不重复推送
+        if (result.isChanged()) {
+            workbenchPushService.publish(state, WorkbenchPushService.TYPE_TAKE_OVER, null);
+            analyticsRollupService.recordTakeOver(state.getChannelId() == null ? null
+                    : channelRepository.findById(state.getChannelId()).map(Channel::getChannelName).orElse(null));
+        }
+        return state;
+    }
+
+    private static Session newSession(ReplyOrchestrator.ReplyResult reply, Channel channel) {
+        Session session = new Session();
+        session.setUserId(reply.getUser() == null ? null : reply.getUser().getId());
+        session.setChannelId(channel.getId());
+        session.setStatus(SESSION_PENDING);
+        session.setStartTime(LocalDateTime.now());
+        session.setLastMessage(truncate(reply.getAnswer()));
+        return session;
+    }
+
+    /**
+     * 游标分页获取会话消息（按时间升序）
+     * @param sessionId 会话ID
+     * @param cursor 上一页返回的游标, 为空表示第一页
+     * @param size 每页条数
+     * @return 当前页消息及下一页游标
+     * @throws IllegalArgumentException 游标格式不正确时
+     */
+    public MessagePage listMessages(Long sessionId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // 多取一条判断是否还有下一页
+        List<Message> messages = fetchPage(sessionId, cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor), pageSize + 1);
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? encodeCursor(messages.get(messages.size() - 1)) : null;
+        return new MessagePage(messages, nextCursor);
+    }
+
+    /**
+     * 流式导出会话的全部消息, 逐页读取, 内存占用与消息总数无关
+     * @return 导出条数
+     */
+    public long exportSession(Long sessionId, Consumer<Message> consumer) {
+        long exported = 0;
+        Cursor cursor = null;
+        while (true) {
+            List<Message> page = fetchPage(sessionId, cursor, exportPageSize);
+            if (page.isEmpty()) {
+                return exported;
+            }
+            page.forEach(consumer);
+            exported += page.size();
+            Message last = page.get(page.size() - 1);
+            cursor = new Cursor(last.getTimestamp(), last.getId());
+            // 释放已处理的实体, 避免持久化上下文随导出量增长
+            entityManager.clear();
+            if (page.size() < exportPageSize) {
+                return exported;
+            }
+        }
+    }
+
+    /**
+     * 按主键顺序流式导出全部消息（分析/审计用）
+     * @param afterId 从该ID之后开始, 用于断点续导
+     * @return 导出条数
+     */
+    public long exportAll(long afterId, Consumer<Message> consumer) {
+        long exported = 0;
+        long lastId = afterId;
+        while (true) {
+            List<Message> page = messageRepository.findPageAfterId(lastId, PageRequest.of(0, exportPageSize));
+            if (page.isEmpty()) {
+                return exported;
+            }
+            page.forEach(consumer);
+            exported += page.size();
+            lastId = page.get(page.size() - 1).getId();
+            entityManager.clear();
+            if (page.size() < exportPageSize) {
+                return exported;
+            }
+        }
+    }
+
+    private List<Message> fetchPage(Long sessionId, Cursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (cursor == null) {
+            return messageRepository.findFirstPage(sessionId, page);
+        }
+        if (cursor.timestamp == null) {
+            return messageRepository.findPageAfterUntimed(sessionId, cursor.id, page);
+        }
+        return messageRepository.findPageAfter(sessionId, cursor.timestamp, cursor.id, page);
+    }
+
+    private static Message newMessage(String sender, String content) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setContent(content);
+        message.setMessageType("text");
+        message.setTimestamp(LocalDateTime.now());
+        return message;
+    }
+
+    private static String truncate(String content) {
+        return content == null || content.length() <= LAST_MESSAGE_MAX_LENGTH
+                ? content : content.substring(0, LAST_MESSAGE_MAX_LENGTH);
+    }
+
+    // 游标为 "时间|id", 时间为空的消息只记 id
+    private static String encodeCursor(Message message) {
+        String raw = (message.getTimestamp() == null ? "" : message.getTimestamp().toString()) + "|" + message.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            String timestamp = raw.substring(0, separator);
+            return new Cursor(timestamp.isEmpty() ? null : LocalDateTime.parse(timestamp),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+
+    private static final class Cursor {
+        private final LocalDateTime timestamp;
+        private final Long id;
+
+        private Cursor(LocalDateTime timestamp, Long id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+    }
+
+    /**
+     * 分页结果
+     */
+    public static class MessagePage {
+        private final List<Message> messages;
+        private final String nextCursor;
+
+        public MessagePage(List<Message> messages, String nextCursor) {
+            this.messages = messages;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * 消息发送结果, 会话由人工接待时 answer 与 reply 为 null
+     */
+    public static class SendResult {
+        private final Long sessionId;
+        private final Message question;
+        private final Message answer;
+        private final ReplyOrchestrator.ReplyResult reply;
+
+        public SendResult(Long sessionId, Message question, Message answer, ReplyOrchestrator.ReplyResult reply) {
+            this.sessionId = sessionId;
+            this.question = question;
+            this.answer = answer;
+            this.reply = reply;
+        }
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public Message getQuestion() {
+            return question;
+        }
+
+        public Message getAnswer() {
+            return answer;
+        }
+
+        public ReplyOrchestrator.ReplyResult getReply() {
+            return reply;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地模拟渠道, 用于联调与压测（channel.gateway.mock.enabled=true 时启用）
+ * 报文格式与共享密钥校验同网站渠道, 应答不外发而是记录在内存中, 可通过 {@link #getDeliveries()} 查看。
+ */
+@Component
+@ConditionalOnProperty(name = "channel.gateway.mock.enabled", havingValue = "true")
+public class MockChannelAdapter extends WebsiteChannelAdapter {
+
+    private static final int MAX_DELIVERIES = 1000;
+
+    private final Deque<Delivery> deliveries = new ArrayDeque<>();
+
+    public MockChannelAdapter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public String getChannelType() {
+        return "mock";
+    }
+
+    @Override
+    public void deliver(Channel channel, Map<String, String> config, MessageEnvelope envelope, String answer) {
+        synchronized (deliveries) {
+            if (deliveries.size() >= MAX_DELIVERIES) {
+                deliveries.removeFirst();
+            }
+            deliveries.add(new Delivery(envelope, answer));
+        }
+    }
+
+    /**
+     * 最近的应答记录（最多 1000 条）
+     */
+    public List<Delivery> getDeliveries() {
+        synchronized (deliveries) {
+            return new ArrayList<>(deliveries);
+        }
+    }
+
+    public void clear() {
+        synchronized (deliveries) {
+            deliveries.clear();
+        }
+    }
+
+    public static class Delivery {
+        private final MessageEnvelope envelope;
+        private final String answer;
+
+        public Delivery(MessageEnvelope envelope, String answer) {
+            this.envelope = envelope;
+            this.answer = answer;
+        }
+
+        public MessageEnvelope getEnvelope() {
+            return envelope;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+    }
+}
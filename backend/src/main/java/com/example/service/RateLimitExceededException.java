@@ -0,0 +1,25 @@
+package com.example.service;
+
+/**
+ * 超出限流配额
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterMs;
+
+    public RateLimitExceededException(long retryAfterMs) {
+        super("rate limit exceeded, retry after " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Retry-After 响应头的秒数（向上取整, 至少 1 秒）
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMs + 999) / 1000);
+    }
+}
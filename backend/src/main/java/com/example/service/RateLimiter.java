@@ -0,0 +1,197 @@
+package com.example.service;
+
+import com.example.config.RateLimitProperties;
+import com.example.model.User;
+import com.example.util.RedisUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分布式消息限流（用户、渠道、角色三个维度）
+ * 默认使用 Redis 原子 Lua 令牌桶, 一次调用同时检查并扣减全部相关桶; 本地按 (用户, 渠道) 预取少量令牌,
+ * 明显未超限的调用方在预取令牌用完前无需访问 Redis; 被拒绝的调用方在重试时间内直接本地拒绝。
+ * Redis 不可用时放行（限流失败不影响消息收发）。
+ */
+@Service
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    /*
+     * 多桶令牌桶: KEYS 为各桶, ARGV[1] 为期望令牌数, 之后每个桶依次为 速率(个/秒)、容量。
+     * 按 Redis 服务器时间补充令牌, 实际发放数为各桶可用令牌的最小值（可少于期望值）, 不足 1 个时不扣减并返回需等待的毫秒数。
+     * 返回 {发放数, 等待毫秒数}
+     */
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local time = redis.call('TIME') "
+                    + "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) "
+                    + "local grant = tonumber(ARGV[1]) "
+                    + "local wait = 0 "
+                    + "local tokens = {} "
+                    + "for i, key in ipairs(KEYS) do "
+                    + "  local rate = tonumber(ARGV[i * 2]) "
+                    + "  local burst = tonumber(ARGV[i * 2 + 1]) "
+                    + "  local bucket = redis.call('HMGET', key, 'tokens', 'ts') "
+                    + "  local current = tonumber(bucket[1]) or burst "
+                    + "  local ts = tonumber(bucket[2]) or now "
+                    + "  current = math.min(burst, current + math.max(0, now - ts) * rate / 1000) "
+                    + "  tokens[i] = current "
+                    + "  if math.floor(current) < grant then grant = math.floor(current) end "
+                    + "  if current < 1 then wait = math.max(wait, math.ceil((1 - current) * 1000 / rate)) end "
+                    + "end "
+                    + "if grant < 1 then grant = 0 end "
+                    + "for i, key in ipairs(KEYS) do "
+                    + "  local rate = tonumber(ARGV[i * 2]) "
+                    + "  local burst = tonumber(ARGV[i * 2 + 1]) "
+                    + "  redis.call('HSET', key, 'tokens', tostring(tokens[i] - grant), 'ts', tostring(now)) "
+                    + "  redis.call('PEXPIRE', key, math.ceil(burst * 1000 / rate) + 1000) "
+                    + "end "
+                    + "return {grant, wait}", List.class);
+
+    private final RedisUtil redisUtil;
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, Lease> leases;
+    private Cache<String, Long> rejectedUntil;
+    private Counter localAllowed;
+    private Counter remoteAllowed;
+    private Counter localRejected;
+    private Counter remoteRejected;
+    private Counter errors;
+
+    public RateLimiter(RedisUtil redisUtil, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        leases = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMillis(properties.getLeaseTtlMs()))
+                .build();
+        rejectedUntil = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofSeconds(60))
+                .build();
+        localAllowed = Counter.builder("ratelimit.decisions").tag("result", "allowed").tag("tier", "local").register(meterRegistry);
+        remoteAllowed = Counter.builder("ratelimit.decisions").tag("result", "allowed").tag("tier", "redis").register(meterRegistry);
+        localRejected = Counter.builder("ratelimit.decisions").tag("result", "rejected").tag("tier", "local").register(meterRegistry);
+        remoteRejected = Counter.builder("ratelimit.decisions").tag("result", "rejected").tag("tier", "redis").register(meterRegistry);
+        errors = Counter.builder("ratelimit.errors").register(meterRegistry);
+    }
+
+    /**
+     * 检查并消耗一条消息的配额
+     * @param userId 外部用户标识
+     * @param user 已识别的用户, 未识别时为 null（按默认配额）
+     * @param channelId 渠道ID
+     * @throws RateLimitExceededException 超出配额时
+     */
+    public void acquire(String userId, User user, Long channelId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        String role = user == null ? null : user.getRole();
+        List<String> keys = new ArrayList<>(3);
+        List<RateLimitProperties.Limit> limits = new ArrayList<>(3);
+        keys.add(KEY_PREFIX + "user:" + userId);
+        limits.add(properties.userLimit(role, user != null && user.isVip()));
+        keys.add(KEY_PREFIX + "channel:" + channelId);
+        limits.add(properties.channelLimit(channelId));
+        RateLimitProperties.Limit roleTotal = role == null ? null : properties.getRoleTotals().get(role);
+        if (roleTotal != null) {
+            keys.add(KEY_PREFIX + "role:" + role);
+            limits.add(roleTotal);
+        }
+
+        String localKey = userId + "|" + channelId;
+        Long until = rejectedUntil.getIfPresent(localKey);
+        long now = System.currentTimeMillis();
+        if (until != null && until > now) {
+            localRejected.increment();
+            throw new RateLimitExceededException(until - now);
+        }
+        Lease lease = leases.getIfPresent(localKey);
+        if (lease != null && lease.remaining.getAndDecrement() > 0) {
+            localAllowed.increment();
+            return;
+        }
+
+        long[] decision;
+        try {
+            decision = properties.getAlgorithm() == RateLimitProperties.Algorithm.FIXED_WINDOW
+                    ? fixedWindow(keys, limits)
+                    : tokenBucket(keys, limits, leaseSize(limits));
+        } catch (RuntimeException e) {
+            errors.increment();
+            System.err.println("Rate limiter unavailable, allowing request: " + e.getMessage());
+            return;
+        }
+        if (decision[0] < 1) {
+            long waitMs = Math.max(1, decision[1]);
+            rejectedUntil.put(localKey, now + waitMs);
+            remoteRejected.increment();
+            throw new RateLimitExceededException(waitMs);
+        }
+        if (decision[0] > 1) {
+            leases.put(localKey, new Lease((int) decision[0] - 1));
+        }
+        remoteAllowed.increment();
+    }
+
+    private long[] tokenBucket(List<String> keys, List<RateLimitProperties.Limit> limits, int want) {
+        String[] args = new String[1 + limits.size() * 2];
+        args[0] = String.valueOf(want);
+        for (int i = 0; i < limits.size(); i++) {
+            args[1 + i * 2] = String.valueOf(limits.get(i).getRate());
+            args[2 + i * 2] = String.valueOf(limits.get(i).getBurst());
+        }
+        List<?> result = redisUtil.executeScript(TOKEN_BUCKET_SCRIPT, keys, args);
+        return new long[]{((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue()};
+    }
+
+    // 基线实现: 每个维度一个按秒的计数器, 计数超过速率即拒绝到下一秒（不支持突发与预取）
+    private long[] fixedWindow(List<String> keys, List<RateLimitProperties.Limit> limits) {
+        long now = System.currentTimeMillis();
+        long window = now / 1000;
+        for (int i = 0; i < keys.size(); i++) {
+            Long count = redisUtil.incrementAndExpire(keys.get(i) + ":" + window, 1, 2, TimeUnit.SECONDS);
+            if (count != null && count > Math.max(1, (long) limits.get(i).getRate())) {
+                return new long[]{0, (window + 1) * 1000 - now};
+            }
+        }
+        return new long[]{1, 0};
+    }
+
+    // 预取量不超过最小桶容量的一半, 容量很小的桶每次都访问 Redis 以保证精度; 桶中令牌不足时发放数自动减少
+    private int leaseSize(List<RateLimitProperties.Limit> limits) {
+        int minBurst = Integer.MAX_VALUE;
+        for (RateLimitProperties.Limit limit : limits) {
+            minBurst = Math.min(minBurst, limit.getBurst());
+        }
+        return Math.max(1, Math.min(properties.getLeaseSize(), minBurst / 2));
+    }
+
+    private static final class Lease {
+        private final AtomicInteger remaining;
+
+        private Lease(int remaining) {
+            this.remaining = new AtomicInteger(remaining);
+        }
+    }
+}
@@ -0,0 +1,694 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.model.Message;
+import com.example.model.User;
+import com.example.repository.MessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * AI 自动应答编排
+ * 身份识别与历史消息读取并行启动, 身份返回后执行规则匹配与知识检索; 每个依赖有独立超时,
+ * 整体受总截止时间约束（默认 1800ms, 留出持久化余量以满足 2 秒 SLA）。依赖超时或失败时降级
+ * （匿名身份、无历史、无知识片段）继续作答, 每次应答记录各阶段耗时与结果。
+ * 知识阶段先按用户角色查语义答案缓存, 命中时跳过知识库检索与大模型生成; 未命中时大模型或知识库的应答写回缓存。
+ */
+@Service
+public class ReplyOrchestrator {
+
+    public static final String STAGE_IDENTITY = "identity";
+    public static final String STAGE_RULES = "rules";
+    public static final String STAGE_KNOWLEDGE = "knowledge";
+    public static final String STAGE_HISTORY = "history";
+    public static final String STAGE_GENERATE = "generate";
+    public static final String STAGE_COMPOSE = "compose";
+
+    public static final String OUTCOME_OK = "ok";
+    public static final String OUTCOME_TIMEOUT = "timeout";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_SKIPPED = "skipped";
+
+    public static final String SOURCE_RULE = "rule";
+    public static final String SOURCE_KNOWLEDGE = "knowledge";
+    public static final String SOURCE_LLM = "llm";
+    public static final String SOURCE_CACHE = "cache";
+    public static final String SOURCE_FALLBACK = "fallback";
+
+    private static final String GUEST_ROLE = "guest";
+    private static final String FALLBACK_ANSWER = "抱歉，暂时无法回答您的问题，已为您转接人工客服。";
+    private static final String SYSTEM_PROMPT = "你是在线客服助手，请依据参考资料简洁、礼貌地回答用户问题；资料中没有的信息不要编造。";
+
+    private final UserIdentityCache userIdentityCache;
+    private final RuleEngine ruleEngine;
+    private final KnowledgeSearchService knowledgeSearchService;
+    private final MessageRepository messageRepository;
+    private final AsyncLogSink asyncLogSink;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorFactory executorFactory;
+    private final ObjectProvider<LlmGateway> llmGateway;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LatencyTracker latencyTracker;
+    private final SemanticAnswerCache semanticAnswerCache;
+
+    @Value("${reply.deadline-ms:1800}")
+    private long deadlineMs;
+
+    @Value("${reply.timeout.identity-ms:200}")
+    private long identityTimeoutMs;
+
+    @Value("${reply.timeout.rules-ms:100}")
+    private long rulesTimeoutMs;
+
+    @Value("${reply.timeout.knowledge-ms:1200}")
+    private long knowledgeTimeoutMs;
+
+    @Value("${reply.timeout.history-ms:300}")
+    private long historyTimeoutMs;
+
+    @Value("${reply.history.size:10}")
+    private int historySize;
+
+    @Value("${reply.knowledge.top-k:5}")
+    private int knowledgeTopK;
+
+    @Value("${reply.knowledge.min-score:0.5}")
+    private float knowledgeMinScore;
+
+    @Value("${reply.fanout.threads:64}")
+    private int fanoutThreads;
+
+    @Value("${reply.fanout.queue-capacity:256}")
+    private int fanoutQueueCapacity;
+
+    private ExecutorService fanoutExecutor;
+
+    public ReplyOrchestrator(UserIdentityCache userIdentityCache,
+                             RuleEngine ruleEngine,
+                             KnowledgeSearchService knowledgeSearchService,
+                             MessageRepository messageRepository,
+                             AsyncLogSink asyncLogSink,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             ExecutorFactory executorFactory,
+                             ObjectProvider<LlmGateway> llmGateway,
+                             AnalyticsRollupService analyticsRollupService,
+                             LatencyTracker latencyTracker,
+                             SemanticAnswerCache semanticAnswerCache) {
+        this.userIdentityCache = userIdentityCache;
+        this.ruleEngine = ruleEngine;
+        this.knowledgeSearchService = knowledgeSearchService;
+        this.messageRepository = messageRepository;
+        this.asyncLogSink = asyncLogSink;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.executorFactory = executorFactory;
+        this.llmGateway = llmGateway;
+        this.analyticsRollupService = analyticsRollupService;
+        this.latencyTracker = latencyTracker;
+        this.semanticAnswerCache = semanticAnswerCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 有界队列: 过载时直接降级, 不积压注定超时的任务
+        fanoutExecutor = executorFactory.bounded("reply-fanout", fanoutThreads, fanoutQueueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanoutExecutor.shutdownNow();
+    }
+
+    /**
+     * 生成一次自动应答
+     * @param request 应答请求
+     * @return 应答结果（含各阶段耗时）, 不会因依赖超时而抛出异常
+     */
+    public ReplyResult reply(ReplyRequest request) {
+        return reply(request, null);
+    }
+
+    /**
+     * 生成一次自动应答, 应答文本产生时即通过 onDelta 分段推送（流式响应使用）
+     * @param request 应答请求
+     * @param onDelta 应答片段回调, 为 null 时不推送; 所有片段依次拼接即为完整应答
+     * @return 应答结果（含完整应答文本与各阶段耗时）
+     */
+    public ReplyResult reply(ReplyRequest request, Consumer<String> onDelta) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        ReplyTrace trace = new ReplyTrace(startNanos);
+
+        CompletableFuture<Optional<User>> identity = stage(STAGE_IDENTITY, identityTimeoutMs, deadlineNanos, trace,
+                () -> identify(request), Optional.empty());
+        // 知识检索需要按角色查语义缓存, 与规则匹配一样在身份返回后启动, 不占用线程等待身份结果
+        CompletableFuture<KnowledgeLookup> knowledge = identity.thenCompose(user ->
+                stage(STAGE_KNOWLEDGE, knowledgeTimeoutMs, deadlineNanos, trace,
+                        () -> lookupKnowledge(request, user.orElse(null)), KnowledgeLookup.NONE));
+        CompletableFuture<Optional<RuleEngine.CompiledRule>> rule = identity.thenCompose(user ->
+                stage(STAGE_RULES, rulesTimeoutMs, deadlineNanos, trace,
+                        () -> ruleEngine.match(ruleContext(request, user.orElse(null))), Optional.empty()));
+        CompletableFuture<List<Message>> history = stage(STAGE_HISTORY, historyTimeoutMs, deadlineNanos, trace,
+                () -> recentHistory(request), Collections.emptyList());
+
+        try {
+            CompletableFuture.allOf(knowledge, rule, history)
+                    .get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 各阶段都会在超时后以降级值完成, 这里只是兜底
+        }
+
+        long composeStart = System.nanoTime();
+        KnowledgeLookup lookup = knowledge.getNow(KnowledgeLookup.NONE);
+        ReplyResult result = compose(request,
+                identity.getNow(Optional.empty()).orElse(null),
+                rule.getNow(Optional.empty()).orElse(null),
+                lookup,
+                history.getNow(Collections.emptyList()),
+                onDelta, trace);
+        trace.record(STAGE_COMPOSE, OUTCOME_OK, composeStart);
+        remember(result, lookup, trace);
+        for (String stage : List.of(STAGE_IDENTITY, STAGE_KNOWLEDGE, STAGE_RULES, STAGE_HISTORY)) {
+            trace.recordIfAbsent(stage, OUTCOME_SKIPPED);
+        }
+
+        result.totalNanos = System.nanoTime() - startNanos;
+        result.totalMs = result.totalNanos / 1_000_000;
+        result.stages = trace.snapshot();
+        record(request, result);
+        return result;
+    }
+
+    /**
+     * 运行一个依赖阶段: 在超时（取阶段超时与剩余总时间的较小值）或失败时以降级值完成, 先到的结果生效
+     * 排队期间已超时的任务出队后直接返回, 不再访问下游; 执行器队列满时立即降级
+     */
+    private <T> CompletableFuture<T> stage(String name, long timeoutMs, long deadlineNanos, ReplyTrace trace,
+                                           Supplier<T> task, T fallback) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        long budgetNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(timeoutMs), deadlineNanos - System.nanoTime());
+        long start = System.nanoTime();
+        if (budgetNanos <= 0) {
+            trace.record(name, OUTCOME_TIMEOUT, start);
+            result.complete(fallback);
+            return result;
+        }
+        try {
+            fanoutExecutor.execute(() -> {
+                if (settled.get()) {
+                    return;
+                }
+                T value;
+                try {
+                    value = task.get();
+                } catch (RuntimeException e) {
+                    if (settled.compareAndSet(false, true)) {
+                        System.err.println("Reply stage " + name + " failed: " + e.getMessage());
+                        trace.record(name, OUTCOME_ERROR, start);
+                        result.complete(fallback);
+                    }
+                    return;
+                }
+                if (settled.compareAndSet(false, true)) {
+                    trace.record(name, OUTCOME_OK, start);
+                    result.complete(value);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            trace.record(name, OUTCOME_ERROR, start);
+            result.complete(fallback);
+            return result;
+        }
+        CompletableFuture.delayedExecutor(budgetNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (settled.compareAndSet(false, true)) {
+                trace.record(name, OUTCOME_TIMEOUT, start);
+                result.complete(fallback);
+            }
+        });
+        return result;
+    }
+
+    private Optional<User> identify(ReplyRequest request) {
+        if (request.getUserId() != null) {
+            Optional<User> user = userIdentityCache.findByUserId(request.getUserId());
+            if (user.isPresent() || request.getPhone() == null) {
+                return user;
+            }
+        }
+        return request.getPhone() == null ? Optional.empty() : userIdentityCache.findByPhone(request.getPhone());
+    }
+
+    /**
+     * 问题向量化后先按用户角色查语义答案缓存, 命中时不再检索知识库
+     * 角色取自身份识别阶段的结果（身份超时或失败时按访客）
+     */
+    private KnowledgeLookup lookupKnowledge(ReplyRequest request, User user) {
+        if (request.getQuestion() == null || request.getQuestion().isBlank()) {
+            return KnowledgeLookup.NONE;
+        }
+        List<Float> embedding = knowledgeSearchService.embed(request.getQuestion());
+        Optional<SemanticAnswerCache.CacheEntry> cached = semanticAnswerCache.lookup(
+                role(user), embedding);
+        if (cached.isPresent()) {
+            return new KnowledgeLookup(embedding, cached.get(), Collections.emptyList());
+        }
+        return new KnowledgeLookup(embedding, null, knowledgeSearchService.search(embedding, knowledgeTopK));
+    }
+
+    private RuleContext ruleContext(ReplyRequest request, User user) {
+        RuleContext context = new RuleContext(role(user), request.getQuestionType(), request.getQuestion());
+        context.setVip(user != null && user.isVip());
+        context.setChannel(request.getChannel());
+        return context;
+    }
+
+    /**
+     * 用户角色, 未识别的用户按访客
+     */
+    public static String role(User user) {
+        return user == null || user.getRole() == null ? GUEST_ROLE : user.getRole();
+    }
+
+    // 新会话（无会话ID）没有历史
+    private List<Message> recentHistory(ReplyRequest request) {
+        if (request.getSessionId() == null) {
+            return Collections.emptyList();
+        }
+        List<Message> recent = new ArrayList<>(messageRepository.findRecent(request.getSessionId(),
+                PageRequest.of(0, historySize)));
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    private ReplyResult compose(ReplyRequest request, User user, RuleEngine.CompiledRule rule,
+                                KnowledgeLookup lookup, List<Message> history,
+                                Consumer<String> onDelta, ReplyTrace trace) {
+        List<KnowledgeSearchService.KnowledgeHit> knowledge = lookup.hits;
+        ReplyResult result = new ReplyResult();
+        result.user = user;
+        result.history = history;
+        result.knowledge = knowledge;
+        // 问题分类: 请求指定的类型, 否则取命中规则的类型
+        result.category = request.getQuestionType();
+        if (rule != null) {
+            result.ruleId = rule.getId();
+            if (result.category == null && !"*".equals(rule.getRuleType())) {
+                result.category = rule.getRuleType();
+            }
+            result.transferToHuman = Boolean.parseBoolean(rule.getActions().get("transfer"));
+        }
+        String ruleReply = rule == null ? null : rule.getActions().get("reply");
+        if (ruleReply != null && !ruleReply.isBlank()) {
+            result.answer = ruleReply;
+            result.source = SOURCE_RULE;
+        } else if (lookup.cached != null) {
+            result.answer = lookup.cached.getAnswer();
+            result.source = SOURCE_CACHE;
+        } else {
+            LlmGateway gateway = llmGateway.getIfAvailable();
+            if (gateway != null && generate(gateway, request, knowledge, history, onDelta, trace, result)) {
+                return result;
+            }
+            if (!knowledge.isEmpty() && knowledge.get(0).getScore() >= knowledgeMinScore
+                    && knowledge.get(0).getContent() != null) {
+                result.answer = knowledge.get(0).getContent();
+                result.source = SOURCE_KNOWLEDGE;
+            } else {
+                result.answer = FALLBACK_ANSWER;
+                result.source = SOURCE_FALLBACK;
+                result.transferToHuman = true;
+            }
+        }
+        if (onDelta != null) {
+            onDelta.accept(result.answer);
+        }
+        return result;
+    }
+
+    /**
+     * 调用大模型生成应答, 片段产生即推送; 未产生任何片段就失败时返回 false, 由调用方降级到知识库或兜底应答
+     */
+    private boolean generate(LlmGateway gateway, ReplyRequest request, List<KnowledgeSearchService.KnowledgeHit> knowledge,
+                             List<Message> history, Consumer<String> onDelta, ReplyTrace trace, ReplyResult result) {
+        LlmGateway.LlmRequest llmRequest = new LlmGateway.LlmRequest();
+        StringBuilder system = new StringBuilder(SYSTEM_PROMPT);
+        for (KnowledgeSearchService.KnowledgeHit hit : knowledge) {
+            if (hit.getScore() >= knowledgeMinScore && hit.getContent() != null) {
+                system.append("\n参考资料: ").append(hit.getContent());
+            }
+        }
+        llmRequest.addMessage("system", system.toString());
+        for (Message message : history) {
+            llmRequest.addMessage(MessageService.SENDER_USER.equals(message.getSender()) ? "user" : "assistant",
+                    message.getContent());
+        }
+        llmRequest.addMessage("user", request.getQuestion());
+
+        StringBuilder streamed = new StringBuilder();
+        long start = System.nanoTime();
+        try {
+            LlmGateway.LlmResponse response = gateway.generate(llmRequest, delta -> {
+                streamed.append(delta);
+                if (onDelta != null) {
+                    onDelta.accept(delta);
+                }
+            });
+            trace.record(STAGE_GENERATE, OUTCOME_OK, start);
+            result.answer = response.getContent();
+            result.source = SOURCE_LLM;
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("LLM generation failed: " + e.getMessage());
+            trace.record(STAGE_GENERATE, OUTCOME_ERROR, start);
+            if (streamed.length() == 0) {
+                return false;
+            }
+            // 已推送部分内容, 以已推送的文本作为应答, 保证保存的消息与用户看到的一致
+            result.answer = streamed.toString();
+            result.source = SOURCE_LLM;
+            return true;
+        }
+    }
+
+    /**
+     * 大模型完整生成或知识库直接作答的应答写入语义答案缓存
+     * 带历史消息生成的应答依赖会话上下文, 大模型中途失败的部分应答不完整, 均不缓存
+     */
+    private void remember(ReplyResult result, KnowledgeLookup lookup, ReplyTrace trace) {
+        if (lookup.embedding == null || !result.history.isEmpty()) {
+            return;
+        }
+        boolean generated = SOURCE_LLM.equals(result.source) && OUTCOME_OK.equals(trace.outcome(STAGE_GENERATE));
+        if (!generated && !SOURCE_KNOWLEDGE.equals(result.source)) {
+            return;
+        }
+        Set<Long> documentIds = new HashSet<>();
+        for (KnowledgeSearchService.KnowledgeHit hit : lookup.hits) {
+            if (hit.getScore() >= knowledgeMinScore && hit.getDocumentId() != null) {
+                documentIds.add(hit.getDocumentId());
+            }
+        }
+        semanticAnswerCache.put(role(result.user), lookup.embedding, result.answer, documentIds);
+    }
+
+    private void record(ReplyRequest request, ReplyResult result) {
+        String role = role(result.user);
+        for (StageTiming timing : result.stages.values()) {
+            Timer.builder("reply.stage.latency")
+                    .tag("stage", timing.getStage())
+                    .tag("outcome", timing.getOutcome())
+                    .register(meterRegistry)
+                    .record(timing.getMillis(), TimeUnit.MILLISECONDS);
+            // 跳过的阶段没有实际耗时, 不计入分位统计
+            if (!OUTCOME_SKIPPED.equals(timing.getOutcome())) {
+                latencyTracker.record(timing.getStage(), request.getChannel(), role, timing.nanos());
+            }
+        }
+        latencyTracker.record(LatencyTracker.STAGE_TOTAL, request.getChannel(), role, result.totalNanos);
+        Timer.builder("reply.latency")
+                .tag("source", result.source)
+                .tag("degraded", String.valueOf(result.isDegraded()))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(result.totalMs, TimeUnit.MILLISECONDS);
+
+        analyticsRollupService.recordReply(request.getChannel(), role, result.category, result.source,
+                result.totalMs, result.isDegraded(), result.transferToHuman);
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("source", result.source);
+        details.put("ruleId", result.ruleId);
+        details.put("totalMs", result.totalMs);
+        details.put("stages", result.stages.values());
+        try {
+            asyncLogSink.log(result.user == null ? null : result.user.getId(), request.getSessionId(), "AI_REPLY",
+                    objectMapper.writeValueAsString(details), request.getIpAddress());
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed to serialize reply trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 阶段耗时记录, 每个阶段只记录最先到达的结果
+     */
+    private static final class ReplyTrace {
+        private final long startNanos;
+        private final Map<String, StageTiming> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        private ReplyTrace(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void record(String stage, String outcome, long stageStartNanos) {
+            long now = System.nanoTime();
+            stages.putIfAbsent(stage, new StageTiming(stage, outcome,
+                    (stageStartNanos - startNanos) / 1_000_000, now - stageStartNanos));
+        }
+
+        void recordIfAbsent(String stage, String outcome) {
+            stages.putIfAbsent(stage, new StageTiming(stage, outcome, 0, 0));
+        }
+
+        String outcome(String stage) {
+            StageTiming timing = stages.get(stage);
+            return timing == null ? null : timing.getOutcome();
+        }
+
+        Map<String, StageTiming> snapshot() {
+            synchronized (stages) {
+                return new LinkedHashMap<>(stages);
+            }
+        }
+    }
+
+    /**
+     * 知识阶段结果: 问题向量, 语义缓存命中的条目（未命中为 null）及知识库命中片段
+     */
+    private static final class KnowledgeLookup {
+        private static final KnowledgeLookup NONE = new KnowledgeLookup(null, null, Collections.emptyList());
+
+        private final List<Float> embedding;
+        private final SemanticAnswerCache.CacheEntry cached;
+        private final List<KnowledgeSearchService.KnowledgeHit> hits;
+
+        private KnowledgeLookup(List<Float> embedding, SemanticAnswerCache.CacheEntry cached,
+                                List<KnowledgeSearchService.KnowledgeHit> hits) {
+            this.embedding = embedding;
+            this.cached = cached;
+            this.hits = hits;
+        }
+    }
+
+    /**
+     * 单个阶段的耗时
+     */
+    public static class StageTiming {
+        private final String stage;
+        private final String outcome;
+        private final long offsetMs;
+        private final long nanos;
+
+        public StageTiming(String stage, String outcome, long offsetMs, long nanos) {
+            this.stage = stage;
+            this.outcome = outcome;
+            this.offsetMs = offsetMs;
+            this.nanos = nanos;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        /** 相对应答开始的启动时间 */
+        public long getOffsetMs() {
+            return offsetMs;
+        }
+
+        public long getMillis() {
+            return nanos / 1_000_000;
+        }
+
+        /** 阶段耗时（纳秒, 用于延迟直方图, 不输出到应答日志） */
+        long nanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * 应答请求
+     */
+    public static class ReplyRequest {
+        private Long sessionId;
+        private String userId;
+        private String phone;
+        private String channel;
+        private Long channelId;
+        private String question;
+        private String questionType;
+        private String ipAddress;
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public void setUserId(String userId) {
+            this.userId = userId;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
+
+        public Long getChannelId() {
+            return channelId;
+        }
+
+        public void setChannelId(Long channelId) {
+            this.channelId = channelId;
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public void setQuestion(String question) {
+            this.question = question;
+        }
+
+        public String getQuestionType() {
+            return questionType;
+        }
+
+        public void setQuestionType(String questionType) {
+            this.questionType = questionType;
+        }
+
+        public String getIpAddress() {
+            return ipAddress;
+        }
+
+        public void setIpAddress(String ipAddress) {
+            this.ipAddress = ipAddress;
+        }
+    }
+
+    /**
+     * 应答结果
+     */
+    public static class ReplyResult {
+        private String answer;
+        private String source;
+        private Long ruleId;
+        private String category;
+        private boolean transferToHuman;
+        private User user;
+        private List<Message> history = Collections.emptyList();
+        private List<KnowledgeSearchService.KnowledgeHit> knowledge = Collections.emptyList();
+        private Map<String, StageTiming> stages = Collections.emptyMap();
+        private long totalMs;
+        private long totalNanos;
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public Long getRuleId() {
+            return ruleId;
+        }
+
+        /**
+         * 问题分类, 未知时为 null
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        public boolean isTransferToHuman() {
+            return transferToHuman;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public List<Message> getHistory() {
+            return history;
+        }
+
+        public List<KnowledgeSearchService.KnowledgeHit> getKnowledge() {
+            return knowledge;
+        }
+
+        public Map<String, StageTiming> getStages() {
+            return stages;
+        }
+
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        /**
+         * 是否有依赖超时或失败而降级
+         */
+        public boolean isDegraded() {
+            return stages.values().stream().anyMatch(timing -> !OUTCOME_OK.equals(timing.getOutcome()));
+        }
+    }
+}
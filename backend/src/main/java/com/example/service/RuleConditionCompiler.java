@@ -0,0 +1,238 @@
+package com.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 服务规则条件/动作编译器
+ * <p>
+ * conditions 支持两种写法:
+ * <ul>
+ *     <li>表达式: {@code questionType == refund && vip == true || question ~ 退费|退款},
+ *     {@code ||} 优先级低于 {@code &&}（{@code ;} 等同 {@code &&}）;
+ *     运算符: == = != &gt; &gt;= &lt; &lt;= contains in ~（~ 表示问题内容包含任一关键词）</li>
+ *     <li>JSON: {@code {"questionType":"refund","keywords":["退费","退款"]}}, 数组值表示 in, keywords 表示关键词匹配</li>
+ * </ul>
+ * 空条件视为恒真。actions 支持 {@code key=value;key2=value2} 或 JSON 对象。
+ */
+public final class RuleConditionCompiler {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Pattern CLAUSE = Pattern.compile(
+            "^\\s*([A-Za-z_][\\w.]*)(?:\\s*(==|!=|>=|<=|=|>|<|~)\\s*|\\s+(contains|in)\\s+)(.*?)\\s*$");
+
+    private RuleConditionCompiler() {
+    }
+
+    /**
+     * 编译条件
+     * @param conditions 规则条件原文
+     * @return 编译后的判定函数
+     * @throws IllegalArgumentException 条件无法解析时
+     */
+    public static Predicate<RuleContext> compile(String conditions) {
+        if (conditions == null || conditions.isBlank()) {
+            return context -> true;
+        }
+        String trimmed = conditions.trim();
+        if (trimmed.startsWith("{")) {
+            return compileJson(trimmed);
+        }
+
+        Predicate<RuleContext> any = null;
+        for (String group : trimmed.split("\\|\\|")) {
+            Predicate<RuleContext> all = null;
+            for (String clause : group.split("&&|;")) {
+                if (clause.isBlank()) {
+                    continue;
+                }
+                Predicate<RuleContext> predicate = compileClause(clause);
+                all = all == null ? predicate : all.and(predicate);
+            }
+            if (all == null) {
+                throw new IllegalArgumentException("empty condition group in: " + conditions);
+            }
+            any = any == null ? all : any.or(all);
+        }
+        return any;
+    }
+
+    /**
+     * 解析动作
+     * @param actions 规则动作原文
+     * @return 动作键值对（保持原有顺序）
+     */
+    public static Map<String, String> parseActions(String actions) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (actions == null || actions.isBlank()) {
+            return result;
+        }
+        String trimmed = actions.trim();
+        if (trimmed.startsWith("{")) {
+            try {
+                Iterator<Map.Entry<String, JsonNode>> fields = OBJECT_MAPPER.readTree(trimmed).fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    result.put(field.getKey(), field.getValue().isTextual() ? field.getValue().asText() : field.getValue().toString());
+                }
+                return result;
+            } catch (Exception e) {
+                throw new IllegalArgumentException("invalid actions json: " + e.getMessage(), e);
+            }
+        }
+        for (String pair : trimmed.split(";")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                result.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+            } else if (!pair.isBlank()) {
+                // 非键值形式的动作原样保留为回复内容
+                result.putIfAbsent("reply", pair.trim());
+            }
+        }
+        return result;
+    }
+
+    private static Predicate<RuleContext> compileJson(String json) {
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("invalid conditions json: " + e.getMessage(), e);
+        }
+        Predicate<RuleContext> all = context -> true;
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            List<String> values = new ArrayList<>();
+            if (field.getValue().isArray()) {
+                field.getValue().forEach(value -> values.add(value.asText()));
+            } else {
+                values.add(field.getValue().asText());
+            }
+            if ("keywords".equals(field.getKey())) {
+                all = all.and(keywords("question", values));
+            } else {
+                all = all.and(in(field.getKey(), values));
+            }
+        }
+        return all;
+    }
+
+    private static Predicate<RuleContext> compileClause(String clause) {
+        Matcher matcher = CLAUSE.matcher(clause);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("invalid condition clause: " + clause.trim());
+        }
+        String field = matcher.group(1);
+        String operator = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+        String value = unquote(matcher.group(4));
+
+        switch (operator) {
+            case "==":
+            case "=":
+                return context -> value.equalsIgnoreCase(nullToEmpty(context.get(field)));
+            case "!=":
+                return context -> !value.equalsIgnoreCase(nullToEmpty(context.get(field)));
+            case "contains": {
+                String needle = value.toLowerCase(Locale.ROOT);
+                return context -> nullToEmpty(context.get(field)).toLowerCase(Locale.ROOT).contains(needle);
+            }
+            case "in":
+                return in(field, splitList(value));
+            case "~":
+                return keywords(field, splitList(value));
+            default:
+                return compare(field, operator, value);
+        }
+    }
+
+    private static Predicate<RuleContext> in(String field, List<String> values) {
+        List<String> lowered = new ArrayList<>(values.size());
+        values.forEach(value -> lowered.add(value.toLowerCase(Locale.ROOT)));
+        return context -> lowered.contains(nullToEmpty(context.get(field)).toLowerCase(Locale.ROOT));
+    }
+
+    private static Predicate<RuleContext> keywords(String field, List<String> keywords) {
+        List<String> lowered = new ArrayList<>(keywords.size());
+        keywords.forEach(keyword -> lowered.add(keyword.toLowerCase(Locale.ROOT)));
+        return context -> {
+            String text = nullToEmpty(context.get(field)).toLowerCase(Locale.ROOT);
+            for (String keyword : lowered) {
+                if (text.contains(keyword)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Predicate<RuleContext> compare(String field, String operator, String value) {
+        double expected;
+        try {
+            expected = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("operator " + operator + " requires a number: " + value);
+        }
+        return context -> {
+            String actual = context.get(field);
+            if (actual == null) {
+                return false;
+            }
+            double number;
+            try {
+                number = Double.parseDouble(actual);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            switch (operator) {
+                case ">":
+                    return number > expected;
+                case ">=":
+                    return number >= expected;
+                case "<":
+                    return number < expected;
+                default:
+                    return number <= expected;
+            }
+        };
+    }
+
+    private static List<String> splitList(String value) {
+        String body = value;
+        if (body.startsWith("[") && body.endsWith("]")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        List<String> values = new ArrayList<>();
+        for (String part : body.split("[,|，]")) {
+            String item = unquote(part.trim());
+            if (!item.isEmpty()) {
+                values.add(item);
+            }
+        }
+        return values;
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2
+                && (trimmed.startsWith("\"") && trimmed.endsWith("\"") || trimmed.startsWith("'") && trimmed.endsWith("'"))) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 规则匹配上下文（一条消息对应一个上下文）
+ */
+public class RuleContext {
+
+    private String userRole;
+    private String questionType;
+    private String question;
+    private boolean vip;
+    private String channel;
+    private final Map<String, String> attributes = new HashMap<>();
+
+    public RuleContext() {
+    }
+
+    public RuleContext(String userRole, String questionType, String question) {
+        this.userRole = userRole;
+        this.questionType = questionType;
+        this.question = question;
+    }
+
+    /**
+     * 按字段名取值, 供编译后的条件使用; 未知字段从扩展属性中查找
+     */
+    public String get(String field) {
+        switch (field) {
+            case "role":
+            case "userRole":
+                return userRole;
+            case "questionType":
+            case "ruleType":
+            case "type":
+                return questionType;
+            case "question":
+            case "content":
+                return question;
+            case "vip":
+            case "isVip":
+                return String.valueOf(vip);
+            case "channel":
+                return channel;
+            default:
+                return attributes.get(field);
+        }
+    }
+
+    public String getUserRole() {
+        return userRole;
+    }
+
+    public void setUserRole(String userRole) {
+        this.userRole = userRole;
+    }
+
+    public String getQuestionType() {
+        return questionType;
+    }
+
+    public void setQuestionType(String questionType) {
+        this.questionType = questionType;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public boolean isVip() {
+        return vip;
+    }
+
+    public void setVip(boolean vip) {
+        this.vip = vip;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+}
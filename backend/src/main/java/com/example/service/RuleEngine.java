@@ -0,0 +1,253 @@
+package com.example.service;
+
+import com.example.model.ServiceRule;
+import com.example.repository.ServiceRuleRepository;
+import com.example.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * 服务规则匹配引擎
+ * 规则的 conditions/actions 只在加载时编译一次, 并按 userRole + ruleType 建立不可变索引快照;
+ * 匹配时按 priority 从高到低依次判定, 命中即返回, 不访问数据库。
+ * 规则变更后调用 {@link #publishChange()} 通知所有节点重建快照并原子替换。
+ */
+@Service
+public class RuleEngine {
+
+    /** userRole / ruleType 为空、"*" 或 "all" 的规则对所有角色/类型生效 */
+    private static final String WILDCARD = "*";
+    /** 问题类型未知时, 匹配该角色下所有类型的规则 */
+    private static final String ANY_TYPE = "\u0000any";
+    private static final String CHANGE_CHANNEL = "rules:changed";
+
+    private final ServiceRuleRepository serviceRuleRepository;
+    private final RedisUtil redisUtil;
+
+    private final AtomicReference<RuleSnapshot> snapshot = new AtomicReference<>(RuleSnapshot.EMPTY);
+
+    public RuleEngine(ServiceRuleRepository serviceRuleRepository, RedisUtil redisUtil) {
+        this.serviceRuleRepository = serviceRuleRepository;
+        this.redisUtil = redisUtil;
+    }
+
+    @PostConstruct
+    public void init() {
+        redisUtil.subscribe(CHANGE_CHANNEL, message -> refresh());
+        refresh();
+    }
+
+    /**
+     * 从数据库重新加载规则并原子替换快照（定时兜底刷新）
+     */
+    @Scheduled(fixedDelayString = "${rule.engine.refresh-interval-ms:60000}",
+            initialDelayString = "${rule.engine.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            snapshot.set(RuleSnapshot.build(serviceRuleRepository.findAll()));
+        } catch (Exception e) {
+            // 加载失败时保留旧快照继续服务
+            System.err.println("Failed to reload service rules: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 规则新增/修改/删除后调用, 所有节点（含本节点）重建快照
+     */
+    public void publishChange() {
+        refresh();
+        try {
+            redisUtil.publish(CHANGE_CHANNEL, System.currentTimeMillis());
+        } catch (Exception e) {
+            System.err.println("Failed to publish rule change: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 匹配优先级最高的一条规则
+     */
+    public Optional<CompiledRule> match(RuleContext context) {
+        for (CompiledRule rule : snapshot.get().candidates(context)) {
+            if (rule.matches(context)) {
+                return Optional.of(rule);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 按优先级返回最多 limit 条命中的规则
+     */
+    public List<CompiledRule> matchAll(RuleContext context, int limit) {
+        List<CompiledRule> matched = new ArrayList<>();
+        for (CompiledRule rule : snapshot.get().candidates(context)) {
+            if (matched.size() >= limit) {
+                break;
+            }
+            if (rule.matches(context)) {
+                matched.add(rule);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 当前快照中的规则数
+     */
+    public int size() {
+        return snapshot.get().size;
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.isBlank() || WILDCARD.equals(value) || "all".equalsIgnoreCase(value)) {
+            return WILDCARD;
+        }
+        return value;
+    }
+
+    /**
+     * 编译后的规则
+     */
+    public static final class CompiledRule {
+        private final Long id;
+        private final String ruleName;
+        private final String userRole;
+        private final String ruleType;
+        private final int priority;
+        private final Predicate<RuleContext> condition;
+        private final Map<String, String> actions;
+
+        private CompiledRule(ServiceRule rule) {
+            this.id = rule.getId();
+            this.ruleName = rule.getRuleName();
+            this.userRole = normalize(rule.getUserRole());
+            this.ruleType = normalize(rule.getRuleType());
+            this.priority = rule.getPriority() == null ? 0 : rule.getPriority();
+            Predicate<RuleContext> compiled;
+            Map<String, String> parsedActions;
+            try {
+                compiled = RuleConditionCompiler.compile(rule.getConditions());
+                parsedActions = Collections.unmodifiableMap(RuleConditionCompiler.parseActions(rule.getActions()));
+            } catch (IllegalArgumentException e) {
+                // 无法解析的规则永不命中, 避免错误规则影响其他规则
+                System.err.println("Invalid service rule " + rule.getId() + " (" + rule.getRuleName() + "): " + e.getMessage());
+                compiled = context -> false;
+                parsedActions = Collections.emptyMap();
+            }
+            this.condition = compiled;
+            this.actions = parsedActions;
+        }
+
+        boolean matches(RuleContext context) {
+            return condition.test(context);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public String getUserRole() {
+            return userRole;
+        }
+
+        public String getRuleType() {
+            return ruleType;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public Map<String, String> getActions() {
+            return actions;
+        }
+    }
+
+    /**
+     * 不可变规则快照: 预先计算每个 (角色, 类型) 组合的候选规则列表（已含通配规则并按优先级排序）
+     */
+    private static final class RuleSnapshot {
+
+        static final RuleSnapshot EMPTY = new RuleSnapshot(Collections.emptyMap(), Collections.emptySet(), Collections.emptySet(), 0);
+
+        private final Map<String, List<CompiledRule>> index;
+        private final Set<String> roles;
+        private final Set<String> types;
+        private final int size;
+
+        private RuleSnapshot(Map<String, List<CompiledRule>> index, Set<String> roles, Set<String> types, int size) {
+            this.index = index;
+            this.roles = roles;
+            this.types = types;
+            this.size = size;
+        }
+
+        static RuleSnapshot build(List<ServiceRule> rules) {
+            List<CompiledRule> compiled = new ArrayList<>(rules.size());
+            Set<String> roles = new HashSet<>();
+            Set<String> types = new HashSet<>();
+            for (ServiceRule rule : rules) {
+                CompiledRule compiledRule = new CompiledRule(rule);
+                compiled.add(compiledRule);
+                roles.add(compiledRule.getUserRole());
+                types.add(compiledRule.getRuleType());
+            }
+            roles.add(WILDCARD);
+            types.add(WILDCARD);
+            compiled.sort(Comparator.comparingInt(CompiledRule::getPriority).reversed()
+                    .thenComparing(rule -> rule.getId() == null ? Long.MAX_VALUE : rule.getId()));
+
+            Set<String> typeKeys = new HashSet<>(types);
+            typeKeys.add(ANY_TYPE);
+            Map<String, List<CompiledRule>> index = new HashMap<>();
+            for (String role : roles) {
+                for (String type : typeKeys) {
+                    List<CompiledRule> candidates = new ArrayList<>();
+                    for (CompiledRule rule : compiled) {
+                        boolean roleMatches = WILDCARD.equals(rule.getUserRole()) || rule.getUserRole().equals(role);
+                        boolean typeMatches = ANY_TYPE.equals(type) || WILDCARD.equals(rule.getRuleType()) || rule.getRuleType().equals(type);
+                        if (roleMatches && typeMatches) {
+                            candidates.add(rule);
+                        }
+                    }
+                    index.put(key(role, type), Collections.unmodifiableList(candidates));
+                }
+            }
+            return new RuleSnapshot(Collections.unmodifiableMap(index), Collections.unmodifiableSet(roles),
+                    Collections.unmodifiableSet(types), compiled.size());
+        }
+
+        List<CompiledRule> candidates(RuleContext context) {
+            String role = context.getUserRole() != null && roles.contains(context.getUserRole()) ? context.getUserRole() : WILDCARD;
+            String type;
+            if (context.getQuestionType() == null) {
+                type = ANY_TYPE;
+            } else {
+                type = types.contains(context.getQuestionType()) ? context.getQuestionType() : WILDCARD;
+            }
+            List<CompiledRule> candidates = index.get(key(role, type));
+            return candidates != null ? candidates : Collections.emptyList();
+        }
+
+        private static String key(String role, String type) {
+            return role + '\u0001' + type;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package com.example.service;
+
+import com.example.util.RedisUtil;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 语义答案缓存
+ * 按用户角色分区保存近期问题向量及最终答案, 新问题与已缓存问题的余弦相似度达到阈值时直接复用答案。
+ * 进程内使用随机超平面 LSH 做近似近邻检索, 条目同时持久化到 Redis 哈希, 重启后恢复;
+ * 知识文档变更时按文档ID失效相关条目, 并通过发布/订阅通知其他节点; 过期条目由定时任务从内存和 Redis 中清除。
+ */
+@Service
+public class SemanticAnswerCache {
+
+    private static final String REDIS_KEY = "semantic-cache:entries";
+    private static final String EVENT_CHANNEL = "semantic-cache:events";
+    private static final String ANONYMOUS_ROLE = "anonymous";
+    private static final long HYPERPLANE_SEED = 20240601L;
+
+    private final RedisUtil redisUtil;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${semantic-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${semantic-cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    @Value("${semantic-cache.max-entries-per-role:5000}")
+    private int maxEntriesPerRole;
+
+    @Value("${semantic-cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${semantic-cache.lsh.tables:6}")
+    private int lshTables;
+
+    @Value("${semantic-cache.lsh.bits:10}")
+    private int lshBits;
+
+    private final Map<String, RolePartition> partitions = new ConcurrentHashMap<>();
+    private Counter hits;
+    private Counter misses;
+
+    public SemanticAnswerCache(RedisUtil redisUtil, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("semantic.cache.lookups").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("semantic.cache.lookups").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("semantic.cache.entries", partitions,
+                map -> map.values().stream().mapToInt(RolePartition::size).sum());
+        redisUtil.subscribe(EVENT_CHANNEL, this::onEvent);
+    }
+
+    /**
+     * 启动后从 Redis 恢复未过期的条目
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int restored = 0;
+            List<Object> expired = new ArrayList<>();
+            for (Map.Entry<Object, Object> field : redisUtil.hashGetAll(REDIS_KEY).entrySet()) {
+                if (!(field.getValue() instanceof CacheEntry entry)) {
+                    continue;
+                }
+                if (isExpired(entry)) {
+                    expired.add(field.getKey());
+                } else {
+                    partition(entry.getRole()).add(entry);
+                    restored++;
+                }
+            }
+            if (!expired.isEmpty()) {
+                redisUtil.hashDelete(REDIS_KEY, expired.toArray());
+            }
+            System.out.println("Semantic answer cache restored " + restored + " entries from redis");
+        } catch (Exception e) {
+            System.err.println("Failed to restore semantic answer cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查找语义相近的已缓存答案
+     * @param role 用户角色
+     * @param embedding 问题向量
+     * @return 命中的缓存条目
+     */
+    public Optional<CacheEntry> lookup(String role, List<Float> embedding) {
+        if (!enabled || embedding == null || embedding.isEmpty()) {
+            return Optional.empty();
+        }
+        RolePartition partition = partitions.get(normalizeRole(role));
+        Optional<CacheEntry> result = partition == null
+                ? Optional.empty()
+                : partition.nearest(normalize(embedding), similarityThreshold);
+        if (result.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * 缓存问题向量及其最终答案
+     * @param role 用户角色
+     * @param embedding 问题向量
+     * @param answer 最终答案
+     * @param documentIds 答案引用的知识文档ID, 用于文档变更时失效
+     */
+    public void put(String role, List<Float> embedding, String answer, Collection<Long> documentIds) {
+        if (!enabled || embedding == null || embedding.isEmpty() || answer == null) {
+            return;
+        }
+        CacheEntry entry = new CacheEntry(UUID.randomUUID().toString(), normalizeRole(role), normalize(embedding),
+                answer, documentIds == null ? new HashSet<>() : new HashSet<>(documentIds), System.currentTimeMillis());
+        List<CacheEntry> evicted = partition(entry.getRole()).add(entry);
+        try {
+            redisUtil.hashPut(REDIS_KEY, entry.getId(), entry);
+            removeFromRedis(evicted);
+            redisUtil.publish(EVENT_CHANNEL, CacheEvent.put(entry));
+        } catch (Exception e) {
+            System.err.println("Failed to persist semantic cache entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 知识文档变更后失效引用该文档的条目（全部节点）
+     */
+    public void invalidateDocument(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        removeFromRedis(invalidateLocal(documentId));
+        try {
+            redisUtil.publish(EVENT_CHANNEL, CacheEvent.invalidateDocument(documentId));
+        } catch (Exception e) {
+            System.err.println("Failed to publish semantic cache invalidation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 清空全部条目（全部节点）, 用于知识库整体重建
+     */
+    public void invalidateAll() {
+        partitions.clear();
+        try {
+            redisUtil.delete(REDIS_KEY);
+            redisUtil.publish(EVENT_CHANNEL, CacheEvent.invalidateAll());
+        } catch (Exception e) {
+            System.err.println("Failed to publish semantic cache invalidation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 定期清除过期条目: 本节点内存分区及 Redis 哈希中的对应字段
+     * 各节点内存分区都与 Redis 哈希同步（启动恢复 + 事件广播）, 按本地过期条目删除即可覆盖哈希中的过期字段
+     */
+    @Scheduled(fixedDelayString = "${semantic-cache.purge-interval-ms:60000}",
+            initialDelayString = "${semantic-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        List<CacheEntry> expired = new ArrayList<>();
+        for (RolePartition partition : partitions.values()) {
+            expired.addAll(partition.removeExpired());
+        }
+        removeFromRedis(expired);
+    }
+
+    private List<CacheEntry> invalidateLocal(Long documentId) {
+        List<CacheEntry> removed = new ArrayList<>();
+        for (RolePartition partition : partitions.values()) {
+            removed.addAll(partition.removeByDocument(documentId));
+        }
+        return removed;
+    }
+
+    private void onEvent(Object message) {
+        if (!(message instanceof CacheEvent event)) {
+            return;
+        }
+        switch (event.getType()) {
+            case CacheEvent.PUT -> {
+                CacheEntry entry = event.getEntry();
+                if (entry != null) {
+                    partition(entry.getRole()).addIfAbsent(entry);
+                }
+            }
+            case CacheEvent.INVALIDATE_DOCUMENT -> invalidateLocal(event.getDocumentId());
+            case CacheEvent.INVALIDATE_ALL -> partitions.clear();
+            default -> {
+            }
+        }
+    }
+
+    private void removeFromRedis(List<CacheEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            redisUtil.hashDelete(REDIS_KEY, entries.stream().map(CacheEntry::getId).toArray());
+        } catch (Exception e) {
+            System.err.println("Failed to remove semantic cache entries from redis: " + e.getMessage());
+        }
+    }
+
+    private RolePartition partition(String role) {
+        return partitions.computeIfAbsent(role, r -> new RolePartition());
+    }
+
+    private boolean isExpired(CacheEntry entry) {
+        return System.currentTimeMillis() - entry.getCreatedAt() > TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    private static String normalizeRole(String role) {
+        return role == null || role.isEmpty() ? ANONYMOUS_ROLE : role;
+    }
+
+    private static float[] normalize(List<Float> embedding) {
+        float[] vector = new float[embedding.size()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i);
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 单个角色的缓存分区: 插入顺序淘汰 + LSH 分桶索引
+     */
+    private class RolePartition {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>();
+        private final List<Map<Integer, Set<String>>> buckets = new ArrayList<>();
+        private final Map<Long, Set<String>> byDocument = new HashMap<>();
+        private float[][][] hyperplanes;
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Optional<CacheEntry> nearest(float[] query, double threshold) {
+            lock.readLock().lock();
+            try {
+                if (hyperplanes == null || hyperplanes[0][0].length != query.length) {
+                    return Optional.empty();
+                }
+                Set<String> candidates = new HashSet<>();
+                for (int table = 0; table < buckets.size(); table++) {
+                    Set<String> bucket = buckets.get(table).get(signature(table, query));
+                    if (bucket != null) {
+                        candidates.addAll(bucket);
+                    }
+                }
+                CacheEntry best = null;
+                double bestScore = threshold;
+                for (String id : candidates) {
+                    CacheEntry entry = entries.get(id);
+                    if (entry == null || isExpired(entry)) {
+                        continue;
+                    }
+                    double score = dot(query, entry.getEmbedding());
+                    if (score >= bestScore) {
+                        best = entry;
+                        bestScore = score;
+                    }
+                }
+                return Optional.ofNullable(best);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<CacheEntry> add(CacheEntry entry) {
+            lock.writeLock().lock();
+            try {
+                ensureHyperplanes(entry.getEmbedding().length);
+                if (hyperplanes[0][0].length != entry.getEmbedding().length) {
+                    // 向量维度变化（更换了向量模型）, 旧条目全部作废
+                    List<CacheEntry> dropped = new ArrayList<>(entries.values());
+                    clear();
+                    ensureHyperplanes(entry.getEmbedding().length);
+                    index(entry);
+                    return dropped;
+                }
+                index(entry);
+                List<CacheEntry> evicted = new ArrayList<>();
+                Iterator<CacheEntry> iterator = entries.values().iterator();
+                while (entries.size() > maxEntriesPerRole && iterator.hasNext()) {
+                    CacheEntry oldest = iterator.next();
+                    iterator.remove();
+                    unindex(oldest);
+                    evicted.add(oldest);
+                }
+                return evicted;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void addIfAbsent(CacheEntry entry) {
+            lock.readLock().lock();
+            try {
+                if (entries.containsKey(entry.getId())) {
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            add(entry);
+        }
+
+        List<CacheEntry> removeByDocument(Long documentId) {
+            lock.writeLock().lock();
+            try {
+                Set<String> ids = byDocument.remove(documentId);
+                if (ids == null) {
+                    return new ArrayList<>();
+                }
+                List<CacheEntry> removed = new ArrayList<>();
+                for (String id : ids) {
+                    CacheEntry entry = entries.remove(id);
+                    if (entry != null) {
+                        unindex(entry);
+                        removed.add(entry);
+                    }
+                }
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<CacheEntry> removeExpired() {
+            lock.writeLock().lock();
+            try {
+                List<CacheEntry> removed = new ArrayList<>();
+                // 从 Redis 恢复或由其他节点同步的条目不一定按创建时间排列, 需全量检查
+                Iterator<CacheEntry> iterator = entries.values().iterator();
+                while (iterator.hasNext()) {
+                    CacheEntry entry = iterator.next();
+                    if (isExpired(entry)) {
+                        iterator.remove();
+                        unindex(entry);
+                        removed.add(entry);
+                    }
+                }
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void index(CacheEntry entry) {
+            entries.put(entry.getId(), entry);
+            for (int table = 0; table < buckets.size(); table++) {
+                buckets.get(table).computeIfAbsent(signature(table, entry.getEmbedding()), k -> new HashSet<>()).add(entry.getId());
+            }
+            for (Long documentId : entry.getDocumentIds()) {
+                byDocument.computeIfAbsent(documentId, k -> new HashSet<>()).add(entry.getId());
+            }
+        }
+
+        private void unindex(CacheEntry entry) {
+            for (int table = 0; table < buckets.size(); table++) {
+                int signature = signature(table, entry.getEmbedding());
+                Set<String> bucket = buckets.get(table).get(signature);
+                if (bucket != null) {
+                    bucket.remove(entry.getId());
+                    if (bucket.isEmpty()) {
+                        buckets.get(table).remove(signature);
+                    }
+                }
+            }
+            for (Long documentId : entry.getDocumentIds()) {
+                Set<String> ids = byDocument.get(documentId);
+                if (ids != null) {
+                    ids.remove(entry.getId());
+                    if (ids.isEmpty()) {
+                        byDocument.remove(documentId);
+                    }
+                }
+            }
+        }
+
+        private void clear() {
+            entries.clear();
+            buckets.clear();
+            byDocument.clear();
+            hyperplanes = null;
+        }
+
+        private void ensureHyperplanes(int dimension) {
+            if (hyperplanes != null) {
+                return;
+            }
+            // 固定种子, 保证各节点、各次重启的分桶结果一致
+            Random random = new Random(HYPERPLANE_SEED);
+            hyperplanes = new float[lshTables][lshBits][dimension];
+            for (int table = 0; table < lshTables; table++) {
+                for (int bit = 0; bit < lshBits; bit++) {
+                    for (int i = 0; i < dimension; i++) {
+                        hyperplanes[table][bit][i] = (float) random.nextGaussian();
+                    }
+                }
+                buckets.add(new HashMap<>());
+            }
+        }
+
+        private int signature(int table, float[] vector) {
+            int signature = 0;
+            for (int bit = 0; bit < hyperplanes[table].length; bit++) {
+                if (dot(hyperplanes[table][bit], vector) >= 0) {
+                    signature |= 1 << bit;
+                }
+            }
+            return signature;
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static class CacheEntry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+        private final String role;
+        private final float[] embedding;
+        private final String answer;
+        private final Set<Long> documentIds;
+        private final long createdAt;
+
+        @JsonCreator
+        public CacheEntry(@JsonProperty("id") String id, @JsonProperty("role") String role,
+                          @JsonProperty("embedding") float[] embedding, @JsonProperty("answer") String answer,
+                          @JsonProperty("documentIds") Set<Long> documentIds, @JsonProperty("createdAt") long createdAt) {
+            this.id = id;
+            this.role = role;
+            this.embedding = embedding;
+            this.answer = answer;
+            this.documentIds = documentIds;
+            this.createdAt = createdAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public float[] getEmbedding() {
+            return embedding;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public Set<Long> getDocumentIds() {
+            return documentIds;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    /**
+     * 节点间同步事件
+     */
+    public static class CacheEvent implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static final String PUT = "put";
+        static final String INVALIDATE_DOCUMENT = "invalidate-document";
+        static final String INVALIDATE_ALL = "invalidate-all";
+
+        private final String type;
+        private final CacheEntry entry;
+        private final Long documentId;
+
+        @JsonCreator
+        private CacheEvent(@JsonProperty("type") String type, @JsonProperty("entry") CacheEntry entry,
+                           @JsonProperty("documentId") Long documentId) {
+            this.type = type;
+            this.entry = entry;
+            this.documentId = documentId;
+        }
+
+        static CacheEvent put(CacheEntry entry) {
+            return new CacheEvent(PUT, entry, null);
+        }
+
+        static CacheEvent invalidateDocument(Long documentId) {
+            return new CacheEvent(INVALIDATE_DOCUMENT, null, documentId);
+        }
+
+        static CacheEvent invalidateAll() {
+            return new CacheEvent(INVALIDATE_ALL, null, null);
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public CacheEntry getEntry() {
+            return entry;
+        }
+
+        public Long getDocumentId() {
+            return documentId;
+        }
+    }
+}
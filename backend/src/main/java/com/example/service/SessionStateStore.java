@@ -0,0 +1,394 @@
+package com.example.service;
+
+import com.example.model.Session;
+import com.example.model.User;
+import com.example.repository.SessionRepository;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 活跃会话热状态（Redis 哈希 session:state:{id}）
+ * 每条消息只在 Redis 中更新最后消息并读取状态/接待人, 会话ID记入脏集合, 由定时任务合并回写 sessions 表;
+ * 脏标记在回写成功且期间无新修改后才清除, 节点宕机后由任一节点继续回写。Redis 中缺失的会话从数据库回源加载。
+ * 人工接管通过 Lua 脚本原子比较并设置状态, 并同步写穿到数据库。
+ */
+@Service
+public class SessionStateStore {
+
+    private static final String STATE_KEY_PREFIX = "session:state:";
+    private static final String ACTIVE_KEY_PREFIX = "session:active:";
+    private static final String DIRTY_KEY = "session:dirty";
+
+    // 由活跃会话索引取会话ID及其全部字段（一次往返）; 首元素为会话ID, 索引不存在时返回 nil
+    private static final RedisScript<List> FIND_ACTIVE_SCRIPT = new DefaultRedisScript<>(
+            "local id = redis.call('GET', KEYS[1]) "
+                    + "if not id then return nil end "
+                    + "local result = redis.call('HGETALL', ARGV[1] .. id) "
+                    + "table.insert(result, 1, id) "
+                    + "return result", List.class);
+
+    // 不存在时按给定字段初始化, 返回全部字段
+    private static final RedisScript<List> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then redis.call('HSET', KEYS[1], unpack(ARGV, 2)) end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) "
+                    + "return redis.call('HGETALL', KEYS[1])", List.class);
+
+    // 更新最后消息并标记为脏, 返回全部字段（供判断由 AI 还是人工处理）; 不存在时返回 nil
+    private static final RedisScript<List> TOUCH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return nil end "
+                    + "redis.call('HSET', KEYS[1], 'lastMessage', ARGV[1]) "
+                    + "redis.call('HINCRBY', KEYS[1], 'version', 1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "redis.call('SADD', KEYS[2], ARGV[3]) "
+                    + "return redis.call('HGETALL', KEYS[1])", List.class);
+
+    // 比较并设置: 状态为 ARGV[1] 时改为 ARGV[2] 并记录接待人 ARGV[3]; 首元素为结果码（1 成功, 2 已由该接待人接管, 0 冲突）
+    private static final RedisScript<List> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return nil end "
+                    + "local code = '0' "
+                    + "local status = redis.call('HGET', KEYS[1], 'status') "
+                    + "if status == ARGV[2] and redis.call('HGET', KEYS[1], 'staffId') == ARGV[3] then code = '2' "
+                    + "elseif status == ARGV[1] then "
+                    + "redis.call('HSET', KEYS[1], 'status', ARGV[2], 'staffId', ARGV[3]) "
+                    + "redis.call('HINCRBY', KEYS[1], 'version', 1) code = '1' end "
+                    + "local result = redis.call('HGETALL', KEYS[1]) "
+                    + "table.insert(result, 1, code) "
+                    + "return result", List.class);
+
+    // 回写后仅当版本未变化时清除脏标记
+    private static final RedisScript<Long> CLEAN_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('HGET', KEYS[1], 'version') "
+                    + "if (not version) or version == ARGV[1] then redis.call('SREM', KEYS[2], ARGV[2]) return 1 end "
+                    + "return 0", Long.class);
+
+    private final RedisUtil redisUtil;
+    private final SessionRepository sessionRepository;
+    private final UserIdentityCache userIdentityCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${session.state.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${session.state.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    @Value("${session.state.flush-max-rounds:50}")
+    private int flushMaxRounds;
+
+    private Counter flushedCounter;
+    private Counter loadedCounter;
+
+    public SessionStateStore(RedisUtil redisUtil, SessionRepository sessionRepository,
+                             UserIdentityCache userIdentityCache, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.sessionRepository = sessionRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushedCounter = Counter.builder("session.state.flushed").register(meterRegistry);
+        loadedCounter = Counter.builder("session.state.loaded").register(meterRegistry);
+    }
+
+    /**
+     * 查找用户在渠道内未结束的会话
+     * @param channelId 渠道ID
+     * @param userId 外部用户标识
+     * @return 会话状态, 不存在时为 null
+     */
+    public SessionState findActive(Long channelId, String userId) {
+        if (userId == null) {
+            return null;
+        }
+        List<?> cached = redisUtil.executeScript(FIND_ACTIVE_SCRIPT, List.of(activeKey(channelId, userId)),
+                STATE_KEY_PREFIX);
+        if (cached != null && !cached.isEmpty()) {
+            Long sessionId = Long.valueOf(String.valueOf(cached.get(0)));
+            SessionState state = cached.size() > 1 ? SessionState.from(sessionId, toMap(cached, 1)) : get(sessionId);
+            if (state != null && !MessageService.SESSION_COMPLETED.equals(state.getStatus())) {
+                return state;
+            }
+        }
+        // 回源: 由外部用户标识找到账号后查询数据库
+        Optional<User> user = userIdentityCache.findByUserId(userId);
+        if (user.isEmpty()) {
+            return null;
+        }
+        return sessionRepository.findFirstByUserIdAndChannelIdAndStatusNotOrderByStartTimeDesc(
+                        user.get().getId(), channelId, MessageService.SESSION_COMPLETED)
+                .map(session -> register(session, userId))
+                .orElse(null);
+    }
+
+    /**
+     * 获取会话状态, Redis 中缺失时从数据库加载
+     * @return 会话状态, 会话不存在时为 null
+     */
+    public SessionState get(Long sessionId) {
+        Map<String, String> fields = redisUtil.hashGetAllAsString(stateKey(sessionId));
+        if (fields != null && !fields.isEmpty()) {
+            return SessionState.from(sessionId, fields);
+        }
+        return sessionRepository.findById(sessionId).map(session -> register(session, null)).orElse(null);
+    }
+
+    /**
+     * 批量获取 Redis 中的会话状态（一次管道, 不回源数据库）
+     * @return 与 sessionIds 顺序一致, 已不在 Redis 中的会话对应 null
+     */
+    public List<SessionState> getCached(List<Long> sessionIds) {
+        List<String> keys = new ArrayList<>(sessionIds.size());
+        for (Long sessionId : sessionIds) {
+            keys.add(stateKey(sessionId));
+        }
+        List<Map<String, String>> results = redisUtil.multiHashGetAllAsString(keys);
+        List<SessionState> states = new ArrayList<>(sessionIds.size());
+        for (int i = 0; i < sessionIds.size(); i++) {
+            Map<String, String> fields = results.get(i);
+            states.add(fields.isEmpty() ? null : SessionState.from(sessionIds.get(i), fields));
+        }
+        return states;
+    }
+
+    /**
+     * 将数据库中的会话载入 Redis（已存在时保留 Redis 中较新的状态）
+     * @param userId 外部用户标识, 不为空时同时建立活跃会话索引
+     */
+    public SessionState register(Session session, String userId) {
+        String[] args = {
+                String.valueOf(ttlSeconds()),
+                "userId", session.getUserId() == null ? "" : session.getUserId().toString(),
+                "channelId", session.getChannelId() == null ? "" : session.getChannelId().toString(),
+                "status", session.getStatus() == null ? MessageService.SESSION_PENDING : session.getStatus(),
+                "staffId", session.getStaffId() == null ? "" : session.getStaffId().toString(),
+                "lastMessage", session.getLastMessage() == null ? "" : session.getLastMessage(),
+                "version", "0"
+        };
+        List<?> result = redisUtil.executeScript(LOAD_SCRIPT, List.of(stateKey(session.getId())), args);
+        loadedCounter.increment();
+        if (userId != null) {
+            redisUtil.setString(activeKey(session.getChannelId(), userId), session.getId().toString(),
+                    ttlHours, TimeUnit.HOURS);
+        }
+        return SessionState.from(session.getId(), toMap(result, 0));
+    }
+
+    /**
+     * 记录会话最新消息（合并回写数据库）, 并返回当前状态
+     * @return 会话状态, 会话不存在时为 null
+     */
+    public SessionState touch(Long sessionId, String lastMessage) {
+        String message = lastMessage == null ? "" : lastMessage;
+        List<?> result = redisUtil.executeScript(TOUCH_SCRIPT, List.of(stateKey(sessionId), DIRTY_KEY),
+                message, String.valueOf(ttlSeconds()), sessionId.toString());
+        if (result == null || result.isEmpty()) {
+            if (get(sessionId) == null) {
+                return null;
+            }
+            result = redisUtil.executeScript(TOUCH_SCRIPT, List.of(stateKey(sessionId), DIRTY_KEY),
+                    message, String.valueOf(ttlSeconds()), sessionId.toString());
+        }
+        return result == null || result.isEmpty() ? null : SessionState.from(sessionId, toMap(result, 0));
+    }
+
+    /**
+     * 人工接管会话: 仅当会话处于待处理（AI 接待）状态时成功, 同一接待人重复接管视为成功但不改变状态
+     * @return 接管结果: 接管后的会话状态（接管人不是 staffId 表示已被他人接管）及本次是否改变了状态
+     * @throws IllegalArgumentException 会话不存在时
+     * @throws IllegalStateException 写入数据库失败时（已回滚 Redis 状态）
+     */
+    public TakeOverResult takeOver(Long sessionId, Long staffId) {
+        List<String> keys = List.of(stateKey(sessionId));
+        String staff = staffId.toString();
+        List<?> result = redisUtil.executeScript(COMPARE_AND_SET_SCRIPT, keys,
+                MessageService.SESSION_PENDING, MessageService.SESSION_PROCESSING, staff);
+        if (result == null || result.isEmpty()) {
+            if (get(sessionId) == null) {
+                throw new IllegalArgumentException("session not found: " + sessionId);
+            }
+            result = redisUtil.executeScript(COMPARE_AND_SET_SCRIPT, keys,
+                    MessageService.SESSION_PENDING, MessageService.SESSION_PROCESSING, staff);
+        }
+        SessionState state = SessionState.from(sessionId, toMap(result, 1));
+        boolean changed = "1".equals(String.valueOf(result.get(0)));
+        if (changed) {
+            // 接管是低频且必须持久的状态变化, 同步写穿
+            try {
+                sessionRepository.updateState(sessionId, state.getStatus(), staffId, state.getLastMessage());
+            } catch (RuntimeException e) {
+                redisUtil.executeScript(COMPARE_AND_SET_SCRIPT, keys,
+                        MessageService.SESSION_PROCESSING, MessageService.SESSION_PENDING, "");
+                throw new IllegalStateException("failed to persist take-over of session " + sessionId, e);
+            }
+        }
+        return new TakeOverResult(state, changed);
+    }
+
+    /**
+     * 合并回写脏会话到数据库; 每轮回写一批, 直到脏集合为空或达到轮数上限
+     */
+    @Scheduled(fixedDelayString = "${session.state.flush-interval-ms:1000}",
+            initialDelayString = "${session.state.flush-interval-ms:1000}")
+    public void flush() {
+        for (int round = 0; round < flushMaxRounds; round++) {
+            List<String> sessionIds = redisUtil.setRandomMembers(DIRTY_KEY, flushBatchSize);
+            if (sessionIds.isEmpty()) {
+                return;
+            }
+            for (String sessionId : sessionIds) {
+                try {
+                    flushOne(sessionId);
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to flush session state " + sessionId + ": " + e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to flush session state on shutdown: " + e.getMessage());
+        }
+    }
+
+    private void flushOne(String sessionId) {
+        String stateKey = STATE_KEY_PREFIX + sessionId;
+        Map<String, String> fields = redisUtil.hashGetAllAsString(stateKey);
+        String version = fields == null ? null : fields.get("version");
+        if (version != null) {
+            SessionState state = SessionState.from(Long.valueOf(sessionId), fields);
+            sessionRepository.updateState(state.getId(), state.getStatus(), state.getStaffId(), state.getLastMessage());
+            flushedCounter.increment();
+        }
+        redisUtil.executeScript(CLEAN_SCRIPT, List.of(stateKey, DIRTY_KEY), version == null ? "" : version, sessionId);
+    }
+
+    private long ttlSeconds() {
+        return TimeUnit.HOURS.toSeconds(ttlHours);
+    }
+
+    private static String stateKey(Long sessionId) {
+        return STATE_KEY_PREFIX + sessionId;
+    }
+
+    private static String activeKey(Long channelId, String userId) {
+        return ACTIVE_KEY_PREFIX + channelId + ":" + userId;
+    }
+
+    private static Map<String, String> toMap(List<?> flat, int offset) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = offset; i + 1 < flat.size(); i += 2) {
+            map.put(String.valueOf(flat.get(i)), String.valueOf(flat.get(i + 1)));
+        }
+        return map;
+    }
+
+    /**
+     * 接管结果
+     */
+    public static class TakeOverResult {
+        private final SessionState state;
+        private final boolean changed;
+
+        TakeOverResult(SessionState state, boolean changed) {
+            this.state = state;
+            this.changed = changed;
+        }
+
+        /**
+         * 接管后的会话状态
+         */
+        public SessionState getState() {
+            return state;
+        }
+
+        /**
+         * 本次调用是否把会话从待处理改为人工接待（同一接待人重复接管或已被他人接管时为 false）
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+    }
+
+    /**
+     * 会话热状态
+     */
+    public static class SessionState {
+        private final Long id;
+        private final Long userId;
+        private final Long channelId;
+        private final String status;
+        private final Long staffId;
+        private final String lastMessage;
+
+        public SessionState(Long id, Long userId, Long channelId, String status, Long staffId, String lastMessage) {
+            this.id = id;
+            this.userId = userId;
+            this.channelId = channelId;
+            this.status = status;
+            this.staffId = staffId;
+            this.lastMessage = lastMessage;
+        }
+
+        static SessionState from(Long id, Map<String, String> fields) {
+            return new SessionState(id, parseLong(fields.get("userId")), parseLong(fields.get("channelId")),
+                    fields.get("status"), parseLong(fields.get("staffId")), fields.get("lastMessage"));
+        }
+
+        private static Long parseLong(String value) {
+            return value == null || value.isEmpty() ? null : Long.valueOf(value);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Long getChannelId() {
+            return channelId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Long getStaffId() {
+            return staffId;
+        }
+
+        public String getLastMessage() {
+            return lastMessage;
+        }
+
+        /**
+         * 是否由人工接待（AI 不再自动应答）
+         */
+        public boolean isHandledByStaff() {
+            return MessageService.SESSION_PROCESSING.equals(status);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 流式文本分块
+ * 持续追加文本段, 每累积到 chunkSize 个字符输出一块, 相邻块重叠 overlap 个字符;
+ * 尽量在句末标点或换行处切分, 缓冲区大小与文档总长度无关。
+ */
+public class TextChunker {
+
+    private static final String BOUNDARIES = "。！？；.!?;\n";
+
+    private final int chunkSize;
+    private final int overlap;
+    private final Consumer<String> chunkConsumer;
+    private final StringBuilder buffer = new StringBuilder();
+    private int emitted;
+
+    public TextChunker(int chunkSize, int overlap, Consumer<String> chunkConsumer) {
+        if (chunkSize <= 0 || overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("require 0 <= overlap < chunkSize, got " + overlap + "/" + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+        this.chunkConsumer = chunkConsumer;
+    }
+
+    /**
+     * 追加一段文本
+     */
+    public void append(String segment) {
+        if (segment == null || segment.isEmpty()) {
+            return;
+        }
+        buffer.append(segment);
+        while (buffer.length() >= chunkSize) {
+            int end = boundary();
+            emit(buffer.substring(0, end));
+            buffer.delete(0, end - overlap);
+        }
+    }
+
+    /**
+     * 输出剩余文本
+     */
+    public void finish() {
+        // 剩余部分若只是上一块的重叠尾巴则不再单独成块
+        if (buffer.length() > (emitted > 0 ? overlap : 0)) {
+            emit(buffer.toString());
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * 已输出的块数
+     */
+    public int getEmitted() {
+        return emitted;
+    }
+
+    private int boundary() {
+        // 在块的后 40% 范围内找最后一个句末位置
+        int min = Math.max(overlap + 1, chunkSize * 3 / 5);
+        for (int i = chunkSize - 1; i >= min; i--) {
+            if (BOUNDARIES.indexOf(buffer.charAt(i)) >= 0) {
+                return i + 1;
+            }
+        }
+        return chunkSize;
+    }
+
+    private void emit(String chunk) {
+        String trimmed = chunk.strip();
+        if (!trimmed.isEmpty()) {
+            chunkConsumer.accept(trimmed);
+            emitted++;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.service;
+
+import com.example.model.User;
+import com.example.util.RedisUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 用户身份两级缓存
+ * L1 为进程内 Caffeine 近端缓存, L2 为 Redis, 未命中时回源 UserService（与 /users 接口的写入为同一数据源）。
+ * 用户变更时删除 L2 并通过 Redis 发布/订阅通知所有节点清理 L1。
+ * 缓存中的对象不直接交给调用方, 每次返回副本; 回源期间发生失效时, 加载结果不写回缓存。
+ */
+@Service
+public class UserIdentityCache {
+
+    private static final String KEY_PREFIX = "user:identity:";
+    private static final String INVALIDATION_CHANNEL = "user:identity:invalidate";
+
+    private final UserService userService;
+    private final RedisUtil redisUtil;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user.cache.l1.max-size:10000}")
+    private long l1MaxSize;
+
+    @Value("${user.cache.l1.ttl-seconds:60}")
+    private long l1TtlSeconds;
+
+    @Value("${user.cache.l2.ttl-seconds:1800}")
+    private long l2TtlSeconds;
+
+    private Cache<String, User> nearCache;
+    private Counter l2Hits;
+    private Counter l2Misses;
+    private Counter invalidations;
+    // 本节点收到的失效次数（本地 evict 与其他节点的广播）, 回源前后对比以发现并发失效
+    private final AtomicLong invalidationVersion = new AtomicLong();
+
+    public UserIdentityCache(UserService userService, RedisUtil redisUtil, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.redisUtil = redisUtil;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterWrite(Duration.ofSeconds(l1TtlSeconds))
+                .recordStats()
+                .build();
+        // L1 命中/未命中/淘汰指标: cache.gets / cache.evictions {cache=user.identity}
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "user.identity");
+        l2Hits = Counter.builder("user.identity.l2").tag("result", "hit").register(meterRegistry);
+        l2Misses = Counter.builder("user.identity.l2").tag("result", "miss").register(meterRegistry);
+        invalidations = Counter.builder("user.identity.invalidations").register(meterRegistry);
+        redisUtil.subscribe(INVALIDATION_CHANNEL, this::onInvalidation);
+    }
+
+    /**
+     * 根据手机号识别用户
+     */
+    public Optional<User> findByPhone(String phone) {
+        if (phone == null) {
+            return Optional.empty();
+        }
+        return lookup(phoneKey(phone), () -> userService.getUserByPhone(phone));
+    }
+
+    /**
+     * 根据用户ID识别用户
+     */
+    public Optional<User> findByUserId(String userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return lookup(userIdKey(userId), () -> userService.getUserByUserId(userId));
+    }
+
+    /**
+     * 用户信息变更后调用, 清理本节点及其他节点上的缓存
+     */
+    public void evict(User... users) {
+        List<String> keys = new ArrayList<>();
+        for (User user : users) {
+            if (user == null) {
+                continue;
+            }
+            if (user.getPhone() != null) {
+                keys.add(phoneKey(user.getPhone()));
+            }
+            if (user.getUserId() != null) {
+                keys.add(userIdKey(user.getUserId()));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        invalidationVersion.incrementAndGet();
+        nearCache.invalidateAll(keys);
+        try {
+            for (String key : keys) {
+                redisUtil.delete(KEY_PREFIX + key);
+            }
+            redisUtil.publish(INVALIDATION_CHANNEL, new ArrayList<>(keys));
+        } catch (Exception e) {
+            System.err.println("Failed to propagate user cache invalidation: " + e.getMessage());
+        }
+    }
+
+    private Optional<User> lookup(String key, Supplier<Optional<User>> loader) {
+        User cached = nearCache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(UserStore.copyOf(cached));
+        }
+
+        long version = invalidationVersion.get();
+        User remote = readRemote(key);
+        if (remote != null) {
+            l2Hits.increment();
+            cacheLocally(key, remote, version);
+            return Optional.of(UserStore.copyOf(remote));
+        }
+        l2Misses.increment();
+
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(user -> {
+            if (invalidationVersion.get() != version) {
+                return;
+            }
+            writeRemote(key, user);
+            if (invalidationVersion.get() != version) {
+                // 写入与失效交错, 删除可能已过期的 L2
+                deleteRemote(key);
+                return;
+            }
+            cacheLocally(key, user, version);
+        });
+        return loaded.map(UserStore::copyOf);
+    }
+
+    /**
+     * 先写入再复核版本: 失效若发生在写入之前由此处撤销, 发生在写入之后则由失效本身清理
+     */
+    private void cacheLocally(String key, User user, long version) {
+        nearCache.put(key, user);
+        if (invalidationVersion.get() != version) {
+            nearCache.invalidate(key);
+        }
+    }
+
+    private User readRemote(String key) {
+        try {
+            Object value = redisUtil.get(KEY_PREFIX + key);
+            return value instanceof User ? (User) value : null;
+        } catch (Exception e) {
+            // Redis 不可用时降级为直接回源
+            System.err.println("Failed to read user cache from redis: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRemote(String key, User user) {
+        try {
+            redisUtil.set(KEY_PREFIX + key, user, l2TtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("Failed to write user cache to redis: " + e.getMessage());
+        }
+    }
+
+    private void deleteRemote(String key) {
+        try {
+            redisUtil.delete(KEY_PREFIX + key);
+        } catch (Exception e) {
+            System.err.println("Failed to delete user cache from redis: " + e.getMessage());
+        }
+    }
+
+    private void onInvalidation(Object message) {
+        if (message instanceof Collection<?> keys) {
+            invalidationVersion.incrementAndGet();
+            for (Object key : keys) {
+                nearCache.invalidate(String.valueOf(key));
+            }
+            invalidations.increment();
+        }
+    }
+
+    private static String phoneKey(String phone) {
+        return "phone:" + phone;
+    }
+
+    private static String userIdKey(String userId) {
+        return "userId:" + userId;
+    }
+}
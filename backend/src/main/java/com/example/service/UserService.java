@@ -3,7 +3,6 @@ package com.example.service;
 import com.example.model.User;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.time.LocalDateTime;
@@ -11,10 +10,10 @@ import java.time.LocalDateTime;
 @Service
 public class UserService {
 
-    // 模拟数据库存储
-    private static final List<User> users = new ArrayList<>();
+    // 模拟数据库存储（多键索引, 支持并发读写）
+    private final UserStore users = new UserStore();
 
-    static {
+    public UserService() {
         // 初始化一些测试数据
         User user1 = new User();
         user1.setId(1L);
@@ -25,7 +24,7 @@ public class UserService {
         user1.setCrmId("crm1");
         user1.setCreatedAt(LocalDateTime.now());
         user1.setUpdatedAt(LocalDateTime.now());
-        users.add(user1);
+        users.load(user1);
 
         User user2 = new User();
         user2.setId(2L);
@@ -36,7 +35,7 @@ public class UserService {
         user2.setCrmId("crm2");
         user2.setCreatedAt(LocalDateTime.now());
         user2.setUpdatedAt(LocalDateTime.now());
-        users.add(user2);
+        users.load(user2);
 
         User user3 = new User();
         user3.setId(3L);
@@ -47,7 +46,7 @@ public class UserService {
         user3.setCrmId("crm3");
         user3.setCreatedAt(LocalDateTime.now());
         user3.setUpdatedAt(LocalDateTime.now());
-        users.add(user3);
+        users.load(user3);
     }
 
     /**
@@ -55,7 +54,7 @@ public class UserService {
      * @return 用户列表
      */
     public List<User> getAllUsers() {
-        return users;
+        return users.findAll();
     }
 
     /**
@@ -64,9 +63,7 @@ public class UserService {
      * @return 用户对象
      */
     public Optional<User> getUserById(Long id) {
-        return users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst();
+        return users.findById(id);
     }
 
     /**
@@ -75,9 +72,7 @@ public class UserService {
      * @return 用户对象
      */
     public Optional<User> getUserByPhone(String phone) {
-        return users.stream()
-                .filter(user -> user.getPhone().equals(phone))
-                .findFirst();
+        return users.findByPhone(phone);
     }
 
     /**
@@ -86,9 +81,16 @@ public class UserService {
      * @return 用户对象
      */
     public Optional<User> getUserByUserId(String userId) {
-        return users.stream()
-                .filter(user -> user.getUserId().equals(userId))
-                .findFirst();
+        return users.findByUserId(userId);
+    }
+
+    /**
+     * 根据CRM ID获取用户
+     * @param crmId CRM系统ID
+     * @return 用户对象
+     */
+    public Optional<User> getUserByCrmId(String crmId) {
+        return users.findByCrmId(crmId);
     }
 
     /**
@@ -97,16 +99,10 @@ public class UserService {
      * @return 添加的用户对象
      */
     public User addUser(User user) {
-        // 生成新的ID
-        Long newId = users.stream()
-                .mapToLong(User::getId)
-                .max()
-                .orElse(0) + 1;
-        user.setId(newId);
+        // ID由存储原子分配
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
-        users.add(user);
-        return user;
+        return users.insert(user);
     }
 
     /**
@@ -116,18 +112,7 @@ public class UserService {
      * @return 更新后的用户对象
      */
     public Optional<User> updateUser(Long id, User user) {
-        Optional<User> existingUser = getUserById(id);
-        if (existingUser.isPresent()) {
-            User userToUpdate = existingUser.get();
-            userToUpdate.setPhone(user.getPhone());
-            userToUpdate.setUserId(user.getUserId());
-            userToUpdate.setRole(user.getRole());
-            userToUpdate.setVip(user.isVip());
-            userToUpdate.setCrmId(user.getCrmId());
-            userToUpdate.setUpdatedAt(LocalDateTime.now());
-            return Optional.of(userToUpdate);
-        }
-        return Optional.empty();
+        return users.update(id, user);
     }
 
     /**
@@ -136,7 +121,7 @@ public class UserService {
      * @return 是否删除成功
      */
     public boolean deleteUser(Long id) {
-        return users.removeIf(user -> user.getId().equals(id));
+        return users.delete(id);
     }
 
 }
@@ -0,0 +1,347 @@
+package com.example.service;
+
+import com.example.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 内存用户存储
+ * 按 id / phone / userId / crmId 建立多键索引, 所有键的查询均为 O(1)。
+ * 写操作按 id 分段加锁, 读操作无锁; 对外只暴露副本, 避免调用方修改索引内的对象。
+ * phone / userId / crmId 全局唯一, 写入已被其他用户持有的键时抛出 IllegalArgumentException。
+ */
+public class UserStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<Long, User> byId = new ConcurrentHashMap<>();
+    private final Map<String, Long> byPhone = new ConcurrentHashMap<>();
+    private final Map<String, Long> byUserId = new ConcurrentHashMap<>();
+    private final Map<String, Long> byCrmId = new ConcurrentHashMap<>();
+    // 正在替换的旧记录: 新记录发布到旧键释放之间, 旧键仍视为被持有
+    private final Map<Long, User> replacing = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicLong idSequence = new AtomicLong();
+
+    public UserStore() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 获取所有用户（按ID排序）
+     */
+    public List<User> findAll() {
+        List<User> result = new ArrayList<>(byId.size());
+        for (User user : byId.values()) {
+            result.add(copyOf(user));
+        }
+        result.sort(Comparator.comparing(User::getId));
+        return result;
+    }
+
+    /**
+     * 根据ID查询
+     */
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        User user = byId.get(id);
+        return user == null ? Optional.empty() : Optional.of(copyOf(user));
+    }
+
+    /**
+     * 根据手机号查询
+     */
+    public Optional<User> findByPhone(String phone) {
+        return findBySecondaryKey(byPhone, phone, User::getPhone);
+    }
+
+    /**
+     * 根据用户ID查询
+     */
+    public Optional<User> findByUserId(String userId) {
+        return findBySecondaryKey(byUserId, userId, User::getUserId);
+    }
+
+    /**
+     * 根据CRM ID查询
+     */
+    public Optional<User> findByCrmId(String crmId) {
+        return findBySecondaryKey(byCrmId, crmId, User::getCrmId);
+    }
+
+    /**
+     * 新增用户, ID由原子序列分配
+     * @throws IllegalArgumentException 手机号、用户ID或CRM ID已被其他用户使用时
+     */
+    public User insert(User user) {
+        long id = idSequence.incrementAndGet();
+        User stored = copyOf(user);
+        stored.setId(id);
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            ensureAvailable(stored);
+            // 先发布主记录再占用二级键, 其他写入方据此判断键是否仍被持有
+            byId.put(id, stored);
+            try {
+                index(stored);
+            } catch (IllegalArgumentException e) {
+                byId.remove(id);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return copyOf(stored);
+    }
+
+    /**
+     * 按原样写入用户（保留其ID）, 用于初始化数据
+     * @throws IllegalArgumentException 手机号、用户ID或CRM ID已被其他用户使用时
+     */
+    public void load(User user) {
+        Long id = Objects.requireNonNull(user.getId(), "user id");
+        idSequence.accumulateAndGet(id, Math::max);
+        User stored = copyOf(user);
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            publish(stored, byId.get(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 更新用户的可变字段
+     * @throws IllegalArgumentException 新的手机号、用户ID或CRM ID已被其他用户使用时
+     */
+    public Optional<User> update(Long id, User changes) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            User existing = byId.get(id);
+            if (existing == null) {
+                return Optional.empty();
+            }
+            User updated = copyOf(existing);
+            updated.setPhone(changes.getPhone());
+            updated.setUserId(changes.getUserId());
+            updated.setRole(changes.getRole());
+            updated.setVip(changes.isVip());
+            updated.setCrmId(changes.getCrmId());
+            updated.setUpdatedAt(LocalDateTime.now());
+            publish(updated, existing);
+            return Optional.of(copyOf(updated));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除用户
+     */
+    public boolean delete(Long id) {
+        if (id == null) {
+            return false;
+        }
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            User removed = byId.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            unindex(removed);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private Optional<User> findBySecondaryKey(Map<String, Long> index, String key, Function<User, String> extractor) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Long id = index.get(key);
+        if (id == null) {
+            return Optional.empty();
+        }
+        User user = byId.get(id);
+        // 二级索引与主记录之间可能存在短暂的不一致, 以主记录为准
+        if (user == null || !key.equals(extractor.apply(user))) {
+            return Optional.empty();
+        }
+        return Optional.of(copyOf(user));
+    }
+
+    /**
+     * 替换主记录并切换二级键（调用方持有该 id 的分段锁）
+     * 先发布主记录再挂新键: 键一旦可见, 指向的记录必然已是新值; 键冲突时恢复旧记录。
+     * 发布期间旧记录登记在 replacing 中, 其键不会被并发写入方接管, 回滚时旧键仍归本记录所有。
+     */
+    private void publish(User current, User previous) {
+        ensureAvailable(current);
+        if (previous != null) {
+            replacing.put(previous.getId(), previous);
+        }
+        try {
+            byId.put(current.getId(), current);
+            try {
+                index(current);
+            } catch (IllegalArgumentException e) {
+                if (previous == null) {
+                    byId.remove(current.getId());
+                } else {
+                    byId.put(previous.getId(), previous);
+                }
+                throw e;
+            }
+            if (previous != null) {
+                unindexStale(previous, current);
+            }
+        } finally {
+            if (previous != null) {
+                replacing.remove(previous.getId(), previous);
+            }
+        }
+    }
+
+    /**
+     * 发布前检查各二级键是否被其他用户持有, 冲突时不产生任何可见修改
+     */
+    private void ensureAvailable(User user) {
+        checkKey(byPhone, "phone", user.getPhone(), user.getId(), User::getPhone);
+        checkKey(byUserId, "userId", user.getUserId(), user.getId(), User::getUserId);
+        checkKey(byCrmId, "crmId", user.getCrmId(), user.getId(), User::getCrmId);
+    }
+
+    /**
+     * 占用各二级键; 并发写入导致冲突时释放本次已占用的键后抛出异常
+     */
+    private void index(User user) {
+        List<Runnable> claimed = new ArrayList<>(3);
+        try {
+            claimKey(byPhone, "phone", user.getPhone(), user.getId(), User::getPhone, claimed);
+            claimKey(byUserId, "userId", user.getUserId(), user.getId(), User::getUserId, claimed);
+            claimKey(byCrmId, "crmId", user.getCrmId(), user.getId(), User::getCrmId, claimed);
+        } catch (IllegalArgumentException e) {
+            claimed.forEach(Runnable::run);
+            throw e;
+        }
+    }
+
+    private void unindex(User user) {
+        removeKey(byPhone, user.getPhone(), user.getId());
+        removeKey(byUserId, user.getUserId(), user.getId());
+        removeKey(byCrmId, user.getCrmId(), user.getId());
+    }
+
+    private void unindexStale(User previous, User current) {
+        if (!Objects.equals(previous.getPhone(), current.getPhone())) {
+            removeKey(byPhone, previous.getPhone(), previous.getId());
+        }
+        if (!Objects.equals(previous.getUserId(), current.getUserId())) {
+            removeKey(byUserId, previous.getUserId(), previous.getId());
+        }
+        if (!Objects.equals(previous.getCrmId(), current.getCrmId())) {
+            removeKey(byCrmId, previous.getCrmId(), previous.getId());
+        }
+    }
+
+    private void checkKey(Map<String, Long> index, String name, String key, Long id, Function<User, String> extractor) {
+        if (key == null) {
+            return;
+        }
+        Long holder = index.get(key);
+        if (holder != null && !holder.equals(id) && holds(holder, key, extractor)) {
+            throw new IllegalArgumentException(name + " already in use: " + key);
+        }
+    }
+
+    private void claimKey(Map<String, Long> index, String name, String key, Long id,
+                          Function<User, String> extractor, List<Runnable> claimed) {
+        if (key == null) {
+            return;
+        }
+        while (true) {
+            Long holder = index.putIfAbsent(key, id);
+            if (holder == null) {
+                claimed.add(() -> index.remove(key, id));
+                return;
+            }
+            if (holder.equals(id)) {
+                return;
+            }
+            if (holds(holder, key, extractor)) {
+                throw new IllegalArgumentException(name + " already in use: " + key);
+            }
+            // 残留映射（原持有者已删除或已改用其他键）, 原子接管
+            if (index.replace(key, holder, id)) {
+                claimed.add(() -> index.remove(key, id));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 主记录先于二级键发布, 记录上的键值即为持有关系的依据; 正在替换的旧记录在发布结束前仍持有其键
+     */
+    private boolean holds(Long holder, String key, Function<User, String> extractor) {
+        User owner = byId.get(holder);
+        if (owner != null && key.equals(extractor.apply(owner))) {
+            return true;
+        }
+        User previous = replacing.get(holder);
+        return previous != null && key.equals(extractor.apply(previous));
+    }
+
+    private static void removeKey(Map<String, Long> index, String key, Long id) {
+        if (key != null) {
+            // 只删除仍指向本记录的映射, 不误删其他用户后写入的同名键
+            index.remove(key, id);
+        }
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return locks[(int) Math.floorMod(id, (long) LOCK_STRIPES)];
+    }
+
+    /**
+     * 复制用户, 缓存等对外返回内部对象的地方共用
+     */
+    static User copyOf(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setPhone(source.getPhone());
+        copy.setUserId(source.getUserId());
+        copy.setRole(source.getRole());
+        copy.setVip(source.isVip());
+        copy.setCrmId(source.getCrmId());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+}
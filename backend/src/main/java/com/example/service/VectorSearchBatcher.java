@@ -0,0 +1,267 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.util.MilvusUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 向量检索微批处理
+ * 将短时间窗口内（或攒满 max-size 个）并发到达的单向量查询合并为一次多向量 SearchParam,
+ * 结果按顺序分发回各调用方。
+ */
+@Service
+public class VectorSearchBatcher {
+
+    private final MilvusUtil milvusUtil;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorFactory executorFactory;
+
+    @Value("${milvus.search.batch.window-ms:5}")
+    private long windowMs;
+
+    @Value("${milvus.search.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${milvus.search.batch.queue-capacity:2048}")
+    private int queueCapacity;
+
+    @Value("${milvus.search.batch.workers:4}")
+    private int workers;
+
+    @Value("${milvus.search.batch.pending-batches:64}")
+    private int pendingBatches;
+
+    private BlockingQueue<PendingQuery> queue;
+    private ExecutorService searchExecutor;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    private DistributionSummary batchSize;
+    private Timer queryLatency;
+    private Timer rpcLatency;
+
+    public VectorSearchBatcher(MilvusUtil milvusUtil, MeterRegistry meterRegistry, ExecutorFactory executorFactory) {
+        this.milvusUtil = milvusUtil;
+        this.meterRegistry = meterRegistry;
+        this.executorFactory = executorFactory;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        // 有界队列: Milvus 变慢时拒绝新批次并让调用方立即失败, 不积压注定超时的检索
+        searchExecutor = executorFactory.bounded("milvus-search", workers, pendingBatches);
+        batchSize = DistributionSummary.builder("milvus.search.batch.size")
+                .description("每次合并检索的查询数")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        queryLatency = Timer.builder("milvus.search.batch.latency")
+                .description("单个查询从入队到拿到结果的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        rpcLatency = Timer.builder("milvus.search.rpc.latency")
+                .description("合并后单次检索RPC耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("milvus.search.batch.queue.depth", queue, BlockingQueue::size);
+
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "milvus-search-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        List<PendingQuery> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingQuery query : remaining) {
+            query.future.completeExceptionally(new RejectedExecutionException("search batcher stopped"));
+        }
+        searchExecutor.shutdown();
+    }
+
+    /**
+     * 提交单向量查询, 返回异步结果
+     */
+    public CompletableFuture<List<MilvusUtil.SearchHit>> submit(String collectionName, List<Float> vector,
+                                                               int topK, List<String> outFields) {
+        PendingQuery query = new PendingQuery(new BatchKey(collectionName, topK, outFields), vector);
+        if (!running || !queue.offer(query)) {
+            query.future.completeExceptionally(new RejectedExecutionException("search queue is full"));
+        }
+        return query.future;
+    }
+
+    /**
+     * 同步检索, 超时或失败时返回 null（与 MilvusUtil.search 的约定一致）
+     */
+    public List<MilvusUtil.SearchHit> search(String collectionName, List<Float> vector, int topK,
+                                             List<String> outFields, long timeoutMs) {
+        CompletableFuture<List<MilvusUtil.SearchHit>> future = submit(collectionName, vector, topK, outFields);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            // 取消后该查询若尚未执行, 合并检索时会被跳过
+            future.cancel(false);
+            System.err.println("Batched vector search timed out after " + timeoutMs + "ms");
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Batched vector search failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                PendingQuery first = queue.take();
+                List<PendingQuery> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = first.enqueuedAt + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PendingQuery next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Search batcher dispatch failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void dispatch(List<PendingQuery> batch) {
+        // 集合/topK/输出字段不同的查询不能合并到同一个 SearchParam
+        Map<BatchKey, List<PendingQuery>> groups = new LinkedHashMap<>();
+        for (PendingQuery query : batch) {
+            groups.computeIfAbsent(query.key, key -> new ArrayList<>()).add(query);
+        }
+        for (Map.Entry<BatchKey, List<PendingQuery>> group : groups.entrySet()) {
+            try {
+                searchExecutor.execute(() -> execute(group.getKey(), group.getValue()));
+            } catch (RejectedExecutionException e) {
+                group.getValue().forEach(query -> query.future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private void execute(BatchKey key, List<PendingQuery> group) {
+        // 调用方已超时取消（或已失败）的查询不再占用检索名额
+        List<PendingQuery> queries = new ArrayList<>(group.size());
+        for (PendingQuery query : group) {
+            if (!query.future.isDone()) {
+                queries.add(query);
+            }
+        }
+        if (queries.isEmpty()) {
+            return;
+        }
+        batchSize.record(queries.size());
+        List<List<Float>> vectors = new ArrayList<>(queries.size());
+        for (PendingQuery query : queries) {
+            vectors.add(query.vector);
+        }
+
+        long rpcStart = System.nanoTime();
+        List<List<MilvusUtil.SearchHit>> results;
+        try {
+            results = milvusUtil.searchBatch(key.collectionName, vectors, key.topK, key.outFields);
+        } catch (Exception e) {
+            results = null;
+        }
+        rpcLatency.record(System.nanoTime() - rpcStart, TimeUnit.NANOSECONDS);
+
+        long now = System.nanoTime();
+        for (int i = 0; i < queries.size(); i++) {
+            PendingQuery query = queries.get(i);
+            queryLatency.record(now - query.enqueuedAt, TimeUnit.NANOSECONDS);
+            if (results == null || i >= results.size()) {
+                query.future.completeExceptionally(new IllegalStateException("vector search failed for collection " + key.collectionName));
+            } else {
+                query.future.complete(results.get(i));
+            }
+        }
+    }
+
+    private static final class PendingQuery {
+        private final BatchKey key;
+        private final List<Float> vector;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<List<MilvusUtil.SearchHit>> future = new CompletableFuture<>();
+
+        private PendingQuery(BatchKey key, List<Float> vector) {
+            this.key = key;
+            this.vector = vector;
+        }
+    }
+
+    private static final class BatchKey {
+        private final String collectionName;
+        private final int topK;
+        private final List<String> outFields;
+
+        private BatchKey(String collectionName, int topK, List<String> outFields) {
+            this.collectionName = collectionName;
+            this.topK = topK;
+            this.outFields = outFields == null ? Collections.emptyList() : List.copyOf(outFields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) o;
+            return topK == other.topK
+                    && collectionName.equals(other.collectionName)
+                    && outFields.equals(other.outFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(collectionName, topK, outFields);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 微信公众号渠道（明文模式回调）
+ */
+@Component
+public class WeChatChannelAdapter extends XmlChannelAdapter {
+
+    @Override
+    public String getChannelType() {
+        return "wechat";
+    }
+}
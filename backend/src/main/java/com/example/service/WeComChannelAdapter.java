@@ -0,0 +1,15 @@
+package com.example.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 企业微信渠道（应用消息回调, 报文格式同公众号, 另含 AgentID）
+ */
+@Component
+public class WeComChannelAdapter extends XmlChannelAdapter {
+
+    @Override
+    public String getChannelType() {
+        return "wecom";
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * 网站渠道（网页客服插件回调）
+ * 报文为 JSON: {"userId": "...", "content": "...", "messageId": "...", "messageType": "text"}
+ * 请求头 X-Channel-Secret 须与渠道配置的 secret 一致（由网站后端转发回调时附带, 不下发到浏览器）。
+ */
+@Component
+public class WebsiteChannelAdapter implements ChannelAdapter {
+
+    protected final ObjectMapper objectMapper;
+
+    public WebsiteChannelAdapter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getChannelType() {
+        return "website";
+    }
+
+    @Override
+    public String getSecretField() {
+        return "secret";
+    }
+
+    @Override
+    public boolean verify(Channel channel, Map<String, String> config, Inbound inbound) {
+        String secret = config.get("secret");
+        String presented = inbound.header("X-Channel-Secret");
+        if (secret == null || secret.isEmpty() || presented == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public MessageEnvelope parse(Channel channel, Map<String, String> config, Inbound inbound) {
+        JsonNode root = readJson(objectMapper, inbound.getPayload());
+        MessageEnvelope envelope = new MessageEnvelope();
+        envelope.setUserId(root.path("userId").asText(null));
+        envelope.setContent(root.path("content").asText(null));
+        envelope.setExternalMessageId(root.path("messageId").asText(null));
+        envelope.setMessageType(root.path("messageType").asText(MessageEnvelope.TYPE_TEXT));
+        envelope.setIpAddress(inbound.getIpAddress());
+        return envelope;
+    }
+
+    static JsonNode readJson(ObjectMapper objectMapper, String payload) {
+        if (payload == null || payload.isBlank()) {
+            throw new IllegalArgumentException("payload is required");
+        }
+        try {
+            JsonNode root = objectMapper.readTree(payload);
+            if (!root.isObject()) {
+                throw new IllegalArgumentException("payload must be a json object");
+            }
+            return root;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid json payload: " + e.getOriginalMessage());
+        }
+    }
+}
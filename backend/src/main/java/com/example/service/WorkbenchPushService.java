@@ -0,0 +1,486 @@
+package com.example.service;
+
+import com.example.model.Session;
+import com.example.repository.SessionRepository;
+import com.example.util.RedisUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客服工作台实时推送
+ * 会话事件（新消息、转人工、人工接管）先在本地按会话合并, 每个合并周期以一次 Lua 调用分配全局递增序号、
+ * 写入有界回放缓冲（有序集合 workbench:events）并 PUBLISH; 所有节点订阅后转发给本节点的 STOMP 连接。
+ * 客户端断线重连后按最后收到的序号补齐事件, 缓冲已不足以补齐时重新拉取快照。
+ * 待处理会话快照来自 Redis（活跃会话集合 + 会话热状态）, 工作台不再轮询数据库。
+ */
+@Service
+public class WorkbenchPushService {
+
+    public static final String TOPIC = "/topic/workbench/sessions";
+
+    public static final String TYPE_MESSAGE = "message";
+    public static final String TYPE_ESCALATION = "escalation";
+    public static final String TYPE_TAKE_OVER = "take-over";
+
+    private static final String SEQ_KEY = "workbench:seq";
+    private static final String EVENTS_KEY = "workbench:events";
+    private static final String OPEN_KEY = "workbench:sessions";
+    private static final String PUSH_CHANNEL = "workbench:push";
+
+    /*
+     * 批量发布: ARGV 依次为 当前毫秒、缓冲条数上限、缓冲过期秒数、频道、活跃会话过期时刻, 之后每三个参数为 会话ID、是否未结束(1/0)、事件JSON。
+     * 每个事件分配序号后以 "序号:JSON" 写入缓冲并发布, 同时维护活跃会话集合（分数为最后活动时间）; 返回最新序号。
+     */
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "for i = 6, #ARGV, 3 do "
+                    + "  local seq = redis.call('INCR', KEYS[1]) "
+                    + "  local member = seq .. ':' .. ARGV[i + 2] "
+                    + "  redis.call('ZADD', KEYS[2], seq, member) "
+                    + "  if ARGV[i + 1] == '1' then redis.call('ZADD', KEYS[3], ARGV[1], ARGV[i]) "
+                    + "  else redis.call('ZREM', KEYS[3], ARGV[i]) end "
+                    + "  redis.call('PUBLISH', ARGV[4], member) "
+                    + "end "
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -tonumber(ARGV[2]) - 1) "
+                    + "redis.call('EXPIRE', KEYS[2], ARGV[3]) "
+                    + "redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', ARGV[5]) "
+                    + "return tonumber(redis.call('GET', KEYS[1]))", Long.class);
+
+    // 回放: 返回 {当前序号, 缓冲中最早的序号, 序号大于 ARGV[1] 的事件...}
+    private static final RedisScript<List> REPLAY_SCRIPT = new DefaultRedisScript<>(
+            "local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES') "
+                    + "local result = {redis.call('GET', KEYS[2]) or '0', oldest[2] or ''} "
+                    + "local events = redis.call('ZRANGEBYSCORE', KEYS[1], '(' .. ARGV[1], '+inf', 'LIMIT', 0, ARGV[2]) "
+                    + "for _, event in ipairs(events) do table.insert(result, event) end "
+                    + "return result", List.class);
+
+    // 快照: 返回 {当前序号, 最近活动的会话ID...}
+    private static final RedisScript<List> SNAPSHOT_SCRIPT = new DefaultRedisScript<>(
+            "local result = {redis.call('GET', KEYS[1]) or '0'} "
+                    + "for _, id in ipairs(redis.call('ZREVRANGE', KEYS[2], 0, tonumber(ARGV[1]) - 1)) do "
+                    + "table.insert(result, id) end "
+                    + "return result", List.class);
+
+    // 活跃会话集合不存在时（首次启动或 Redis 数据丢失）按 分数、会话ID 对批量写入
+    private static final RedisScript<Long> BACKFILL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                    + "for i = 1, #ARGV, 2 do redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "return #ARGV / 2", Long.class);
+
+    private final RedisUtil redisUtil;
+    private final SessionStateStore sessionStateStore;
+    private final SessionRepository sessionRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${workbench.push.replay-size:10000}")
+    private int replaySize;
+
+    @Value("${workbench.push.replay-ttl-hours:24}")
+    private long replayTtlHours;
+
+    @Value("${workbench.push.snapshot-size:500}")
+    private int snapshotSize;
+
+    @Value("${session.state.ttl-hours:24}")
+    private long sessionTtlHours;
+
+    private final Map<Long, SessionEvent> pending = new ConcurrentHashMap<>();
+    private Counter published;
+    private Counter coalesced;
+    private Counter publishErrors;
+    private Timer pushDelay;
+
+    public WorkbenchPushService(RedisUtil redisUtil, SessionStateStore sessionStateStore,
+                                SessionRepository sessionRepository, SimpMessagingTemplate messagingTemplate,
+                                ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.sessionStateStore = sessionStateStore;
+        this.sessionRepository = sessionRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        published = Counter.builder("workbench.events").tag("result", "published").register(meterRegistry);
+        coalesced = Counter.builder("workbench.events").tag("result", "coalesced").register(meterRegistry);
+        publishErrors = Counter.builder("workbench.events").tag("result", "error").register(meterRegistry);
+        pushDelay = Timer.builder("workbench.push.delay")
+                .description("会话事件产生到推送给本节点连接的耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("workbench.events.pending", pending, Map::size);
+        redisUtil.subscribeString(PUSH_CHANNEL, this::onPublished);
+    }
+
+    /**
+     * 记录一个会话事件, 在下个合并周期内推送（人工接管立即推送）
+     * @param state 事件发生后的会话状态
+     * @param type 事件类型
+     * @param preview 消息摘要
+     */
+    public void publish(SessionStateStore.SessionState state, String type, String preview) {
+        if (state == null) {
+            return;
+        }
+        SessionEvent event = SessionEvent.of(state, type, preview);
+        pending.merge(state.getId(), event, (previous, next) -> {
+            coalesced.increment();
+            return previous.merge(next);
+        });
+        if (TYPE_TAKE_OVER.equals(type)) {
+            flush();
+        }
+    }
+
+    /**
+     * 发布本周期合并后的事件
+     */
+    @Scheduled(fixedDelayString = "${workbench.push.coalesce-ms:200}",
+            initialDelayString = "${workbench.push.coalesce-ms:200}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        args.add(String.valueOf(now));
+        args.add(String.valueOf(replaySize));
+        args.add(String.valueOf(TimeUnit.HOURS.toSeconds(replayTtlHours)));
+        args.add(PUSH_CHANNEL);
+        args.add(String.valueOf(now - TimeUnit.HOURS.toMillis(sessionTtlHours)));
+        int count = 0;
+        Iterator<Map.Entry<Long, SessionEvent>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, SessionEvent> entry = iterator.next();
+            iterator.remove();
+            String payload;
+            try {
+                payload = objectMapper.writeValueAsString(entry.getValue());
+            } catch (JsonProcessingException e) {
+                System.err.println("Failed to serialize workbench event: " + e.getMessage());
+                continue;
+            }
+            // 脚本按三个一组读取参数, 序列化成功后才追加, 失败的事件不会让后续分组错位
+            args.add(entry.getKey().toString());
+            args.add(entry.getValue().isOpen() ? "1" : "0");
+            args.add(payload);
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        try {
+            redisUtil.executeScript(PUBLISH_SCRIPT, List.of(SEQ_KEY, EVENTS_KEY, OPEN_KEY), args.toArray(new String[0]));
+            published.increment(count);
+        } catch (RuntimeException e) {
+            // 事件只是变化通知, 丢失时客户端可通过快照恢复
+            publishErrors.increment(count);
+            System.err.println("Failed to publish " + count + " workbench events: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 补齐序号 after 之后的事件
+     * @param after 客户端最后收到的序号
+     * @param limit 最多返回条数
+     */
+    public Replay replay(long after, int limit) {
+        List<?> result = redisUtil.executeScript(REPLAY_SCRIPT, List.of(EVENTS_KEY, SEQ_KEY),
+                String.valueOf(after), String.valueOf(limit));
+        long current = Long.parseLong(String.valueOf(result.get(0)));
+        String oldestValue = String.valueOf(result.get(1));
+        List<SessionEvent> events = new ArrayList<>();
+        for (int i = 2; i < result.size(); i++) {
+            SessionEvent event = parse(String.valueOf(result.get(i)));
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        // 序号回退（Redis 数据丢失）或缓冲已淘汰 after 之后的事件时, 客户端需重新拉取快照
+        boolean reset = after > current
+                || (after < current && (oldestValue.isEmpty() || (long) Double.parseDouble(oldestValue) > after + 1));
+        return new Replay(current, reset, events.size() == limit, events);
+    }
+
+    /**
+     * 最近活动的未结束会话快照
+     * @return 快照对应的序号及会话状态; 之后用该序号调用 {@link #replay} 或直接接收推送
+     */
+    public Snapshot snapshot() {
+        List<?> result = redisUtil.executeScript(SNAPSHOT_SCRIPT, List.of(SEQ_KEY, OPEN_KEY),
+                String.valueOf(snapshotSize));
+        long seq = Long.parseLong(String.valueOf(result.get(0)));
+        List<Long> sessionIds = new ArrayList<>();
+        for (int i = 1; i < result.size(); i++) {
+            sessionIds.add(Long.valueOf(String.valueOf(result.get(i))));
+        }
+        List<SessionStateStore.SessionState> sessions = new ArrayList<>();
+        for (SessionStateStore.SessionState state : sessionStateStore.getCached(sessionIds)) {
+            if (state != null && !MessageService.SESSION_COMPLETED.equals(state.getStatus())) {
+                sessions.add(state);
+            }
+        }
+        return new Snapshot(seq, sessions);
+    }
+
+    /**
+     * 活跃会话集合缺失时从数据库加载未结束会话（集群中只需一次）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            if (redisUtil.exists(OPEN_KEY)) {
+                return;
+            }
+            List<String> args = new ArrayList<>();
+            for (String status : List.of(MessageService.SESSION_PENDING, MessageService.SESSION_PROCESSING)) {
+                for (Session session : sessionRepository.findByStatus(status)) {
+                    sessionStateStore.register(session, null);
+                    args.add(String.valueOf(System.currentTimeMillis()));
+                    args.add(session.getId().toString());
+                }
+            }
+            if (!args.isEmpty()) {
+                Long loaded = redisUtil.executeScript(BACKFILL_SCRIPT, List.of(OPEN_KEY), args.toArray(new String[0]));
+                System.out.println("Workbench backfilled " + loaded + " open sessions");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to backfill workbench sessions: " + e.getMessage());
+        }
+    }
+
+    private void onPublished(String member) {
+        SessionEvent event = parse(member);
+        if (event == null) {
+            return;
+        }
+        messagingTemplate.convertAndSend(TOPIC, event);
+        pushDelay.record(Math.max(0, System.currentTimeMillis() - event.getCreatedAt()), TimeUnit.MILLISECONDS);
+    }
+
+    // 缓冲与频道中的格式为 "序号:JSON"
+    private SessionEvent parse(String member) {
+        int separator = member.indexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            SessionEvent event = objectMapper.readValue(member.substring(separator + 1), SessionEvent.class);
+            event.setSeq(Long.parseLong(member.substring(0, separator)));
+            return event;
+        } catch (JsonProcessingException | NumberFormatException e) {
+            System.err.println("Invalid workbench event: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 会话事件（同一合并周期内同一会话的多个事件合并为一个）
+     */
+    public static class SessionEvent {
+        private long seq;
+        private Long sessionId;
+        private Long channelId;
+        private Long userId;
+        private String status;
+        private Long staffId;
+        private Set<String> types = new LinkedHashSet<>();
+        private int messageCount;
+        private String preview;
+        private long createdAt;
+
+        static SessionEvent of(SessionStateStore.SessionState state, String type, String preview) {
+            SessionEvent event = new SessionEvent();
+            event.sessionId = state.getId();
+            event.channelId = state.getChannelId();
+            event.userId = state.getUserId();
+            event.status = state.getStatus();
+            event.staffId = state.getStaffId();
+            event.types.add(type);
+            event.messageCount = TYPE_TAKE_OVER.equals(type) ? 0 : 1;
+            event.preview = preview;
+            event.createdAt = System.currentTimeMillis();
+            return event;
+        }
+
+        // 状态取较新的事件, 类型取并集, 消息数累加, 产生时间取最早（用于统计推送延迟）
+        SessionEvent merge(SessionEvent next) {
+            status = next.status;
+            staffId = next.staffId;
+            types.addAll(next.types);
+            messageCount += next.messageCount;
+            if (next.preview != null) {
+                preview = next.preview;
+            }
+            return this;
+        }
+
+        boolean isOpen() {
+            return !MessageService.SESSION_COMPLETED.equals(status);
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public Long getChannelId() {
+            return channelId;
+        }
+
+        public void setChannelId(Long channelId) {
+            this.channelId = channelId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public Long getStaffId() {
+            return staffId;
+        }
+
+        public void setStaffId(Long staffId) {
+            this.staffId = staffId;
+        }
+
+        public Set<String> getTypes() {
+            return types;
+        }
+
+        public void setTypes(Set<String> types) {
+            this.types = types;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        public void setMessageCount(int messageCount) {
+            this.messageCount = messageCount;
+        }
+
+        public String getPreview() {
+            return preview;
+        }
+
+        public void setPreview(String preview) {
+            this.preview = preview;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    public static class Replay {
+        private final long seq;
+        private final boolean reset;
+        private final boolean hasMore;
+        private final List<SessionEvent> events;
+
+        public Replay(long seq, boolean reset, boolean hasMore, List<SessionEvent> events) {
+            this.seq = seq;
+            this.reset = reset;
+            this.hasMore = hasMore;
+            this.events = events;
+        }
+
+        /**
+         * 当前最新序号
+         */
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * 为 true 时缓冲无法补齐, 客户端需重新拉取快照
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+
+        public List<SessionEvent> getEvents() {
+            return events;
+        }
+    }
+
+    public static class Snapshot {
+        private final long seq;
+        private final List<SessionStateStore.SessionState> sessions;
+
+        public Snapshot(long seq, List<SessionStateStore.SessionState> sessions) {
+            this.seq = seq;
+            this.sessions = sessions;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public List<SessionStateStore.SessionState> getSessions() {
+            return sessions;
+        }
+    }
+}
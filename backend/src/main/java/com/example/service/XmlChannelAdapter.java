@@ -0,0 +1,138 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * 微信系 XML 回调适配器（公众号、企业微信共用报文格式）
+ * 报文字段: ToUserName、FromUserName、CreateTime、MsgType、Content、MsgId;
+ * 签名为 token、timestamp、nonce 按字典序拼接后的 SHA-1。
+ * 渠道配置必须设置 token, 未设置时拒绝回调。
+ */
+public abstract class XmlChannelAdapter implements ChannelAdapter {
+
+    private static final DocumentBuilderFactory FACTORY = newFactory();
+
+    @Override
+    public String getSecretField() {
+        return "token";
+    }
+
+    @Override
+    public boolean verify(Channel channel, Map<String, String> config, Inbound inbound) {
+        String token = config.get("token");
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        String signature = inbound.param("signature");
+        String timestamp = inbound.param("timestamp");
+        String nonce = inbound.param("nonce");
+        if (signature == null || timestamp == null || nonce == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(signature.getBytes(StandardCharsets.UTF_8),
+                sign(token, timestamp, nonce).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String handshake(Channel channel, Map<String, String> config, Inbound inbound) {
+        String echo = inbound.param("echostr");
+        if (echo == null) {
+            throw new IllegalArgumentException("echostr is required");
+        }
+        return echo;
+    }
+
+    @Override
+    public MessageEnvelope parse(Channel channel, Map<String, String> config, Inbound inbound) {
+        Map<String, String> fields = readFields(inbound.getPayload());
+        String from = fields.get("FromUserName");
+        if (from == null || from.isEmpty()) {
+            throw new IllegalArgumentException("FromUserName is required");
+        }
+        MessageEnvelope envelope = new MessageEnvelope();
+        envelope.setUserId(from);
+        envelope.setMessageType(fields.getOrDefault("MsgType", MessageEnvelope.TYPE_TEXT));
+        envelope.setContent(fields.get("Content"));
+        // 事件推送没有 MsgId, 以 发送方+时间 去重
+        String msgId = fields.get("MsgId");
+        envelope.setExternalMessageId(msgId != null ? msgId : from + ":" + fields.get("CreateTime"));
+        envelope.getAttributes().put("toUserName", fields.get("ToUserName"));
+        if (fields.containsKey("AgentID")) {
+            envelope.getAttributes().put("agentId", fields.get("AgentID"));
+        }
+        return envelope;
+    }
+
+    /**
+     * 平台要求收到后立即返回 success, 否则会重试推送
+     */
+    @Override
+    public String acknowledgement() {
+        return "success";
+    }
+
+    static String sign(String token, String timestamp, String nonce) {
+        String[] parts = {token, timestamp, nonce};
+        Arrays.sort(parts);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(String.join("", parts).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 只读取根元素下的一级子元素
+    private static Map<String, String> readFields(String xml) {
+        if (xml == null || xml.isBlank()) {
+            throw new IllegalArgumentException("payload is required");
+        }
+        Document document;
+        try {
+            document = FACTORY.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("invalid xml payload: " + e.getMessage());
+        }
+        Map<String, String> fields = new HashMap<>();
+        NodeList children = document.getDocumentElement().getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element element) {
+                fields.put(element.getTagName(), element.getTextContent().trim());
+            }
+        }
+        return fields;
+    }
+
+    // 禁用 DTD 与外部实体, 防止 XXE
+    private static DocumentBuilderFactory newFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        try {
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        return factory;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地大模型桩服务（OpenAI Chat Completions 兼容, 用于开发、测试与基准）
+ * 应答内容只由最后一条用户消息决定, 每两个字符为一个片段, 按固定的首片段延迟和片段间隔流式返回,
+ * 便于复现延迟与吞吐。
+ */
+public class LlmStubServer {
+
+    private static final String[] ANSWERS = {
+            "我们已经记录了您的问题，客服会在24小时内与您联系。",
+            "您可以在订单详情页申请退款，审核通过后款项将原路退回。",
+            "请您提供订单号，我们会尽快为您查询处理进度。",
+            "感谢您的耐心等待，该问题已转交专员跟进。"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final int port;
+    private final long firstTokenDelayMs;
+    private final long tokenDelayMs;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port 监听端口, 0 表示随机端口
+     * @param firstTokenDelayMs 首个片段前的延迟
+     * @param tokenDelayMs 片段间隔
+     */
+    public LlmStubServer(int port, long firstTokenDelayMs, long tokenDelayMs) {
+        this.port = port;
+        this.firstTokenDelayMs = firstTokenDelayMs;
+        this.tokenDelayMs = tokenDelayMs;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-stub-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+        System.out.println("LLM stub server listening on port " + getPort());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 实际监听端口
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 已处理的请求数（用于验证请求合并）
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 给定问题的应答文本
+     */
+    public static String answerFor(String question) {
+        String text = question == null ? "" : question.trim();
+        return ANSWERS[Math.floorMod(text.hashCode(), ANSWERS.length)];
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            String model = request.path("model").asText("stub");
+            String question = "";
+            int promptChars = 0;
+            for (JsonNode message : request.path("messages")) {
+                String content = message.path("content").asText("");
+                promptChars += content.length();
+                if ("user".equals(message.path("role").asText())) {
+                    question = content;
+                }
+            }
+            List<String> tokens = split(answerFor(question));
+            int promptTokens = Math.max(1, promptChars / 2);
+
+            if (request.path("stream").asBoolean(false)) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                sleep(firstTokenDelayMs);
+                for (int i = 0; i < tokens.size(); i++) {
+                    if (i > 0) {
+                        sleep(tokenDelayMs);
+                    }
+                    ObjectNode chunk = chunk(model);
+                    chunk.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", tokens.get(i));
+                    write(out, chunk);
+                }
+                ObjectNode last = chunk(model);
+                last.putArray("choices");
+                last.putObject("usage").put("prompt_tokens", promptTokens).put("completion_tokens", tokens.size());
+                write(out, last);
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } else {
+                sleep(firstTokenDelayMs + tokenDelayMs * Math.max(0, tokens.size() - 1));
+                ObjectNode response = chunk(model);
+                response.putArray("choices").addObject().put("index", 0).putObject("message")
+                        .put("role", "assistant").put("content", String.join("", tokens));
+                response.putObject("usage").put("prompt_tokens", promptTokens).put("completion_tokens", tokens.size());
+                byte[] bytes = objectMapper.writeValueAsBytes(response);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+        }
+    }
+
+    private ObjectNode chunk(String model) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", "stub");
+        node.put("model", model);
+        return node;
+    }
+
+    private void write(OutputStream out, ObjectNode node) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(node) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static List<String> split(String text) {
+        List<String> tokens = new ArrayList<>();
+        int[] codePoints = text.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i += 2) {
+            tokens.add(new String(codePoints, i, Math.min(2, codePoints.length - i)));
+        }
+        return tokens;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+}
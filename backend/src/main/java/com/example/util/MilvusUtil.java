@@ -1,13 +1,26 @@
 package com.example.util;
 
+import com.example.config.ExecutorFactory;
+import com.example.config.MilvusCollectionProperties;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import io.milvus.client.MilvusClient;
 import io.milvus.client.MilvusServiceClient;
@@ -15,7 +28,10 @@ import io.milvus.grpc.*;
 import io.milvus.param.*;
 import io.milvus.param.collection.*;
 import io.milvus.param.index.*;
+import io.milvus.param.alias.*;
 import io.milvus.param.dml.*;
+import io.milvus.response.MutationResultWrapper;
+import io.milvus.response.SearchResultsWrapper;
 
 @Component
 public class MilvusUtil {
@@ -35,8 +51,33 @@ public class MilvusUtil {
     @Value("${milvus.database}")
     private String database;
     
+    @Resource
+    private MilvusCollectionProperties collectionProperties;
+    
+    @Resource
+    private ExecutorFactory executorFactory;
+    
+    @Value("${milvus.insert.batch-size:1000}")
+    private int insertBatchSize;
+    
+    @Value("${milvus.insert.max-in-flight:4}")
+    private int insertMaxInFlight;
+    
+    @Value("${milvus.insert.max-retries:3}")
+    private int insertMaxRetries;
+    
+    @Value("${milvus.insert.retry-backoff-ms:200}")
+    private long insertRetryBackoffMs;
+    
+    private static final String ID_FIELD = "id";
+    private static final String VECTOR_FIELD = "embedding";
+    
     private MilvusClient milvusClient;
     
+    private ExecutorService insertExecutor;
+    
+    private Semaphore insertPermits;
+    
     /**
      * 初始化Milvus客户端连接
      */
@@ -51,6 +92,10 @@ public class MilvusUtil {
             
             milvusClient = new MilvusServiceClient(connectParam);
             
+            // 批量写入线程池, 并发度即在途批次上限
+            insertExecutor = executorFactory.bounded("milvus-insert", insertMaxInFlight);
+            insertPermits = new Semaphore(insertMaxInFlight);
+            
             System.out.println("Milvus client initialized successfully: " + host + ":" + port);
         } catch (Exception e) {
             System.err.println("Failed to initialize Milvus client: " + e.getMessage());
@@ -64,6 +109,10 @@ public class MilvusUtil {
     @PreDestroy
     public void close() {
         try {
+            if (insertExecutor != null) {
+                insertExecutor.shutdown();
+                insertExecutor.awaitTermination(30, TimeUnit.SECONDS);
+            }
             if (milvusClient != null) {
                 milvusClient.close();
                 System.out.println("Milvus client closed successfully");
@@ -77,6 +126,13 @@ public class MilvusUtil {
      * 创建集合
      */
     public boolean createCollection(String collectionName, int dimension) {
+        return createCollection(collectionName, dimension, Collections.emptyList());
+    }
+    
+    /**
+     * 创建集合（主键 id、向量 embedding 之外附加标量字段）
+     */
+    public boolean createCollection(String collectionName, int dimension, List<FieldType> extraFields) {
         try {
             // 检查集合是否已存在
             if (hasCollection(collectionName)) {
@@ -86,14 +142,14 @@ public class MilvusUtil {
             
             // 构建字段
             FieldType fieldType1 = FieldType.newBuilder()
-                    .withName("id")
+                    .withName(ID_FIELD)
                     .withDataType(DataType.Int64)
                     .withPrimaryKey(true)
                     .withAutoID(false)
                     .build();
             
             FieldType fieldType2 = FieldType.newBuilder()
-                    .withName("embedding")
+                    .withName(VECTOR_FIELD)
                     .withDataType(DataType.FloatVector)
                     .withDimension(dimension)
                     .build();
@@ -102,6 +158,7 @@ public class MilvusUtil {
             List<FieldType> fieldTypes = new ArrayList<>();
             fieldTypes.add(fieldType1);
             fieldTypes.add(fieldType2);
+            fieldTypes.addAll(extraFields);
             
             // 创建集合
             CreateCollectionParam param = CreateCollectionParam.newBuilder()
@@ -125,16 +182,17 @@ public class MilvusUtil {
     }
     
     /**
-     * 创建索引
+     * 创建索引（索引类型、度量方式和参数取自 milvus.collections.<集合名>.*）
      */
     public boolean createIndex(String collectionName, String fieldName) {
         try {
-            // 创建IVF_FLAT索引
+            MilvusCollectionProperties.CollectionSettings settings = collectionProperties.forCollection(collectionName);
             CreateIndexParam param = CreateIndexParam.newBuilder()
                     .withCollectionName(collectionName)
                     .withFieldName(fieldName)
-                    .withIndexType(IndexType.IVF_FLAT)
-                    .withMetricType(MetricType.L2)
+                    .withIndexType(IndexType.valueOf(settings.getIndexType()))
+                    .withMetricType(MetricType.valueOf(settings.getMetricType()))
+                    .withExtraParam(settings.getIndexParams())
                     .build();
             
             R<RpcStatus> response = milvusClient.createIndex(param);
@@ -143,7 +201,8 @@ public class MilvusUtil {
                 return false;
             }
             
-            System.out.println("Index created successfully for collection: " + collectionName + " on field: " + fieldName);
+            System.out.println("Index " + settings.getIndexType() + "/" + settings.getMetricType()
+                    + " created successfully for collection: " + collectionName + " on field: " + fieldName);
             return true;
         } catch (Exception e) {
             System.err.println("Failed to create index: " + e.getMessage());
@@ -153,53 +212,245 @@ public class MilvusUtil {
     }
     
     /**
-     * 插入向量数据
+     * 加载集合到查询节点内存（同步等待加载完成）
      */
-    public Long insert(String collectionName, List<List<Float>> vectors, List<Long> ids, Map<String, List<?>> fields) {
+    public boolean loadCollection(String collectionName) {
         try {
-            // 构建插入参数
-            InsertParam param = InsertParam.newBuilder()
+            LoadCollectionParam param = LoadCollectionParam.newBuilder()
                     .withCollectionName(collectionName)
+                    .withSyncLoad(true)
                     .build();
             
-            R<MutationResult> response = milvusClient.insert(param);
+            R<RpcStatus> response = milvusClient.loadCollection(param);
             if (response.getStatus() != R.Status.Success.getCode()) {
-                System.err.println("Failed to insert vectors: " + response.getMessage());
-                return 0L;
+                System.err.println("Failed to load collection: " + response.getMessage());
+                return false;
             }
             
-            // 获取插入的行数
-            long insertedCount = vectors.size();
-            System.out.println("Inserted " + insertedCount + " vectors into collection: " + collectionName);
-            return insertedCount;
+            System.out.println("Collection loaded successfully: " + collectionName);
+            return true;
         } catch (Exception e) {
-            System.err.println("Failed to insert vectors: " + e.getMessage());
-            e.printStackTrace();
-            return 0L;
+            System.err.println("Failed to load collection: " + e.getMessage());
+            return false;
         }
     }
     
+    /**
+     * 启动预热: 加载配置了 warm-up 的集合并执行一次检索, 避免首个查询承担加载开销
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (Map.Entry<String, MilvusCollectionProperties.CollectionSettings> entry : collectionProperties.getCollections().entrySet()) {
+            MilvusCollectionProperties.CollectionSettings settings = entry.getValue();
+            if (!settings.isWarmUp() || !hasCollection(entry.getKey())) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            if (loadCollection(entry.getKey()) && settings.getDimension() > 0) {
+                search(entry.getKey(), Collections.nCopies(settings.getDimension(), 1.0f), 1);
+            }
+            System.out.println("Collection " + entry.getKey() + " warmed up in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+    
+    /**
+     * 插入向量数据
+     */
+    public Long insert(String collectionName, List<List<Float>> vectors, List<Long> ids, Map<String, List<?>> fields) {
+        InsertReport report = insertBatched(collectionName, vectors, ids, fields, true);
+        return report.getTotalInserted();
+    }
+    
+    /**
+     * 分批插入向量数据
+     * 按列组织每批数据, 最多 maxInFlight 个批次并发发送, 超出时调用线程阻塞等待;
+     * 失败批次按退避以 upsert 重试（避免重复主键）, flush 为 true 时全部完成后显式刷盘。
+     */
+    public InsertReport insertBatched(String collectionName, List<List<Float>> vectors, List<Long> ids,
+                                      Map<String, List<?>> fields, boolean flush) {
+        InsertReport report = new InsertReport(collectionName);
+        int total = vectors == null ? 0 : vectors.size();
+        if (total == 0) {
+            return report;
+        }
+        if (ids == null || ids.size() != total) {
+            throw new IllegalArgumentException("ids size must match vectors size: " + total);
+        }
+        if (fields != null) {
+            for (Map.Entry<String, List<?>> entry : fields.entrySet()) {
+                if (entry.getValue() == null || entry.getValue().size() != total) {
+                    throw new IllegalArgumentException("field " + entry.getKey() + " size must match vectors size: " + total);
+                }
+            }
+        }
+        
+        List<Future<BatchResult>> futures = new ArrayList<>();
+        int batchIndex = 0;
+        try {
+            for (int from = 0; from < total; from += insertBatchSize) {
+                int to = Math.min(from + insertBatchSize, total);
+                List<InsertParam.Field> columns = buildColumns(vectors, ids, fields, from, to);
+                int index = batchIndex++;
+                int offset = from;
+                int rows = to - from;
+                // 背压: 在途批次达到上限时阻塞生产者
+                insertPermits.acquire();
+                try {
+                    futures.add(insertExecutor.submit(() -> {
+                        try {
+                            return insertWithRetry(collectionName, columns, index, offset, rows);
+                        } finally {
+                            insertPermits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    insertPermits.release();
+                    throw e;
+                }
+            }
+            for (Future<BatchResult> future : futures) {
+                report.addBatch(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while inserting vectors into collection: " + collectionName);
+            return report;
+        } catch (ExecutionException e) {
+            System.err.println("Failed to insert vectors: " + e.getCause().getMessage());
+            return report;
+        }
+        
+        if (flush && report.getTotalInserted() > 0) {
+            report.setFlushed(flush(collectionName));
+        }
+        System.out.println("Inserted " + report.getTotalInserted() + "/" + total + " vectors into collection: "
+                + collectionName + " in " + report.getBatches().size() + " batches, failed batches: " + report.getFailedBatches());
+        return report;
+    }
+    
+    /**
+     * 刷盘, 使已插入的数据持久化并可被检索
+     */
+    public boolean flush(String collectionName) {
+        try {
+            FlushParam param = FlushParam.newBuilder()
+                    .addCollectionName(collectionName)
+                    .withSyncFlush(true)
+                    .build();
+            
+            R<FlushResponse> response = milvusClient.flush(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                System.err.println("Failed to flush collection: " + response.getMessage());
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to flush collection: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private List<InsertParam.Field> buildColumns(List<List<Float>> vectors, List<Long> ids,
+                                                 Map<String, List<?>> fields, int from, int to) {
+        List<InsertParam.Field> columns = new ArrayList<>();
+        columns.add(new InsertParam.Field(ID_FIELD, new ArrayList<>(ids.subList(from, to))));
+        columns.add(new InsertParam.Field(VECTOR_FIELD, new ArrayList<>(vectors.subList(from, to))));
+        if (fields != null) {
+            for (Map.Entry<String, List<?>> entry : fields.entrySet()) {
+                columns.add(new InsertParam.Field(entry.getKey(), new ArrayList<>(entry.getValue().subList(from, to))));
+            }
+        }
+        return columns;
+    }
+    
+    /**
+     * 插入单个批次, 失败后以 upsert 重试
+     * 超时或 UNAVAILABLE 等失败时写入可能已生效, 批次带显式主键, 再次 insert 会产生同主键的重复实体,
+     * upsert 按主键覆盖, 重试结果与只写入一次相同。
+     */
+    private BatchResult insertWithRetry(String collectionName, List<InsertParam.Field> columns,
+                                        int index, int offset, int rows) throws InterruptedException {
+        InsertParam insertParam = InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(columns)
+                .build();
+        UpsertParam upsertParam = null;
+        
+        String lastError = null;
+        for (int attempt = 1; attempt <= insertMaxRetries + 1; attempt++) {
+            try {
+                if (attempt == 1) {
+                    R<MutationResult> response = milvusClient.insert(insertParam);
+                    if (response.getStatus() == R.Status.Success.getCode()) {
+                        long inserted = new MutationResultWrapper(response.getData()).getInsertCount();
+                        return new BatchResult(index, offset, rows, inserted, attempt, null);
+                    }
+                    lastError = response.getMessage();
+                } else {
+                    if (upsertParam == null) {
+                        upsertParam = UpsertParam.newBuilder()
+                                .withCollectionName(collectionName)
+                                .withFields(columns)
+                                .build();
+                    }
+                    R<MutationResult> response = milvusClient.upsert(upsertParam);
+                    if (response.getStatus() == R.Status.Success.getCode()) {
+                        long upserted = new MutationResultWrapper(response.getData()).getUpsertCount();
+                        return new BatchResult(index, offset, rows, upserted, attempt, null);
+                    }
+                    lastError = response.getMessage();
+                }
+            } catch (Exception e) {
+                lastError = e.getMessage();
+            }
+            System.err.println("Insert batch " + index + " into " + collectionName + " failed (attempt " + attempt + "): " + lastError);
+            if (attempt <= insertMaxRetries) {
+                Thread.sleep(insertRetryBackoffMs * attempt);
+            }
+        }
+        return new BatchResult(index, offset, rows, 0L, insertMaxRetries + 1, lastError);
+    }
+    
     /**
      * 搜索相似向量
      */
-    public List<?> search(String collectionName, List<Float> vector, int topK) {
+    public List<SearchHit> search(String collectionName, List<Float> vector, int topK) {
+        return search(collectionName, vector, topK, Collections.emptyList());
+    }
+    
+    /**
+     * 搜索相似向量并返回指定的输出字段
+     */
+    public List<SearchHit> search(String collectionName, List<Float> vector, int topK, List<String> outFields) {
+        List<List<SearchHit>> results = searchBatch(collectionName, Collections.singletonList(vector), topK, outFields);
+        return results == null ? null : results.get(0);
+    }
+    
+    /**
+     * 多向量检索, 一次RPC返回每个查询向量各自的命中结果（顺序与入参一致）
+     */
+    public List<List<SearchHit>> searchBatch(String collectionName, List<List<Float>> vectors, int topK, List<String> outFields) {
         try {
+            MilvusCollectionProperties.CollectionSettings settings = collectionProperties.forCollection(collectionName);
             // 构建搜索参数
-            SearchParam param = SearchParam.newBuilder()
+            SearchParam.Builder builder = SearchParam.newBuilder()
                     .withCollectionName(collectionName)
-                    .withVectors(java.util.Arrays.asList(vector))
+                    .withVectorFieldName(VECTOR_FIELD)
+                    .withVectors(vectors)
                     .withTopK(topK)
-                    .withMetricType(MetricType.L2)
-                    .build();
+                    .withMetricType(MetricType.valueOf(settings.getMetricType()))
+                    .withParams(settings.getSearchParams());
+            if (outFields != null && !outFields.isEmpty()) {
+                builder.withOutFields(outFields);
+            }
             
-            R<SearchResults> response = milvusClient.search(param);
+            R<SearchResults> response = milvusClient.search(builder.build());
             if (response.getStatus() != R.Status.Success.getCode()) {
                 System.err.println("Failed to search vectors: " + response.getMessage());
                 return null;
             }
             
-            System.out.println("Search completed for collection: " + collectionName);
-            return new ArrayList<>();
+            return toHits(new SearchResultsWrapper(response.getData().getResults()), vectors.size(), outFields);
         } catch (Exception e) {
             System.err.println("Failed to search vectors: " + e.getMessage());
             e.printStackTrace();
@@ -207,6 +458,52 @@ public class MilvusUtil {
         }
     }
     
+    /**
+     * 将检索响应转换为每个查询向量的命中列表（输出字段按命中顺序附加）
+     */
+    public static List<List<SearchHit>> toHits(SearchResultsWrapper wrapper, int queryCount, List<String> outFields) {
+        List<List<SearchHit>> results = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(i);
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (SearchResultsWrapper.IDScore score : scores) {
+                hits.add(new SearchHit(score.getLongID(), score.getScore()));
+            }
+            if (outFields != null) {
+                for (String field : outFields) {
+                    List<?> column = wrapper.getFieldData(field, i);
+                    for (int j = 0; j < hits.size() && column != null && j < column.size(); j++) {
+                        hits.get(j).getFields().put(field, column.get(j));
+                    }
+                }
+            }
+            results.add(hits);
+        }
+        return results;
+    }
+    
+    /**
+     * 按表达式删除实体, 如 "document_id == 1" 或 "id in [1,2,3]"
+     */
+    public long delete(String collectionName, String expr) {
+        try {
+            DeleteParam param = DeleteParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withExpr(expr)
+                    .build();
+            
+            R<MutationResult> response = milvusClient.delete(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                System.err.println("Failed to delete entities: " + response.getMessage());
+                return -1L;
+            }
+            return new MutationResultWrapper(response.getData()).getDeleteCount();
+        } catch (Exception e) {
+            System.err.println("Failed to delete entities: " + e.getMessage());
+            return -1L;
+        }
+    }
+    
     /**
      * 删除集合
      */
@@ -257,4 +554,216 @@ public class MilvusUtil {
             return false;
         }
     }
+
+    /**
+     * 解析集合名对应的物理集合（传入别名时返回其指向的集合）, 不存在或失败时返回 null
+     */
+    public String resolveCollection(String collectionName) {
+        try {
+            DescribeCollectionParam param = DescribeCollectionParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .build();
+
+            R<DescribeCollectionResponse> response = milvusClient.describeCollection(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                return null;
+            }
+            return response.getData().getCollectionName();
+        } catch (Exception e) {
+            System.err.println("Failed to describe collection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 创建别名
+     */
+    public boolean createAlias(String collectionName, String alias) {
+        try {
+            CreateAliasParam param = CreateAliasParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withAlias(alias)
+                    .build();
+
+            R<RpcStatus> response = milvusClient.createAlias(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                System.err.println("Failed to create alias: " + response.getMessage());
+                return false;
+            }
+
+            System.out.println("Alias " + alias + " created for collection: " + collectionName);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to create alias: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 将别名原子地切换到另一个集合, 切换后新的检索请求即落到新集合
+     */
+    public boolean alterAlias(String collectionName, String alias) {
+        try {
+            AlterAliasParam param = AlterAliasParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withAlias(alias)
+                    .build();
+
+            R<RpcStatus> response = milvusClient.alterAlias(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                System.err.println("Failed to alter alias: " + response.getMessage());
+                return false;
+            }
+
+            System.out.println("Alias " + alias + " switched to collection: " + collectionName);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to alter alias: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 删除别名
+     */
+    public boolean dropAlias(String alias) {
+        try {
+            DropAliasParam param = DropAliasParam.newBuilder()
+                    .withAlias(alias)
+                    .build();
+
+            R<RpcStatus> response = milvusClient.dropAlias(param);
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                System.err.println("Failed to drop alias: " + response.getMessage());
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to drop alias: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 单批次插入结果
+     */
+    public static class BatchResult {
+        private final int index;
+        private final int offset;
+        private final int requested;
+        private final long inserted;
+        private final int attempts;
+        private final String error;
+        
+        public BatchResult(int index, int offset, int requested, long inserted, int attempts, String error) {
+            this.index = index;
+            this.offset = offset;
+            this.requested = requested;
+            this.inserted = inserted;
+            this.attempts = attempts;
+            this.error = error;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public int getOffset() {
+            return offset;
+        }
+        
+        public int getRequested() {
+            return requested;
+        }
+        
+        public long getInserted() {
+            return inserted;
+        }
+        
+        public int getAttempts() {
+            return attempts;
+        }
+        
+        public String getError() {
+            return error;
+        }
+        
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+    
+    /**
+     * 批量插入汇总结果
+     */
+    public static class InsertReport {
+        private final String collectionName;
+        private final List<BatchResult> batches = new ArrayList<>();
+        private long totalInserted;
+        private int failedBatches;
+        private boolean flushed;
+        
+        public InsertReport(String collectionName) {
+            this.collectionName = collectionName;
+        }
+        
+        void addBatch(BatchResult batch) {
+            batches.add(batch);
+            totalInserted += batch.getInserted();
+            if (!batch.isSuccess()) {
+                failedBatches++;
+            }
+        }
+        
+        public String getCollectionName() {
+            return collectionName;
+        }
+        
+        public List<BatchResult> getBatches() {
+            return Collections.unmodifiableList(batches);
+        }
+        
+        public long getTotalInserted() {
+            return totalInserted;
+        }
+        
+        public int getFailedBatches() {
+            return failedBatches;
+        }
+        
+        public boolean isFlushed() {
+            return flushed;
+        }
+        
+        void setFlushed(boolean flushed) {
+            this.flushed = flushed;
+        }
+    }
+    
+    /**
+     * 检索命中结果
+     * score 含义取决于度量方式: L2 为距离（越小越相似）, IP/COSINE 为相似度（越大越相似）
+     */
+    public static class SearchHit {
+        private final long id;
+        private final float score;
+        private final Map<String, Object> fields = new LinkedHashMap<>();
+        
+        public SearchHit(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        public float getScore() {
+            return score;
+        }
+        
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+    }
 }
@@ -1,18 +1,45 @@
 package com.example.util;
 
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Component
 public class RedisUtil {
     
+    // 自增后仅在键没有过期时间时设置过期时间（新建的计数器）, 两步在服务端原子完成
+    private static final RedisScript<Long> INCREMENT_AND_EXPIRE_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('INCRBY', KEYS[1], ARGV[1]) "
+                    + "if redis.call('PTTL', KEYS[1]) < 0 then redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+                    + "return value", Long.class);
+    
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
     
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    
     /**
      * 设置缓存
      */
@@ -37,6 +64,50 @@ public class RedisUtil {
         return operations.get(key);
     }
     
+    /**
+     * 批量获取缓存（一次 MGET）, 结果顺序与键一致, 不存在的键对应 null
+     */
+    public List<Object> multiGet(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        return values != null ? values : new ArrayList<>(Collections.nCopies(keys.size(), null));
+    }
+    
+    /**
+     * 批量设置缓存（带过期时间）, 以一次管道发送
+     */
+    public void multiSet(Map<String, ?> entries, long timeout, TimeUnit unit) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        pipeline(operations -> entries.forEach((key, value) -> operations.opsForValue().set(key, value, timeout, unit)));
+    }
+    
+    /**
+     * 以管道执行一批命令（一次网络往返）, 返回各命令结果; 回调中的命令只入队, 返回值均为 null
+     */
+    public List<Object> pipeline(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * 原子自增并在新建时设置过期时间（计数器、限流窗口）
+     * @return 自增后的值
+     */
+    public Long incrementAndExpire(String key, long delta, long timeout, TimeUnit unit) {
+        return stringRedisTemplate.execute(INCREMENT_AND_EXPIRE_SCRIPT, List.of(key),
+                String.valueOf(delta), String.valueOf(unit.toMillis(timeout)));
+    }
+    
     /**
      * 删除缓存
      */
@@ -96,4 +167,121 @@ public class RedisUtil {
         ValueOperations<String, Object> operations = redisTemplate.opsForValue();
         return operations.decrement(key, delta);
     }
+    
+    /**
+     * 设置哈希字段
+     */
+    public void hashPut(String key, String field, Object value) {
+        redisTemplate.opsForHash().put(key, field, value);
+    }
+    
+    /**
+     * 获取哈希全部字段
+     */
+    public Map<Object, Object> hashGetAll(String key) {
+        return redisTemplate.opsForHash().entries(key);
+    }
+    
+    /**
+     * 删除哈希字段
+     */
+    public Long hashDelete(String key, Object... fields) {
+        return redisTemplate.opsForHash().delete(key, fields);
+    }
+    
+    /**
+     * 设置字符串值（带过期时间, 明文存储, 可被 Lua 脚本直接读取）
+     */
+    public void setString(String key, String value, long timeout, TimeUnit unit) {
+        stringRedisTemplate.opsForValue().set(key, value, timeout, unit);
+    }
+    
+    /**
+     * 获取字符串哈希的全部字段
+     */
+    public Map<String, String> hashGetAllAsString(String key) {
+        return stringRedisTemplate.<String, String>opsForHash().entries(key);
+    }
+    
+    /**
+     * 批量获取字符串哈希的全部字段, 以一次管道发送, 结果顺序与键一致（不存在的键对应空 Map）
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, String>> multiHashGetAllAsString(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> results = pipelineStrings(operations -> {
+            for (String key : keys) {
+                operations.opsForHash().entries(key);
+            }
+        });
+        List<Map<String, String>> maps = new ArrayList<>(results.size());
+        for (Object result : results) {
+            maps.add(result instanceof Map ? (Map<String, String>) result : Collections.emptyMap());
+        }
+        return maps;
+    }
+    
+    /**
+     * 以管道执行一批字符串命令（键、值均为明文, 可被 HINCRBY 等命令及 Lua 脚本直接操作）
+     */
+    public List<Object> pipelineStrings(Consumer<RedisOperations<String, String>> commands) {
+        return stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, String>) operations);
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * 随机获取集合中的若干成员（不移除）
+     */
+    public List<String> setRandomMembers(String key, long count) {
+        Set<String> members = stringRedisTemplate.opsForSet().distinctRandomMembers(key, count);
+        return members == null ? new ArrayList<>() : new ArrayList<>(members);
+    }
+    
+    /**
+     * 执行 Lua 脚本, 键和参数均按字符串传递
+     */
+    public <T> T executeScript(RedisScript<T> script, List<String> keys, String... args) {
+        return stringRedisTemplate.execute(script, keys, (Object[]) args);
+    }
+    
+    /**
+     * 发布消息到频道
+     */
+    public void publish(String channel, Object message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+    
+    /**
+     * 订阅频道, 消息体按值序列化器反序列化后交给处理器
+     */
+    public void subscribe(String channel, Consumer<Object> handler) {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                handler.accept(redisTemplate.getValueSerializer().deserialize(message.getBody()));
+            } catch (Exception e) {
+                System.err.println("Failed to handle message on channel " + channel + ": " + e.getMessage());
+            }
+        }, new ChannelTopic(channel));
+    }
+    
+    /**
+     * 订阅频道, 消息体按 UTF-8 字符串交给处理器（用于 Lua 脚本中 PUBLISH 的消息）
+     */
+    public void subscribeString(String channel, Consumer<String> handler) {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                handler.accept(new String(message.getBody(), StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                System.err.println("Failed to handle message on channel " + channel + ": " + e.getMessage());
+            }
+        }, new ChannelTopic(channel));
+    }
 }
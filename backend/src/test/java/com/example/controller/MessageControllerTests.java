@@ -0,0 +1,34 @@
+package com.example.controller;
+
+import com.example.service.MessageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class MessageControllerTests {
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        MessageService messageService = mock(MessageService.class);
+        doThrow(new IllegalArgumentException("invalid cursor: bogus"))
+                .when(messageService).listMessages(anyLong(), eq("bogus"), anyInt());
+        MessageController controller = new MessageController(messageService, new ObjectMapper(), mock(AsyncTaskExecutor.class));
+
+        ResponseEntity<Map<String, Object>> response = controller.listMessages(7L, "bogus", 20);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(false, response.getBody().get("success"));
+        assertEquals("invalid cursor: bogus", response.getBody().get("message"));
+    }
+}
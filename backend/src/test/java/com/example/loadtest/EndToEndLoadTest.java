@@ -0,0 +1,255 @@
+package com.example.loadtest;
+
+import com.example.model.Channel;
+import com.example.model.User;
+import com.example.repository.ChannelRepository;
+import com.example.repository.UserRepository;
+import com.example.service.EmbeddingService;
+import com.example.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 端到端压测（mvn test -Ploadtest, 单机即可运行）
+ * 启动完整应用, MySQL/Redis/Milvus 分别由 H2（MySQL 模式）、嵌入式 Redis 和进程内 Milvus gRPC 替身代替,
+ * 大模型使用 LlmStubServer; 按渠道占比与开放模型到达率驱动 /api/users、消息发送和知识检索,
+ * 输出吞吐、错误率与延迟分位数, 报告同时写入 target/loadtest/e2e-*.json 供容量变更前后对比。
+ * 参数: -Dloadtest.e2e.rate（默认 100 req/s）、-Dloadtest.e2e.seconds（默认 30）、-Dloadtest.e2e.warmup-seconds（默认 5）、
+ * -Dloadtest.e2e.max-error-rate（默认 0.01）。
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example=info",
+        "knowledge.storage-dir=target/loadtest/knowledge",
+        "llm.enabled=true",
+        "llm.stub.enabled=true"
+})
+class EndToEndLoadTest {
+
+    private static final String[] CHANNELS = {"website", "wechat", "wecom", "douyin"};
+    /** 渠道占比: 网站 45%, 微信 35%, 企业微信 10%, 抖音 10% */
+    private static final int[] CHANNEL_WEIGHTS = {45, 35, 10, 10};
+    private static final String[] ROLES = {"user", "user", "user", "student", "parent", "vip"};
+    private static final String[] QUESTIONS = {
+            "请问下周的课程什么时候开始?", "怎么申请退款?", "可以开发票吗?", "上课时间能调整吗?",
+            "vip 有什么优惠?", "忘记密码怎么办?", "课程可以试听吗?", "老师的资质怎么样?"
+    };
+    private static final int USERS = 2000;
+    private static final int KNOWLEDGE_CHUNKS = 2000;
+
+    private static RedisServer redisServer;
+    private static final FakeMilvusServer MILVUS = new FakeMilvusServer();
+
+    private final double rate = Double.parseDouble(System.getProperty("loadtest.e2e.rate", "100"));
+    private final int seconds = Integer.getInteger("loadtest.e2e.seconds", 30);
+    private final int warmupSeconds = Integer.getInteger("loadtest.e2e.warmup-seconds", 5);
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.e2e.max-error-rate", "0.01"));
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${knowledge.collection}")
+    private String knowledgeCollection;
+
+    @Autowired
+    private ChannelRepository channelRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void standIns(DynamicPropertyRegistry registry) throws IOException {
+        int redisPort = freePort();
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+        int milvusPort = freePort();
+        MILVUS.start(milvusPort);
+        int llmPort = freePort();
+
+        registry.add("spring.data.redis.host", () -> "127.0.0.1");
+        registry.add("spring.data.redis.port", () -> redisPort);
+        registry.add("milvus.host", () -> "127.0.0.1");
+        registry.add("milvus.port", () -> milvusPort);
+        registry.add("llm.stub.port", () -> llmPort);
+        registry.add("llm.base-url", () -> "http://127.0.0.1:" + llmPort);
+    }
+
+    @AfterAll
+    static void stopStandIns() throws Exception {
+        MILVUS.stop();
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    void mixedTrafficReport() throws Exception {
+        List<String> userIds = seed();
+        String base = "http://127.0.0.1:" + port + "/api";
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+
+        // 请求占比: 消息发送 60%, 知识检索 20%, 用户接口 20%
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator(client)
+                .operation("message.send", 60, random -> post(base + "/message/send", Map.of(
+                        "channel", pick(random, CHANNELS, CHANNEL_WEIGHTS),
+                        "userId", userIds.get(random.nextInt(userIds.size())),
+                        "content", QUESTIONS[random.nextInt(QUESTIONS.length)])))
+                .operation("knowledge.query", 20, random -> post(base + "/knowledge/query", Map.of(
+                        "question", QUESTIONS[random.nextInt(QUESTIONS.length)], "topK", 5)))
+                .operation("users.identify", 12, random -> post(base + "/users/identify", Map.of(
+                        "userId", userIds.get(random.nextInt(userIds.size())))))
+                .operation("users.get", 6, random -> HttpRequest.newBuilder(
+                        URI.create(base + "/users/" + (1 + random.nextInt(USERS)))).timeout(Duration.ofSeconds(10)).GET().build())
+                .operation("users.list", 2, random -> HttpRequest.newBuilder(
+                        URI.create(base + "/users")).timeout(Duration.ofSeconds(10)).GET().build());
+
+        OpenModelLoadGenerator.Report report = generator.run(rate, Duration.ofSeconds(warmupSeconds),
+                Duration.ofSeconds(seconds), 2000);
+        System.out.println(report);
+        Path output = Path.of("target", "loadtest",
+                "e2e-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Files.createDirectories(output.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report.toMap());
+        System.out.println("Load test report written to " + output.toAbsolutePath());
+
+        assertTrue(report.requests() > 0);
+        assertTrue(MILVUS.searchCount() > 0, "knowledge queries should reach the Milvus stand-in");
+        assertTrue(report.errorRate() <= maxErrorRate, "error rate " + report.errorRate() + " exceeds " + maxErrorRate);
+    }
+
+    /**
+     * 准备渠道、用户（数据库与内存用户服务）和知识库向量
+     * @return 外部用户标识
+     */
+    private List<String> seed() {
+        for (String name : CHANNELS) {
+            if (channelRepository.findByChannelName(name) == null) {
+                Channel channel = new Channel();
+                channel.setChannelName(name);
+                channel.setChannelType(name);
+                channel.setStatus("active");
+                channel.setCreatedAt(LocalDateTime.now());
+                channel.setUpdatedAt(LocalDateTime.now());
+                channelRepository.save(channel);
+            }
+        }
+
+        Random random = new Random(7);
+        List<User> users = new ArrayList<>(USERS);
+        List<String> userIds = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserId("load-" + i);
+            user.setPhone("137" + String.format("%08d", i));
+            user.setCrmId("crm-load-" + i);
+            user.setRole(ROLES[random.nextInt(ROLES.length)]);
+            user.setVip("vip".equals(user.getRole()));
+            user.setCreatedAt(LocalDateTime.now());
+            user.setUpdatedAt(LocalDateTime.now());
+            users.add(user);
+            userIds.add(user.getUserId());
+            userService.addUser(copyOf(user));
+        }
+        userRepository.saveAll(users);
+
+        List<String> contents = new ArrayList<>(KNOWLEDGE_CHUNKS);
+        for (int i = 0; i < KNOWLEDGE_CHUNKS; i++) {
+            contents.add(QUESTIONS[i % QUESTIONS.length] + " 参考答案第 " + i + " 条: 详情请咨询班主任或查看课程说明。");
+        }
+        List<List<Float>> vectors = new ArrayList<>(KNOWLEDGE_CHUNKS);
+        for (int from = 0; from < KNOWLEDGE_CHUNKS; from += 256) {
+            vectors.addAll(embeddingService.embed(contents.subList(from, Math.min(from + 256, KNOWLEDGE_CHUNKS))));
+        }
+        MILVUS.seedKnowledge(knowledgeCollection, vectors, contents);
+        return userIds;
+    }
+
+    private HttpRequest post(String url, Map<String, ?> body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String pick(Random random, String[] values, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (int i = 0; i < values.length; i++) {
+            value -= weights[i];
+            if (value < 0) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setUserId(user.getUserId());
+        copy.setPhone(user.getPhone());
+        copy.setCrmId(user.getCrmId());
+        copy.setRole(user.getRole());
+        copy.setVip(user.isVip());
+        return copy;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package com.example.loadtest;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.milvus.grpc.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内 Milvus 替身（gRPC）
+ * 实现 MilvusUtil 用到的调用: 集合/索引/别名管理、加载与刷盘（立即完成）、插入、按表达式删除和暴力检索;
+ * 数据保存在内存, 检索按 search_params 中的 metric_type 计算 L2 / IP / COSINE。
+ */
+class FakeMilvusServer extends MilvusServiceGrpc.MilvusServiceImplBase {
+
+    private static final String VECTOR_FIELD = "embedding";
+    private static final Pattern EQUALS_EXPR = Pattern.compile("^\\s*(\\w+)\\s*==\\s*(-?\\d+)\\s*$");
+    private static final Pattern IN_EXPR = Pattern.compile("^\\s*(\\w+)\\s+in\\s+\\[([^]]*)]\\s*$");
+
+    private final Map<String, Collection> collections = new ConcurrentHashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    private final AtomicLong collectionIds = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private Server server;
+
+    void start(int port) throws IOException {
+        server = ServerBuilder.forPort(port).addService(this).build().start();
+    }
+
+    void stop() throws InterruptedException {
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    long searchCount() {
+        return searches.get();
+    }
+
+    /**
+     * 直接写入知识库集合（主键 id、向量 embedding 及 document_id、chunk_id、content 字段）
+     */
+    void seedKnowledge(String collectionName, List<List<Float>> vectors, List<String> contents) {
+        int dimension = vectors.get(0).size();
+        CollectionSchema schema = CollectionSchema.newBuilder()
+                .setName(collectionName)
+                .addFields(FieldSchema.newBuilder().setName("id").setDataType(DataType.Int64).setIsPrimaryKey(true))
+                .addFields(FieldSchema.newBuilder().setName(VECTOR_FIELD).setDataType(DataType.FloatVector)
+                        .addTypeParams(KeyValuePair.newBuilder().setKey("dim").setValue(String.valueOf(dimension))))
+                .addFields(FieldSchema.newBuilder().setName("document_id").setDataType(DataType.Int64))
+                .addFields(FieldSchema.newBuilder().setName("chunk_id").setDataType(DataType.Int64))
+                .addFields(FieldSchema.newBuilder().setName("content").setDataType(DataType.VarChar))
+                .build();
+        Collection collection = new Collection(collectionIds.incrementAndGet(), schema);
+        for (int i = 0; i < vectors.size(); i++) {
+            float[] vector = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vector[j] = vectors.get(i).get(j);
+            }
+            collection.add((long) i + 1, vector, Map.of("document_id", (long) (i / 10 + 1),
+                    "chunk_id", (long) i + 1, "content", contents.get(i)));
+        }
+        collections.put(collectionName, collection);
+    }
+
+    @Override
+    public void connect(ConnectRequest request, StreamObserver<ConnectResponse> responseObserver) {
+        reply(responseObserver, ConnectResponse.newBuilder().setStatus(success()).setIdentifier(1).build());
+    }
+
+    @Override
+    public void hasCollection(HasCollectionRequest request, StreamObserver<BoolResponse> responseObserver) {
+        reply(responseObserver, BoolResponse.newBuilder().setStatus(success())
+                .setValue(find(request.getCollectionName()) != null).build());
+    }
+
+    @Override
+    public void createCollection(CreateCollectionRequest request, StreamObserver<Status> responseObserver) {
+        try {
+            CollectionSchema schema = CollectionSchema.parseFrom(request.getSchema());
+            collections.putIfAbsent(request.getCollectionName(), new Collection(collectionIds.incrementAndGet(), schema));
+            reply(responseObserver, success());
+        } catch (InvalidProtocolBufferException e) {
+            reply(responseObserver, failure("invalid schema: " + e.getMessage()));
+        }
+    }
+
+    @Override
+    public void describeCollection(DescribeCollectionRequest request,
+                                   StreamObserver<DescribeCollectionResponse> responseObserver) {
+        String name = resolve(request.getCollectionName());
+        Collection collection = name == null ? null : collections.get(name);
+        if (collection == null) {
+            reply(responseObserver, DescribeCollectionResponse.newBuilder()
+                    .setStatus(failure("collection not found: " + request.getCollectionName())).build());
+            return;
+        }
+        DescribeCollectionResponse.Builder builder = DescribeCollectionResponse.newBuilder()
+                .setStatus(success())
+                .setCollectionName(name)
+                .setCollectionID(collection.id)
+                .setSchema(collection.schema)
+                .setShardsNum(1);
+        aliases.forEach((alias, target) -> {
+            if (target.equals(name)) {
+                builder.addAliases(alias);
+            }
+        });
+        reply(responseObserver, builder.build());
+    }
+
+    @Override
+    public void dropCollection(DropCollectionRequest request, StreamObserver<Status> responseObserver) {
+        collections.remove(request.getCollectionName());
+        aliases.values().removeIf(target -> target.equals(request.getCollectionName()));
+        reply(responseObserver, success());
+    }
+
+    @Override
+    public void showCollections(ShowCollectionsRequest request, StreamObserver<ShowCollectionsResponse> responseObserver) {
+        ShowCollectionsResponse.Builder builder = ShowCollectionsResponse.newBuilder().setStatus(success());
+        for (String name : request.getCollectionNamesList().isEmpty()
+                ? new ArrayList<>(collections.keySet()) : request.getCollectionNamesList()) {
+            Collection collection = find(name);
+            if (collection != null) {
+                builder.addCollectionNames(name).addCollectionIds(collection.id).addInMemoryPercentages(100);
+            }
+        }
+        reply(responseObserver, builder.build());
+    }
+
+    @Override
+    public void createIndex(CreateIndexRequest request, StreamObserver<Status> responseObserver) {
+        reply(responseObserver, find(request.getCollectionName()) == null
+                ? failure("collection not found: " + request.getCollectionName()) : success());
+    }
+
+    @Override
+    public void describeIndex(DescribeIndexRequest request, StreamObserver<DescribeIndexResponse> responseObserver) {
+        Collection collection = find(request.getCollectionName());
+        long rows = collection == null ? 0 : collection.size();
+        reply(responseObserver, DescribeIndexResponse.newBuilder()
+                .setStatus(success())
+                .addIndexDescriptions(IndexDescription.newBuilder()
+                        .setIndexName(VECTOR_FIELD)
+                        .setFieldName(VECTOR_FIELD)
+                        .setState(IndexState.Finished)
+                        .setTotalRows(rows)
+                        .setIndexedRows(rows))
+                .build());
+    }
+
+    @Override
+    public void getIndexBuildProgress(GetIndexBuildProgressRequest request,
+                                      StreamObserver<GetIndexBuildProgressResponse> responseObserver) {
+        Collection collection = find(request.getCollectionName());
+        long rows = collection == null ? 0 : collection.size();
+        reply(responseObserver, GetIndexBuildProgressResponse.newBuilder()
+                .setStatus(success()).setTotalRows(rows).setIndexedRows(rows).build());
+    }
+
+    @Override
+    public void loadCollection(LoadCollectionRequest request, StreamObserver<Status> responseObserver) {
+        reply(responseObserver, find(request.getCollectionName()) == null
+                ? failure("collection not found: " + request.getCollectionName()) : success());
+    }
+
+    @Override
+    public void getLoadingProgress(GetLoadingProgressRequest request,
+                                   StreamObserver<GetLoadingProgressResponse> responseObserver) {
+        reply(responseObserver, GetLoadingProgressResponse.newBuilder()
+                .setStatus(success()).setProgress(100).build());
+    }
+
+    @Override
+    public void getLoadState(GetLoadStateRequest request, StreamObserver<GetLoadStateResponse> responseObserver) {
+        reply(responseObserver, GetLoadStateResponse.newBuilder()
+                .setStatus(success()).setState(LoadState.LoadStateLoaded).build());
+    }
+
+    @Override
+    public void insert(InsertRequest request, StreamObserver<MutationResult> responseObserver) {
+        MutationResult.Builder result = write(request.getCollectionName(), request.getFieldsDataList(), request.getNumRows());
+        reply(responseObserver, result.getStatus().getErrorCode() == ErrorCode.Success
+                ? result.setInsertCnt(request.getNumRows()).build() : result.build());
+    }
+
+    /**
+     * 按主键覆盖写入, 与 insert 共用存储（存储本身按主键去重）
+     */
+    @Override
+    public void upsert(UpsertRequest request, StreamObserver<MutationResult> responseObserver) {
+        MutationResult.Builder result = write(request.getCollectionName(), request.getFieldsDataList(), request.getNumRows());
+        reply(responseObserver, result.getStatus().getErrorCode() == ErrorCode.Success
+                ? result.setUpsertCnt(request.getNumRows()).build() : result.build());
+    }
+
+    private MutationResult.Builder write(String collectionName, List<FieldData> fieldsData, int rows) {
+        Collection collection = find(collectionName);
+        if (collection == null) {
+            return MutationResult.newBuilder().setStatus(failure("collection not found: " + collectionName));
+        }
+        List<Long> ids = null;
+        List<float[]> vectors = new ArrayList<>(rows);
+        Map<String, List<?>> scalars = new ConcurrentHashMap<>();
+        for (FieldData field : fieldsData) {
+            if (field.hasVectors()) {
+                int dimension = (int) field.getVectors().getDim();
+                List<Float> data = field.getVectors().getFloatVector().getDataList();
+                for (int i = 0; i < rows; i++) {
+                    float[] vector = new float[dimension];
+                    for (int j = 0; j < dimension; j++) {
+                        vector[j] = data.get(i * dimension + j);
+                    }
+                    vectors.add(vector);
+                }
+            } else if ("id".equals(field.getFieldName())) {
+                ids = field.getScalars().getLongData().getDataList();
+            } else {
+                scalars.put(field.getFieldName(), scalarValues(field));
+            }
+        }
+        if (ids == null || vectors.size() != rows) {
+            return MutationResult.newBuilder().setStatus(failure("id and embedding are required"));
+        }
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> values = new ConcurrentHashMap<>();
+            for (Map.Entry<String, List<?>> entry : scalars.entrySet()) {
+                values.put(entry.getKey(), entry.getValue().get(i));
+            }
+            collection.add(ids.get(i), vectors.get(i), values);
+        }
+        return MutationResult.newBuilder()
+                .setStatus(success())
+                .setIDs(IDs.newBuilder().setIntId(LongArray.newBuilder().addAllData(ids)));
+    }
+
+    @Override
+    public void delete(DeleteRequest request, StreamObserver<MutationResult> responseObserver) {
+        Collection collection = find(request.getCollectionName());
+        if (collection == null) {
+            reply(responseObserver, MutationResult.newBuilder()
+                    .setStatus(failure("collection not found: " + request.getCollectionName())).build());
+            return;
+        }
+        String field;
+        Set<Long> values = new HashSet<>();
+        Matcher equals = EQUALS_EXPR.matcher(request.getExpr());
+        Matcher in = IN_EXPR.matcher(request.getExpr());
+        if (equals.matches()) {
+            field = equals.group(1);
+            values.add(Long.parseLong(equals.group(2)));
+        } else if (in.matches()) {
+            field = in.group(1);
+            for (String value : in.group(2).split(",")) {
+                if (!value.isBlank()) {
+                    values.add(Long.parseLong(value.trim()));
+                }
+            }
+        } else {
+            reply(responseObserver, MutationResult.newBuilder()
+                    .setStatus(failure("unsupported expr: " + request.getExpr())).build());
+            return;
+        }
+        reply(responseObserver, MutationResult.newBuilder()
+                .setStatus(success()).setDeleteCnt(collection.delete(field, values)).build());
+    }
+
+    @Override
+    public void flush(FlushRequest request, StreamObserver<FlushResponse> responseObserver) {
+        // 写入即可见, 刷盘没有待处理的段
+        FlushResponse.Builder builder = FlushResponse.newBuilder().setStatus(success());
+        for (String name : request.getCollectionNamesList()) {
+            builder.putCollSegIDs(name, LongArray.getDefaultInstance());
+            builder.putFlushCollSegIDs(name, LongArray.getDefaultInstance());
+        }
+        reply(responseObserver, builder.build());
+    }
+
+    @Override
+    public void getFlushState(GetFlushStateRequest request, StreamObserver<GetFlushStateResponse> responseObserver) {
+        reply(responseObserver, GetFlushStateResponse.newBuilder().setStatus(success()).setFlushed(true).build());
+    }
+
+    @Override
+    public void createAlias(CreateAliasRequest request, StreamObserver<Status> responseObserver) {
+        if (collections.get(request.getCollectionName()) == null) {
+            reply(responseObserver, failure("collection not found: " + request.getCollectionName()));
+        } else if (aliases.putIfAbsent(request.getAlias(), request.getCollectionName()) != null) {
+            reply(responseObserver, failure("alias already exists: " + request.getAlias()));
+        } else {
+            reply(responseObserver, success());
+        }
+    }
+
+    @Override
+    public void alterAlias(AlterAliasRequest request, StreamObserver<Status> responseObserver) {
+        if (collections.get(request.getCollectionName()) == null) {
+            reply(responseObserver, failure("collection not found: " + request.getCollectionName()));
+            return;
+        }
+        aliases.put(request.getAlias(), request.getCollectionName());
+        reply(responseObserver, success());
+    }
+
+    @Override
+    public void dropAlias(DropAliasRequest request, StreamObserver<Status> responseObserver) {
+        aliases.remove(request.getAlias());
+        reply(responseObserver, success());
+    }
+
+    @Override
+    public void search(SearchRequest request, StreamObserver<SearchResults> responseObserver) {
+        searches.incrementAndGet();
+        Collection collection = find(request.getCollectionName());
+        if (collection == null) {
+            reply(responseObserver, SearchResults.newBuilder()
+                    .setStatus(failure("collection not found: " + request.getCollectionName())).build());
+            return;
+        }
+        int topK = 10;
+        String metric = "L2";
+        for (KeyValuePair param : request.getSearchParamsList()) {
+            if ("topk".equals(param.getKey())) {
+                topK = Integer.parseInt(param.getValue());
+            } else if ("metric_type".equals(param.getKey())) {
+                metric = param.getValue();
+            }
+        }
+        List<ByteString> queries;
+        try {
+            queries = PlaceholderGroup.parseFrom(request.getPlaceholderGroup()).getPlaceholders(0).getValuesList();
+        } catch (InvalidProtocolBufferException e) {
+            reply(responseObserver, SearchResults.newBuilder().setStatus(failure("invalid placeholder group")).build());
+            return;
+        }
+
+        List<String> outFields = request.getOutputFieldsList();
+        SearchResultData.Builder data = SearchResultData.newBuilder().setNumQueries(queries.size()).setTopK(topK);
+        LongArray.Builder ids = LongArray.newBuilder();
+        List<List<Object>> columns = new ArrayList<>();
+        for (int i = 0; i < outFields.size(); i++) {
+            columns.add(new ArrayList<>());
+        }
+        for (ByteString query : queries) {
+            List<Hit> hits = collection.search(toVector(query), topK, metric);
+            data.addTopks(hits.size());
+            for (Hit hit : hits) {
+                ids.addData(hit.row.id);
+                data.addScores(hit.score);
+                for (int i = 0; i < outFields.size(); i++) {
+                    columns.get(i).add(hit.row.values.get(outFields.get(i)));
+                }
+            }
+        }
+        data.setIds(IDs.newBuilder().setIntId(ids));
+        for (int i = 0; i < outFields.size(); i++) {
+            data.addFieldsData(fieldData(outFields.get(i), collection.type(outFields.get(i)), columns.get(i)));
+            data.addOutputFields(outFields.get(i));
+        }
+        reply(responseObserver, SearchResults.newBuilder()
+                .setStatus(success())
+                .setCollectionName(request.getCollectionName())
+                .setResults(data)
+                .build());
+    }
+
+    private Collection find(String name) {
+        String resolved = resolve(name);
+        return resolved == null ? null : collections.get(resolved);
+    }
+
+    private String resolve(String name) {
+        if (collections.containsKey(name)) {
+            return name;
+        }
+        return aliases.get(name);
+    }
+
+    private static float[] toVector(ByteString bytes) {
+        ByteBuffer buffer = bytes.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[buffer.remaining() / Float.BYTES];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private static List<?> scalarValues(FieldData field) {
+        ScalarField scalars = field.getScalars();
+        switch (field.getType()) {
+            case Int64:
+                return scalars.getLongData().getDataList();
+            case Int32:
+            case Int16:
+            case Int8:
+                return scalars.getIntData().getDataList();
+            case VarChar:
+                return scalars.getStringData().getDataList();
+            case Float:
+                return scalars.getFloatData().getDataList();
+            case Double:
+                return scalars.getDoubleData().getDataList();
+            case Bool:
+                return scalars.getBoolData().getDataList();
+            default:
+                throw new IllegalArgumentException("unsupported field type: " + field.getType());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FieldData fieldData(String name, DataType type, List<Object> values) {
+        ScalarField.Builder scalars = ScalarField.newBuilder();
+        switch (type) {
+            case Int64:
+                scalars.setLongData(LongArray.newBuilder().addAllData((List<Long>) (List<?>) values));
+                break;
+            case Int32:
+            case Int16:
+            case Int8:
+                scalars.setIntData(IntArray.newBuilder().addAllData((List<Integer>) (List<?>) values));
+                break;
+            case Float:
+                scalars.setFloatData(FloatArray.newBuilder().addAllData((List<Float>) (List<?>) values));
+                break;
+            case Double:
+                scalars.setDoubleData(DoubleArray.newBuilder().addAllData((List<Double>) (List<?>) values));
+                break;
+            case Bool:
+                scalars.setBoolData(BoolArray.newBuilder().addAllData((List<Boolean>) (List<?>) values));
+                break;
+            default:
+                scalars.setStringData(StringArray.newBuilder().addAllData((List<String>) (List<?>) values));
+        }
+        return FieldData.newBuilder().setFieldName(name).setType(type).setScalars(scalars).build();
+    }
+
+    private static Status success() {
+        return Status.newBuilder().setErrorCode(ErrorCode.Success).build();
+    }
+
+    private static Status failure(String reason) {
+        return Status.newBuilder().setErrorCode(ErrorCode.UnexpectedError).setReason(reason).build();
+    }
+
+    private static <T> void reply(StreamObserver<T> observer, T response) {
+        observer.onNext(response);
+        observer.onCompleted();
+    }
+
+    /**
+     * 内存集合, 写入与检索互斥
+     */
+    private static final class Collection {
+        private final long id;
+        private final CollectionSchema schema;
+        private final Map<Long, Row> rows = new LinkedHashMap<>();
+
+        private Collection(long id, CollectionSchema schema) {
+            this.id = id;
+            this.schema = schema;
+        }
+
+        synchronized void add(long id, float[] vector, Map<String, Object> values) {
+            rows.put(id, new Row(id, vector, values));
+        }
+
+        synchronized long delete(String field, Set<Long> values) {
+            int before = rows.size();
+            rows.values().removeIf(row -> values.contains("id".equals(field) ? row.id : row.values.get(field)));
+            return before - rows.size();
+        }
+
+        synchronized int size() {
+            return rows.size();
+        }
+
+        DataType type(String field) {
+            for (FieldSchema schemaField : schema.getFieldsList()) {
+                if (schemaField.getName().equals(field)) {
+                    return schemaField.getDataType();
+                }
+            }
+            return DataType.VarChar;
+        }
+
+        synchronized List<Hit> search(float[] query, int topK, String metric) {
+            // L2 距离越小越相似, IP/COSINE 越大越相似; 堆顶为当前最差的命中
+            Comparator<Hit> worstFirst = "L2".equalsIgnoreCase(metric)
+                    ? (a, b) -> Float.compare(b.score, a.score) : (a, b) -> Float.compare(a.score, b.score);
+            PriorityQueue<Hit> best = new PriorityQueue<>(topK + 1, worstFirst);
+            for (Row row : rows.values()) {
+                best.add(new Hit(row, score(query, row.vector, metric)));
+                if (best.size() > topK) {
+                    best.poll();
+                }
+            }
+            Hit[] hits = best.toArray(new Hit[0]);
+            Arrays.sort(hits, worstFirst.reversed());
+            return Arrays.asList(hits);
+        }
+
+        private static float score(float[] a, float[] b, String metric) {
+            double dot = 0;
+            double normA = 0;
+            double normB = 0;
+            double distance = 0;
+            for (int i = 0; i < Math.min(a.length, b.length); i++) {
+                dot += a[i] * b[i];
+                normA += a[i] * a[i];
+                normB += b[i] * b[i];
+                double diff = a[i] - b[i];
+                distance += diff * diff;
+            }
+            if ("L2".equalsIgnoreCase(metric)) {
+                return (float) distance;
+            }
+            if ("COSINE".equalsIgnoreCase(metric)) {
+                return normA == 0 || normB == 0 ? 0f : (float) (dot / Math.sqrt(normA * normB));
+            }
+            return (float) dot;
+        }
+    }
+
+    private static final class Row {
+        private final long id;
+        private final float[] vector;
+        private final Map<String, Object> values;
+
+        private Row(long id, float[] vector, Map<String, Object> values) {
+            this.id = id;
+            this.vector = vector;
+            this.values = values;
+        }
+    }
+
+    private static final class Hit {
+        private final Row row;
+        private final float score;
+
+        private Hit(Row row, float score) {
+            this.row = row;
+            this.score = score;
+        }
+    }
+}
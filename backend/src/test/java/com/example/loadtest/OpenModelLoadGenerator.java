@@ -0,0 +1,228 @@
+package com.example.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 开放模型压测发生器
+ * 请求按泊松过程到达（指数分布间隔）, 不等待上一个请求完成; 延迟从计划到达时刻算起, 服务端变慢时排队时间也计入,
+ * 不会因客户端自身降速而低估尾延迟。在途请求超过上限时直接记为 dropped（客户端饱和, 结果不可信）。
+ */
+final class OpenModelLoadGenerator {
+
+    private final HttpClient client;
+    private final List<Operation> operations = new ArrayList<>();
+    private final Random random = new Random(42);
+    private int totalWeight;
+
+    OpenModelLoadGenerator(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 加入一种请求
+     * @param name 报告中的名称
+     * @param weight 请求占比权重
+     * @param request 请求构造函数（参数为随机源）
+     */
+    OpenModelLoadGenerator operation(String name, int weight, Function<Random, HttpRequest> request) {
+        operations.add(new Operation(name, weight, request));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * 以固定平均到达率施压
+     * @param ratePerSecond 平均到达率
+     * @param warmup 预热时长（不计入报告）
+     * @param duration 统计时长
+     * @param maxInFlight 在途请求上限
+     */
+    Report run(double ratePerSecond, Duration warmup, Duration duration, int maxInFlight) throws InterruptedException {
+        AtomicInteger inFlight = new AtomicInteger();
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long scheduled = start;
+        while (scheduled < end) {
+            scheduled += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pick();
+            boolean measured = scheduled >= measureStart;
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    operation.dropped.increment();
+                }
+                continue;
+            }
+            long plannedAt = scheduled;
+            HttpRequest request = operation.request.apply(ThreadLocalRandom.current());
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (measured) {
+                            operation.record(response == null ? -1 : response.statusCode(), System.nanoTime() - plannedAt);
+                        }
+                    });
+        }
+        // 等待在途请求完成
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return new Report(ratePerSecond, duration, operations);
+    }
+
+    private Operation pick() {
+        int value = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            value -= operation.weight;
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    private static final class Operation {
+        private final String name;
+        private final int weight;
+        private final Function<Random, HttpRequest> request;
+        private final Recorder latencyMicros = new Recorder(3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        private Operation(String name, int weight, Function<Random, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        void record(int status, long nanos) {
+            latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (status >= 200 && status < 300) {
+                ok.increment();
+            } else if (status == 429) {
+                rejected.increment();
+            } else {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * 压测报告: 各请求及汇总的吞吐、错误率和延迟分位数（毫秒）
+     * 429 计为限流拒绝, 不计入错误; 超时、连接失败与其他非 2xx 计为错误, 客户端饱和丢弃的请求也计为错误。
+     */
+    static final class Report {
+        private final double targetRate;
+        private final Duration duration;
+        private final Map<String, Map<String, Object>> operations = new LinkedHashMap<>();
+        private final Map<String, Object> total;
+        private final long requests;
+        private final long failures;
+
+        private Report(double targetRate, Duration duration, List<Operation> sources) {
+            this.targetRate = targetRate;
+            this.duration = duration;
+            Histogram all = new Histogram(3);
+            long ok = 0;
+            long rejected = 0;
+            long errors = 0;
+            long dropped = 0;
+            for (Operation operation : sources) {
+                Histogram histogram = operation.latencyMicros.getIntervalHistogram();
+                all.add(histogram);
+                operations.put(operation.name, summarize(histogram, operation.ok.sum(), operation.rejected.sum(),
+                        operation.errors.sum(), operation.dropped.sum()));
+                ok += operation.ok.sum();
+                rejected += operation.rejected.sum();
+                errors += operation.errors.sum();
+                dropped += operation.dropped.sum();
+            }
+            this.requests = ok + rejected + errors + dropped;
+            this.failures = errors + dropped;
+            this.total = summarize(all, ok, rejected, errors, dropped);
+        }
+
+        private Map<String, Object> summarize(Histogram histogram, long ok, long rejected, long errors, long dropped) {
+            long count = ok + rejected + errors + dropped;
+            double seconds = duration.toMillis() / 1000.0;
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("ok", ok);
+            summary.put("rejected", rejected);
+            summary.put("errors", errors + dropped);
+            summary.put("dropped", dropped);
+            summary.put("throughput", round(count / seconds));
+            summary.put("goodput", round(ok / seconds));
+            summary.put("errorRate", count == 0 ? 0.0 : Math.round((errors + dropped) * 10000.0 / count) / 10000.0);
+            summary.put("p50", round(histogram.getValueAtPercentile(50) / 1000.0));
+            summary.put("p90", round(histogram.getValueAtPercentile(90) / 1000.0));
+            summary.put("p99", round(histogram.getValueAtPercentile(99) / 1000.0));
+            summary.put("p999", round(histogram.getValueAtPercentile(99.9) / 1000.0));
+            summary.put("max", round(histogram.getMaxValue() / 1000.0));
+            return summary;
+        }
+
+        long requests() {
+            return requests;
+        }
+
+        double errorRate() {
+            return requests == 0 ? 0.0 : (double) failures / requests;
+        }
+
+        /**
+         * 报告内容（写入 JSON 文件）
+         */
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("targetRate", targetRate);
+            map.put("durationSeconds", duration.toSeconds());
+            map.put("total", total);
+            map.put("operations", operations);
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(
+                    "target=%.0f req/s duration=%ds%n%-16s %9s %9s %8s %8s %9s %9s %9s %9s%n", targetRate,
+                    duration.toSeconds(), "operation", "req/s", "ok/s", "429", "err%", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            Map<String, Map<String, Object>> rows = new LinkedHashMap<>(operations);
+            rows.put("total", total);
+            rows.forEach((name, row) -> builder.append(String.format("%-16s %9.1f %9.1f %8d %8.2f %9.1f %9.1f %9.1f %9.1f%n",
+                    name, row.get("throughput"), row.get("goodput"), row.get("rejected"),
+                    (Double) row.get("errorRate") * 100, row.get("p50"), row.get("p90"), row.get("p99"), row.get("max"))));
+            return builder.toString();
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
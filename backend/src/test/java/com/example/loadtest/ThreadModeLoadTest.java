@@ -0,0 +1,126 @@
+package com.example.loadtest;
+
+import com.example.config.ExecutorFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 平台线程与虚拟线程压测对比（mvn test -Ploadtest, JDK 21）
+ * 每个请求模拟一次消息处理的阻塞调用链: Redis 会话读取 → MySQL（受连接池限制）→ Milvus 检索,
+ * 平台线程模式对应 Tomcat 默认的 200 个工作线程。请求按开放模型定时到达, 延迟从计划到达时刻算起。
+ */
+@Tag("loadtest")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class ThreadModeLoadTest {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int DB_POOL_SIZE = 30;
+
+    private final int ratePerSecond = Integer.getInteger("loadtest.rate", 6000);
+    private final int seconds = Integer.getInteger("loadtest.seconds", 5);
+
+    @Test
+    void virtualThreadsSustainBurstsThatSaturatePlatformPool() throws Exception {
+        Result platform = run("platform", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS,
+                new ExecutorFactory(false).threadFactory("platform")));
+        Result virtual = run("virtual", new ExecutorFactory(true).unbounded("virtual"));
+
+        System.out.println(platform);
+        System.out.println(virtual);
+        assertEquals(0, virtual.errors);
+        assertTrue(virtual.p99Ms <= platform.p99Ms, "virtual p99 should not exceed platform p99");
+    }
+
+    private Result run(String mode, ExecutorService executor) throws InterruptedException {
+        int total = ratePerSecond * seconds;
+        long[] latencies = new long[total];
+        AtomicInteger errors = new AtomicInteger();
+        Semaphore dbPool = new Semaphore(DB_POOL_SIZE, true);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        handleMessage(dbPool);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - scheduled;
+                });
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(mode, total * 1e9 / elapsed, percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get());
+    }
+
+    private static void handleMessage(Semaphore dbPool) throws InterruptedException {
+        // Redis 会话与身份读取
+        blockingCall(1);
+        // MySQL: 超时未拿到连接视为失败（对应 hikari connection-timeout）
+        if (!dbPool.tryAcquire(3, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("connection timeout");
+        }
+        try {
+            blockingCall(2);
+        } finally {
+            dbPool.release();
+        }
+        // Milvus 检索
+        blockingCall(40);
+    }
+
+    private static void blockingCall(int meanMs) throws InterruptedException {
+        double jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+        Thread.sleep(Math.max(1, Math.round(meanMs * jitter)));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private static final class Result {
+        private final String mode;
+        private final double throughput;
+        private final double p50Ms;
+        private final double p99Ms;
+        private final int errors;
+
+        private Result(String mode, double throughput, double p50Ms, double p99Ms, int errors) {
+            this.mode = mode;
+            this.throughput = throughput;
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+            this.errors = errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s throughput=%.0f req/s p50=%.1f ms p99=%.1f ms errors=%d",
+                    mode, throughput, p50Ms, p99Ms, errors);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.service;
+
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class AnalyticsRollupServiceTests {
+
+    @Test
+    void aggregatesFieldsByDimension() {
+        Map<String, String> bucket = new HashMap<>();
+        bucket.put("web|guest|refund|llm|replies", "3");
+        bucket.put("web|guest|refund|llm|escalations", "1");
+        bucket.put("wechat|vip|refund|rule|replies", "1");
+        bucket.put("wechat|vip|-|-|sessions", "2");
+        bucket.put("wechat|vip|-|-|conversions", "1");
+        bucket.put("malformed", "5");
+
+        Map<String, AnalyticsRollupService.Stats> byChannel = new TreeMap<>();
+        AnalyticsRollupService.aggregate(bucket, AnalyticsRollupService.groupIndex("channel"), byChannel);
+        assertEquals(3, byChannel.get("web").getReplies());
+        assertEquals(1.0 / 3, byChannel.get("web").getEscalationRate(), 1e-9);
+        assertEquals(0.5, byChannel.get("wechat").getConversionRate(), 1e-9);
+
+        Map<String, AnalyticsRollupService.Stats> total = new TreeMap<>();
+        AnalyticsRollupService.aggregate(bucket, AnalyticsRollupService.groupIndex("none"), total);
+        assertEquals(4, total.get("all").getReplies());
+        assertThrows(IllegalArgumentException.class, () -> AnalyticsRollupService.groupIndex("ip"));
+    }
+
+    @Test
+    void percentilesComeFromLatencyHistogram() {
+        Map<String, String> bucket = new HashMap<>();
+        bucket.put("web|guest|-|llm|lat" + AnalyticsRollupService.latencyBucket(80), "90");
+        bucket.put("web|guest|-|llm|lat" + AnalyticsRollupService.latencyBucket(1200), "9");
+        bucket.put("web|guest|-|llm|lat" + AnalyticsRollupService.latencyBucket(60_000), "1");
+
+        Map<String, AnalyticsRollupService.Stats> total = new TreeMap<>();
+        AnalyticsRollupService.aggregate(bucket, -1, total);
+        AnalyticsRollupService.Stats stats = total.get("all");
+        assertEquals(100, stats.getP50LatencyMs());
+        assertEquals(100, stats.getP90LatencyMs());
+        assertEquals(1500, stats.getP99LatencyMs());
+        assertEquals(30000, stats.percentile(1.0));
+    }
+
+    @Test
+    void onlyIncrementsThatFailedInThePipelineAreRetried() {
+        RedisUtil redisUtil = mock(RedisUtil.class);
+        List<List<String>> flushes = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<String> commands = run(invocation.getArgument(0));
+            flushes.add(commands);
+            if (calls.incrementAndGet() > 1) {
+                return new ArrayList<>();
+            }
+            // 第一次合并: 分钟桶上的会话数写入失败, 其余命令成功
+            List<Object> results = new ArrayList<>();
+            for (String command : commands) {
+                results.add(command.startsWith("HINCRBY analytics:m:") && command.contains("sessions")
+                        ? new IllegalStateException("OOM command not allowed") : (Object) 1L);
+            }
+            throw new RedisPipelineException(new IllegalStateException("OOM command not allowed"), results);
+        }).when(redisUtil).pipelineStrings(any());
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AnalyticsRollupService service = service(redisUtil, registry);
+        service.recordSession("web", "vip", "refund");
+        service.recordSession("web", "vip", "refund");
+        service.recordTakeOver("web");
+        service.flush();
+        service.flush();
+
+        assertEquals(9, flushes.get(0).size());
+        List<String> retried = flushes.get(1);
+        assertEquals(2, retried.size());
+        assertTrue(retried.get(0).matches("HINCRBY analytics:m:\\d+ web\\|vip\\|refund\\|-\\|sessions 2"), retried.get(0));
+        assertTrue(retried.get(1).matches("EXPIRE analytics:m:\\d+"), retried.get(1));
+        assertEquals(2, registry.counter("analytics.flush.requeued", "outcome", "failed").count());
+        assertEquals(0, registry.counter("analytics.flush.requeued", "outcome", "unknown").count());
+
+        service.flush();
+        assertEquals(2, flushes.size());
+    }
+
+    @Test
+    void unconfirmedIncrementsAreRetriedAndCounted() {
+        RedisUtil redisUtil = mock(RedisUtil.class);
+        List<List<String>> flushes = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            flushes.add(run(invocation.getArgument(0)));
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection reset");
+            }
+            return new ArrayList<>();
+        }).when(redisUtil).pipelineStrings(any());
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AnalyticsRollupService service = service(redisUtil, registry);
+        service.recordSession("web", "vip", "refund");
+        service.flush();
+        service.flush();
+
+        assertEquals(flushes.get(0).stream().sorted().toList(), flushes.get(1).stream().sorted().toList());
+        assertEquals(3, registry.counter("analytics.flush.requeued", "outcome", "unknown").count());
+    }
+
+    private static AnalyticsRollupService service(RedisUtil redisUtil, MeterRegistry registry) {
+        AnalyticsRollupService service = new AnalyticsRollupService(redisUtil, registry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "minuteRetentionDays", 3L);
+        ReflectionTestUtils.setField(service, "hourRetentionDays", 120L);
+        ReflectionTestUtils.setField(service, "dayRetentionDays", 1095L);
+        service.init();
+        return service;
+    }
+
+    /**
+     * 在模拟连接上执行管道回调, 按顺序返回发出的命令
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> run(Consumer<RedisOperations<String, String>> pipeline) {
+        List<String> commands = new ArrayList<>();
+        RedisOperations<String, String> operations = mock(RedisOperations.class);
+        HashOperations<String, Object, Object> hash = mock(HashOperations.class);
+        doReturn(hash).when(operations).opsForHash();
+        doAnswer(invocation -> {
+            commands.add("HINCRBY " + invocation.getArgument(0) + " " + invocation.getArgument(1) + " " + invocation.getArgument(2));
+            return 1L;
+        }).when(hash).increment(anyString(), any(), anyLong());
+        doAnswer(invocation -> {
+            commands.add("EXPIRE " + invocation.getArgument(0));
+            return true;
+        }).when(operations).expire(anyString(), anyLong(), any());
+        pipeline.accept(operations);
+        return commands;
+    }
+}
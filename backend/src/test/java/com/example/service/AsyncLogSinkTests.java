@@ -0,0 +1,92 @@
+package com.example.service;
+
+import com.example.model.Log;
+import com.example.repository.LogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class AsyncLogSinkTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void leftoverReplayFileIsFinishedBeforeTheNewSpillFile() throws Exception {
+        Path spill = dir.resolve("spill.jsonl");
+        // 上次回放中断留下的文件（含一行损坏数据）与之后新产生的溢出文件
+        Files.writeString(Path.of(spill + ".replaying"), line("a") + "{broken\n" + line("b"), StandardCharsets.UTF_8);
+        Files.writeString(spill, line("c"), StandardCharsets.UTF_8);
+
+        List<String> saved = new ArrayList<>();
+        LogRepository repository = mock(LogRepository.class);
+        doAnswer(invocation -> {
+            for (Log log : invocation.<Iterable<Log>>getArgument(0)) {
+                saved.add(log.getAction());
+            }
+            return null;
+        }).when(repository).saveAll(any());
+
+        AsyncLogSink sink = sink(repository, spill, AsyncLogSink.OverflowPolicy.SPILL);
+        sink.start();
+        sink.stop();
+
+        assertEquals(List.of("a", "b", "c"), saved);
+        assertFalse(Files.exists(spill));
+        assertFalse(Files.exists(Path.of(spill + ".replaying")));
+        assertEquals("{broken", Files.readString(Path.of(spill + ".malformed")).trim());
+    }
+
+    @Test
+    void failedReplayBatchIsSpilledAgainEvenWhenPolicyDrops() throws Exception {
+        Path spill = dir.resolve("spill.jsonl");
+        Files.writeString(spill, line("a") + line("b"), StandardCharsets.UTF_8);
+        LogRepository repository = mock(LogRepository.class);
+        doThrow(new IllegalStateException("database down")).when(repository).saveAll(any());
+
+        AsyncLogSink sink = sink(repository, spill, AsyncLogSink.OverflowPolicy.DROP);
+        sink.start();
+        sink.stop();
+
+        assertFalse(Files.exists(Path.of(spill + ".replaying")));
+        List<String> lines = Files.readAllLines(spill, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("a", objectMapper.readValue(lines.get(0), Log.class).getAction());
+        assertEquals("b", objectMapper.readValue(lines.get(1), Log.class).getAction());
+    }
+
+    private AsyncLogSink sink(LogRepository repository, Path spill, AsyncLogSink.OverflowPolicy policy) {
+        AsyncLogSink sink = new AsyncLogSink(repository, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sink, "capacity", 100);
+        ReflectionTestUtils.setField(sink, "batchSize", 10);
+        ReflectionTestUtils.setField(sink, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(sink, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(sink, "spillFile", spill.toString());
+        ReflectionTestUtils.setField(sink, "shutdownTimeoutMs", 5000L);
+        return sink;
+    }
+
+    private String line(String action) throws Exception {
+        Log log = new Log();
+        log.setAction(action);
+        log.setTimestamp(LocalDateTime.of(2024, 5, 1, 8, 0));
+        return objectMapper.writeValueAsString(log) + "\n";
+    }
+}
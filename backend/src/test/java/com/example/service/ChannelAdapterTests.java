@@ -0,0 +1,65 @@
+package com.example.service;
+
+import com.example.model.Channel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelAdapterTests {
+
+    private final Channel channel = new Channel();
+
+    @Test
+    void channelsWithoutSecretRejectEveryCallback() {
+        ChannelAdapter.Inbound inbound = new ChannelAdapter.Inbound("{}",
+                Map.of("signature", "x", "timestamp", "1", "nonce", "n"), Map.of("x-channel-secret", ""), "127.0.0.1");
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertFalse(new WeChatChannelAdapter().verify(channel, Map.of(), inbound));
+        assertFalse(new WeComChannelAdapter().verify(channel, Map.of(), inbound));
+        assertFalse(new DouyinChannelAdapter(objectMapper).verify(channel, Map.of(), inbound));
+        assertFalse(new WebsiteChannelAdapter(objectMapper).verify(channel, Map.of(), inbound));
+    }
+
+    @Test
+    void xmlSignatureMustMatchToken() {
+        WeChatChannelAdapter adapter = new WeChatChannelAdapter();
+        String signature = XmlChannelAdapter.sign("token", "1700000000", "abc");
+
+        assertTrue(adapter.verify(channel, Map.of("token", "token"), new ChannelAdapter.Inbound(null,
+                Map.of("signature", signature, "timestamp", "1700000000", "nonce", "abc"), Map.of(), null)));
+        assertFalse(adapter.verify(channel, Map.of("token", "other"), new ChannelAdapter.Inbound(null,
+                Map.of("signature", signature, "timestamp", "1700000000", "nonce", "abc"), Map.of(), null)));
+    }
+
+    @Test
+    void douyinSignatureCoversSecretAndBody() throws Exception {
+        DouyinChannelAdapter adapter = new DouyinChannelAdapter(new ObjectMapper());
+        String body = "{\"event\":\"im_receive_msg\"}";
+        String signature = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1")
+                .digest(("s3cret" + body).getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(adapter.verify(channel, Map.of("secret", "s3cret"),
+                new ChannelAdapter.Inbound(body, Map.of(), Map.of("x-douyin-signature", signature), null)));
+        assertFalse(adapter.verify(channel, Map.of("secret", "s3cret"),
+                new ChannelAdapter.Inbound(body + " ", Map.of(), Map.of("x-douyin-signature", signature), null)));
+    }
+
+    @Test
+    void websiteRequiresSharedSecretHeader() {
+        WebsiteChannelAdapter adapter = new WebsiteChannelAdapter(new ObjectMapper());
+        Map<String, String> config = Map.of("secret", "s3cret");
+
+        assertTrue(adapter.verify(channel, config, new ChannelAdapter.Inbound("{}", Map.of(),
+                Map.of("x-channel-secret", "s3cret"), null)));
+        assertFalse(adapter.verify(channel, config, new ChannelAdapter.Inbound("{}", Map.of(),
+                Map.of("x-channel-secret", "guess"), null)));
+        assertFalse(adapter.verify(channel, config, new ChannelAdapter.Inbound("{}", Map.of(), Map.of(), null)));
+    }
+}
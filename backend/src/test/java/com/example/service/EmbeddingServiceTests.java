@@ -0,0 +1,53 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingServiceTests {
+
+    @Test
+    void float16RoundTripKeepsPrecision() {
+        Random random = new Random(42);
+        float[] vector = new float[768];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        byte[] encoded = EmbeddingService.encode(vector, EmbeddingService.FORMAT_FLOAT16);
+        assertEquals(1 + vector.length * 2, encoded.length);
+
+        float[] decoded = EmbeddingService.decode(encoded);
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], 1e-3);
+        }
+    }
+
+    @Test
+    void everyHalfValueSurvivesRoundTrip() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            short half = (short) bits;
+            float value = EmbeddingService.fromHalf(half);
+            if (!Float.isNaN(value)) {
+                assertEquals(half, EmbeddingService.toHalf(value));
+            }
+        }
+        assertEquals(Float.POSITIVE_INFINITY, EmbeddingService.fromHalf(EmbeddingService.toHalf(1e6f)));
+    }
+
+    @Test
+    void float32FormatIsLossless() {
+        float[] vector = {0.1f, -0.333333f, 1e-9f};
+        assertArrayEquals(vector, EmbeddingService.decode(EmbeddingService.encode(vector, EmbeddingService.FORMAT_FLOAT32)));
+    }
+
+    @Test
+    void cacheKeyUsesNormalizedTextAndModel() {
+        String a = EmbeddingService.cacheKey("m1", EmbeddingService.normalize("  退款 \n 流程ＡＢＣ "));
+        String b = EmbeddingService.cacheKey("m1", EmbeddingService.normalize("退款 流程ABC"));
+        String c = EmbeddingService.cacheKey("m2", EmbeddingService.normalize("退款 流程ABC"));
+        assertEquals(a, b);
+        assertNotEquals(b, c);
+    }
+}
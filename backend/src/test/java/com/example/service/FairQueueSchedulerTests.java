@@ -0,0 +1,130 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairQueueSchedulerTests {
+
+    @Test
+    void quietQueueIsNotStarvedByNoisyQueue() throws Exception {
+        List<String> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(53);
+        FairQueueScheduler<Integer> scheduler = new FairQueueScheduler<>("test", 1, 100, (key, item) -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(key);
+            done.countDown();
+        }, new ExecutorFactory(false));
+        try {
+            for (int i = 0; i < 50; i++) {
+                assertTrue(scheduler.offer("noisy", i));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertTrue(scheduler.offer("quiet", i));
+            }
+            scheduler.start();
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            // 轮询分配: quiet 的 3 条应在前 8 条内处理完, 而不是排在 noisy 的 50 条之后
+            assertEquals(3, processed.subList(0, 8).stream().filter("quiet"::equals).count());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void keysCreatedConcurrentlyAreAllDispatched() throws Exception {
+        int keys = 200;
+        CountDownLatch done = new CountDownLatch(keys);
+        FairQueueScheduler<Integer> scheduler = new FairQueueScheduler<>("test", 4, 10, (key, item) -> done.countDown(),
+                new ExecutorFactory(false));
+        scheduler.start();
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < keys; i++) {
+                String key = "k" + i;
+                producers.execute(() -> assertTrue(scheduler.offer(key, 1)));
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, scheduler.totalDepth());
+        } finally {
+            producers.shutdown();
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void stopDrainsQueuedItemsBeforeReturning() {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        FairQueueScheduler<Integer> scheduler = new FairQueueScheduler<>("test", 2, 100, (key, item) -> {
+            sleep(5);
+            processed.add(item);
+        }, new ExecutorFactory(false));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(scheduler.offer(i % 2 == 0 ? "a" : "b", i));
+        }
+        scheduler.start();
+
+        Map<String, List<Integer>> undelivered = scheduler.stop(5000);
+        assertTrue(undelivered.isEmpty());
+        assertEquals(20, processed.size());
+        assertFalse(scheduler.offer("a", 99));
+    }
+
+    @Test
+    void stopReturnsItemsNotDispatchedBeforeTimeout() {
+        CountDownLatch release = new CountDownLatch(1);
+        FairQueueScheduler<Integer> scheduler = new FairQueueScheduler<>("test", 1, 100, (key, item) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, new ExecutorFactory(false));
+        scheduler.start();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(scheduler.offer("a", i));
+        }
+
+        Map<String, List<Integer>> undelivered = scheduler.stop(100);
+        // 第一条已分派（阻塞在处理中）, 其余 4 条按入队顺序返回
+        assertEquals(1, scheduler.inFlight());
+        release.countDown();
+        assertEquals(List.of(1, 2, 3, 4), undelivered.get("a"));
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        FairQueueScheduler<Integer> scheduler = new FairQueueScheduler<>("test", 1, 2, (key, item) -> {
+        }, new ExecutorFactory(false));
+        assertTrue(scheduler.offer("a", 1));
+        assertTrue(scheduler.offer("a", 2));
+        assertFalse(scheduler.offer("a", 3));
+        assertTrue(scheduler.offer("b", 1));
+        assertEquals(2, scheduler.depth("a"));
+        assertEquals(3, scheduler.totalDepth());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
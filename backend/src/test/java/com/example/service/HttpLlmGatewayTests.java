@@ -0,0 +1,84 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.config.LlmProperties;
+import com.example.util.LlmStubServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpLlmGatewayTests {
+
+    private LlmStubServer stub;
+    private HttpLlmGateway gateway;
+    private LlmProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new LlmStubServer(0, 200, 10);
+        stub.start();
+        properties = new LlmProperties();
+        properties.setBaseUrl("http://127.0.0.1:" + stub.getPort());
+        properties.setModel("stub");
+        gateway = new HttpLlmGateway(properties, new ObjectMapper(), new SimpleMeterRegistry(), new ExecutorFactory(false));
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+        stub.stop();
+    }
+
+    @Test
+    void streamsDeterministicAnswer() {
+        List<String> tokens = new ArrayList<>();
+        LlmGateway.LlmResponse response = gateway.generate(request("如何退款"), tokens::add);
+
+        assertEquals(LlmStubServer.answerFor("如何退款"), response.getContent());
+        assertEquals(String.join("", tokens), response.getContent());
+        assertTrue(tokens.size() > 1);
+        assertEquals(tokens.size(), response.getCompletionTokens());
+        assertFalse(response.isCoalesced());
+    }
+
+    @Test
+    void identicalInFlightRequestsShareOneUpstreamCall() {
+        List<String> first = Collections.synchronizedList(new ArrayList<>());
+        List<String> second = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<LlmGateway.LlmResponse> a = CompletableFuture.supplyAsync(() -> gateway.generate(request("查询订单"), first::add));
+        CompletableFuture<LlmGateway.LlmResponse> b = CompletableFuture.supplyAsync(() -> gateway.generate(request("查询订单"), second::add));
+
+        assertEquals(a.join().getContent(), b.join().getContent());
+        assertEquals(1, stub.getRequestCount());
+        assertTrue(a.join().isCoalesced() ^ b.join().isCoalesced());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void queueTimeoutWhenModelConcurrencyExhausted() {
+        properties.getModelConcurrency().put("stub", 1);
+        properties.setQueueTimeoutMs(50);
+        CompletableFuture<LlmGateway.LlmResponse> running = CompletableFuture.supplyAsync(() -> gateway.generate(request("问题一"), null));
+        // 等待第一个请求占用许可
+        while (stub.getRequestCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(IllegalStateException.class, () -> gateway.generate(request("问题二"), null));
+        assertNotNull(running.join().getContent());
+    }
+
+    private static LlmGateway.LlmRequest request(String question) {
+        return new LlmGateway.LlmRequest().addMessage("user", question);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.service;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyTrackerTests {
+
+    @Test
+    void mergedSnapshotsMatchSingleHistogram() {
+        Histogram nodeA = new Histogram(3);
+        Histogram nodeB = new Histogram(3);
+        Histogram all = new Histogram(3);
+        for (int i = 1; i <= 1000; i++) {
+            long micros = i * 1000L;
+            (i % 2 == 0 ? nodeA : nodeB).recordValue(micros);
+            all.recordValue(micros);
+        }
+
+        Histogram merged = new Histogram(3);
+        merged.add(LatencyTracker.decode(LatencyTracker.encode(nodeA)));
+        merged.add(LatencyTracker.decode(LatencyTracker.encode(nodeB)));
+
+        assertEquals(all.getTotalCount(), merged.getTotalCount());
+        assertEquals(all.getValueAtPercentile(99.0), merged.getValueAtPercentile(99.0));
+        assertEquals(all.getMaxValue(), merged.getMaxValue());
+        assertNull(LatencyTracker.decode("bm90IGEgaGlzdG9ncmFt"));
+    }
+
+    @Test
+    void summaryReportsPercentilesAndSlaAttainment() {
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < 95; i++) {
+            histogram.recordValue(500_000);
+        }
+        for (int i = 0; i < 5; i++) {
+            histogram.recordValue(3_000_000);
+        }
+
+        Map<String, Object> summary = LatencyTracker.summarize(histogram, 2000L);
+        assertEquals(100L, summary.get("count"));
+        assertEquals(500.0, (Double) summary.get("p50"), 1.0);
+        assertEquals(3000.0, (Double) summary.get("p99"), 3.0);
+        assertEquals(0.95, (Double) summary.get("slaAttainment"), 1e-9);
+        assertFalse(LatencyTracker.summarize(histogram, null).containsKey("slaAttainment"));
+    }
+}
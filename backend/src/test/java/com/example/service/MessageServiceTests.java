@@ -0,0 +1,148 @@
+package com.example.service;
+
+import com.example.model.Message;
+import com.example.repository.ChannelRepository;
+import com.example.repository.MessageRepository;
+import com.example.repository.SessionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class MessageServiceTests {
+
+    private static final long SESSION = 7L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 8, 0);
+    // 升序排列时 NULL 在前, 与 MySQL/H2 一致
+    private static final Comparator<Message> ORDER = Comparator
+            .comparing(Message::getTimestamp, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(Message::getId);
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final List<Message> stored = new ArrayList<>();
+    private MessageService messageService;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> page(message -> true, invocation.getArgument(1)))
+                .when(messageRepository).findFirstPage(any(), any());
+        doAnswer(invocation -> {
+            LocalDateTime timestamp = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            return page(message -> message.getTimestamp() != null && (message.getTimestamp().isAfter(timestamp)
+                    || message.getTimestamp().isEqual(timestamp) && message.getId() > id), invocation.getArgument(3));
+        }).when(messageRepository).findPageAfter(any(), any(), any(), any());
+        doAnswer(invocation -> {
+            Long id = invocation.getArgument(1);
+            return page(message -> message.getTimestamp() == null ? message.getId() > id : true, invocation.getArgument(2));
+        }).when(messageRepository).findPageAfterUntimed(any(), any(), any());
+
+        messageService = new MessageService(messageRepository, mock(SessionRepository.class), mock(ChannelRepository.class),
+                mock(SessionStateStore.class), mock(UserIdentityCache.class), mock(RateLimiter.class),
+                mock(ReplyOrchestrator.class), mock(TransactionTemplate.class), mock(WorkbenchPushService.class),
+                mock(AnalyticsRollupService.class), mock(LatencyTracker.class));
+        ReflectionTestUtils.setField(messageService, "entityManager", mock(EntityManager.class));
+        ReflectionTestUtils.setField(messageService, "maxPageSize", 100);
+        ReflectionTestUtils.setField(messageService, "exportPageSize", 2);
+    }
+
+    @Test
+    void cursorWalksThroughEveryPage() {
+        for (long id = 1; id <= 5; id++) {
+            store(id, T0.plusSeconds(id));
+        }
+
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), walk(2));
+    }
+
+    @Test
+    void messagesWithEqualTimestampsAreNeitherSkippedNorRepeated() {
+        // 同一时刻的消息跨页, 由 id 决定先后
+        store(4, T0);
+        store(2, T0);
+        store(9, T0);
+        store(1, T0.minusSeconds(1));
+        store(5, T0);
+        store(3, T0.plusSeconds(1));
+
+        assertEquals(List.of(List.of(1L, 2L), List.of(4L, 5L), List.of(9L, 3L)), walk(2));
+        assertEquals(List.of(List.of(1L, 2L, 4L), List.of(5L, 9L, 3L)), walk(3));
+    }
+
+    @Test
+    void messagesWithoutTimestampArePagedById() {
+        store(3, null);
+        store(1, null);
+        store(2, T0);
+        store(4, T0.plusSeconds(1));
+
+        assertEquals(List.of(List.of(1L), List.of(3L), List.of(2L), List.of(4L)), walk(1));
+        assertEquals(List.of(List.of(1L, 3L, 2L), List.of(4L)), walk(3));
+    }
+
+    @Test
+    void exportReadsPastMessagesWithoutTimestamp() {
+        store(1, null);
+        store(2, null);
+        store(3, null);
+        store(4, T0);
+        store(5, T0);
+
+        List<Long> exported = new ArrayList<>();
+        assertEquals(5, messageService.exportSession(SESSION, message -> exported.add(message.getId())));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), exported);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        store(1, T0);
+        for (String cursor : List.of("%%%", encode("no-separator"), encode("2024-05-01T08:00|x"), encode("yesterday|1"), encode("|"))) {
+            assertThrows(IllegalArgumentException.class, () -> messageService.listMessages(SESSION, cursor, 10), cursor);
+        }
+    }
+
+    /**
+     * 按 nextCursor 逐页读取, 返回每页的消息ID
+     */
+    private List<List<Long>> walk(int size) {
+        List<List<Long>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            MessageService.MessagePage page = messageService.listMessages(SESSION, cursor, size);
+            pages.add(page.getMessages().stream().map(Message::getId).toList());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return pages;
+    }
+
+    private List<Message> page(Predicate<Message> filter, Pageable pageable) {
+        return stored.stream().filter(filter).sorted(ORDER).limit(pageable.getPageSize()).toList();
+    }
+
+    private void store(long id, LocalDateTime timestamp) {
+        Message message = new Message();
+        message.setId(id);
+        message.setSessionId(SESSION);
+        message.setTimestamp(timestamp);
+        stored.add(message);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
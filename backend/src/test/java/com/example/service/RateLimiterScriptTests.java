@@ -0,0 +1,133 @@
+package com.example.service;
+
+import com.example.config.RateLimitProperties;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 令牌桶 Lua 脚本在嵌入式 Redis 上的行为, 与端到端压测一样使用 -Ploadtest 执行
+ */
+@Tag("loadtest")
+class RateLimiterScriptTests {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate template;
+
+    private final RateLimitProperties properties = new RateLimitProperties();
+    private RateLimiter rateLimiter;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        template = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        template.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        RedisUtil redisUtil = new RedisUtil();
+        ReflectionTestUtils.setField(redisUtil, "stringRedisTemplate", template);
+        // 默认不预取, 每次调用都执行脚本
+        properties.setLeaseSize(1);
+        rateLimiter = new RateLimiter(redisUtil, properties, new SimpleMeterRegistry());
+        rateLimiter.init();
+    }
+
+    @Test
+    void burstIsAllowedThenRejectedWithWait() {
+        properties.setUser(new RateLimitProperties.Limit(1, 3));
+
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire("alice", null, 1L);
+        }
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire("alice", null, 1L));
+
+        // 速率 1 个/秒, 下一个令牌最多等待 1 秒
+        assertTrue(e.getRetryAfterMs() >= 1 && e.getRetryAfterMs() <= 1000, "retry after " + e.getRetryAfterMs());
+    }
+
+    @Test
+    void leaseIsTakenFromTheBucketAndKeyExpires() {
+        properties.setLeaseSize(5);
+        properties.setUser(new RateLimitProperties.Limit(1, 10));
+
+        rateLimiter.acquire("alice", null, 1L);
+
+        double tokens = tokens("ratelimit:user:alice");
+        assertTrue(tokens >= 5 && tokens < 5.5, "tokens " + tokens);
+        // 过期时间为桶从空到满的时间再加 1 秒
+        long ttl = template.getExpire("ratelimit:user:alice", TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 0 && ttl <= 11_000, "ttl " + ttl);
+    }
+
+    @Test
+    void sharedBucketRejectsWithoutTakingFromOthers() {
+        properties.getChannels().put(7L, new RateLimitProperties.Limit(1, 2));
+
+        rateLimiter.acquire("alice", null, 7L);
+        rateLimiter.acquire("bob", null, 7L);
+        assertThrows(RateLimitExceededException.class, () -> rateLimiter.acquire("carol", null, 7L));
+
+        // 渠道桶已空, carol 的用户桶未被扣减
+        assertTrue(tokens("ratelimit:channel:7") < 1);
+        assertEquals(5, tokens("ratelimit:user:carol"), 0.01);
+        assertEquals(4, tokens("ratelimit:user:alice"), 0.1);
+    }
+
+    @Test
+    void bucketRefillsAtItsRate() throws InterruptedException {
+        properties.setUser(new RateLimitProperties.Limit(20, 1));
+
+        rateLimiter.acquire("alice", null, 1L);
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire("alice", null, 1L));
+        assertTrue(e.getRetryAfterMs() <= 50, "retry after " + e.getRetryAfterMs());
+
+        Thread.sleep(e.getRetryAfterMs() + 20);
+        assertDoesNotThrow(() -> rateLimiter.acquire("alice", null, 1L));
+    }
+
+    private static double tokens(String key) {
+        Object tokens = template.opsForHash().get(key, "tokens");
+        assertNotNull(tokens, key);
+        return Double.parseDouble(tokens.toString());
+    }
+}
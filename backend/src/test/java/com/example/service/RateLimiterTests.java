@@ -0,0 +1,120 @@
+package com.example.service;
+
+import com.example.config.RateLimitProperties;
+import com.example.model.User;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTests {
+
+    private final RateLimitProperties properties = new RateLimitProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 每次脚本调用的期望令牌数（ARGV[1]）
+    private final List<Integer> requested = new ArrayList<>();
+    private IntFunction<List<Long>> script;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        RedisUtil redisUtil = new RedisUtil() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T executeScript(RedisScript<T> redisScript, List<String> keys, String... args) {
+                int want = Integer.parseInt(args[0]);
+                requested.add(want);
+                return (T) script.apply(want);
+            }
+        };
+        rateLimiter = new RateLimiter(redisUtil, properties, meterRegistry);
+        rateLimiter.init();
+    }
+
+    @Test
+    void leaseIsCappedByHalfTheSmallestBurst() {
+        script = want -> List.of((long) want, 0L);
+
+        properties.setUser(new RateLimitProperties.Limit(1, 6));
+        rateLimiter.acquire("alice", null, 1L);
+        properties.setLeaseSize(2);
+        properties.setUser(new RateLimitProperties.Limit(1, 100));
+        rateLimiter.acquire("bob", null, 1L);
+        // 容量很小的桶不预取
+        properties.setUser(new RateLimitProperties.Limit(1, 1));
+        rateLimiter.acquire("carol", null, 1L);
+
+        assertEquals(List.of(3, 2, 1), requested);
+    }
+
+    @Test
+    void leasedTokensAreSpentWithoutRedis() {
+        script = want -> List.of(3L, 0L);
+
+        for (int i = 0; i < 4; i++) {
+            rateLimiter.acquire("alice", null, 1L);
+        }
+
+        // 第 1 次预取 3 个, 第 2、3 次本地放行, 第 4 次重新访问 Redis
+        assertEquals(2, requested.size());
+        assertEquals(2, decisions("allowed", "local"), 0);
+        assertEquals(2, decisions("allowed", "redis"), 0);
+    }
+
+    @Test
+    void rejectedCallerIsRejectedLocallyUntilRetry() {
+        script = want -> List.of(0L, 5000L);
+
+        RateLimitExceededException first = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire("alice", null, 1L));
+        RateLimitExceededException second = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire("alice", null, 1L));
+
+        assertEquals(5000, first.getRetryAfterMs());
+        assertTrue(second.getRetryAfterMs() > 0 && second.getRetryAfterMs() <= 5000);
+        assertEquals(1, requested.size());
+        assertEquals(1, decisions("rejected", "redis"), 0);
+        assertEquals(1, decisions("rejected", "local"), 0);
+
+        // 其他用户不受影响
+        script = want -> List.of(1L, 0L);
+        assertDoesNotThrow(() -> rateLimiter.acquire("bob", null, 1L));
+    }
+
+    @Test
+    void redisFailureAllowsTheMessage() {
+        script = want -> {
+            throw new IllegalStateException("connection refused");
+        };
+
+        assertDoesNotThrow(() -> rateLimiter.acquire("alice", null, 1L));
+        assertDoesNotThrow(() -> rateLimiter.acquire("alice", null, 1L));
+
+        // 失败既不预取也不拒绝, 每次都重新访问 Redis
+        assertEquals(2, requested.size());
+        assertEquals(2, meterRegistry.counter("ratelimit.errors").count(), 0);
+        assertEquals(0, decisions("rejected", "local"), 0);
+    }
+
+    @Test
+    void disabledLimiterSkipsRedis() {
+        properties.setEnabled(false);
+        User user = new User();
+        user.setRole("user");
+
+        rateLimiter.acquire("alice", user, 1L);
+
+        assertTrue(requested.isEmpty());
+    }
+
+    private double decisions(String result, String tier) {
+        return meterRegistry.counter("ratelimit.decisions", "result", result, "tier", tier).count();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.service;
+
+import com.example.config.SmileRedisSerializer;
+import com.example.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 经 RedisTemplate 值序列化器存取的各类型在 Smile 格式下的往返
+ */
+class RedisValueSerializationTests {
+
+    private final SmileRedisSerializer serializer = new SmileRedisSerializer();
+
+    @Test
+    void userRoundTrips() {
+        // UserIdentityCache 的 L2 缓存
+        User user = new User();
+        user.setId(7L);
+        user.setPhone("13800000000");
+        user.setUserId("alice");
+        user.setRole("vip");
+        user.setVip(true);
+        user.setCrmId("crm-a");
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 1, 8, 30, 15));
+        user.setUpdatedAt(LocalDateTime.of(2024, 5, 2, 9, 0));
+
+        User copy = (User) roundTrip(user);
+        assertEquals(7L, copy.getId());
+        assertEquals("13800000000", copy.getPhone());
+        assertEquals("alice", copy.getUserId());
+        assertEquals("vip", copy.getRole());
+        assertTrue(copy.isVip());
+        assertEquals("crm-a", copy.getCrmId());
+        assertEquals(user.getCreatedAt(), copy.getCreatedAt());
+        assertEquals(user.getUpdatedAt(), copy.getUpdatedAt());
+    }
+
+    @Test
+    void invalidationKeysRoundTrip() {
+        // UserIdentityCache 的失效广播
+        ArrayList<String> keys = new ArrayList<>(List.of("phone:13800000000", "uid:alice"));
+        assertEquals(keys, roundTrip(keys));
+    }
+
+    @Test
+    void cacheEntryAndEventsRoundTrip() {
+        // SemanticAnswerCache 的 Redis 哈希与节点间同步事件
+        SemanticAnswerCache.CacheEntry entry = new SemanticAnswerCache.CacheEntry("e1", "vip",
+                new float[]{0.6f, -0.8f}, "周一开课", new HashSet<>(List.of(3L, 5L)), 1714550400000L);
+
+        SemanticAnswerCache.CacheEntry copy = (SemanticAnswerCache.CacheEntry) roundTrip(entry);
+        assertEntryEquals(entry, copy);
+
+        SemanticAnswerCache.CacheEvent put = (SemanticAnswerCache.CacheEvent) roundTrip(SemanticAnswerCache.CacheEvent.put(entry));
+        assertEquals(SemanticAnswerCache.CacheEvent.PUT, put.getType());
+        assertEntryEquals(entry, put.getEntry());
+        assertNull(put.getDocumentId());
+
+        SemanticAnswerCache.CacheEvent document = (SemanticAnswerCache.CacheEvent) roundTrip(
+                SemanticAnswerCache.CacheEvent.invalidateDocument(3L));
+        assertEquals(SemanticAnswerCache.CacheEvent.INVALIDATE_DOCUMENT, document.getType());
+        assertNull(document.getEntry());
+        assertEquals(3L, document.getDocumentId());
+
+        SemanticAnswerCache.CacheEvent all = (SemanticAnswerCache.CacheEvent) roundTrip(SemanticAnswerCache.CacheEvent.invalidateAll());
+        assertEquals(SemanticAnswerCache.CacheEvent.INVALIDATE_ALL, all.getType());
+    }
+
+    @Test
+    void scalarsKeepTheirType() {
+        // RuleEngine 的变更广播与 EmbeddingService 的 L2 向量
+        assertEquals(1714550400000L, roundTrip(1714550400000L));
+        assertEquals(42L, roundTrip(42L));
+        assertArrayEquals(new byte[]{1, 0, -1, 127}, (byte[]) roundTrip(new byte[]{1, 0, -1, 127}));
+        assertEquals("text", roundTrip("text"));
+    }
+
+    @Test
+    void jdkSerializedValuesAreStillReadable() {
+        ArrayList<String> keys = new ArrayList<>(List.of("uid:alice"));
+        assertEquals(keys, serializer.deserialize(new JdkSerializationRedisSerializer().serialize(keys)));
+    }
+
+    @Test
+    void typesOutsideTheAllowListAreRejected() {
+        TreeMap<String, String> value = new TreeMap<>();
+        value.put("k", "v");
+        byte[] bytes = serializer.serialize(value);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private Object roundTrip(Object value) {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+
+    private static void assertEntryEquals(SemanticAnswerCache.CacheEntry expected, SemanticAnswerCache.CacheEntry actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRole(), actual.getRole());
+        assertArrayEquals(expected.getEmbedding(), actual.getEmbedding());
+        assertEquals(expected.getAnswer(), actual.getAnswer());
+        assertEquals(expected.getDocumentIds(), actual.getDocumentIds());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.model.Message;
+import com.example.model.User;
+import com.example.repository.MessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ReplyOrchestratorTests {
+
+    private static final List<Float> EMBEDDING = List.of(0.6f, 0.8f);
+
+    private final UserIdentityCache userIdentityCache = mock(UserIdentityCache.class);
+    private final RuleEngine ruleEngine = mock(RuleEngine.class);
+    private final KnowledgeSearchService knowledgeSearchService = mock(KnowledgeSearchService.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final SemanticAnswerCache semanticAnswerCache = mock(SemanticAnswerCache.class);
+    private ReplyOrchestrator orchestrator;
+
+    @AfterEach
+    void shutdown() {
+        if (orchestrator != null) {
+            orchestrator.shutdown();
+        }
+    }
+
+    @Test
+    void allStagesSucceedAndAreTraced() {
+        answerIdentity(30, vipUser());
+        answerKnowledge(0);
+        orchestrator = orchestrator(64);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(null));
+
+        assertEquals(ReplyOrchestrator.SOURCE_KNOWLEDGE, result.getSource());
+        assertEquals("周一开课", result.getAnswer());
+        assertEquals("alice", result.getUser().getUserId());
+        assertFalse(result.isDegraded());
+        Map<String, ReplyOrchestrator.StageTiming> stages = result.getStages();
+        for (String stage : List.of(ReplyOrchestrator.STAGE_IDENTITY, ReplyOrchestrator.STAGE_KNOWLEDGE,
+                ReplyOrchestrator.STAGE_RULES, ReplyOrchestrator.STAGE_HISTORY, ReplyOrchestrator.STAGE_COMPOSE)) {
+            assertEquals(ReplyOrchestrator.OUTCOME_OK, stages.get(stage).getOutcome(), stage);
+        }
+        // 知识检索在身份返回后启动, 按识别出的角色查语义缓存
+        assertTrue(stages.get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOffsetMs() >= 30);
+        verify(semanticAnswerCache).lookup(eq("vip"), any());
+        verify(semanticAnswerCache).put(eq("vip"), any(), eq("周一开课"), any());
+    }
+
+    @Test
+    void slowIdentityDegradesToGuest() {
+        answerIdentity(500, vipUser());
+        answerKnowledge(0);
+        orchestrator = orchestrator(64);
+        ReflectionTestUtils.setField(orchestrator, "identityTimeoutMs", 50L);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(null));
+
+        assertNull(result.getUser());
+        assertTrue(result.isDegraded());
+        assertEquals(ReplyOrchestrator.OUTCOME_TIMEOUT, result.getStages().get(ReplyOrchestrator.STAGE_IDENTITY).getOutcome());
+        assertEquals(ReplyOrchestrator.OUTCOME_OK, result.getStages().get(ReplyOrchestrator.STAGE_RULES).getOutcome());
+        assertEquals(ReplyOrchestrator.OUTCOME_OK, result.getStages().get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOutcome());
+        assertEquals("周一开课", result.getAnswer());
+        verify(semanticAnswerCache).lookup(eq("guest"), any());
+    }
+
+    @Test
+    void slowHistoryIsLeftOut() {
+        answerIdentity(0, vipUser());
+        answerKnowledge(0);
+        doAnswer(invocation -> {
+            Thread.sleep(500);
+            return List.of(new Message());
+        }).when(messageRepository).findRecent(any(), any());
+        orchestrator = orchestrator(64);
+        ReflectionTestUtils.setField(orchestrator, "historyTimeoutMs", 50L);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(7L));
+
+        assertTrue(result.getHistory().isEmpty());
+        assertEquals(ReplyOrchestrator.OUTCOME_TIMEOUT, result.getStages().get(ReplyOrchestrator.STAGE_HISTORY).getOutcome());
+        assertEquals("周一开课", result.getAnswer());
+        assertTrue(result.getTotalMs() < 400);
+    }
+
+    @Test
+    void failedKnowledgeFallsBackToHuman() {
+        answerIdentity(0, vipUser());
+        doThrow(new IllegalStateException("embedding service down")).when(knowledgeSearchService).embed(anyString());
+        orchestrator = orchestrator(64);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(null));
+
+        assertEquals(ReplyOrchestrator.OUTCOME_ERROR, result.getStages().get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOutcome());
+        assertEquals(ReplyOrchestrator.SOURCE_FALLBACK, result.getSource());
+        assertTrue(result.isTransferToHuman());
+        assertTrue(result.getKnowledge().isEmpty());
+    }
+
+    @Test
+    void slowKnowledgeTimesOut() {
+        answerIdentity(0, vipUser());
+        answerKnowledge(1000);
+        orchestrator = orchestrator(64);
+        ReflectionTestUtils.setField(orchestrator, "knowledgeTimeoutMs", 100L);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(null));
+
+        assertEquals(ReplyOrchestrator.OUTCOME_TIMEOUT, result.getStages().get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOutcome());
+        assertEquals(ReplyOrchestrator.SOURCE_FALLBACK, result.getSource());
+        assertTrue(result.getTotalMs() < 500);
+    }
+
+    @Test
+    void deadlineBoundsTheWholeReply() {
+        answerIdentity(0, vipUser());
+        answerKnowledge(1000);
+        orchestrator = orchestrator(64);
+        ReflectionTestUtils.setField(orchestrator, "deadlineMs", 150L);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(null));
+
+        assertNotEquals(ReplyOrchestrator.OUTCOME_OK, result.getStages().get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOutcome());
+        assertEquals(ReplyOrchestrator.SOURCE_FALLBACK, result.getSource());
+        assertTrue(result.getTotalMs() < 500);
+    }
+
+    @Test
+    void knowledgeDoesNotHoldAThreadWhileIdentityIsPending() {
+        // 两个线程: 身份阶段占一个, 等待身份期间历史读取必须能拿到另一个
+        answerIdentity(300, vipUser());
+        answerKnowledge(0);
+        doReturn(List.of(new Message())).when(messageRepository).findRecent(any(), any());
+        orchestrator = orchestrator(2);
+        ReflectionTestUtils.setField(orchestrator, "identityTimeoutMs", 100L);
+        ReflectionTestUtils.setField(orchestrator, "historyTimeoutMs", 50L);
+
+        ReplyOrchestrator.ReplyResult result = orchestrator.reply(request(7L));
+
+        assertEquals(ReplyOrchestrator.OUTCOME_OK, result.getStages().get(ReplyOrchestrator.STAGE_HISTORY).getOutcome());
+        assertEquals(1, result.getHistory().size());
+        assertEquals(ReplyOrchestrator.OUTCOME_TIMEOUT, result.getStages().get(ReplyOrchestrator.STAGE_IDENTITY).getOutcome());
+        assertEquals(ReplyOrchestrator.OUTCOME_OK, result.getStages().get(ReplyOrchestrator.STAGE_KNOWLEDGE).getOutcome());
+    }
+
+    private void answerIdentity(long delayMs, User user) {
+        doAnswer(invocation -> {
+            Thread.sleep(delayMs);
+            return Optional.of(user);
+        }).when(userIdentityCache).findByUserId(anyString());
+    }
+
+    private void answerKnowledge(long delayMs) {
+        doReturn(EMBEDDING).when(knowledgeSearchService).embed(anyString());
+        doAnswer(invocation -> {
+            Thread.sleep(delayMs);
+            return List.of(new KnowledgeSearchService.KnowledgeHit(1L, 3L, "周一开课", 0.9f));
+        }).when(knowledgeSearchService).search(any(), anyInt());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReplyOrchestrator orchestrator(int fanoutThreads) {
+        ReplyOrchestrator orchestrator = new ReplyOrchestrator(userIdentityCache, ruleEngine, knowledgeSearchService,
+                messageRepository, mock(AsyncLogSink.class), new ObjectMapper(), new SimpleMeterRegistry(),
+                new ExecutorFactory(false), mock(ObjectProvider.class), mock(AnalyticsRollupService.class),
+                mock(LatencyTracker.class), semanticAnswerCache);
+        ReflectionTestUtils.setField(orchestrator, "deadlineMs", 1800L);
+        ReflectionTestUtils.setField(orchestrator, "identityTimeoutMs", 200L);
+        ReflectionTestUtils.setField(orchestrator, "rulesTimeoutMs", 100L);
+        ReflectionTestUtils.setField(orchestrator, "knowledgeTimeoutMs", 1200L);
+        ReflectionTestUtils.setField(orchestrator, "historyTimeoutMs", 300L);
+        ReflectionTestUtils.setField(orchestrator, "historySize", 10);
+        ReflectionTestUtils.setField(orchestrator, "knowledgeTopK", 5);
+        ReflectionTestUtils.setField(orchestrator, "knowledgeMinScore", 0.5f);
+        ReflectionTestUtils.setField(orchestrator, "fanoutThreads", fanoutThreads);
+        ReflectionTestUtils.setField(orchestrator, "fanoutQueueCapacity", 16);
+        orchestrator.init();
+        return orchestrator;
+    }
+
+    private static ReplyOrchestrator.ReplyRequest request(Long sessionId) {
+        ReplyOrchestrator.ReplyRequest request = new ReplyOrchestrator.ReplyRequest();
+        request.setSessionId(sessionId);
+        request.setUserId("alice");
+        request.setChannel("website");
+        request.setQuestion("什么时候开课?");
+        return request;
+    }
+
+    private static User vipUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setUserId("alice");
+        user.setRole("vip");
+        user.setVip(true);
+        return user;
+    }
+}
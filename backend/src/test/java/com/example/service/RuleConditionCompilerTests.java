@@ -0,0 +1,50 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleConditionCompilerTests {
+
+    @Test
+    void expressionSupportsAndOrAndKeywords() {
+        Predicate<RuleContext> predicate = RuleConditionCompiler.compile(
+                "questionType == refund && vip == true || question ~ 退费|退款");
+
+        RuleContext vipRefund = new RuleContext("vip", "refund", "怎么办理");
+        vipRefund.setVip(true);
+        assertTrue(predicate.test(vipRefund));
+
+        assertTrue(predicate.test(new RuleContext("user", "course", "我想退款")));
+        assertFalse(predicate.test(new RuleContext("user", "refund", "上课时间")));
+    }
+
+    @Test
+    void jsonConditionsAndNumericComparison() {
+        Predicate<RuleContext> json = RuleConditionCompiler.compile(
+                "{\"role\":[\"student\",\"parent\"],\"keywords\":[\"发票\"]}");
+        assertTrue(json.test(new RuleContext("parent", null, "如何开发票")));
+        assertFalse(json.test(new RuleContext("vip", null, "如何开发票")));
+
+        Predicate<RuleContext> numeric = RuleConditionCompiler.compile("orderCount >= 3");
+        RuleContext context = new RuleContext();
+        context.getAttributes().put("orderCount", "5");
+        assertTrue(numeric.test(context));
+    }
+
+    @Test
+    void blankConditionsAlwaysMatchAndInvalidOnesAreRejected() {
+        assertTrue(RuleConditionCompiler.compile("  ").test(new RuleContext()));
+        assertThrows(IllegalArgumentException.class, () -> RuleConditionCompiler.compile("orderCount >= many"));
+    }
+
+    @Test
+    void actionsParseKeyValuePairs() {
+        Map<String, String> actions = RuleConditionCompiler.parseActions("reply=请提供订单号;transfer=human");
+        assertEquals("请提供订单号", actions.get("reply"));
+        assertEquals("human", actions.get("transfer"));
+    }
+}
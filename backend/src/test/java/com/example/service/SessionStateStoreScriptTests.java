@@ -0,0 +1,192 @@
+package com.example.service;
+
+import com.example.model.Session;
+import com.example.repository.SessionRepository;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 接管与脏标记脚本在嵌入式 Redis 上的行为, 与端到端压测一样使用 -Ploadtest 执行
+ */
+@Tag("loadtest")
+class SessionStateStoreScriptTests {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate template;
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private SessionStateStore store;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        template = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        template.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        RedisUtil redisUtil = new RedisUtil();
+        ReflectionTestUtils.setField(redisUtil, "stringRedisTemplate", template);
+        store = new SessionStateStore(redisUtil, sessionRepository, mock(UserIdentityCache.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "ttlHours", 24L);
+        ReflectionTestUtils.setField(store, "flushBatchSize", 200);
+        ReflectionTestUtils.setField(store, "flushMaxRounds", 50);
+        store.init();
+    }
+
+    @Test
+    void takeOverSucceedsOnceAndRepeatsForTheSameAgent() {
+        store.register(session(1L), null);
+
+        SessionStateStore.TakeOverResult first = store.takeOver(1L, 9L);
+        SessionStateStore.TakeOverResult repeat = store.takeOver(1L, 9L);
+        SessionStateStore.TakeOverResult other = store.takeOver(1L, 8L);
+
+        assertTrue(first.isChanged());
+        assertFalse(repeat.isChanged());
+        assertEquals(9L, repeat.getState().getStaffId());
+        assertFalse(other.isChanged());
+        assertEquals(9L, other.getState().getStaffId());
+        verify(sessionRepository, times(1)).updateState(anyLong(), anyString(), any(), any());
+    }
+
+    @Test
+    void concurrentTakeOverHasOneWinner() throws Exception {
+        int sessions = 50;
+        for (long id = 1; id <= sessions; id++) {
+            store.register(session(id), null);
+        }
+        ExecutorService agents = Executors.newFixedThreadPool(2);
+        try {
+            for (long id = 1; id <= sessions; id++) {
+                long sessionId = id;
+                CountDownLatch start = new CountDownLatch(1);
+                Future<SessionStateStore.TakeOverResult> eight = agents.submit(() -> {
+                    start.await();
+                    return store.takeOver(sessionId, 8L);
+                });
+                Future<SessionStateStore.TakeOverResult> nine = agents.submit(() -> {
+                    start.await();
+                    return store.takeOver(sessionId, 9L);
+                });
+                start.countDown();
+
+                SessionStateStore.TakeOverResult a = eight.get();
+                SessionStateStore.TakeOverResult b = nine.get();
+                assertTrue(a.isChanged() ^ b.isChanged(), "session " + sessionId);
+                // 失败方看到的是胜出方
+                Long winner = a.isChanged() ? 8L : 9L;
+                assertEquals(winner, a.getState().getStaffId());
+                assertEquals(winner, b.getState().getStaffId());
+                verify(sessionRepository).updateState(eq(sessionId), eq(MessageService.SESSION_PROCESSING), eq(winner), any());
+            }
+        } finally {
+            agents.shutdownNow();
+        }
+    }
+
+    @Test
+    void databaseFailureRestoresPending() {
+        store.register(session(1L), null);
+        doThrow(new IllegalStateException("db down"))
+                .when(sessionRepository).updateState(anyLong(), anyString(), any(), any());
+
+        assertThrows(IllegalStateException.class, () -> store.takeOver(1L, 9L));
+
+        SessionStateStore.SessionState state = store.get(1L);
+        assertEquals(MessageService.SESSION_PENDING, state.getStatus());
+        assertNull(state.getStaffId());
+        assertFalse(state.isHandledByStaff());
+    }
+
+    @Test
+    void flushCleansTheDirtyMark() {
+        store.register(session(1L), null);
+        store.touch(1L, "hello");
+
+        store.flush();
+
+        verify(sessionRepository).updateState(1L, MessageService.SESSION_PENDING, null, "hello");
+        assertEquals(Boolean.FALSE, template.opsForSet().isMember("session:dirty", "1"));
+    }
+
+    @Test
+    void sessionTouchedDuringFlushStaysDirty() {
+        store.register(session(1L), null);
+        store.touch(1L, "hello");
+        // 回写期间到达新消息
+        doAnswer(invocation -> {
+            if ("hello".equals(invocation.getArgument(3))) {
+                store.touch(1L, "newer");
+            }
+            return 1;
+        }).when(sessionRepository).updateState(anyLong(), anyString(), any(), any());
+
+        ReflectionTestUtils.setField(store, "flushMaxRounds", 1);
+        store.flush();
+        assertEquals(Boolean.TRUE, template.opsForSet().isMember("session:dirty", "1"));
+
+        store.flush();
+        verify(sessionRepository).updateState(1L, MessageService.SESSION_PENDING, null, "newer");
+        assertEquals(Boolean.FALSE, template.opsForSet().isMember("session:dirty", "1"));
+    }
+
+    private static Session session(Long id) {
+        Session session = new Session();
+        session.setId(id);
+        session.setUserId(100L + id);
+        session.setChannelId(2L);
+        session.setStatus(MessageService.SESSION_PENDING);
+        return session;
+    }
+}
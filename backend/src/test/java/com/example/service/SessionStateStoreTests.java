@@ -0,0 +1,172 @@
+package com.example.service;
+
+import com.example.repository.SessionRepository;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 接管与回写在 Java 侧的处理, 脚本返回值由测试给出; 脚本本身见 SessionStateStoreScriptTests
+ */
+class SessionStateStoreTests {
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    // 依次作为各次脚本调用的返回值
+    private final Deque<List<?>> scriptResults = new ArrayDeque<>();
+    // 各次脚本调用的参数
+    private final List<List<String>> scriptArgs = new ArrayList<>();
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final List<String> dirty = new ArrayList<>();
+    private SessionStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        RedisUtil redisUtil = new RedisUtil() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T executeScript(RedisScript<T> script, List<String> keys, String... args) {
+                scriptArgs.add(List.of(args));
+                return (T) scriptResults.poll();
+            }
+
+            @Override
+            public Map<String, String> hashGetAllAsString(String key) {
+                return hashes.getOrDefault(key, new HashMap<>());
+            }
+
+            @Override
+            public List<String> setRandomMembers(String key, long count) {
+                List<String> members = new ArrayList<>(dirty);
+                dirty.clear();
+                return members;
+            }
+        };
+        store = new SessionStateStore(redisUtil, sessionRepository, mock(UserIdentityCache.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "ttlHours", 24L);
+        ReflectionTestUtils.setField(store, "flushBatchSize", 200);
+        ReflectionTestUtils.setField(store, "flushMaxRounds", 50);
+        store.init();
+    }
+
+    @Test
+    void takeOverWritesThroughWhenItChangesTheState() {
+        scriptResults.add(casResult("1", "PROCESSING", "9"));
+
+        SessionStateStore.TakeOverResult result = store.takeOver(5L, 9L);
+
+        assertTrue(result.isChanged());
+        assertTrue(result.getState().isHandledByStaff());
+        assertEquals(9L, result.getState().getStaffId());
+        assertEquals(List.of(List.of("PENDING", "PROCESSING", "9")), scriptArgs);
+        verify(sessionRepository).updateState(5L, "PROCESSING", 9L, "hello");
+    }
+
+    @Test
+    void repeatedTakeOverBySameAgentIsNotWrittenAgain() {
+        scriptResults.add(casResult("2", "PROCESSING", "9"));
+
+        SessionStateStore.TakeOverResult result = store.takeOver(5L, 9L);
+
+        assertFalse(result.isChanged());
+        assertEquals(9L, result.getState().getStaffId());
+        verify(sessionRepository, never()).updateState(anyLong(), anyString(), any(), any());
+    }
+
+    @Test
+    void conflictingTakeOverReturnsTheCurrentAgent() {
+        scriptResults.add(casResult("0", "PROCESSING", "8"));
+
+        SessionStateStore.TakeOverResult result = store.takeOver(5L, 9L);
+
+        assertFalse(result.isChanged());
+        assertEquals(8L, result.getState().getStaffId());
+        verify(sessionRepository, never()).updateState(anyLong(), anyString(), any(), any());
+    }
+
+    @Test
+    void databaseFailureRestoresPending() {
+        scriptResults.add(casResult("1", "PROCESSING", "9"));
+        doThrow(new IllegalStateException("db down"))
+                .when(sessionRepository).updateState(anyLong(), anyString(), any(), any());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> store.takeOver(5L, 9L));
+
+        assertEquals("db down", e.getCause().getMessage());
+        // 第二次脚本调用把状态改回待处理并清空接待人
+        assertEquals(List.of("PROCESSING", "PENDING", ""), scriptArgs.get(1));
+    }
+
+    @Test
+    void flushCleansOnlyTheVersionItWrote() {
+        hashes.put("session:state:5", state("PROCESSING", "9", "3"));
+        dirty.add("5");
+
+        store.flush();
+
+        verify(sessionRepository).updateState(5L, "PROCESSING", 9L, "hello");
+        // 清除脚本带上回写时读到的版本, 期间版本变化则保留脏标记
+        assertEquals(List.of(List.of("3", "5")), scriptArgs);
+    }
+
+    @Test
+    void flushOfExpiredSessionOnlyCleansTheDirtyMark() {
+        dirty.add("5");
+
+        store.flush();
+
+        verify(sessionRepository, never()).updateState(anyLong(), anyString(), any(), any());
+        assertEquals(List.of(List.of("", "5")), scriptArgs);
+    }
+
+    @Test
+    void failedFlushKeepsTheDirtyMark() {
+        hashes.put("session:state:5", state("PENDING", "", "1"));
+        dirty.add("5");
+        doThrow(new IllegalStateException("db down"))
+                .when(sessionRepository).updateState(anyLong(), anyString(), any(), any());
+
+        store.flush();
+
+        assertTrue(scriptArgs.isEmpty());
+    }
+
+    private static List<String> casResult(String code, String status, String staffId) {
+        List<String> result = new ArrayList<>();
+        result.add(code);
+        state(status, staffId, "1").forEach((field, value) -> {
+            result.add(field);
+            result.add(value);
+        });
+        return result;
+    }
+
+    private static Map<String, String> state(String status, String staffId, String version) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("userId", "1");
+        fields.put("channelId", "2");
+        fields.put("status", status);
+        fields.put("staffId", staffId);
+        fields.put("lastMessage", "hello");
+        fields.put("version", version);
+        return fields;
+    }
+}
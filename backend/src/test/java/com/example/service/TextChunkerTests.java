@@ -0,0 +1,43 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTests {
+
+    @Test
+    void chunksOverlapAndRespectSize() {
+        List<String> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(10, 3, chunks::add);
+        for (char c = 'a'; c <= 'z'; c++) {
+            chunker.append(String.valueOf(c));
+        }
+        chunker.finish();
+
+        assertEquals("abcdefghij", chunks.get(0));
+        assertEquals("hijklmnopq", chunks.get(1));
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.length() <= 10));
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("z"));
+        assertEquals(chunks.size(), chunker.getEmitted());
+    }
+
+    @Test
+    void prefersSentenceBoundary() {
+        List<String> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(10, 2, chunks::add);
+        chunker.append("一二三四五六七。八九十甲乙丙丁");
+        chunker.finish();
+
+        assertEquals("一二三四五六七。", chunks.get(0));
+        assertTrue(chunks.get(1).startsWith("七。"));
+    }
+
+    @Test
+    void rejectsOverlapNotSmallerThanSize() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(5, 5, chunk -> { }));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.service;
+
+import com.example.model.User;
+import com.example.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class UserIdentityCacheTests {
+
+    private final UserService userService = mock(UserService.class);
+    private final RedisUtil redisUtil = mock(RedisUtil.class);
+    // 模拟 Redis: L2 键值与失效频道的订阅者
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+    private final AtomicReference<Consumer<Object>> subscriber = new AtomicReference<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private UserIdentityCache cache;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> redis.get(invocation.<String>getArgument(0))).when(redisUtil).get(anyString());
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(redisUtil).set(anyString(), any(), anyLong(), any());
+        doAnswer(invocation -> redis.remove(invocation.<String>getArgument(0))).when(redisUtil).delete(anyString());
+        doAnswer(invocation -> {
+            subscriber.set(invocation.getArgument(1));
+            return null;
+        }).when(redisUtil).subscribe(anyString(), any());
+
+        cache = new UserIdentityCache(userService, redisUtil, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "l1MaxSize", 100L);
+        ReflectionTestUtils.setField(cache, "l1TtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "l2TtlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    void callersGetCopiesOfCachedUsers() {
+        answerLoad(() -> Optional.of(alice("vip")));
+
+        User first = cache.findByUserId("alice").orElseThrow();
+        first.setRole("tampered");
+
+        assertEquals("vip", cache.findByUserId("alice").orElseThrow().getRole());
+        assertEquals("vip", ((User) redis.get("user:identity:userId:alice")).getRole());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void evictionDuringLoadIsNotOverwritten() {
+        // 回源读到旧值后、写回缓存前, 该用户被修改并清理缓存
+        answerLoad(() -> {
+            User stale = alice("user");
+            cache.evict(stale);
+            return Optional.of(stale);
+        });
+
+        assertEquals("user", cache.findByUserId("alice").orElseThrow().getRole());
+        assertTrue(redis.isEmpty());
+
+        answerLoad(() -> Optional.of(alice("vip")));
+        assertEquals("vip", cache.findByUserId("alice").orElseThrow().getRole());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void broadcastDuringRemoteReadKeepsItOutOfTheNearCache() {
+        AtomicInteger remoteReads = new AtomicInteger();
+        redis.put("user:identity:userId:alice", alice("user"));
+        doAnswer(invocation -> {
+            Object value = redis.get(invocation.<String>getArgument(0));
+            if (remoteReads.incrementAndGet() == 1) {
+                // 其他节点更新了该用户
+                redis.put("user:identity:userId:alice", alice("vip"));
+                subscriber.get().accept(List.of("userId:alice"));
+            }
+            return value;
+        }).when(redisUtil).get(anyString());
+
+        assertEquals("user", cache.findByUserId("alice").orElseThrow().getRole());
+        assertEquals("vip", cache.findByUserId("alice").orElseThrow().getRole());
+        assertEquals(2, remoteReads.get());
+    }
+
+    private void answerLoad(Supplier<Optional<User>> loader) {
+        doAnswer(invocation -> {
+            loads.incrementAndGet();
+            return loader.get();
+        }).when(userService).getUserByUserId(anyString());
+    }
+
+    private static User alice(String role) {
+        User user = new User();
+        user.setId(1L);
+        user.setUserId("alice");
+        user.setPhone("13800000000");
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.service;
+
+import com.example.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStoreTests {
+
+    @Test
+    void concurrentInsertsGetUniqueIdsAndAreIndexed() throws Exception {
+        UserStore store = new UserStore();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> ids.add(store.insert(user("138" + n, "u" + n, "crm" + n)).getId())));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(2000, ids.size());
+        assertEquals(2000, store.size());
+        assertTrue(store.findByPhone("1381999").isPresent());
+        assertEquals("u42", store.findByCrmId("crm42").orElseThrow().getUserId());
+    }
+
+    @Test
+    void updateMovesSecondaryKeysAndDeleteRemovesThem() {
+        UserStore store = new UserStore();
+        User saved = store.insert(user("13800000000", "alice", "crm-a"));
+
+        store.update(saved.getId(), user("13900000000", "alice", "crm-a"));
+        assertTrue(store.findByPhone("13800000000").isEmpty());
+        assertEquals(saved.getId(), store.findByPhone("13900000000").orElseThrow().getId());
+
+        assertTrue(store.delete(saved.getId()));
+        assertTrue(store.findByUserId("alice").isEmpty());
+        assertTrue(store.findByCrmId("crm-a").isEmpty());
+    }
+
+    @Test
+    void keysHeldByAnotherUserAreRejected() {
+        UserStore store = new UserStore();
+        User alice = store.insert(user("13800000000", "alice", "crm-a"));
+        User bob = store.insert(user("13900000000", "bob", "crm-b"));
+
+        assertThrows(IllegalArgumentException.class, () -> store.insert(user("13800000000", "carol", "crm-c")));
+        assertThrows(IllegalArgumentException.class, () -> store.update(bob.getId(), user("13900000000", "bob", "crm-a")));
+        assertEquals(2, store.size());
+        assertTrue(store.findByUserId("carol").isEmpty());
+        assertEquals("crm-b", store.findById(bob.getId()).orElseThrow().getCrmId());
+
+        // 删除另一用户不影响原持有者的键
+        assertTrue(store.delete(bob.getId()));
+        assertEquals(alice.getId(), store.findByCrmId("crm-a").orElseThrow().getId());
+        assertEquals(alice.getId(), store.findByPhone("13800000000").orElseThrow().getId());
+    }
+
+    @Test
+    void releasedKeysCanBeReused() {
+        UserStore store = new UserStore();
+        User alice = store.insert(user("13800000000", "alice", "crm-a"));
+        store.update(alice.getId(), user("13800000001", "alice", "crm-a"));
+
+        User bob = store.insert(user("13800000000", "bob", "crm-b"));
+        assertEquals(bob.getId(), store.findByPhone("13800000000").orElseThrow().getId());
+    }
+
+    @Test
+    void failedUpdateKeepsKeysAgainstConcurrentInsert() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (int round = 0; round < 20000; round++) {
+                UserStore store = new UserStore();
+                User alice = store.insert(user("13800000000", "alice", "crm-a"));
+                CyclicBarrier barrier = new CyclicBarrier(3);
+                // alice 换手机号并改用 zed, 同时 erin 抢占 zed（alice 的更新可能在占键时失败回滚）, dave 抢占 alice 的旧手机号
+                List<Future<?>> futures = List.of(
+                        pool.submit(() -> {
+                            barrier.await();
+                            return store.update(alice.getId(), user("13800000001", "zed", "crm-a"));
+                        }),
+                        pool.submit(() -> {
+                            barrier.await();
+                            return store.insert(user("13800000002", "zed", "crm-e"));
+                        }),
+                        pool.submit(() -> {
+                            barrier.await();
+                            return store.insert(user("13800000000", "dave", "crm-d"));
+                        }));
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                    }
+                }
+
+                // 每个键只属于一个用户, 且索引指向该用户
+                Set<String> phones = new HashSet<>();
+                Set<String> userIds = new HashSet<>();
+                for (User user : store.findAll()) {
+                    assertTrue(phones.add(user.getPhone()), "round " + round + ": phone shared " + user.getPhone());
+                    assertTrue(userIds.add(user.getUserId()), "round " + round + ": userId shared " + user.getUserId());
+                    assertEquals(user.getId(), store.findByPhone(user.getPhone()).orElseThrow().getId());
+                    assertEquals(user.getId(), store.findByUserId(user.getUserId()).orElseThrow().getId());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void returnedUsersAreDetachedCopies() {
+        UserStore store = new UserStore();
+        User saved = store.insert(user("13700000000", "bob", "crm-b"));
+        saved.setPhone("tampered");
+
+        assertEquals("13700000000", store.findById(saved.getId()).orElseThrow().getPhone());
+    }
+
+    private static User user(String phone, String userId, String crmId) {
+        User user = new User();
+        user.setPhone(phone);
+        user.setUserId(userId);
+        user.setCrmId(crmId);
+        user.setRole("user");
+        return user;
+    }
+}
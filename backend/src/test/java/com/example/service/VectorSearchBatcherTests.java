@@ -0,0 +1,172 @@
+package com.example.service;
+
+import com.example.config.ExecutorFactory;
+import com.example.util.MilvusUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class VectorSearchBatcherTests {
+
+    private final MilvusUtil milvusUtil = mock(MilvusUtil.class);
+    // 每次合并检索收到的 (集合, 向量首元素列表)
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private VectorSearchBatcher batcher;
+
+    @AfterEach
+    void stop() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void queriesWithinTheWindowShareOneSearch() throws Exception {
+        answerWithVectorIds(null);
+        batcher = batcher(200, 32, 4, 16);
+
+        List<CompletableFuture<List<MilvusUtil.SearchHit>>> futures = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            futures.add(batcher.submit("kb", vector(i), 5, List.of("content")));
+        }
+
+        // 结果按提交顺序分发回各调用方
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).get(2, TimeUnit.SECONDS).get(0).getId());
+        }
+        assertEquals(List.of("kb[1, 2, 3]"), calls);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+        answerWithVectorIds(null);
+        batcher = batcher(300, 2, 1, 16);
+
+        List<CompletableFuture<List<MilvusUtil.SearchHit>>> futures = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            futures.add(batcher.submit("kb", vector(i), 5, null));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).get(2, TimeUnit.SECONDS).get(0).getId());
+        }
+        assertEquals(List.of("kb[1, 2]", "kb[3, 4]", "kb[5]"), calls);
+    }
+
+    @Test
+    void queriesWithDifferentParametersAreSearchedSeparately() throws Exception {
+        answerWithVectorIds(null);
+        batcher = batcher(200, 32, 4, 16);
+
+        CompletableFuture<List<MilvusUtil.SearchHit>> a = batcher.submit("kb", vector(1), 5, List.of("content"));
+        CompletableFuture<List<MilvusUtil.SearchHit>> b = batcher.submit("faq", vector(2), 5, List.of("content"));
+        CompletableFuture<List<MilvusUtil.SearchHit>> c = batcher.submit("kb", vector(3), 10, List.of("content"));
+        CompletableFuture<List<MilvusUtil.SearchHit>> d = batcher.submit("kb", vector(4), 5, List.of("content"));
+
+        assertEquals(1, a.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(2, b.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(3, c.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(4, d.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(3, calls.size());
+        assertTrue(calls.containsAll(List.of("kb[1, 4]", "faq[2]", "kb[3]")));
+    }
+
+    @Test
+    void cancelledQueriesAreSkipped() throws Exception {
+        answerWithVectorIds(null);
+        batcher = batcher(200, 32, 4, 16);
+
+        CompletableFuture<List<MilvusUtil.SearchHit>> cancelled = batcher.submit("kb", vector(1), 5, null);
+        cancelled.cancel(false);
+        CompletableFuture<List<MilvusUtil.SearchHit>> live = batcher.submit("kb", vector(2), 5, null);
+
+        assertEquals(2, live.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(List.of("kb[2]"), calls);
+    }
+
+    @Test
+    void batchesBeyondThePendingLimitFailImmediately() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        answerWithVectorIds(release);
+        batcher = batcher(200, 32, 1, 1);
+
+        // 三个集合各成一批: 一批执行中, 一批排队, 第三批被拒绝
+        CompletableFuture<List<MilvusUtil.SearchHit>> running = batcher.submit("a", vector(1), 5, null);
+        CompletableFuture<List<MilvusUtil.SearchHit>> queued = batcher.submit("b", vector(2), 5, null);
+        CompletableFuture<List<MilvusUtil.SearchHit>> rejected = batcher.submit("c", vector(3), 5, null);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertFalse(running.isDone());
+
+        release.countDown();
+        assertEquals(1, running.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(2, queued.get(2, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(List.of("a[1]", "b[2]"), calls);
+    }
+
+    @Test
+    void failedSearchFailsEveryQueryInTheBatch() {
+        doAnswer(invocation -> null).when(milvusUtil).searchBatch(anyString(), any(), anyInt(), any());
+        batcher = batcher(200, 32, 4, 16);
+
+        CompletableFuture<List<MilvusUtil.SearchHit>> a = batcher.submit("kb", vector(1), 5, null);
+        CompletableFuture<List<MilvusUtil.SearchHit>> b = batcher.submit("kb", vector(2), 5, null);
+
+        assertThrows(ExecutionException.class, () -> a.get(2, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> b.get(2, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 模拟检索: 每个向量返回一条命中, id 取向量首元素; release 非空时等待其放行
+     */
+    private void answerWithVectorIds(CountDownLatch release) {
+        doAnswer(invocation -> {
+            String collection = invocation.getArgument(0);
+            List<List<Float>> vectors = invocation.getArgument(1);
+            List<Integer> ids = new ArrayList<>();
+            List<List<MilvusUtil.SearchHit>> results = new ArrayList<>();
+            for (List<Float> vector : vectors) {
+                long id = vector.get(0).longValue();
+                ids.add((int) id);
+                results.add(List.of(new MilvusUtil.SearchHit(id, 1.0f)));
+            }
+            calls.add(collection + ids);
+            if (release != null) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return results;
+        }).when(milvusUtil).searchBatch(anyString(), any(), anyInt(), any());
+    }
+
+    private VectorSearchBatcher batcher(long windowMs, int maxBatchSize, int workers, int pendingBatches) {
+        VectorSearchBatcher batcher = new VectorSearchBatcher(milvusUtil, new SimpleMeterRegistry(), new ExecutorFactory(false));
+        ReflectionTestUtils.setField(batcher, "windowMs", windowMs);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(batcher, "queueCapacity", 64);
+        ReflectionTestUtils.setField(batcher, "workers", workers);
+        ReflectionTestUtils.setField(batcher, "pendingBatches", pendingBatches);
+        batcher.start();
+        return batcher;
+    }
+
+    private static List<Float> vector(int id) {
+        return List.of((float) id, 0.5f);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 参数与 JMH 命令行一致（如 java -jar target/benchmarks.jar UserLookup -p users=10000）;
+ * 未指定 -rf/-rff 时结果以 JSON 写入 jmh-result.json, 可用 -Dbenchmark.result 指定文件名（如按提交号命名）,
+ * 不同提交的结果文件可直接用 JMH Visualizer 等工具对比。
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(System.getProperty("benchmark.result", "jmh-result.json"));
+        }
+        new Runner(options.build()).run();
+    }
+}
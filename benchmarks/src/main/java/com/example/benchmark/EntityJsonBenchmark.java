@@ -0,0 +1,117 @@
+package com.example.benchmark;
+
+import com.example.model.Message;
+import com.example.model.Session;
+import com.example.service.MessageService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message / Session 实体的 JSON 序列化与反序列化（ObjectMapper 配置与 Spring Boot 默认一致）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityJsonBenchmark {
+
+    /** 一页消息条数 */
+    private static final int PAGE_SIZE = 50;
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private Session session;
+    private List<Message> page;
+    private String messageJson;
+    private String sessionJson;
+    private String pageJson;
+    private JavaType pageType;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        LocalDateTime now = LocalDateTime.now();
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Message item = new Message();
+            item.setId(1000L + i);
+            item.setSessionId(42L);
+            item.setSender(i % 2 == 0 ? MessageService.SENDER_USER : MessageService.SENDER_AI);
+            item.setContent(i % 2 == 0 ? "请问下周的课程什么时候开始, 可以调整上课时间吗?"
+                    : "您好, 下周一 19:00 开课, 如需调整请在开课前 24 小时联系班主任。");
+            item.setMessageType("text");
+            item.setTimestamp(now.plusSeconds(i));
+            item.setReplyTo(i % 2 == 0 ? null : 999L + i);
+            page.add(item);
+        }
+        message = page.get(1);
+
+        session = new Session();
+        session.setId(42L);
+        session.setUserId(7L);
+        session.setChannelId(1L);
+        session.setStatus(MessageService.SESSION_PROCESSING);
+        session.setStartTime(now);
+        session.setLastMessage(message.getContent());
+        session.setStaffId(3L);
+
+        messageJson = objectMapper.writeValueAsString(message);
+        sessionJson = objectMapper.writeValueAsString(session);
+        pageJson = objectMapper.writeValueAsString(page);
+        pageType = objectMapper.getTypeFactory().constructCollectionType(List.class, Message.class);
+    }
+
+    @Benchmark
+    public String serializeMessage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public Message deserializeMessage() throws JsonProcessingException {
+        return objectMapper.readValue(messageJson, Message.class);
+    }
+
+    @Benchmark
+    public String serializeSession() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(session);
+    }
+
+    @Benchmark
+    public Session deserializeSession() throws JsonProcessingException {
+        return objectMapper.readValue(sessionJson, Session.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String serializeMessagePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Message> deserializeMessagePage() throws JsonProcessingException {
+        return objectMapper.readValue(pageJson, pageType);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.benchmark;
+
+import com.example.config.RedisConfig;
+import com.example.model.User;
+import com.example.service.MessageService;
+import com.example.util.RedisUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisUtil 往返耗时（单键读写、限流计数脚本、会话状态哈希、批量读取）
+ * 需要本机或指定的 Redis 实例: -Dbenchmark.redis.host=127.0.0.1 -Dbenchmark.redis.port=6379,
+ * 只读写 bench: 前缀的键, 结束时删除。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisRoundTripBenchmark {
+
+    private static final String KEY_PREFIX = "bench:";
+    private static final int KEYS = 1000;
+    private static final int BATCH = 20;
+
+    /** 值序列化方式, 对应 redis.value-serializer */
+    @Param({"jdk", "smile"})
+    private String serializer;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisUtil redisUtil;
+    private User user;
+    private List<List<String>> userBatches;
+    private List<List<String>> hashBatches;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("benchmark.redis.host", "localhost"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisConfig redisConfig = new RedisConfig();
+        inject(redisConfig, "valueSerializerType", serializer);
+        RedisTemplate<String, Object> redisTemplate = redisConfig.redisTemplate(connectionFactory);
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        redisUtil = new RedisUtil();
+        inject(redisUtil, "redisTemplate", redisTemplate);
+        inject(redisUtil, "stringRedisTemplate", stringRedisTemplate);
+
+        user = new User();
+        user.setId(1L);
+        user.setPhone("13800138001");
+        user.setUserId("user1");
+        user.setRole("vip");
+        user.setVip(true);
+        user.setCrmId("crm1");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+
+        // 预置数据: 用户缓存与会话状态哈希（与 SessionStateStore 的字段规模相当）
+        Map<String, Object> users = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            users.put(userKey(i), user);
+            Map<String, String> state = new HashMap<>();
+            state.put("id", String.valueOf(i));
+            state.put("channelId", "1");
+            state.put("status", MessageService.SESSION_PROCESSING);
+            state.put("lastMessage", "请问下周的课程什么时候开始?");
+            state.put("updatedAt", String.valueOf(System.currentTimeMillis()));
+            stringRedisTemplate.opsForHash().putAll(hashKey(i), state);
+        }
+        redisUtil.multiSet(users, 10, TimeUnit.MINUTES);
+
+        userBatches = new ArrayList<>();
+        hashBatches = new ArrayList<>();
+        for (int offset = 0; offset < KEYS; offset += BATCH) {
+            List<String> userKeys = new ArrayList<>(BATCH);
+            List<String> hashKeys = new ArrayList<>(BATCH);
+            for (int i = offset; i < offset + BATCH; i++) {
+                userKeys.add(userKey(i));
+                hashKeys.add(hashKey(i));
+            }
+            userBatches.add(userKeys);
+            hashBatches.add(hashKeys);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        stringRedisTemplate.delete(stringRedisTemplate.keys(KEY_PREFIX + "*"));
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public void setUser() {
+        redisUtil.set(userKey(ThreadLocalRandom.current().nextInt(KEYS)), user, 10, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Object getUser() {
+        return redisUtil.get(userKey(ThreadLocalRandom.current().nextInt(KEYS)));
+    }
+
+    /**
+     * 限流计数（Lua 脚本 INCRBY + PEXPIRE）
+     */
+    @Benchmark
+    public Long incrementAndExpire() {
+        return redisUtil.incrementAndExpire(KEY_PREFIX + "counter:" + ThreadLocalRandom.current().nextInt(KEYS),
+                1, 1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Map<String, String> hashGetAll() {
+        return redisUtil.hashGetAllAsString(hashKey(ThreadLocalRandom.current().nextInt(KEYS)));
+    }
+
+    /**
+     * 批量读取 20 个用户（MGET）
+     */
+    @Benchmark
+    public List<Object> multiGetUsers() {
+        return redisUtil.multiGet(userBatches.get(ThreadLocalRandom.current().nextInt(userBatches.size())));
+    }
+
+    /**
+     * 批量读取 20 个会话状态哈希（管道）
+     */
+    @Benchmark
+    public List<Map<String, String>> pipelinedHashGetAll() {
+        return redisUtil.multiHashGetAllAsString(hashBatches.get(ThreadLocalRandom.current().nextInt(hashBatches.size())));
+    }
+
+    private static String userKey(int index) {
+        return KEY_PREFIX + "user:" + index;
+    }
+
+    private static String hashKey(int index) {
+        return KEY_PREFIX + "session:" + index;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
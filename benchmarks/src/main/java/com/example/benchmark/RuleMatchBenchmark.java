@@ -0,0 +1,112 @@
+package com.example.benchmark;
+
+import com.example.model.ServiceRule;
+import com.example.repository.ServiceRuleRepository;
+import com.example.service.RuleContext;
+import com.example.service.RuleEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServiceRule 匹配（RuleEngine 编译后的索引快照）, 规则数 50 与 1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleMatchBenchmark {
+
+    private static final String[] ROLES = {"guest", "user", "vip", "student", "parent", "admin"};
+    private static final String[] TYPES = {"refund", "course", "invoice", "schedule", "complaint", "price", "*"};
+    private static final String[] QUESTIONS = {"我想退款", "怎么开发票", "下周的课程安排", "价格是多少", "投诉老师", "上课时间能改吗"};
+    private static final int CONTEXTS = 1024;
+
+    @Param({"50", "1000"})
+    private int rules;
+
+    private RuleEngine ruleEngine;
+    private RuleContext[] contexts;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<ServiceRule> serviceRules = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            ServiceRule rule = new ServiceRule();
+            rule.setId((long) i + 1);
+            rule.setRuleName("rule-" + i);
+            rule.setUserRole(i % 5 == 0 ? "*" : ROLES[random.nextInt(ROLES.length)]);
+            rule.setRuleType(TYPES[random.nextInt(TYPES.length)]);
+            rule.setPriority(random.nextInt(100));
+            // 表达式与 JSON 两种条件写法各占一半
+            rule.setConditions(i % 2 == 0
+                    ? "vip == true && question ~ 退款|退费 || orderCount >= " + random.nextInt(10)
+                    : "{\"channel\":[\"web\",\"wechat\"],\"keywords\":[\"" + QUESTIONS[random.nextInt(QUESTIONS.length)].substring(0, 2) + "\"]}");
+            rule.setActions("reply=规则" + i + ";transfer=" + (i % 7 == 0));
+            serviceRules.add(rule);
+        }
+        ServiceRuleRepository repository = (ServiceRuleRepository) Proxy.newProxyInstance(
+                ServiceRuleRepository.class.getClassLoader(), new Class<?>[]{ServiceRuleRepository.class},
+                (proxy, method, args) -> {
+                    if ("findAll".equals(method.getName()) && method.getParameterCount() == 0) {
+                        return serviceRules;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        // 不调用 init(), 只加载规则, 不订阅 Redis 变更通知
+        ruleEngine = new RuleEngine(repository, null);
+        ruleEngine.refresh();
+
+        contexts = new RuleContext[CONTEXTS];
+        for (int i = 0; i < CONTEXTS; i++) {
+            RuleContext context = new RuleContext(ROLES[random.nextInt(ROLES.length)],
+                    i % 4 == 0 ? null : TYPES[random.nextInt(TYPES.length - 1)], QUESTIONS[random.nextInt(QUESTIONS.length)]);
+            context.setVip("vip".equals(context.getUserRole()));
+            context.setChannel(i % 3 == 0 ? "douyin" : "web");
+            context.getAttributes().put("orderCount", String.valueOf(random.nextInt(10)));
+            contexts[i] = context;
+        }
+    }
+
+    @Benchmark
+    public Optional<RuleEngine.CompiledRule> match() {
+        return ruleEngine.match(contexts[ThreadLocalRandom.current().nextInt(CONTEXTS)]);
+    }
+
+    @Benchmark
+    public List<RuleEngine.CompiledRule> matchAll() {
+        return ruleEngine.matchAll(contexts[ThreadLocalRandom.current().nextInt(CONTEXTS)], 3);
+    }
+
+    /**
+     * 规则变更后重建快照（编译条件并建立索引）
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int rebuild() {
+        ruleEngine.refresh();
+        return ruleEngine.size();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.benchmark;
+
+import com.example.model.User;
+import com.example.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserService 用户查询（按 id / phone / userId / crmId）, 用户规模 1 万与 100 万
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class UserLookupBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int users;
+
+    private UserService userService;
+    // 查询键预先生成, 避免把字符串拼接计入查询耗时
+    private String[] phones;
+    private String[] userIds;
+    private String[] crmIds;
+    private String[] unknownIds;
+
+    @Setup
+    public void setup() {
+        userService = new UserService();
+        phones = new String[users];
+        userIds = new String[users];
+        crmIds = new String[users];
+        unknownIds = new String[users];
+        for (int i = 0; i < users; i++) {
+            phones[i] = "139" + String.format("%08d", i);
+            userIds[i] = "bench-user-" + i;
+            crmIds[i] = "bench-crm-" + i;
+            unknownIds[i] = "unknown-" + i;
+            User user = new User();
+            user.setPhone(phones[i]);
+            user.setUserId(userIds[i]);
+            user.setCrmId(crmIds[i]);
+            user.setRole(i % 10 == 0 ? "vip" : "user");
+            user.setVip(i % 10 == 0);
+            userService.addUser(user);
+        }
+    }
+
+    @Benchmark
+    public Optional<User> byId() {
+        // 初始化数据占用 1-3, 新增用户 ID 从 4 开始
+        return userService.getUserById(4L + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public Optional<User> byPhone() {
+        return userService.getUserByPhone(phones[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public Optional<User> byUserId() {
+        return userService.getUserByUserId(userIds[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public Optional<User> byCrmId() {
+        return userService.getUserByCrmId(crmIds[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public Optional<User> miss() {
+        return userService.getUserByUserId(unknownIds[ThreadLocalRandom.current().nextInt(users)]);
+    }
+}
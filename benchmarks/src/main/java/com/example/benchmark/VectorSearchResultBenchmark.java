@@ -0,0 +1,93 @@
+package com.example.benchmark;
+
+import com.example.service.KnowledgeIngestionService;
+import com.example.util.MilvusUtil;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.FieldData;
+import io.milvus.grpc.IDs;
+import io.milvus.grpc.LongArray;
+import io.milvus.grpc.ScalarField;
+import io.milvus.grpc.SearchResultData;
+import io.milvus.grpc.StringArray;
+import io.milvus.response.SearchResultsWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MilvusUtil 检索结果处理: 将检索响应转换为命中列表并附加输出字段（不访问 Milvus）
+ * 响应按知识库集合的输出字段（document_id、content）构造, queries 对应 VectorSearchBatcher 合并的查询数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchResultBenchmark {
+
+    private static final List<String> OUT_FIELDS = List.of(
+            KnowledgeIngestionService.FIELD_DOCUMENT_ID, KnowledgeIngestionService.FIELD_CONTENT);
+
+    @Param({"1", "16"})
+    private int queries;
+
+    @Param({"5", "50"})
+    private int topK;
+
+    private SearchResultData results;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int rows = queries * topK;
+        LongArray.Builder ids = LongArray.newBuilder();
+        LongArray.Builder documentIds = LongArray.newBuilder();
+        StringArray.Builder contents = StringArray.newBuilder();
+        SearchResultData.Builder builder = SearchResultData.newBuilder()
+                .setNumQueries(queries)
+                .setTopK(topK);
+        for (int i = 0; i < queries; i++) {
+            builder.addTopks(topK);
+        }
+        for (int i = 0; i < rows; i++) {
+            ids.addData(random.nextInt(1_000_000));
+            builder.addScores(random.nextFloat());
+            documentIds.addData(random.nextInt(1000));
+            contents.addData("知识片段 " + i + ": 课程开课前 24 小时可申请调整上课时间, 开课后按已上课时比例退费。");
+        }
+        results = builder
+                .setIds(IDs.newBuilder().setIntId(ids))
+                .addFieldsData(FieldData.newBuilder()
+                        .setFieldName(KnowledgeIngestionService.FIELD_DOCUMENT_ID)
+                        .setType(DataType.Int64)
+                        .setScalars(ScalarField.newBuilder().setLongData(documentIds)))
+                .addFieldsData(FieldData.newBuilder()
+                        .setFieldName(KnowledgeIngestionService.FIELD_CONTENT)
+                        .setType(DataType.VarChar)
+                        .setScalars(ScalarField.newBuilder().setStringData(contents)))
+                .build();
+    }
+
+    @Benchmark
+    public List<List<MilvusUtil.SearchHit>> idsAndScores() {
+        return MilvusUtil.toHits(new SearchResultsWrapper(results), queries, null);
+    }
+
+    @Benchmark
+    public List<List<MilvusUtil.SearchHit>> withOutFields() {
+        return MilvusUtil.toHits(new SearchResultsWrapper(results), queries, OUT_FIELDS);
+    }
+}